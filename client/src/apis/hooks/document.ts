@@ -1,7 +1,7 @@
 
-import { useMutation, useQuery, useQueryClient } from '@tanstack/react-query';
+import { type InfiniteData, useInfiniteQuery, useMutation, useQuery, useQueryClient } from '@tanstack/react-query';
 import { API_PATHS, baseURL } from '../types/common';
-import type { Document } from '../types/document';
+import type { Document, DocumentPage } from '../types/document';
 import api from '../index';
 import { toast } from '@utils/toast.ts';
 import { useEffect } from 'react';
@@ -9,6 +9,7 @@ import { fetchEventSource } from '@microsoft/fetch-event-source';
 import { fetchWithAuth } from '@apis/fetchWithAuth.ts';
 
 const documentQueryKey = 'document';
+const documentPageSize = 50;
 
 export function useDocumentSse() {
   const queryClient = useQueryClient();
@@ -22,15 +23,25 @@ export function useDocumentSse() {
       onmessage(event) {
         const updatedDocument = JSON.parse(event.data) as Document;
 
-        queryClient.setQueryData<Document[]>([documentQueryKey, 'list'], (oldData) => {
-          if (!oldData) return [updatedDocument];
-          const docExists = oldData.some(doc => doc.id === updatedDocument.id);
+        queryClient.setQueryData<InfiniteData<DocumentPage, string | null>>([documentQueryKey, 'list'], (oldData) => {
+          if (!oldData) return oldData;
+          const docExists = oldData.pages.some(page => page.items.some(doc => doc.id === updatedDocument.id));
 
           if (docExists) {
-            return oldData.map(doc => doc.id === updatedDocument.id ? updatedDocument : doc);
-          } else {
-            return [updatedDocument, ...oldData];
+            return {
+              ...oldData,
+              pages: oldData.pages.map(page => ({
+                ...page,
+                items: page.items.map(doc => doc.id === updatedDocument.id ? updatedDocument : doc),
+              })),
+            };
           }
+          // New documents go on top of the first page
+          const [firstPage, ...otherPages] = oldData.pages;
+          return {
+            ...oldData,
+            pages: [{ ...firstPage, items: [updatedDocument, ...firstPage.items] }, ...otherPages],
+          };
         });
       },
       onerror(err) {
@@ -46,12 +57,16 @@ export function useDocumentSse() {
 }
 
 export function useDocumentList() {
-  return useQuery<Document[], Error>({
+  return useInfiniteQuery<DocumentPage, Error, InfiniteData<DocumentPage, string | null>, string[], string | null>({
     queryKey: [documentQueryKey, 'list'],
-    queryFn: async () => {
-      const response = await api.get(`${baseURL}${API_PATHS.admin.documents.root}`);
-      return response.data as Document[];
+    queryFn: async ({ pageParam }) => {
+      const response = await api.get(`${baseURL}${API_PATHS.admin.documents.root}`, {
+        params: { size: documentPageSize, cursor: pageParam ?? undefined },
+      });
+      return response.data as DocumentPage;
     },
+    initialPageParam: null,
+    getNextPageParam: (lastPage) => lastPage.nextCursor,
   });
 }
 
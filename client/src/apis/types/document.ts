@@ -1,5 +1,7 @@
 export type IndexingStatus = 'PENDING' | 'SUCCESS' | 'FAILURE';
 
+export type IndexingStage = 'PARSING' | 'EMBEDDING' | 'WRITING' | 'DONE';
+
 export interface Document {
   id: number;
   name: string;
@@ -8,4 +10,12 @@ export interface Document {
   category?: string;
   createdAt: string;
   status: IndexingStatus;
+  stage?: IndexingStage;
+  progress: number;
+  revision: number;
+}
+
+export interface DocumentPage {
+  items: Document[];
+  nextCursor: string | null;
 }
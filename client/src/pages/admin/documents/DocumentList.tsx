@@ -4,7 +4,7 @@ import type { IndexingStatus } from '@apis/types/document.ts';
 import ConfirmModal from '@components/ConfirmModal.tsx';
 
 // Helper component to display status with appropriate icons and colors
-const StatusBadge = ({ status }: { status: IndexingStatus }) => {
+const StatusBadge = ({ status, progress }: { status: IndexingStatus; progress?: number }) => {
   switch (status) {
     case 'PENDING':
       return (
@@ -13,7 +13,7 @@ const StatusBadge = ({ status }: { status: IndexingStatus }) => {
             <circle className="opacity-25" cx="12" cy="12" r="10" stroke="currentColor" strokeWidth="4"></circle>
             <path className="opacity-75" fill="currentColor" d="M4 12a8 8 0 018-8V0C5.373 0 0 5.373 0 12h4zm2 5.291A7.962 7.962 0 014 12H0c0 3.042 1.135 5.824 3 7.938l3-2.647z"></path>
           </svg>
-          Pending
+          {progress ? `Indexing ${progress}%` : 'Pending'}
         </div>
       );
     case 'SUCCESS':
@@ -40,7 +40,8 @@ const StatusBadge = ({ status }: { status: IndexingStatus }) => {
 };
 
 function DocumentList() {
-  const { data: documents, isLoading, error } = useDocumentList();
+  const { data, isLoading, error, hasNextPage, fetchNextPage, isFetchingNextPage } = useDocumentList();
+  const documents = data?.pages.flatMap(page => page.items);
   const uploadDocument = useUploadDocument();
   const { mutate: deleteDocument } = useDeleteDocument();
 
@@ -140,7 +141,7 @@ function DocumentList() {
                 <td className="py-3 px-6 text-left whitespace-nowrap">{doc.id}</td>
                 <td className="py-3 px-6 text-left">{doc.name}</td>
                 <td className="py-3 px-6 text-left">{doc.category}</td>
-                <td className="py-3 px-6 text-center"><StatusBadge status={doc.status} /></td>
+                <td className="py-3 px-6 text-center"><StatusBadge status={doc.status} progress={doc.progress} /></td>
                 <td className="py-3 px-6 text-center">{doc.type}</td>
                 <td className="py-3 px-6 text-center">{(doc.size / 1024).toFixed(2)}</td>
                 <td className="py-3 px-6 text-center">{doc.createdAt}</td>
@@ -157,6 +158,17 @@ function DocumentList() {
             ))}
           </tbody>
         </table>
+        {hasNextPage && (
+          <div className="flex justify-center py-4">
+            <button
+              onClick={() => fetchNextPage()}
+              className="px-4 py-2 bg-gray-200 text-gray-700 rounded-md hover:bg-gray-300"
+              disabled={isFetchingNextPage}
+            >
+              {isFetchingNextPage ? 'Loading...' : 'Load more'}
+            </button>
+          </div>
+        )}
       </div>
 
       <ConfirmModal
@@ -0,0 +1,84 @@
+package prototype.coreapi.domain.retrieval.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import prototype.coreapi.domain.retrieval.bench.RetrievalBenchmark.Result;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The quality a change to the retriever must keep, committed next to the benchmark, and the latency it was measured
+ * with. Each threshold applies to one engine configuration on one corpus and chunking; a threshold whose configuration
+ * was not measured is missed too, so that renaming an engine or a corpus needs the baseline updated with it.
+ * Only the quality floors can be missed: latency depends on the machine running the benchmark, so it is reported
+ * against the recorded p99 but never fails the run.
+ * A JSON array of thresholds, any limit of which may be left out:
+ * <pre>
+ * [{"corpus": "fixture", "chunking": "1000:200", "engine": "keyword",
+ *   "minRecall": 0.98, "minMrr": 0.92, "minNdcg": 0.93, "p99Micros": 1900}]
+ * </pre>
+ */
+record Baseline(List<Threshold> thresholds) {
+
+    record Threshold(String corpus, String chunking, String engine, Double minRecall, Double minMrr, Double minNdcg,
+                     Double p99Micros) {
+
+        boolean appliesTo(Result result) {
+            return corpus.equals(result.corpus()) && chunking.equals(result.chunking())
+                    && engine.equals(result.engine());
+        }
+
+        @Override
+        public String toString() {
+            return corpus + " " + chunking + " " + engine;
+        }
+    }
+
+    static Baseline load(Path file) throws IOException {
+        return new Baseline(new ObjectMapper().readValue(file.toFile(), new TypeReference<List<Threshold>>() {
+        }));
+    }
+
+    /**
+     * @return A description of every quality floor the results miss; empty if they keep the baseline.
+     */
+    List<String> check(List<Result> results) {
+        List<String> misses = new ArrayList<>();
+        for (Threshold threshold : thresholds) {
+            Result result = results.stream().filter(threshold::appliesTo).findFirst().orElse(null);
+            if (result == null) {
+                misses.add(threshold + ": not measured");
+                continue;
+            }
+            atLeast(misses, threshold, "recall", result.recall(), threshold.minRecall());
+            atLeast(misses, threshold, "MRR", result.mrr(), threshold.minMrr());
+            atLeast(misses, threshold, "nDCG", result.ndcg(), threshold.minNdcg());
+        }
+        return misses;
+    }
+
+    /**
+     * @return The p99 latency of every measured configuration with a recorded one, next to it.
+     */
+    List<String> latency(List<Result> results) {
+        List<String> lines = new ArrayList<>();
+        for (Threshold threshold : thresholds) {
+            if (threshold.p99Micros() == null) {
+                continue;
+            }
+            results.stream().filter(threshold::appliesTo).findFirst().ifPresent(result ->
+                    lines.add("%s: p99 %.1f us, recorded %.1f us (%+.0f%%)".formatted(threshold, result.p99Micros(),
+                            threshold.p99Micros(), (result.p99Micros() / threshold.p99Micros() - 1) * 100)));
+        }
+        return lines;
+    }
+
+    private static void atLeast(List<String> misses, Threshold threshold, String metric, double value, Double minimum) {
+        if (minimum != null && value < minimum) {
+            misses.add("%s: %s %.3f below %.3f".formatted(threshold, metric, value, minimum));
+        }
+    }
+}
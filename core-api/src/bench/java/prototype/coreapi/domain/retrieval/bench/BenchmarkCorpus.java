@@ -0,0 +1,199 @@
+package prototype.coreapi.domain.retrieval.bench;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Documents split into pages, and queries labelled with the pages that answer them.
+ * Relevance is labelled per page rather than per chunk, the unit the answers cite, so that the labels stay valid
+ * whatever the chunking.
+ * A corpus directory holds {@code documents.jsonl} and {@code queries.jsonl}, one JSON object per line:
+ * <pre>
+ * {"id": 1, "category": "manuals", "displayName": "pump.pdf", "pages": ["text of page 1", "text of page 2"]}
+ * {"query": "how to reset the pump", "category": null, "relevant": [{"documentId": 1, "page": 2, "grade": 2}]}
+ * </pre>
+ * @param name The name the corpus is reported under.
+ */
+record BenchmarkCorpus(String name, List<Document> documents, List<Query> queries) {
+
+    private static final String FIXTURE = "/retrieval-benchmark/";
+    private static final String DOCUMENTS_FILE = "documents.jsonl";
+    private static final String QUERIES_FILE = "queries.jsonl";
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * @param category The category, or null for documents without one.
+     * @param pages The text of each page, first page first.
+     */
+    record Document(long id, String category, String displayName, List<String> pages) {
+    }
+
+    /**
+     * @param category Only search this category, or all categories if null.
+     * @param relevant The pages answering the query, graded from 1 (partly) up.
+     */
+    record Query(String query, String category, List<Judgement> relevant) {
+
+        Map<Page, Integer> grades() {
+            Map<Page, Integer> grades = new HashMap<>();
+            relevant.forEach(judgement -> grades.put(new Page(judgement.documentId(), judgement.page()),
+                    judgement.grade()));
+            return grades;
+        }
+    }
+
+    /**
+     * @param page 1-based, like the pages of retrieved chunks.
+     */
+    record Judgement(long documentId, int page, int grade) {
+    }
+
+    record Page(long documentId, int page) {
+    }
+
+    /**
+     * @return The small hand-labelled corpus bundled with the benchmark.
+     */
+    static BenchmarkCorpus fixture() {
+        try (InputStream documents = resource(DOCUMENTS_FILE); InputStream queries = resource(QUERIES_FILE)) {
+            return new BenchmarkCorpus("fixture", read(documents, Document.class), read(queries, Query.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the bundled benchmark corpus", e);
+        }
+    }
+
+    static BenchmarkCorpus load(Path directory) {
+        try (InputStream documents = Files.newInputStream(directory.resolve(DOCUMENTS_FILE));
+             InputStream queries = Files.newInputStream(directory.resolve(QUERIES_FILE))) {
+            return new BenchmarkCorpus(directory.getFileName().toString(), read(documents, Document.class),
+                    read(queries, Query.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the benchmark corpus in " + directory, e);
+        }
+    }
+
+    /**
+     * Generates a corpus of documents on random topics, each topic with its own vocabulary, mixed with words common to
+     * all topics. Every page also has a few words of its own, which the queries for it contain, so each query has one
+     * page that answers it best; the other pages of its document answer it partly.
+     * @param seed Makes the corpus, and so the numbers, reproducible.
+     */
+    static BenchmarkCorpus synthetic(int documentCount, int pagesPerDocument, int queryCount, long seed) {
+        Random random = new Random(seed);
+        int topicCount = Math.max(1, documentCount / 20);
+        List<String> common = words(random, 300);
+        List<List<String>> topics = new ArrayList<>(topicCount);
+        for (int i = 0; i < topicCount; i++) {
+            topics.add(words(random, 40));
+        }
+
+        List<Document> documents = new ArrayList<>(documentCount);
+        List<List<List<String>>> pageWords = new ArrayList<>(documentCount);
+        int[] topicOf = new int[documentCount];
+        for (int id = 1; id <= documentCount; id++) {
+            int topic = random.nextInt(topicCount);
+            topicOf[id - 1] = topic;
+            List<String> pages = new ArrayList<>(pagesPerDocument);
+            List<List<String>> ownWords = new ArrayList<>(pagesPerDocument);
+            for (int page = 0; page < pagesPerDocument; page++) {
+                List<String> own = words(random, 3);
+                ownWords.add(own);
+                pages.add(page(random, topics.get(topic), common, own));
+            }
+            documents.add(new Document(id, "category-" + topic % 5, "document-" + id + ".pdf", pages));
+            pageWords.add(ownWords);
+        }
+
+        List<Query> queries = new ArrayList<>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            Document document = documents.get(random.nextInt(documentCount));
+            int page = random.nextInt(pagesPerDocument);
+            List<String> own = pageWords.get((int) document.id() - 1).get(page);
+            List<String> topic = topics.get(topicOf[(int) document.id() - 1]);
+            String topicWord = topic.get(random.nextInt(topic.size()));
+            String text = own.get(0) + " " + topicWord + " " + own.get(1);
+            List<Judgement> relevant = new ArrayList<>(pagesPerDocument);
+            for (int p = 0; p < pagesPerDocument; p++) {
+                relevant.add(new Judgement(document.id(), p + 1, p == page ? 2 : 1));
+            }
+            // Some queries are restricted to the category of the document, as from a category-scoped chat
+            queries.add(new Query(text, random.nextInt(3) == 0 ? document.category() : null, relevant));
+        }
+        return new BenchmarkCorpus("synthetic-" + documentCount, documents, queries);
+    }
+
+    int pageCount() {
+        return documents.stream().mapToInt(document -> document.pages().size()).sum();
+    }
+
+    private static String page(Random random, List<String> topic, List<String> common, List<String> own) {
+        int length = 150 + random.nextInt(150);
+        List<String> words = new ArrayList<>(length + own.size());
+        for (int i = 0; i < length; i++) {
+            words.add(random.nextInt(10) < 6 ? topic.get(random.nextInt(topic.size()))
+                    : common.get(random.nextInt(common.size())));
+        }
+        for (String word : own) {
+            words.add(random.nextInt(words.size()), word);
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words.size(); i++) {
+            text.append(words.get(i)).append(i % 12 == 11 ? ". " : " ");
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * @return Pronounceable random words, unlikely to collide.
+     */
+    private static List<String> words(Random random, int count) {
+        String consonants = "bcdfghjklmnprstvz";
+        String vowels = "aeiou";
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(consonants.charAt(random.nextInt(consonants.length())))
+                        .append(vowels.charAt(random.nextInt(vowels.length())));
+            }
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    private static InputStream resource(String file) throws IOException {
+        InputStream in = BenchmarkCorpus.class.getResourceAsStream(FIXTURE + file);
+        if (in == null) {
+            throw new IOException("Missing resource " + FIXTURE + file);
+        }
+        return in;
+    }
+
+    private static <T> List<T> read(InputStream in, Class<T> type) throws IOException {
+        List<T> values = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isBlank()) {
+                values.add(MAPPER.readValue(line, type));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,56 @@
+package prototype.coreapi.domain.retrieval.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits page text into chunks of at most {@code size} characters, each starting up to {@code overlap} characters
+ * before the end of the previous one, breaking at whitespace like the splitter of the indexing workers.
+ * Chunks never span pages.
+ */
+record Chunking(int size, int overlap) {
+
+    /**
+     * @param spec {@code size:overlap}, e.g. {@code 1000:200}.
+     */
+    static Chunking parse(String spec) {
+        String[] parts = spec.split(":");
+        Chunking chunking = new Chunking(Integer.parseInt(parts[0]), parts.length > 1 ? Integer.parseInt(parts[1]) : 0);
+        if (chunking.size <= 0 || chunking.overlap < 0 || chunking.overlap >= chunking.size) {
+            throw new IllegalArgumentException("Invalid chunking " + spec);
+        }
+        return chunking;
+    }
+
+    List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        int start = skipWhitespace(text, 0);
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + size);
+            if (end < text.length()) {
+                int space = text.lastIndexOf(' ', end);
+                end = space > start ? space : end;
+            }
+            chunks.add(text.substring(start, end).trim());
+            if (end >= text.length()) {
+                break;
+            }
+            // Back up by the overlap, to the start of a word, but always move forward
+            int next = text.indexOf(' ', Math.max(start + 1, end - overlap));
+            start = skipWhitespace(text, next < 0 || next >= end ? end : next);
+        }
+        return chunks;
+    }
+
+    @Override
+    public String toString() {
+        return size + ":" + overlap;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        while (from < text.length() && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+}
@@ -0,0 +1,52 @@
+package prototype.coreapi.domain.retrieval.bench;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Embeds text offline by feature hashing the distinct words of the text into a fixed number of signed buckets,
+ * normalized to unit length; counting each word once keeps frequent words from drowning out rare ones. It stands in for the embedding model, which is not available offline: the vector numbers measure the
+ * index (graph recall against exact search, latency, memory) rather than semantic quality, and are comparable across
+ * runs of the benchmark only.
+ */
+final class HashingEmbedder {
+
+    private final int dimension;
+
+    HashingEmbedder(int dimension) {
+        this.dimension = dimension;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    float[] embed(String text) {
+        float[] vector = new float[dimension];
+        Set<String> words = new HashSet<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty() && words.add(word)) {
+                add(vector, word.hashCode());
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private void add(float[] vector, int hash) {
+        // Mix the bits, since String.hashCode is weak in the low bits for short strings
+        int mixed = hash * 0x9E3779B9;
+        mixed ^= mixed >>> 16;
+        vector[Math.floorMod(mixed, dimension)] += (mixed & 0x10000) == 0 ? 1 : -1;
+    }
+}
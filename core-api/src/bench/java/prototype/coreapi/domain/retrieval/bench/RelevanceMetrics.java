@@ -0,0 +1,82 @@
+package prototype.coreapi.domain.retrieval.bench;
+
+import prototype.coreapi.domain.retrieval.bench.BenchmarkCorpus.Page;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mean recall@k, reciprocal rank and nDCG@k over a query set, judging the retrieved chunks by the pages they are on.
+ * Several chunks of one page count once, at the rank of the first, so that finer chunking is not rewarded for
+ * returning the same page repeatedly. Recall@k is the share of the relevant pages in the top k out of as many as
+ * fit in k, so that a query with more relevant pages than k can still reach 1.
+ */
+final class RelevanceMetrics {
+
+    private final int k;
+    private double recall;
+    private double reciprocalRank;
+    private double ndcg;
+    private int queries;
+
+    RelevanceMetrics(int k) {
+        this.k = k;
+    }
+
+    /**
+     * @param ranking The pages of the retrieved chunks, best first.
+     * @param grades The graded pages answering the query.
+     */
+    void add(List<Page> ranking, Map<Page, Integer> grades) {
+        queries++;
+        if (grades.isEmpty()) {
+            return;
+        }
+        Set<Page> seen = new HashSet<>();
+        int rank = 0, found = 0;
+        double dcg = 0, firstRelevant = 0;
+        for (Page page : ranking) {
+            if (rank == k) {
+                break;
+            }
+            if (!seen.add(page)) {
+                continue;
+            }
+            rank++;
+            int grade = grades.getOrDefault(page, 0);
+            if (grade > 0) {
+                found++;
+                dcg += gain(grade, rank);
+                if (firstRelevant == 0) {
+                    firstRelevant = 1.0 / rank;
+                }
+            }
+        }
+        double ideal = 0;
+        List<Integer> sorted = grades.values().stream().sorted((a, b) -> b - a).toList();
+        for (int i = 0; i < Math.min(k, sorted.size()); i++) {
+            ideal += gain(sorted.get(i), i + 1);
+        }
+        recall += (double) found / Math.min(k, grades.size());
+        reciprocalRank += firstRelevant;
+        ndcg += ideal == 0 ? 0 : dcg / ideal;
+    }
+
+    double recall() {
+        return queries == 0 ? 0 : recall / queries;
+    }
+
+    double meanReciprocalRank() {
+        return queries == 0 ? 0 : reciprocalRank / queries;
+    }
+
+    double ndcg() {
+        return queries == 0 ? 0 : ndcg / queries;
+    }
+
+    private static double gain(int grade, int rank) {
+        return (Math.pow(2, grade) - 1) / (Math.log(rank + 1) / Math.log(2));
+    }
+}
@@ -0,0 +1,296 @@
+package prototype.coreapi.domain.retrieval.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import prototype.coreapi.domain.retrieval.HybridRetriever;
+import prototype.coreapi.domain.retrieval.RetrievalIndex;
+import prototype.coreapi.domain.retrieval.bench.BenchmarkCorpus.Page;
+import prototype.coreapi.domain.retrieval.bench.BenchmarkCorpus.Query;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.dto.ChunkEvent;
+import prototype.coreapi.domain.retrieval.dto.HybridRetrievalRequest;
+import prototype.coreapi.domain.retrieval.dto.RetrievalIndexStats;
+import prototype.coreapi.domain.retrieval.dto.RetrievedChunk;
+import prototype.coreapi.domain.retrieval.enums.ChunkOperation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the quality and the latency of retrieval over labelled corpora, offline, through the same index and hybrid
+ * retriever the service uses. For every corpus and chunking, the chunks are indexed as if read from the chunk stream,
+ * then every engine configuration answers the query set, reporting recall@k, MRR and nDCG@k against the labels,
+ * p50/p99 latency, and the heap and mapped memory of the index.
+ * Run with {@code ./gradlew retrievalBenchmark}; the report is printed and written to
+ * {@code build/reports/retrieval-benchmark/report.json}. Options, passed with {@code --args}:
+ * <ul>
+ *     <li>{@code --corpus <dir>}: a corpus directory, see {@link BenchmarkCorpus}; repeatable. Defaults to the
+ *     bundled fixture and a synthetic corpus.</li>
+ *     <li>{@code --synthetic <documents>}: size of the synthetic corpus, 0 for none (2000).</li>
+ *     <li>{@code --chunking <size:overlap,...>}: chunkings to compare (1000:200,500:100).</li>
+ *     <li>{@code --k <k>}: chunks retrieved per query (10).</li>
+ *     <li>{@code --dimension <n>}: dimension of the offline embeddings (1024, as the embedding model).</li>
+ *     <li>{@code --out <dir>}: where to write the report.</li>
+ *     <li>{@code --baseline <file>}: quality floors the results must keep, see {@link Baseline}; the run fails listing
+ *     the missed ones, and reports the latency against the recorded one. {@code ./gradlew retrievalBenchmarkCheck}
+ *     runs with the committed baseline.</li>
+ * </ul>
+ */
+public final class RetrievalBenchmark {
+
+    private static final int MIN_SAMPLES = 1_000;
+    private static final Duration SETTLE_TIMEOUT = Duration.ofMinutes(2);
+
+    private final int k;
+    private final HashingEmbedder embedder;
+
+    private RetrievalBenchmark(int k, int dimension) {
+        this.k = k;
+        this.embedder = new HashingEmbedder(dimension);
+    }
+
+    /**
+     * One engine configuration's results on one corpus and chunking.
+     */
+    record Result(String corpus, String chunking, String engine, int chunks, double recall, double mrr, double ndcg,
+                  double p50Micros, double p99Micros, long heapBytes, long indexBytes, long buildMillis) {
+    }
+
+    /**
+     * A way of answering a query, given the query and its embedding.
+     */
+    private record Engine(String name, Search search) {
+    }
+
+    @FunctionalInterface
+    private interface Search {
+        List<RetrievedChunk> search(Query query, float[] vector);
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<BenchmarkCorpus> corpora = new ArrayList<>();
+        List<Chunking> chunkings = List.of(new Chunking(1000, 200), new Chunking(500, 100));
+        int synthetic = 2_000, k = 10, dimension = 1024;
+        Path out = Path.of("build", "reports", "retrieval-benchmark");
+        Baseline baseline = null;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--corpus" -> corpora.add(BenchmarkCorpus.load(Path.of(value)));
+                case "--synthetic" -> synthetic = Integer.parseInt(value);
+                case "--chunking" -> chunkings = Arrays.stream(value.split(",")).map(Chunking::parse).toList();
+                case "--k" -> k = Integer.parseInt(value);
+                case "--dimension" -> dimension = Integer.parseInt(value);
+                case "--out" -> out = Path.of(value);
+                case "--baseline" -> baseline = Baseline.load(Path.of(value));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            i++;
+        }
+        if (corpora.isEmpty()) {
+            corpora.add(BenchmarkCorpus.fixture());
+            if (synthetic > 0) {
+                corpora.add(BenchmarkCorpus.synthetic(synthetic, 4, 500, 42));
+            }
+        }
+
+        RetrievalBenchmark benchmark = new RetrievalBenchmark(k, dimension);
+        List<Result> results = new ArrayList<>();
+        for (BenchmarkCorpus corpus : corpora) {
+            for (Chunking chunking : chunkings) {
+                results.addAll(benchmark.run(corpus, chunking));
+            }
+        }
+
+        print(results, k);
+        Files.createDirectories(out);
+        Path report = out.resolve("report.json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), results);
+        System.out.println("Report written to " + report.toAbsolutePath());
+
+        if (baseline != null) {
+            System.out.println("Latency against the baseline:");
+            baseline.latency(results).forEach(line -> System.out.println("  " + line));
+            List<String> misses = baseline.check(results);
+            if (!misses.isEmpty()) {
+                System.err.println("The results miss the baseline:");
+                misses.forEach(miss -> System.err.println("  " + miss));
+                System.exit(1);
+            }
+            System.out.println("The results keep the baseline");
+        }
+    }
+
+    /**
+     * Indexes the corpus with the chunking and runs every engine configuration over its queries.
+     */
+    private List<Result> run(BenchmarkCorpus corpus, Chunking chunking) throws IOException {
+        Path directory = Files.createTempDirectory("retrieval-benchmark");
+        RetrievalProperties properties = new RetrievalProperties();
+        properties.setIndexDirectory(directory.toString());
+        properties.setVectorDimension(embedder.dimension());
+        // Every query must reach the index
+        properties.setResultCacheSize(0);
+        // Small pages, so that the mapped size of the vector index follows its contents
+        properties.setVectorPageSize(DataSize.ofMegabytes(1));
+
+        long heapBefore = usedHeap();
+        long started = System.nanoTime();
+        RetrievalIndex index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+        try {
+            int chunks = index(index, properties, corpus, chunking);
+            long buildMillis = (System.nanoTime() - started) / 1_000_000;
+            RetrievalIndexStats stats = index.stats();
+            long heapBytes = Math.max(0, usedHeap() - heapBefore);
+            long indexBytes = stats.keywordIndexBytes() + stats.vectorIndexBytes();
+
+            List<float[]> vectors = corpus.queries().stream().map(query -> embedder.embed(query.query())).toList();
+            HybridRetriever hybridRetriever = new HybridRetriever(index, properties);
+            List<Engine> engines = List.of(
+                    new Engine("keyword", (query, vector) -> index.searchKeyword(query.query(), query.category(), k)),
+                    new Engine("vector ef=16", (query, vector) ->
+                            index.searchVector(vector, query.category(), k, 16, false)),
+                    new Engine("vector ef=64", (query, vector) ->
+                            index.searchVector(vector, query.category(), k, 64, false)),
+                    new Engine("vector ef=256", (query, vector) ->
+                            index.searchVector(vector, query.category(), k, 256, false)),
+                    new Engine("vector exact", (query, vector) ->
+                            index.searchVector(vector, query.category(), k, null, true)),
+                    new Engine("hybrid", (query, vector) -> hybridRetriever.retrieve(new HybridRetrievalRequest(
+                            query.query(), vector, query.category(), k, null, null)).block().chunks())
+            );
+
+            List<Result> results = new ArrayList<>(engines.size());
+            for (Engine engine : engines) {
+                RelevanceMetrics metrics = new RelevanceMetrics(k);
+                long[] latencies = measure(engine, corpus.queries(), vectors, metrics);
+                results.add(new Result(corpus.name(), chunking.toString(), engine.name(), chunks, metrics.recall(),
+                        metrics.meanReciprocalRank(), metrics.ndcg(), percentile(latencies, 0.5) / 1e3,
+                        percentile(latencies, 0.99) / 1e3, heapBytes, indexBytes, buildMillis));
+            }
+            return results;
+        } finally {
+            index.close();
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Adds the chunks of the corpus as chunk stream batches, seals them into segments like a snapshot would, and
+     * waits for the merges the segments start to finish.
+     * @return The number of chunks.
+     */
+    private int index(RetrievalIndex index, RetrievalProperties properties, BenchmarkCorpus corpus,
+                      Chunking chunking) {
+        List<ChunkEvent> events = new ArrayList<>();
+        for (BenchmarkCorpus.Document document : corpus.documents()) {
+            for (int page = 0; page < document.pages().size(); page++) {
+                List<String> texts = chunking.split(document.pages().get(page));
+                for (int i = 0; i < texts.size(); i++) {
+                    String text = texts.get(i);
+                    events.add(new ChunkEvent(ChunkOperation.UPSERT, document.id() + "-" + (page + 1) + "-" + i,
+                            document.id(), page + 1, document.category(), document.displayName(), text,
+                            embedder.embed(text), null, 0));
+                }
+            }
+        }
+        int batchSize = properties.getReadBatchSize();
+        for (int start = 0; start < events.size(); start += batchSize) {
+            if (start + batchSize >= events.size()) {
+                // The last batch takes a snapshot, sealing the remaining chunks into memory-mapped segments
+                properties.setSnapshotInterval(Duration.ZERO);
+            }
+            index.apply(events.subList(start, Math.min(events.size(), start + batchSize)), (start + 1) + "-0");
+        }
+        awaitMerges(index);
+        return events.size();
+    }
+
+    /**
+     * @return The latency of every query of the measured passes, in nanoseconds.
+     */
+    private long[] measure(Engine engine, List<Query> queries, List<float[]> vectors, RelevanceMetrics metrics) {
+        // The first pass judges the results, which do not change between passes
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            List<Page> ranking = engine.search().search(query, vectors.get(i)).stream()
+                    .map(chunk -> new Page(chunk.documentId(), chunk.page()))
+                    .toList();
+            metrics.add(ranking, query.grades());
+        }
+        int passes = Math.max(1, (MIN_SAMPLES + queries.size() - 1) / Math.max(1, queries.size()));
+        // Warm up as long as measured, so that the measured passes run compiled code
+        for (int pass = 0; pass < passes; pass++) {
+            for (int i = 0; i < queries.size(); i++) {
+                engine.search().search(queries.get(i), vectors.get(i));
+            }
+        }
+        long[] latencies = new long[passes * queries.size()];
+        int sample = 0;
+        for (int pass = 0; pass < passes; pass++) {
+            for (int i = 0; i < queries.size(); i++) {
+                long started = System.nanoTime();
+                engine.search().search(queries.get(i), vectors.get(i));
+                latencies[sample++] = System.nanoTime() - started;
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Waits until the number of segments stops changing, as merges run in the background.
+     */
+    private static void awaitMerges(RetrievalIndex index) {
+        long deadline = System.nanoTime() + SETTLE_TIMEOUT.toNanos();
+        int segments = -1;
+        while (System.nanoTime() < deadline) {
+            int current = index.stats().segments();
+            if (current == segments) {
+                return;
+            }
+            segments = current;
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static double percentile(long[] values, double percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void print(List<Result> results, int k) {
+        System.out.printf("%n%-14s %-9s %-14s %7s %9s %7s %8s %9s %9s %8s %9s %9s%n", "corpus", "chunking", "engine",
+                "chunks", "recall@" + k, "MRR", "nDCG@" + k, "p50 (us)", "p99 (us)", "heap MB", "index MB", "build ms");
+        for (Result result : results) {
+            System.out.printf("%-14s %-9s %-14s %7d %9.3f %7.3f %8.3f %9.1f %9.1f %8.1f %9.1f %9d%n", result.corpus(),
+                    result.chunking(), result.engine(), result.chunks(), result.recall(), result.mrr(), result.ndcg(),
+                    result.p50Micros(), result.p99Micros(), result.heapBytes() / 1048576.0,
+                    result.indexBytes() / 1048576.0, result.buildMillis());
+        }
+    }
+}
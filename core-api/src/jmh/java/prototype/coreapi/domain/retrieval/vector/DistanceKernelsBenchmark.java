@@ -0,0 +1,79 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and SIMD distance kernels at the embedding dimensions in use.
+ * Run with {@code ./gradlew jmh}; the SIMD kernels need the vector module, which the build adds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DistanceKernelsBenchmark {
+
+    @Param({"384", "768", "1024"})
+    private int dimension;
+
+    @Param({"scalar", "simd"})
+    private String implementation;
+
+    private DistanceKernels kernels;
+    private float[] a;
+    private float[] b;
+    private float[] weights;
+    private byte[] codesA;
+    private byte[] codesB;
+
+    @Setup
+    public void setUp() {
+        kernels = implementation.equals("simd") ? DistanceKernels.get() : DistanceKernels.scalar();
+        Random random = new Random(42);
+        a = new float[dimension];
+        b = new float[dimension];
+        weights = new float[dimension];
+        codesA = new byte[dimension];
+        codesB = new byte[dimension];
+        for (int i = 0; i < dimension; i++) {
+            a[i] = (float) random.nextGaussian();
+            b[i] = (float) random.nextGaussian();
+            weights[i] = (float) random.nextGaussian();
+        }
+        random.nextBytes(codesA);
+        random.nextBytes(codesB);
+    }
+
+    @Benchmark
+    public float dot() {
+        return kernels.dot(a, b);
+    }
+
+    @Benchmark
+    public float cosine() {
+        return kernels.cosine(a, b);
+    }
+
+    @Benchmark
+    public float squaredDistance() {
+        return kernels.squaredDistance(a, b);
+    }
+
+    @Benchmark
+    public float int8QueryDot() {
+        return kernels.dot(weights, codesA);
+    }
+
+    @Benchmark
+    public float int8PairDot() {
+        return kernels.dot(weights, codesA, codesB);
+    }
+}
@@ -0,0 +1,91 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import prototype.coreapi.domain.retrieval.support.TopK;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares graph search with brute-force exact search, both on quantized vectors, over clustered random vectors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VectorSearchBenchmark {
+
+    private static final int CLUSTERS = 100;
+    private static final int K = 10;
+    private static final int EF = 64;
+
+    @Param({"384", "768", "1024"})
+    private int dimension;
+
+    @Param({"20000"})
+    private int size;
+
+    private HnswIndex index;
+    private BitSet all;
+    private float[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        float[][] centers = new float[CLUSTERS][];
+        for (int i = 0; i < CLUSTERS; i++) {
+            centers[i] = gaussian(random, null, 1f);
+        }
+        index = new HnswIndex(Files.createTempDirectory("hnsw-benchmark"), dimension, 16, 100, 0,
+                Math.min(size, 10_000), 64L << 20);
+        for (int node = 0; node < size; node++) {
+            index.insert(node, gaussian(random, centers[random.nextInt(CLUSTERS)], 0.5f));
+        }
+        all = new BitSet(size);
+        all.set(0, size);
+        queries = new float[256][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = gaussian(random, centers[random.nextInt(CLUSTERS)], 0.5f);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    public TopK.Result graphSearch() {
+        return index.search(nextQuery(), all, K, EF);
+    }
+
+    @Benchmark
+    public TopK.Result exactSearch() {
+        return index.exactSearch(nextQuery(), all, K);
+    }
+
+    private float[] nextQuery() {
+        return queries[next++ & (queries.length - 1)];
+    }
+
+    private float[] gaussian(Random random, float[] center, float spread) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (center == null ? 0 : center[i]) + (float) random.nextGaussian() * spread;
+        }
+        return vector;
+    }
+}
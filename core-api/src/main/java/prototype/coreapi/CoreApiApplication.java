@@ -4,6 +4,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main entry point for the Core API Spring Boot application.
@@ -11,6 +12,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
  * including authentication, document management, and chat functionalities.
  */
 @EnableAsync
+@EnableScheduling
 @SpringBootApplication
 public class CoreApiApplication {
 
@@ -8,6 +8,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import prototype.coreapi.domain.auth.dto.AuthInfo;
@@ -23,6 +24,7 @@ import prototype.coreapi.global.exception.ErrorCode;
 import prototype.coreapi.global.response.RestResponse;
 import reactor.core.publisher.Mono;
 
+import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.util.Map;
 
@@ -44,15 +46,17 @@ public class AuthController {
      * Handles user sign-in. Authenticates the user and issues JWT tokens.
      * The refresh token is set as an HTTP-only cookie.
      * @param request The authentication request containing user credentials.
+     * @param httpRequest The underlying HTTP request, used to resolve the client address.
      * @return A Mono emitting a ResponseEntity with AuthResponse containing access token and user details.
      */
     @PostMapping("/sign-in")
     @Operation(summary = "Sign-in", description = "Delivers authentication information including tokens.")
     public Mono<ResponseEntity<AuthResponse>> signIn(
-            @Valid @RequestBody AuthRequest request
+            @Valid @RequestBody AuthRequest request,
+            ServerHttpRequest httpRequest
     ) {
         
-        return authService.signIn(request)
+        return authService.signIn(request, resolveClientIp(httpRequest))
                 .map(authInfo -> {
                     Map<String, String> cookieHeaders = createSetRefreshTokenCookieHeader(
                             authInfo.refreshToken(), authInfo.refreshTokenTtl()
@@ -143,6 +147,20 @@ public class AuthController {
         return Map.of(HttpHeaders.SET_COOKIE, cookie.toString());
     }
 
+    /**
+     * Resolves the client address. Forwarded headers are applied only on requests from a trusted proxy,
+     * so the remote address reflects the original client behind the proxy and cannot be chosen by the client.
+     * @param httpRequest The incoming HTTP request.
+     * @return The client IP address, or null if it cannot be determined.
+     */
+    private String resolveClientIp(ServerHttpRequest httpRequest) {
+        InetSocketAddress remoteAddress = httpRequest.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return null;
+        }
+        return remoteAddress.getAddress().getHostAddress();
+    }
+
     private AuthResponse createAuthResponseFromAuthInfo(AuthInfo authInfo) {
         return AuthResponse.builder()
                 .accessToken(authInfo.accessToken())
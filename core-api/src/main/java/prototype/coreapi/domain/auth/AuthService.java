@@ -11,6 +11,7 @@ import prototype.coreapi.domain.auth.dto.AuthInfo;
 import prototype.coreapi.domain.auth.dto.AuthRequest;
 import prototype.coreapi.domain.auth.dto.AuthTokens;
 import prototype.coreapi.domain.auth.security.JwtService;
+import prototype.coreapi.domain.auth.security.SignInRateLimiter;
 import prototype.coreapi.domain.member.MemberService;
 import prototype.coreapi.domain.member.entity.Member;
 import prototype.coreapi.global.exception.BusinessException;
@@ -21,6 +22,7 @@ import prototype.coreapi.global.redis.TokenBlacklistStoreProvider;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Service responsible for handling user authentication and authorization flows.
@@ -34,6 +36,7 @@ public class AuthService {
     private final ReactiveAuthenticationManager authenticationManager;
     private final JwtService jwtService;
     private final MemberService memberService;
+    private final SignInRateLimiter signInRateLimiter;
 
     private final AccessTokenStoreProvider accessTokenStoreProvider;
     private final RefreshTokenStoreProvider refreshTokenStoreProvider;
@@ -41,19 +44,32 @@ public class AuthService {
 
     /**
      * Authenticates a user and issues new JWT tokens.
+     * Attempts are shaped per email, and failed attempts per client IP, before the password is verified,
+     * and verification itself runs on the bounded password hashing scheduler.
      *
      * @param request The user's credentials (email and password).
+     * @param clientIp The address of the client making the request, or null if unknown.
      * @return A Mono emitting authentication information, including tokens.
-     * @throws BusinessException if authentication fails due to wrong credentials or user status.
+     * @throws BusinessException if authentication fails due to wrong credentials or user status,
+     * if too many attempts were made, or if the hashing executor is saturated.
      */
-    public Mono<AuthInfo> signIn(AuthRequest request) {
+    public Mono<AuthInfo> signIn(AuthRequest request, String clientIp) {
         var token = new UsernamePasswordAuthenticationToken(
                 request.getEmail(), request.getPassword()
         );
 
-        return authenticationManager.authenticate(token)
-            .cast(UsernamePasswordAuthenticationToken.class)
-            .flatMap(this::processSuccessfulAuthentication)
+        return signInRateLimiter.acquire(clientIp, request.getEmail())
+            .then(Mono.defer(() -> authenticationManager.authenticate(token)
+                    .cast(UsernamePasswordAuthenticationToken.class)
+                    .flatMap(this::processSuccessfulAuthentication)
+                    // Every attempt that does not sign in counts against the client IP, unknown emails included,
+                    // except those shed because the hashing executor is saturated.
+                    .onErrorResume(ex -> !(ex instanceof RejectedExecutionException),
+                            ex -> signInRateLimiter.recordFailure(clientIp).then(Mono.error(ex)))))
+            .flatMap(authInfo -> signInRateLimiter.reset(request.getEmail()).thenReturn(authInfo))
+            // The hashing executor's queue is full; shed the request instead of waiting.
+            .onErrorMap(RejectedExecutionException.class,
+                    ex -> new BusinessException(ErrorCode.SIGN_IN_BUSY))
             .onErrorMap(BadCredentialsException.class,
                     ex -> new BusinessException(ErrorCode.WRONG_PASSWORD))
             .onErrorMap(UsernameNotFoundException.class,
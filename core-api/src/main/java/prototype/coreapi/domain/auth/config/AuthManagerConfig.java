@@ -1,23 +1,70 @@
 package prototype.coreapi.domain.auth.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class AuthManagerConfig {
 
+    public static final String PASSWORD_HASHING_SCHEDULER = "passwordHashingScheduler";
+
     @Bean
     public ReactiveAuthenticationManager reactiveAuthenticationManager(
             ReactiveUserDetailsService userDetailsService,
-            PasswordEncoder passwordEncoder
+            ReactiveUserDetailsPasswordService userDetailsPasswordService,
+            PasswordEncoder passwordEncoder,
+            Scheduler passwordHashingScheduler
     ) {
         UserDetailsRepositoryReactiveAuthenticationManager manager =
                 new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
         manager.setPasswordEncoder(passwordEncoder);
+        // Password checks (and upgrades) run on the dedicated hashing pool instead of a shared scheduler.
+        manager.setScheduler(passwordHashingScheduler);
+        // Hashes below the configured cost factor are transparently re-encoded after a successful match.
+        manager.setUserDetailsPasswordService(userDetailsPasswordService);
         return manager;
     }
-}
\ No newline at end of file
+
+    /**
+     * Provides a bounded scheduler reserved for password hashing.
+     * The pool has a fixed size and a fixed-capacity queue; once both are full, new sign-in attempts
+     * are rejected immediately instead of piling up and starving the schedulers serving chat traffic.
+     *
+     * @param properties The sign-in properties defining the pool and queue sizes.
+     * @param meterRegistry The registry used to publish pool and queue metrics.
+     * @return A Scheduler backed by the bounded hashing executor.
+     */
+    @Bean(name = PASSWORD_HASHING_SCHEDULER, destroyMethod = "dispose")
+    public Scheduler passwordHashingScheduler(SignInProperties properties, MeterRegistry meterRegistry) {
+        SignInProperties.Hashing hashing = properties.getHashing();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-hashing-");
+        threadFactory.setDaemon(true);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                hashing.getPoolSize(),
+                hashing.getPoolSize(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(hashing.getQueueCapacity()),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        ExecutorService monitored = ExecutorServiceMetrics.monitor(meterRegistry, executor, "password-hashing");
+        return Schedulers.fromExecutorService(monitored, "password-hashing");
+    }
+}
@@ -0,0 +1,30 @@
+package prototype.coreapi.domain.auth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "auth.sign-in")
+@Data
+public class SignInProperties {
+
+    private Hashing hashing = new Hashing();
+    private Shaping shaping = new Shaping();
+
+    @Data
+    public static class Hashing {
+        // BCrypt cost factor. Stored hashes below this cost are re-hashed on successful sign-in.
+        private int strength = 10;
+        private int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        private int queueCapacity = 64;
+    }
+
+    @Data
+    public static class Shaping {
+        private Duration window = Duration.ofMinutes(1);
+        // Only failed attempts, unknown emails included, count against the client IP, so many users behind one NAT can all sign in.
+        private int maxFailuresPerIp = 30;
+        private int maxAttemptsPerEmail = 5;
+    }
+}
@@ -1,7 +1,10 @@
 package prototype.coreapi.domain.auth.security;
 
+import lombok.extern.slf4j.Slf4j;
+import prototype.coreapi.domain.member.entity.Member;
 import prototype.coreapi.domain.member.repository.MemberRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -9,9 +12,10 @@ import prototype.coreapi.global.exception.BusinessException;
 import prototype.coreapi.global.exception.ErrorCode;
 import reactor.core.publisher.Mono;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements ReactiveUserDetailsService {
+public class CustomUserDetailsService implements ReactiveUserDetailsService, ReactiveUserDetailsPasswordService {
 
     private final MemberRepository memberRepository;
 
@@ -20,4 +24,17 @@ public class CustomUserDetailsService implements ReactiveUserDetailsService {
         return memberRepository.findByEmail(username).switchIfEmpty(Mono.error(new BusinessException(ErrorCode.NOT_FOUND_USER)))
                 .cast(UserDetails.class);
     }
+
+    /**
+     * Persists a re-encoded password after a successful sign-in.
+     * Called by the authentication manager when the stored hash uses a lower cost factor than configured.
+     */
+    @Override
+    public Mono<UserDetails> updatePassword(UserDetails user, String newPassword) {
+        Member member = (Member) user;
+        member.updateEncodedPassword(newPassword);
+        return memberRepository.save(member)
+                .doOnSuccess(saved -> log.info("Re-hashed password for member id: {}", saved.getId()))
+                .cast(UserDetails.class);
+    }
 }
@@ -0,0 +1,92 @@
+package prototype.coreapi.domain.auth.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.auth.config.SignInProperties;
+import prototype.coreapi.global.exception.BusinessException;
+import prototype.coreapi.global.exception.ErrorCode;
+import prototype.coreapi.global.redis.SignInAttemptStoreProvider;
+import prototype.coreapi.global.util.TokenHashUtil;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+
+import static prototype.coreapi.global.enums.RedisKeyPrefix.SIGN_IN_ATTEMPT_EMAIL;
+import static prototype.coreapi.global.enums.RedisKeyPrefix.SIGN_IN_ATTEMPT_IP;
+
+/**
+ * Shapes sign-in traffic before any password hashing takes place.
+ * Attempts are counted per email, and failed attempts per client IP, in fixed windows stored in Redis,
+ * so limits hold across every core-api node. Requests over either limit are rejected
+ * without touching the hashing executor. Successful sign-ins do not count against the IP, so users sharing an
+ * address behind a NAT or proxy are not throttled by each other's logins.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SignInRateLimiter {
+
+    private final SignInAttemptStoreProvider attemptStoreProvider;
+    private final SignInProperties signInProperties;
+
+    /**
+     * Records a sign-in attempt against the per-email limit and checks the failures of the client IP.
+     *
+     * @param clientIp The address of the client, or null if unknown.
+     * @param email The email the client is trying to sign in with.
+     * @return A Mono that completes if the attempt is allowed, or errors otherwise.
+     * @throws BusinessException if either limit is exceeded.
+     */
+    public Mono<Void> acquire(String clientIp, String email) {
+        SignInProperties.Shaping shaping = signInProperties.getShaping();
+
+        Mono<Boolean> ipAllowed = clientIp == null
+                ? Mono.just(true)
+                : attemptStoreProvider.count(SIGN_IN_ATTEMPT_IP, clientIp)
+                        .map(failures -> failures < shaping.getMaxFailuresPerIp());
+        Mono<Boolean> emailAllowed = attemptStoreProvider
+                .increment(SIGN_IN_ATTEMPT_EMAIL, emailKey(email), shaping.getWindow())
+                .map(count -> count <= shaping.getMaxAttemptsPerEmail());
+
+        return Mono.zip(ipAllowed, emailAllowed)
+                .flatMap(allowed -> {
+                    if (allowed.getT1() && allowed.getT2()) {
+                        return Mono.empty();
+                    }
+                    log.warn("Sign-in attempt rejected by shaping. ip: {}, ipAllowed: {}, emailAllowed: {}",
+                            clientIp, allowed.getT1(), allowed.getT2());
+                    return Mono.error(new BusinessException(ErrorCode.TOO_MANY_SIGN_IN_ATTEMPTS));
+                });
+    }
+
+    /**
+     * Counts a failed sign-in against the client IP.
+     *
+     * @param clientIp The address of the client, or null if unknown.
+     * @return A Mono that completes when the failure is recorded.
+     */
+    public Mono<Void> recordFailure(String clientIp) {
+        if (clientIp == null) {
+            return Mono.empty();
+        }
+        return attemptStoreProvider.increment(SIGN_IN_ATTEMPT_IP, clientIp, signInProperties.getShaping().getWindow())
+                .then();
+    }
+
+    /**
+     * Clears the per-email counter after a successful sign-in.
+     * The per-IP counter is left to expire so a single address cannot cycle through accounts.
+     *
+     * @param email The email that signed in successfully.
+     * @return A Mono that completes when the counter is cleared.
+     */
+    public Mono<Void> reset(String email) {
+        return attemptStoreProvider.reset(SIGN_IN_ATTEMPT_EMAIL, emailKey(email));
+    }
+
+    private String emailKey(String email) {
+        // Hashed so that raw addresses are not kept in Redis key names.
+        return TokenHashUtil.sha256(email.trim().toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,317 @@
+package prototype.coreapi.domain.document;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import prototype.coreapi.domain.document.config.DocumentUploadProperties;
+import prototype.coreapi.domain.document.dto.BulkUploadResult;
+import prototype.coreapi.domain.document.dto.DocumentCatalogDelta;
+import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.StoredFile;
+import prototype.coreapi.domain.document.entity.Document;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.enums.JobLane;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Uploads many documents at once, either as separate files or packed in zip archives.
+ * Files are written to storage in parallel with bounded concurrency, then registered in batches:
+ * each batch costs one duplicate lookup, one batched insert and one pipelined publish of its indexing jobs, which
+ * happens in the background once the page text of the batch is extracted.
+ * Results are streamed per file as each batch is saved.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkUploadService {
+
+    private static final String ARCHIVE_EXTENSION = "zip";
+    private static final String ARCHIVE_METADATA_DIRECTORY = "__MACOSX/";
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final DocumentStorageService documentStorageService;
+    private final DocumentRepository documentRepository;
+    private final DocumentUploadProperties uploadProperties;
+    private final DocumentCatalog documentCatalog;
+    private final DocumentService documentService;
+
+    /**
+     * Stores and registers every uploaded file, expanding zip archives into their documents.
+     * @param fileParts The uploaded files and archives.
+     * @param category The category to file all documents under.
+     * @return A Flux emitting one result per document.
+     */
+    public Flux<BulkUploadResult> upload(Flux<FilePart> fileParts, String category) {
+        int concurrency = uploadProperties.getBulkConcurrency();
+
+        return fileParts.collectList()
+                .flatMapMany(parts -> Flux.concat(
+                        Flux.fromIterable(parts)
+                                .filter(part -> !isArchive(part.filename()))
+                                .flatMap(part -> stage(part.filename(), part.content()), concurrency),
+                        // Archives are expanded one at a time so their entries share the same concurrency bound
+                        Flux.fromIterable(parts)
+                                .filter(part -> isArchive(part.filename()))
+                                .concatMap(this::stageArchive)
+                ))
+                .bufferTimeout(uploadProperties.getBulkBatchSize(), uploadProperties.getBulkBatchWindow())
+                .concatMap(batch -> register(batch, category));
+    }
+
+    private Mono<Staged> stage(String filename, Flux<DataBuffer> content) {
+        return documentStorageService.store(content, DocumentService.getFileExtension(filename))
+                .map(storedFile -> new Staged(filename, storedFile, null))
+                .onErrorResume(e -> {
+                    log.warn("Failed to store file {} of bulk upload", filename, e);
+                    return Mono.just(new Staged(filename, null, e.getMessage()));
+                });
+    }
+
+    private Flux<Staged> stageArchive(FilePart archivePart) {
+        String archiveName = archivePart.filename();
+
+        return documentStorageService.spool(archivePart.content())
+                .flatMapMany(archive -> Flux.using(
+                                () -> new ZipFile(archive.toFile()),
+                                zipFile -> stageEntries(archiveName, zipFile),
+                                BulkUploadService::closeQuietly)
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> Flux.just(new Staged(archiveName, null, "Unreadable archive: " + e.getMessage())))
+                        .concatWith(documentStorageService.delete(archive).then(Mono.<Staged>empty())))
+                .onErrorResume(e -> Flux.just(new Staged(archiveName, null, e.getMessage())));
+    }
+
+    private Flux<Staged> stageEntries(String archiveName, ZipFile zipFile) {
+        List<? extends ZipEntry> entries = zipFile.stream()
+                .filter(entry -> !entry.isDirectory())
+                .filter(entry -> isDocumentEntry(entry.getName()))
+                .toList();
+        int maxEntries = uploadProperties.getMaxArchiveEntries();
+        if (entries.size() > maxEntries) {
+            return Flux.just(new Staged(archiveName, null, "Archive contains more than " + maxEntries + " documents"));
+        }
+        // Entry sizes in the archive are whatever its author wrote, so the bytes actually inflated are counted instead
+        DataSize maxSize = uploadProperties.getMaxArchiveUncompressedSize();
+        String tooLarge = "Archive " + archiveName + " expands to more than " + maxSize;
+        AtomicLong remaining = new AtomicLong(maxSize.toBytes());
+
+        return Flux.fromIterable(entries)
+                .flatMap(entry -> {
+                    String filename = entryFilename(entry.getName());
+                    if (remaining.get() < 0) {
+                        return Mono.just(new Staged(filename, null, tooLarge));
+                    }
+                    Flux<DataBuffer> content = DataBufferUtils.readInputStream(
+                                    () -> new BoundedInputStream(zipFile.getInputStream(entry), remaining, tooLarge),
+                                    DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE)
+                            .subscribeOn(Schedulers.boundedElastic());
+                    return stage(filename, content);
+                }, uploadProperties.getBulkConcurrency());
+    }
+
+    /**
+     * Registers one batch of stored files.
+     * Content already present in the category, or repeated within the batch, is reported as a duplicate;
+     * everything else is inserted in one statement and queued for indexing in one pipeline.
+     */
+    private Flux<BulkUploadResult> register(List<Staged> batch, String category) {
+        List<String> hashes = batch.stream()
+                .filter(Staged::isStored)
+                .map(staged -> staged.storedFile().contentHash())
+                .distinct()
+                .toList();
+        Mono<List<Document>> existingDocuments = hashes.isEmpty()
+                ? Mono.just(List.of())
+                : documentRepository.findAllByContentHashIn(hashes).collectList();
+
+        return existingDocuments.flatMapMany(existing -> {
+            Map<String, Document> sameCategory = new HashMap<>();
+            Map<String, Long> indexedSources = new HashMap<>();
+            for (Document document : existing) {
+                if (Objects.equals(document.getCategory(), category) && document.getStatus() != IndexingStatus.FAILURE) {
+                    sameCategory.putIfAbsent(document.getContentHash(), document);
+                }
+                if (document.getStatus() == IndexingStatus.SUCCESS) {
+                    indexedSources.putIfAbsent(document.getContentHash(), document.getId());
+                }
+            }
+
+            List<Document> newDocuments = new ArrayList<>();
+            List<Long> sourceDocumentIds = new ArrayList<>();
+            Map<String, Integer> newDocumentIndex = new HashMap<>();
+            for (Staged staged : batch) {
+                if (!staged.isStored()) {
+                    continue;
+                }
+                String hash = staged.storedFile().contentHash();
+                if (sameCategory.containsKey(hash) || newDocumentIndex.containsKey(hash)) {
+                    continue;
+                }
+                newDocumentIndex.put(hash, newDocuments.size());
+                newDocuments.add(newDocument(staged, category));
+                sourceDocumentIds.add(indexedSources.get(hash));
+            }
+
+            return insertAndPublish(newDocuments, sourceDocumentIds)
+                    .flatMapIterable(saved -> {
+                        List<BulkUploadResult> results = new ArrayList<>(batch.size());
+                        boolean[] reported = new boolean[saved.size()];
+                        for (Staged staged : batch) {
+                            if (!staged.isStored()) {
+                                results.add(BulkUploadResult.failed(staged.filename(), staged.error()));
+                                continue;
+                            }
+                            String hash = staged.storedFile().contentHash();
+                            Document existingDocument = sameCategory.get(hash);
+                            if (existingDocument != null) {
+                                results.add(BulkUploadResult.duplicate(staged.filename(), DocumentResponse.from(existingDocument)));
+                                continue;
+                            }
+                            int index = newDocumentIndex.get(hash);
+                            DocumentResponse response = DocumentResponse.from(saved.get(index));
+                            results.add(reported[index]
+                                    ? BulkUploadResult.duplicate(staged.filename(), response)
+                                    : BulkUploadResult.created(staged.filename(), response));
+                            reported[index] = true;
+                        }
+                        return results;
+                    })
+                    .onErrorResume(e -> {
+                        log.error("Failed to register a batch of {} bulk-uploaded files", batch.size(), e);
+                        return Flux.fromIterable(batch)
+                                .map(staged -> BulkUploadResult.failed(staged.filename(),
+                                        staged.isStored() ? e.getMessage() : staged.error()));
+                    });
+        });
+    }
+
+    private Mono<List<Document>> insertAndPublish(List<Document> documents, List<Long> sourceDocumentIds) {
+        if (documents.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return documentRepository.insertAll(documents).collectList()
+                .flatMap(ids -> documentRepository.findAllById(ids)
+                        .collectMap(Document::getId)
+                        .map(byId -> ids.stream().map(byId::get).toList()))
+                .doOnSuccess(saved -> {
+                    saved.forEach(document -> documentCatalog.record(
+                            DocumentCatalogDelta.created(document.getCategory(), document.getStatus())));
+                    log.info("Registered {} bulk-uploaded documents.", saved.size());
+                    // Their jobs are published in one batch once the page text of the batch is extracted
+                    documentService.publishAfterExtraction(JobLane.UPLOAD, saved, sourceDocumentIds);
+                });
+    }
+
+    private static Document newDocument(Staged staged, String category) {
+        StoredFile storedFile = staged.storedFile();
+        return Document.builder()
+                .name(staged.filename())
+                .storedName(storedFile.storedName())
+                .path(storedFile.path().toString())
+                .type(DocumentService.getFileExtension(staged.filename()))
+                .size(storedFile.size())
+                .contentHash(storedFile.contentHash())
+                .category(category)
+                .status(IndexingStatus.PENDING)
+                .build();
+    }
+
+    private static boolean isArchive(String filename) {
+        return ARCHIVE_EXTENSION.equals(DocumentService.getFileExtension(filename).toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isDocumentEntry(String entryName) {
+        // Skip metadata added by archivers and hidden files such as .DS_Store
+        return !entryName.startsWith(ARCHIVE_METADATA_DIRECTORY) && !entryFilename(entryName).startsWith(".");
+    }
+
+    private static String entryFilename(String entryName) {
+        return entryName.substring(entryName.lastIndexOf('/') + 1);
+    }
+
+    private static void closeQuietly(ZipFile zipFile) {
+        try {
+            zipFile.close();
+        } catch (IOException e) {
+            log.warn("Failed to close archive: {}", zipFile.getName(), e);
+        }
+    }
+
+    /**
+     * A file of the bulk upload after it has been written to storage, or the reason it could not be.
+     */
+    private record Staged(String filename, StoredFile storedFile, String error) {
+
+        boolean isStored() {
+            return storedFile != null;
+        }
+    }
+
+    /**
+     * Draws the bytes read from an archive entry from the budget shared by all entries of the archive, and fails the
+     * read once the budget is exhausted.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private final AtomicLong remaining;
+        private final String message;
+
+        BoundedInputStream(InputStream in, AtomicLong remaining, String message) {
+            super(in);
+            this.remaining = remaining;
+            this.message = message;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                consume(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            consume(skipped);
+            return skipped;
+        }
+
+        private void consume(long n) throws IOException {
+            if (remaining.addAndGet(-n) < 0) {
+                throw new IOException(message);
+            }
+        }
+    }
+}
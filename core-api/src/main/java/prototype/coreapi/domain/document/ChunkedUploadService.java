@@ -0,0 +1,212 @@
+package prototype.coreapi.domain.document;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Service;
+import prototype.coreapi.domain.document.config.DocumentUploadProperties;
+import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.UploadCompleteRequest;
+import prototype.coreapi.domain.document.dto.UploadInitRequest;
+import prototype.coreapi.domain.document.dto.UploadSessionResponse;
+import prototype.coreapi.domain.document.dto.UploadedPart;
+import prototype.coreapi.global.exception.BusinessException;
+import prototype.coreapi.global.exception.ErrorCode;
+import prototype.coreapi.global.redis.UploadSessionStoreProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Handles resumable chunked uploads for large document files.
+ * The protocol has three steps: initiate a session, upload its parts (in any order, in parallel),
+ * and complete it. Each part is checksummed on arrival; completion verifies every part against the
+ * client's checksums, assembles the file and only then registers the document for indexing.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+    private static final String FILENAME = "filename";
+    private static final String CATEGORY = "category";
+    private static final String TOTAL_SIZE = "totalSize";
+    private static final String PART_SIZE = "partSize";
+    private static final String PART_COUNT = "partCount";
+
+    private final DocumentStorageService documentStorageService;
+    private final DocumentService documentService;
+    private final UploadSessionStoreProvider uploadSessionStoreProvider;
+    private final DocumentUploadProperties uploadProperties;
+
+    /**
+     * Starts a chunked upload. The server decides the part size.
+     * @param request The file name, category and total size of the upload.
+     * @return A Mono emitting the new upload session.
+     * @throws BusinessException if the file would need more parts than allowed.
+     */
+    public Mono<UploadSessionResponse> initiate(UploadInitRequest request) {
+        long partSize = uploadProperties.getPartSize().toBytes();
+        long partCount = (request.getTotalSize() + partSize - 1) / partSize;
+        if (partCount > uploadProperties.getMaxParts()) {
+            return Mono.error(new BusinessException(ErrorCode.UPLOAD_TOO_LARGE));
+        }
+
+        String uploadId = UUID.randomUUID().toString();
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put(FILENAME, request.getFilename());
+        if (request.getCategory() != null) {
+            attributes.put(CATEGORY, request.getCategory());
+        }
+        attributes.put(TOTAL_SIZE, String.valueOf(request.getTotalSize()));
+        attributes.put(PART_SIZE, String.valueOf(partSize));
+        attributes.put(PART_COUNT, String.valueOf(partCount));
+
+        return uploadSessionStoreProvider.save(uploadId, attributes, uploadProperties.getSessionTtl())
+                .then(findSession(uploadId))
+                .map(session -> session.toResponse(List.of()))
+                .doOnSuccess(response -> log.info("Initiated chunked upload {} for {} ({} parts).",
+                        uploadId, request.getFilename(), partCount));
+    }
+
+    /**
+     * Stores one part of an upload. Parts may arrive in any order and may be re-sent.
+     * @param uploadId The upload session ID.
+     * @param partNumber The 1-based part number.
+     * @param checksum The SHA-256 of the part content (hex), as computed by the client.
+     * @param content The part content.
+     * @return A Mono emitting the stored part.
+     * @throws BusinessException if the session does not exist or the part is invalid.
+     */
+    public Mono<UploadedPart> uploadPart(String uploadId, int partNumber, String checksum, Flux<DataBuffer> content) {
+        return findSession(uploadId)
+                .flatMap(session -> {
+                    if (partNumber < 1 || partNumber > session.partCount()) {
+                        return Mono.error(new BusinessException(ErrorCode.UPLOAD_PART_INVALID, String.valueOf(partNumber)));
+                    }
+                    return documentStorageService.storePart(uploadId, partNumber, content, checksum, session.expectedPartSize(partNumber));
+                })
+                .flatMap(part -> uploadSessionStoreProvider.savePart(uploadId, partNumber,
+                                part.checksum() + ":" + part.size(), uploadProperties.getSessionTtl())
+                        .thenReturn(part));
+    }
+
+    /**
+     * Returns the state of an upload, including the parts already received, so a client can resume.
+     * @param uploadId The upload session ID.
+     * @return A Mono emitting the upload session.
+     */
+    public Mono<UploadSessionResponse> getSession(String uploadId) {
+        return findSession(uploadId)
+                .zipWith(findParts(uploadId), UploadSession::toResponse);
+    }
+
+    /**
+     * Completes an upload: verifies every part, assembles the file and registers the document,
+     * which publishes its indexing job.
+     * @param uploadId The upload session ID.
+     * @param request The client's checksums for every part.
+     * @return A Mono emitting the DocumentResponse for the new or existing document.
+     * @throws BusinessException if parts are missing or a checksum does not match.
+     */
+    public Mono<DocumentResponse> complete(String uploadId, UploadCompleteRequest request) {
+        return findSession(uploadId)
+                .zipWhen(session -> findParts(uploadId))
+                .flatMap(tuple -> {
+                    UploadSession session = tuple.getT1();
+                    Map<Integer, UploadedPart> received = tuple.getT2().stream()
+                            .collect(Collectors.toMap(UploadedPart::partNumber, part -> part));
+
+                    List<Integer> missing = IntStream.rangeClosed(1, session.partCount())
+                            .filter(partNumber -> !received.containsKey(partNumber))
+                            .boxed()
+                            .toList();
+                    if (!missing.isEmpty()) {
+                        return Mono.error(new BusinessException(ErrorCode.UPLOAD_INCOMPLETE, summarize(missing)));
+                    }
+                    if (request.getParts().size() != session.partCount()) {
+                        return Mono.error(new BusinessException(ErrorCode.UPLOAD_PART_INVALID, "count"));
+                    }
+                    for (UploadCompleteRequest.PartChecksum expected : request.getParts()) {
+                        UploadedPart part = received.get(expected.getPartNumber());
+                        if (part == null || !part.checksum().equalsIgnoreCase(expected.getChecksum())) {
+                            return Mono.error(new BusinessException(ErrorCode.UPLOAD_CHECKSUM_MISMATCH,
+                                    String.valueOf(expected.getPartNumber())));
+                        }
+                    }
+
+                    List<UploadedPart> ordered = new ArrayList<>(received.values());
+                    ordered.sort(Comparator.comparingInt(UploadedPart::partNumber));
+                    return documentStorageService.assemble(uploadId, ordered, DocumentService.getFileExtension(session.filename()))
+                            .flatMap(storedFile -> documentService.register(storedFile, session.filename(), session.category()));
+                })
+                .flatMap(response -> uploadSessionStoreProvider.delete(uploadId).thenReturn(response))
+                .doOnSuccess(response -> log.info("Completed chunked upload {} as document id: {}", uploadId, response.id()));
+    }
+
+    /**
+     * Aborts an upload and discards its parts.
+     * @param uploadId The upload session ID.
+     * @return A Mono that completes when the session and its parts are removed.
+     * @throws BusinessException if the session does not exist.
+     */
+    public Mono<Void> abort(String uploadId) {
+        return findSession(uploadId)
+                .flatMap(session -> documentStorageService.discardParts(session.uploadId()))
+                .then(uploadSessionStoreProvider.delete(uploadId));
+    }
+
+    private Mono<UploadSession> findSession(String uploadId) {
+        return uploadSessionStoreProvider.get(uploadId)
+                .switchIfEmpty(Mono.error(new BusinessException(ErrorCode.UPLOAD_NOT_FOUND)))
+                .map(attributes -> new UploadSession(
+                        uploadId,
+                        (String) attributes.get(FILENAME),
+                        (String) attributes.get(CATEGORY),
+                        Long.parseLong((String) attributes.get(TOTAL_SIZE)),
+                        Long.parseLong((String) attributes.get(PART_SIZE)),
+                        Integer.parseInt((String) attributes.get(PART_COUNT))
+                ));
+    }
+
+    private Mono<List<UploadedPart>> findParts(String uploadId) {
+        return uploadSessionStoreProvider.getParts(uploadId)
+                .map(entries -> entries.entrySet().stream()
+                        .map(entry -> {
+                            String[] value = ((String) entry.getValue()).split(":");
+                            return new UploadedPart(Integer.parseInt((String) entry.getKey()), value[0], Long.parseLong(value[1]));
+                        })
+                        .sorted(Comparator.comparingInt(UploadedPart::partNumber))
+                        .toList());
+    }
+
+    private String summarize(List<Integer> missing) {
+        String listed = missing.stream().limit(10).map(String::valueOf).collect(Collectors.joining(", "));
+        return missing.size() > 10 ? listed + " (+" + (missing.size() - 10) + " more)" : listed;
+    }
+
+    private record UploadSession(
+            String uploadId,
+            String filename,
+            String category,
+            long totalSize,
+            long partSize,
+            int partCount
+    ) {
+        long expectedPartSize(int partNumber) {
+            return partNumber < partCount ? partSize : totalSize - partSize * (partCount - 1);
+        }
+
+        UploadSessionResponse toResponse(List<UploadedPart> uploadedParts) {
+            return new UploadSessionResponse(uploadId, filename, category, totalSize, partSize, partCount, uploadedParts);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package prototype.coreapi.domain.document;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.document.config.DocumentEventProperties;
+import prototype.coreapi.domain.document.dto.DocumentCatalogDelta;
+import prototype.coreapi.domain.document.dto.DocumentCatalogStats;
+import prototype.coreapi.domain.document.dto.DocumentCountRow;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.global.redis.DocumentEventChannelProvider;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the document count per category and status in memory, so the console's category list and status
+ * counts never scan the documents table. Changes are relayed to every node through Redis pub/sub,
+ * and the catalog is periodically rebuilt from Postgres to repair anything a node missed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocumentCatalog {
+
+    // ConcurrentHashMap does not accept null keys.
+    private static final String NO_CATEGORY = "";
+
+    private final DocumentRepository documentRepository;
+    private final DocumentEventChannelProvider channelProvider;
+    private final ObjectMapper objectMapper;
+    private final DocumentEventProperties eventProperties;
+
+    private volatile Map<CategoryStatus, AtomicLong> counts = new ConcurrentHashMap<>();
+    private Disposable relaySubscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        relaySubscription = channelProvider.listen(eventProperties.getCatalogChannel())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(this::applyMessage);
+        reconcile().subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (relaySubscription != null) {
+            relaySubscription.dispose();
+        }
+    }
+
+    /**
+     * Rebuilds the catalog from Postgres.
+     */
+    @Scheduled(fixedDelayString = "${document.events.catalog-reconcile-interval:10m}",
+            initialDelayString = "${document.events.catalog-reconcile-interval:10m}")
+    public Mono<Void> reconcile() {
+        return documentRepository.countByCategoryAndStatus()
+                .collectList()
+                .doOnNext(rows -> {
+                    Map<CategoryStatus, AtomicLong> rebuilt = new ConcurrentHashMap<>();
+                    for (DocumentCountRow row : rows) {
+                        rebuilt.put(new CategoryStatus(keyOf(row.category()), row.status()), new AtomicLong(row.count()));
+                    }
+                    counts = rebuilt;
+                    log.debug("Rebuilt document catalog with {} category/status pairs", rows.size());
+                })
+                .onErrorResume(e -> {
+                    log.error("Failed to rebuild the document catalog", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Records a catalog change on every node.
+     * @param delta The change to record; no-op changes are ignored.
+     */
+    public void record(DocumentCatalogDelta delta) {
+        if (delta.isNoop()) {
+            return;
+        }
+        String message;
+        try {
+            message = objectMapper.writeValueAsString(delta);
+        } catch (JsonProcessingException e) {
+            log.warn("Catalog change serialization failed: {}", delta, e);
+            apply(delta);
+            return;
+        }
+        channelProvider.broadcast(eventProperties.getCatalogChannel(), message)
+                .subscribe(
+                        receivers -> log.debug("Broadcast catalog change {} to {} nodes", delta, receivers),
+                        e -> {
+                            // Keep at least this node accurate; the others catch up on reconciliation.
+                            log.warn("Catalog change broadcast failed: {}", delta, e);
+                            apply(delta);
+                        }
+                );
+    }
+
+    /**
+     * @return The categories that have at least one document, in alphabetical order.
+     */
+    public List<String> categories() {
+        return categoryCounts().keySet().stream().toList();
+    }
+
+    public DocumentCatalogStats stats() {
+        Map<IndexingStatus, Long> byStatus = new EnumMap<>(IndexingStatus.class);
+        for (IndexingStatus status : IndexingStatus.values()) {
+            byStatus.put(status, 0L);
+        }
+        long total = 0;
+        for (Map.Entry<CategoryStatus, AtomicLong> entry : counts.entrySet()) {
+            long count = entry.getValue().get();
+            byStatus.merge(entry.getKey().status(), count, Long::sum);
+            total += count;
+        }
+        return new DocumentCatalogStats(total, byStatus, categoryCounts());
+    }
+
+    private Map<String, Long> categoryCounts() {
+        Map<String, Long> byCategory = new TreeMap<>();
+        for (Map.Entry<CategoryStatus, AtomicLong> entry : counts.entrySet()) {
+            long count = entry.getValue().get();
+            if (count > 0 && !NO_CATEGORY.equals(entry.getKey().category())) {
+                byCategory.merge(entry.getKey().category(), count, Long::sum);
+            }
+        }
+        return byCategory;
+    }
+
+    private void applyMessage(String message) {
+        try {
+            apply(objectMapper.readValue(message, DocumentCatalogDelta.class));
+        } catch (JsonProcessingException e) {
+            log.warn("Discarding malformed catalog change: {}", message, e);
+        }
+    }
+
+    private void apply(DocumentCatalogDelta delta) {
+        Map<CategoryStatus, AtomicLong> current = counts;
+        String category = keyOf(delta.category());
+        if (delta.from() != null) {
+            current.computeIfAbsent(new CategoryStatus(category, delta.from()), key -> new AtomicLong())
+                    .updateAndGet(count -> Math.max(0, count - 1));
+        }
+        if (delta.to() != null) {
+            current.computeIfAbsent(new CategoryStatus(category, delta.to()), key -> new AtomicLong())
+                    .incrementAndGet();
+        }
+    }
+
+    private static String keyOf(String category) {
+        return Objects.requireNonNullElse(category, NO_CATEGORY);
+    }
+
+    private record CategoryStatus(String category, IndexingStatus status) {
+    }
+}
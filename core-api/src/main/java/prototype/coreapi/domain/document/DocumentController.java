@@ -2,21 +2,26 @@ package prototype.coreapi.domain.document;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.codec.multipart.FilePart;
-import org.springframework.security.access.prepost.PreAuthorize;
-import io.swagger.v3.oas.annotations.Operation;
-import io.swagger.v3.oas.annotations.tags.Tag;
-import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import prototype.coreapi.domain.document.dto.BulkUploadResult;
+import prototype.coreapi.domain.document.dto.DocumentCatalogStats;
+import prototype.coreapi.domain.document.dto.DocumentPageResponse;
 import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.DocumentSearchCondition;
+import prototype.coreapi.domain.document.dto.JobQueueStats;
+import prototype.coreapi.domain.document.dto.UploadCompleteRequest;
+import prototype.coreapi.domain.document.dto.UploadInitRequest;
+import prototype.coreapi.domain.document.dto.UploadSessionResponse;
+import prototype.coreapi.domain.document.dto.UploadedPart;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -30,18 +35,55 @@ import java.util.List;
 public class DocumentController {
 
     private final DocumentService documentService;
-    private final SseEmitterService sseEmitterService; // Inject SSE Service
+    private final SseEmitterService sseEmitterService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final IndexingJobPublisher indexingJobPublisher;
+    private final BulkUploadService bulkUploadService;
+    private final DocumentRevisionService documentRevisionService;
 
+    /**
+     * Lists documents newest first, one page at a time.
+     * @param cursor The cursor returned with the previous page; omit for the first page.
+     * @param size The page size (at most 200).
+     * @param category Only list documents in this category.
+     * @param status Only list documents with this indexing status.
+     * @param type Only list documents with this file extension.
+     * @return A Mono emitting the page and the cursor of the next one.
+     */
     @GetMapping
-    @Operation(summary = "Get all documents")
-    public Flux<DocumentResponse> getDocuments() {
-        return documentService.findAll();
+    @Operation(summary = "Get documents", description = "Lists documents newest first with keyset pagination and optional filters.")
+    public Mono<DocumentPageResponse> getDocuments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) IndexingStatus status,
+            @RequestParam(required = false) String type
+    ) {
+        return documentService.findPage(new DocumentSearchCondition(category, status, type), cursor, size);
+    }
+
+    @GetMapping("/stats")
+    @Operation(summary = "Get document counts", description = "Returns the number of documents in total, per indexing status and per category.")
+    public Mono<DocumentCatalogStats> getStats() {
+        return documentService.getStats();
     }
 
+    /**
+     * Streams document status updates from every node, optionally narrowed to one document or category.
+     * Reconnecting clients resume after the event given by the standard Last-Event-ID header.
+     * @param documentId Only stream updates of this document.
+     * @param category Only stream updates of documents in this category.
+     * @param lastEventId The ID of the last event received before reconnecting.
+     * @return A Flux of server-sent events.
+     */
     @GetMapping("/status-stream")
     @Operation(summary = "Stream document status updates", description = "Connect to receive real-time updates on document indexing status.")
-    public Flux<ServerSentEvent<DocumentResponse>> getDocumentStatusStream() {
-        return sseEmitterService.connect();
+    public Flux<ServerSentEvent<DocumentResponse>> getDocumentStatusStream(
+            @RequestParam(required = false) Long documentId,
+            @RequestParam(required = false) String category,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId
+    ) {
+        return sseEmitterService.connect(documentId, category, lastEventId);
     }
 
     @GetMapping("/categories")
@@ -66,6 +108,126 @@ public class DocumentController {
         return filePartMono.flatMap(file -> documentService.upload(file, category));
     }
 
+    /**
+     * Uploads many documents at once. Zip archives are expanded and each entry is treated as a document.
+     * Results are streamed as newline-delimited JSON, one line per document, as soon as its batch is registered.
+     * @param fileParts The uploaded files and archives.
+     * @param category The category to file all documents under.
+     * @return A Flux emitting the result for each document.
+     */
+    @PostMapping(value = "/bulk-upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Bulk upload documents", description = "Uploads many files or zip archives and requests indexing for every new document.")
+    public Flux<BulkUploadResult> bulkUploadDocuments(
+            @RequestPart("files") Flux<FilePart> fileParts,
+            @RequestPart("category") String category
+    ) {
+        return bulkUploadService.upload(fileParts, category);
+    }
+
+    /**
+     * Starts a resumable chunked upload for a large file.
+     * @param request The file name, category and total size of the upload.
+     * @return A Mono emitting the upload session, including the part size to use.
+     */
+    @PostMapping("/uploads")
+    @ResponseStatus(HttpStatus.CREATED)
+    @Operation(summary = "Initiate chunked upload", description = "Starts a resumable upload and returns the part size to use.")
+    public Mono<UploadSessionResponse> initiateUpload(@Valid @RequestBody UploadInitRequest request) {
+        return chunkedUploadService.initiate(request);
+    }
+
+    /**
+     * Returns the state of a chunked upload so an interrupted client can resume with the missing parts.
+     * @param uploadId The upload session ID.
+     * @return A Mono emitting the upload session with the parts received so far.
+     */
+    @GetMapping("/uploads/{uploadId}")
+    @Operation(summary = "Get chunked upload state", description = "Lists the parts received so far.")
+    public Mono<UploadSessionResponse> getUpload(@PathVariable String uploadId) {
+        return chunkedUploadService.getSession(uploadId);
+    }
+
+    /**
+     * Uploads one part of a chunked upload. Parts may be sent in parallel and re-sent on failure.
+     * @param uploadId The upload session ID.
+     * @param partNumber The 1-based part number.
+     * @param checksum The SHA-256 of the part content (hex).
+     * @param body The raw part content.
+     * @return A Mono emitting the stored part.
+     */
+    @PutMapping(value = "/uploads/{uploadId}/parts/{partNumber}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "Upload part", description = "Uploads one part of a chunked upload, verified against its SHA-256 checksum.")
+    public Mono<UploadedPart> uploadPart(
+            @PathVariable String uploadId,
+            @PathVariable int partNumber,
+            @RequestHeader("X-Part-Checksum") String checksum,
+            @RequestBody Flux<DataBuffer> body
+    ) {
+        return chunkedUploadService.uploadPart(uploadId, partNumber, checksum, body);
+    }
+
+    /**
+     * Completes a chunked upload. The document is registered and queued for indexing only at this point.
+     * @param uploadId The upload session ID.
+     * @param request The checksums of every part.
+     * @return A Mono emitting the DocumentResponse for the uploaded document.
+     */
+    @PostMapping("/uploads/{uploadId}/complete")
+    @ResponseStatus(HttpStatus.CREATED)
+    @Operation(summary = "Complete chunked upload", description = "Verifies and assembles the parts, then requests indexing.")
+    public Mono<DocumentResponse> completeUpload(
+            @PathVariable String uploadId,
+            @Valid @RequestBody UploadCompleteRequest request
+    ) {
+        return chunkedUploadService.complete(uploadId, request);
+    }
+
+    /**
+     * Aborts a chunked upload and discards its parts.
+     * @param uploadId The upload session ID.
+     * @return A Mono<Void> indicating completion.
+     */
+    @DeleteMapping("/uploads/{uploadId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @Operation(summary = "Abort chunked upload")
+    public Mono<Void> abortUpload(@PathVariable String uploadId) {
+        return chunkedUploadService.abort(uploadId);
+    }
+
+    /**
+     * Requests a document to be indexed again on the low-priority re-index lane.
+     * @param documentId The ID of the document to re-index.
+     * @return A Mono emitting the DocumentResponse with PENDING status.
+     */
+    @PostMapping("/{id}/reindex")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "Re-index document", description = "Queues the document for indexing again without delaying new uploads.")
+    public Mono<DocumentResponse> reindexDocument(@PathVariable("id") Long documentId) {
+        return documentService.reindex(documentId);
+    }
+
+    /**
+     * Uploads a new revision of a document. Only the pages whose text changed are indexed again.
+     * @param documentId The ID of the document to revise.
+     * @param filePartMono A Mono emitting the new revision of the file.
+     * @return A Mono emitting the DocumentResponse of the revised document.
+     */
+    @PostMapping(value = "/{id}/revisions", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "Upload document revision", description = "Replaces the document's file and re-indexes only the pages that changed.")
+    public Mono<DocumentResponse> reviseDocument(
+            @PathVariable("id") Long documentId,
+            @RequestPart("file") Mono<FilePart> filePartMono
+    ) {
+        return filePartMono.flatMap(file -> documentRevisionService.revise(documentId, file));
+    }
+
+    @GetMapping("/queue")
+    @Operation(summary = "Get indexing queue statistics", description = "Returns the length and unacknowledged job count of each job lane.")
+    public Flux<JobQueueStats> getQueueStats() {
+        return indexingJobPublisher.stats();
+    }
+
     /**
      * Deletes a document from the system by its ID. This also triggers de-indexing.
      * @param documentId The ID of the document to delete.
@@ -0,0 +1,141 @@
+package prototype.coreapi.domain.document;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import prototype.coreapi.domain.document.dto.DocumentCatalogDelta;
+import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.IndexingJobPayload;
+import prototype.coreapi.domain.document.dto.PageText;
+import prototype.coreapi.domain.document.dto.StoredFile;
+import prototype.coreapi.domain.document.entity.Document;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.enums.JobLane;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.domain.document.repository.UnreferencedFileRepository;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the file of an existing document with a new revision.
+ * The page texts of both revisions are hashed and compared page by page, and only the pages whose text changed
+ * are queued for re-indexing, so a small edit to a large document costs a few pages of embedding.
+ * Pages are compared by position: a page inserted in the middle re-indexes every page after it.
+ * The whole revision is indexed instead when page text is unavailable or the previous revision was not fully indexed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentRevisionService {
+
+    private final DocumentRepository documentRepository;
+    private final DocumentStorageService documentStorageService;
+    private final PageTextExtractor pageTextExtractor;
+    private final IndexingJobPublisher indexingJobPublisher;
+    private final UnreferencedFileRepository unreferencedFileRepository;
+    private final DocumentCatalog documentCatalog;
+    private final SseEmitterService sseEmitterService;
+
+    /**
+     * Uploads a new revision of a document and requests re-indexing of its changed pages.
+     * @param documentId The ID of the document to revise.
+     * @param filePart The new revision of the file.
+     * @return A Mono emitting the DocumentResponse of the revised document, or of the unchanged document
+     *         if the revision has the same content.
+     */
+    public Mono<DocumentResponse> revise(Long documentId, FilePart filePart) {
+        String filename = filePart.filename();
+        String fileType = DocumentService.getFileExtension(filename);
+
+        return documentRepository.findById(documentId)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Document not found")))
+                .flatMap(document -> documentStorageService.store(filePart.content(), fileType)
+                        .flatMap(storedFile -> {
+                            if (storedFile.contentHash().equals(document.getContentHash())) {
+                                log.info("Revision {} of document id: {} is unchanged. Skipping indexing.", filename, documentId);
+                                return Mono.just(DocumentResponse.from(document));
+                            }
+                            return diff(document, storedFile)
+                                    .flatMap(diff -> apply(document, storedFile, filename, fileType, diff));
+                        }))
+                .doOnError(e -> log.error("Failed to revise document id: {} with file {}", documentId, filename, e));
+    }
+
+    private Mono<PageDiff> diff(Document document, StoredFile storedFile) {
+        if (document.getStatus() != IndexingStatus.SUCCESS) {
+            return Mono.just(PageDiff.WHOLE_DOCUMENT);
+        }
+        return Mono.zip(
+                        pageHashes(document.getStoredName(), document.getPath()),
+                        pageHashes(storedFile.storedName(), storedFile.path().toString()))
+                .map(hashes -> PageDiff.between(hashes.getT1(), hashes.getT2()))
+                .defaultIfEmpty(PageDiff.WHOLE_DOCUMENT);
+    }
+
+    /**
+     * Hashes the text of every page, extracting it first if the file has no page text yet.
+     */
+    private Mono<List<String>> pageHashes(String storedName, String path) {
+        return pageTextExtractor.extract(storedName, Paths.get(path))
+                .then(pageTextExtractor.read(storedName))
+                .map(pages -> pages.stream()
+                        .map(PageText::text)
+                        .map(DigestUtils::sha256Hex)
+                        .toList());
+    }
+
+    private Mono<DocumentResponse> apply(Document document, StoredFile storedFile, String filename, String fileType,
+                                         PageDiff diff) {
+        IndexingStatus previousStatus = document.getStatus();
+        String previousStoredName = document.getStoredName();
+        String previousPath = document.getPath();
+        document.revise(filename, storedFile, fileType);
+
+        IndexingJobPayload payload = IndexingJobPayload.builder()
+                .documentId(document.getId())
+                .storedName(document.getStoredName())
+                .originalFilename(document.getName())
+                .category(document.getCategory())
+                .pages(diff.changedPages())
+                .pageCount(diff.pageCount())
+                .build();
+
+        return documentRepository.save(document)
+                .doOnSuccess(saved -> documentCatalog.record(
+                        new DocumentCatalogDelta(saved.getCategory(), previousStatus, IndexingStatus.PENDING)))
+                .flatMap(saved -> indexingJobPublisher.publish(JobLane.REINDEX, payload).thenReturn(saved))
+                // The previous revision's file is left to the sweeper, which keeps it if other documents share it
+                .flatMap(saved -> unreferencedFileRepository.mark(previousStoredName, previousPath).thenReturn(saved))
+                .map(DocumentResponse::from)
+                .doOnSuccess(response -> {
+                    log.info("Published revision {} of document id: {} for re-indexing of {}.", response.revision(),
+                            response.id(), diff.changedPages() == null ? "all pages" : diff.changedPages().size() + " pages");
+                    sseEmitterService.send(response);
+                });
+    }
+
+    /**
+     * The pages of a revision that need re-indexing.
+     * @param changedPages The 1-based numbers of new or changed pages, or null for the whole document.
+     * @param pageCount The page count of the revision, or null for the whole document.
+     */
+    private record PageDiff(List<Integer> changedPages, Integer pageCount) {
+
+        static final PageDiff WHOLE_DOCUMENT = new PageDiff(null, null);
+
+        static PageDiff between(List<String> previous, List<String> current) {
+            List<Integer> changed = new ArrayList<>();
+            for (int i = 0; i < current.size(); i++) {
+                if (i >= previous.size() || !previous.get(i).equals(current.get(i))) {
+                    changed.add(i + 1);
+                }
+            }
+            return new PageDiff(changed, current.size());
+        }
+    }
+}
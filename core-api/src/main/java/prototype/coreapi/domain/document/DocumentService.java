@@ -1,109 +1,226 @@
 package prototype.coreapi.domain.document;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.connection.stream.RecordId;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import prototype.coreapi.domain.document.dto.DocumentCatalogDelta;
+import prototype.coreapi.domain.document.dto.DocumentCatalogStats;
+import prototype.coreapi.domain.document.dto.DocumentPageResponse;
 import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.DocumentSearchCondition;
 import prototype.coreapi.domain.document.dto.IndexingJobPayload;
+import prototype.coreapi.domain.document.dto.StoredFile;
 import prototype.coreapi.domain.document.entity.Document;
 import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.enums.JobLane;
 import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.domain.document.repository.UnreferencedFileRepository;
+import prototype.coreapi.domain.retrieval.RetrievalService;
 import prototype.coreapi.global.config.WebClientFactory;
+import prototype.coreapi.global.exception.BusinessException;
+import prototype.coreapi.global.exception.ErrorCode;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.io.File;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
-
-import reactor.core.scheduler.Schedulers;
-import reactor.util.retry.Retry;
-import java.time.Duration;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class DocumentService {
 
-    private static final String INDEXING_QUEUE_KEY = "document-indexing-queue";
+    private static final int MAX_PAGE_SIZE = 200;
 
     private final DocumentRepository documentRepository;
     private final WebClient indexingWebClient;
-    private final ReactiveStringRedisTemplate redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final IndexingJobPublisher indexingJobPublisher;
     private final SseEmitterService sseEmitterService;
-
-    @Value("${document.storage.path}")
-    private String documentStoragePath;
+    private final DocumentStorageService documentStorageService;
+    private final DocumentCatalog documentCatalog;
+    private final UnreferencedFileRepository unreferencedFileRepository;
+    private final PageTextExtractor pageTextExtractor;
+    private final RetrievalService retrievalService;
 
     public DocumentService(DocumentRepository documentRepository,
                            WebClientFactory webClientFactory,
-                           ReactiveStringRedisTemplate redisTemplate,
-                           ObjectMapper objectMapper,
-                           SseEmitterService sseEmitterService) {
+                           IndexingJobPublisher indexingJobPublisher,
+                           SseEmitterService sseEmitterService,
+                           DocumentStorageService documentStorageService,
+                           DocumentCatalog documentCatalog,
+                           UnreferencedFileRepository unreferencedFileRepository,
+                           PageTextExtractor pageTextExtractor,
+                           RetrievalService retrievalService) {
         this.documentRepository = documentRepository;
         this.indexingWebClient = webClientFactory.getWebClient(WebClientFactory.ServiceType.INDEXING);
-        this.redisTemplate = redisTemplate;
-        this.objectMapper = objectMapper;
+        this.indexingJobPublisher = indexingJobPublisher;
         this.sseEmitterService = sseEmitterService;
+        this.documentStorageService = documentStorageService;
+        this.documentCatalog = documentCatalog;
+        this.unreferencedFileRepository = unreferencedFileRepository;
+        this.pageTextExtractor = pageTextExtractor;
+        this.retrievalService = retrievalService;
     }
 
-    public Flux<DocumentResponse> findAll() {
-        return documentRepository.findAllByOrderByCreatedAtDesc()
-                .map(DocumentResponse::from);
+    /**
+     * Finds one page of documents, newest first.
+     * Pages are addressed by keyset rather than offset, so every page costs the same regardless of its depth.
+     * @param condition The filters to apply.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param size The page size.
+     * @return A Mono emitting the page and the cursor of the next one.
+     */
+    public Mono<DocumentPageResponse> findPage(DocumentSearchCondition condition, String cursor, int size) {
+        int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        Long beforeId = decodeCursor(cursor);
+        // One extra row tells whether another page follows.
+        return documentRepository.findPage(condition, beforeId, pageSize + 1)
+                .map(DocumentResponse::from)
+                .collectList()
+                .map(documents -> documents.size() > pageSize
+                        ? new DocumentPageResponse(documents.subList(0, pageSize), encodeCursor(documents.get(pageSize - 1).id()))
+                        : new DocumentPageResponse(documents, null));
     }
 
     public Mono<List<String>> findAllCategories() {
-        return documentRepository.findDistinctCategories().collectList();
+        return Mono.fromSupplier(documentCatalog::categories);
+    }
+
+    public Mono<DocumentCatalogStats> getStats() {
+        return Mono.fromSupplier(documentCatalog::stats);
     }
 
+    /**
+     * Uploads a document. The content is streamed to content-addressed storage while its hash is computed,
+     * then registered through {@link #register(StoredFile, String, String)}.
+     * @param filePart The uploaded file.
+     * @param category The category to file the document under.
+     * @return A Mono emitting the DocumentResponse for the new or existing document.
+     */
     public Mono<DocumentResponse> upload(FilePart filePart, String category) {
-        Path storageDirectory = Paths.get(documentStoragePath);
         String originalFilename = filePart.filename();
+
+        // 1. Stream the physical file to storage, hashing it in the same pass
+        return documentStorageService.store(filePart.content(), getFileExtension(originalFilename))
+                .flatMap(storedFile -> register(storedFile, originalFilename, category))
+                .doOnError(e -> log.error("Failed during document upload for file: {}", originalFilename, e));
+    }
+
+    /**
+     * Registers a file that is already in storage as a document and requests its indexing.
+     * Content that already exists in the same category returns the existing document without
+     * creating a new row or indexing job. Content already indexed under another category is indexed by
+     * copying the existing chunks instead of embedding the file again.
+     * @param storedFile The stored file.
+     * @param originalFilename The user-provided file name.
+     * @param category The category to file the document under.
+     * @return A Mono emitting the DocumentResponse for the new or existing document.
+     */
+    public Mono<DocumentResponse> register(StoredFile storedFile, String originalFilename, String category) {
         String fileType = getFileExtension(originalFilename);
-        String storedName = UUID.randomUUID() + "." + fileType;
-        Path destinationFile = storageDirectory.resolve(storedName);
-
-        // 1. Save the physical file
-        return filePart.transferTo(destinationFile)
-                .then(Mono.defer(() -> {
-                    // 2. Create and save the document entity with PENDING status
-                    File file = destinationFile.toFile();
-                    Document document = Document.builder()
-                            .name(originalFilename)
-                            .storedName(storedName)
-                            .path(destinationFile.toString())
-                            .type(fileType)
-                            .size(file.length())
-                            .category(category)
-                            .status(IndexingStatus.PENDING)
-                            .build();
-                    return documentRepository.save(document);
-                }))
-                .flatMap(savedDocument ->
-                        // 3. Publish a job to the Redis queue
-                        publishIndexingJob(savedDocument)
-                                .thenReturn(savedDocument)
-                )
+
+        return documentRepository.findAllByContentHash(storedFile.contentHash())
+                .collectList()
+                .flatMap(existing -> {
+                    Document sameCategory = existing.stream()
+                            .filter(document -> Objects.equals(document.getCategory(), category))
+                            .filter(document -> document.getStatus() != IndexingStatus.FAILURE)
+                            .findFirst()
+                            .orElse(null);
+                    if (sameCategory != null) {
+                        log.info("Document {} already exists in category {} as id: {}. Skipping indexing.",
+                                originalFilename, category, sameCategory.getId());
+                        return Mono.just(DocumentResponse.from(sameCategory));
+                    }
+                    Long sourceDocumentId = existing.stream()
+                            .filter(document -> document.getStatus() == IndexingStatus.SUCCESS)
+                            .map(Document::getId)
+                            .findFirst()
+                            .orElse(null);
+                    return createAndPublish(storedFile, originalFilename, fileType, category, sourceDocumentId);
+                });
+    }
+
+    private Mono<DocumentResponse> createAndPublish(StoredFile storedFile, String originalFilename, String fileType,
+                                                    String category, Long sourceDocumentId) {
+        // 2. Create and save the document entity with PENDING status
+        Document document = Document.builder()
+                .name(originalFilename)
+                .storedName(storedFile.storedName())
+                .path(storedFile.path().toString())
+                .type(fileType)
+                .size(storedFile.size())
+                .contentHash(storedFile.contentHash())
+                .category(category)
+                .status(IndexingStatus.PENDING)
+                .build();
+
+        return documentRepository.save(document)
+                .doOnSuccess(savedDocument -> {
+                    log.info("Successfully uploaded document {}.", savedDocument.getName());
+                    documentCatalog.record(DocumentCatalogDelta.created(savedDocument.getCategory(), savedDocument.getStatus()));
+                    // 3. Publish a job to the upload lane of the job streams, once the page text is extracted
+                    publishAfterExtraction(JobLane.UPLOAD, List.of(savedDocument), Collections.singletonList(sourceDocumentId));
+                })
                 .map(DocumentResponse::from)
-                .doOnSuccess(response -> {
-                    log.info("Successfully uploaded document {} and published indexing job.", response.name());
-                    sseEmitterService.send(response); // Also send initial PENDING status via SSE
+                .doOnSuccess(sseEmitterService::send); // Also send initial PENDING status via SSE
+    }
+
+    /**
+     * Extracts the page text of saved documents for the indexing worker, except for content whose chunks it will
+     * copy, then publishes their indexing jobs. Runs in the background, so requests return once the documents are
+     * saved instead of waiting for their PDFs to be parsed. Documents deleted in the meantime are skipped, and
+     * documents whose jobs cannot be published are marked as failed, so they can be re-indexed.
+     * @param lane The lane to publish to.
+     * @param documents The saved documents.
+     * @param sourceDocumentIds The document to copy chunks from for each document, or null to index it.
+     */
+    void publishAfterExtraction(JobLane lane, List<Document> documents, List<Long> sourceDocumentIds) {
+        Flux.range(0, documents.size())
+                .filter(i -> sourceDocumentIds.get(i) == null)
+                .map(documents::get)
+                .flatMap(document -> pageTextExtractor.extract(document.getStoredName(), Paths.get(document.getPath())))
+                // Documents deleted while their page text was extracted must not be indexed again
+                .thenMany(documentRepository.findAllById(documents.stream().map(Document::getId).toList()))
+                .map(Document::getId)
+                .collect(Collectors.toSet())
+                .flatMap(existing -> {
+                    List<IndexingJobPayload> payloads = new ArrayList<>(documents.size());
+                    for (int i = 0; i < documents.size(); i++) {
+                        if (existing.contains(documents.get(i).getId())) {
+                            payloads.add(toPayload(documents.get(i), sourceDocumentIds.get(i)));
+                        }
+                    }
+                    if (payloads.size() < documents.size()) {
+                        log.info("Skipping {} {} jobs of documents deleted before publication",
+                                documents.size() - payloads.size(), lane);
+                    }
+                    return payloads.isEmpty() ? Mono.empty() : indexingJobPublisher.publishAll(lane, payloads).then();
                 })
-                .doOnError(e -> log.error("Failed during document upload or job publishing for file: {}", originalFilename, e));
+                .onErrorResume(e -> {
+                    log.error("Failed to publish {} {} jobs; marking their documents as failed", documents.size(), lane, e);
+                    return Flux.fromIterable(documents)
+                            .concatMap(document -> updateStatus(document.getId(), IndexingStatus.FAILURE))
+                            .then();
+                })
+                .subscribe(null, e -> log.error("Failed to mark {} documents as failed", documents.size(), e));
     }
 
     public Mono<Document> updateStatus(Long documentId, IndexingStatus status) {
         return documentRepository.findById(documentId)
                 .flatMap(document -> {
+                    IndexingStatus previous = document.getStatus();
                     document.updateStatus(status);
-                    return documentRepository.save(document);
+                    return documentRepository.save(document)
+                            .doOnSuccess(saved -> documentCatalog.record(
+                                    new DocumentCatalogDelta(saved.getCategory(), previous, status)));
                 })
                 .doOnSuccess(updatedDocument -> {
                     log.info("Updated status to {} for document id: {}", status, documentId);
@@ -111,62 +228,80 @@ public class DocumentService {
                 });
     }
 
-    private Mono<Long> publishIndexingJob(Document document) {
-        return Mono.fromCallable(() -> {
-            try {
-                IndexingJobPayload payload = IndexingJobPayload.builder()
-                        .documentId(document.getId())
-                        .storedName(document.getStoredName())
-                        .originalFilename(document.getName())
-                        .category(document.getCategory())
-                        .build();
-                return objectMapper.writeValueAsString(payload);
-            } catch (JsonProcessingException e) {
-                throw new RuntimeException("Error serializing indexing job payload", e);
-            }
-        })
-        .flatMap(payload -> redisTemplate.opsForList().leftPush(INDEXING_QUEUE_KEY, payload))
-        .doOnSuccess(jobId -> log.info("Published indexing job for document id: {}", document.getId()));
-    }
-
-    private static final String DEINDEXING_QUEUE_KEY = "document-deindexing-queue";
-
-    private Mono<Long> publishDeindexingJob(Long documentId) {
-        return Mono.fromCallable(() -> {
-                    try {
-                        // Re-use the payload, just sending the ID is sufficient for deletion
-                        IndexingJobPayload payload = IndexingJobPayload.builder()
-                                .documentId(documentId)
-                                .build();
-                        return objectMapper.writeValueAsString(payload);
-                    } catch (JsonProcessingException e) {
-                        throw new RuntimeException("Error serializing de-indexing job payload", e);
-                    }
+    /**
+     * Requests the document to be indexed again, e.g. after a failure or a change to the embedding model.
+     * Re-index jobs go to their own lane so that bulk re-indexing never delays fresh uploads.
+     * @param documentId The ID of the document to re-index.
+     * @return A Mono emitting the DocumentResponse with PENDING status.
+     */
+    public Mono<DocumentResponse> reindex(Long documentId) {
+        return documentRepository.findById(documentId)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Document not found")))
+                .flatMap(document -> {
+                    IndexingStatus previous = document.getStatus();
+                    document.updateStatus(IndexingStatus.PENDING);
+                    return documentRepository.save(document)
+                            .doOnSuccess(saved -> documentCatalog.record(
+                                    new DocumentCatalogDelta(saved.getCategory(), previous, IndexingStatus.PENDING)));
                 })
-                .flatMap(payload -> redisTemplate.opsForList().leftPush(DEINDEXING_QUEUE_KEY, payload))
-                .doOnSuccess(jobId -> log.info("Published de-indexing job for document id: {}", documentId));
+                .doOnSuccess(document -> publishAfterExtraction(JobLane.REINDEX, List.of(document),
+                        Collections.singletonList(null)))
+                .map(DocumentResponse::from)
+                .doOnSuccess(sseEmitterService::send);
+    }
+
+    private Mono<RecordId> publishDeindexingJob(Long documentId) {
+        // Re-use the payload, just sending the ID is sufficient for deletion
+        IndexingJobPayload payload = IndexingJobPayload.builder()
+                .documentId(documentId)
+                .build();
+        return indexingJobPublisher.publish(JobLane.DEINDEX, payload);
+    }
+
+    static IndexingJobPayload toPayload(Document document, Long sourceDocumentId) {
+        return IndexingJobPayload.builder()
+                .documentId(document.getId())
+                .storedName(document.getStoredName())
+                .originalFilename(document.getName())
+                .category(document.getCategory())
+                .sourceDocumentId(sourceDocumentId)
+                .build();
     }
 
     public Mono<Void> deleteById(Long documentId) {
         return documentRepository.findById(documentId)
                 .switchIfEmpty(Mono.error(new IllegalArgumentException("Document not found")))
                 .flatMap(document ->
-                        // 1. Publish a de-indexing job to the Redis queue
+                        // 1. Publish a de-indexing job to the de-index lane
                         publishDeindexingJob(document.getId())
-                                .then(Mono.fromRunnable(() -> {
-                                    // 2. Delete the physical file
-                                    File file = new File(document.getPath());
-                                    if (file.exists() && !file.delete()) {
-                                        log.warn("Failed to delete physical file: {}", document.getPath());
-                                    }
-                                }).subscribeOn(Schedulers.boundedElastic()))
-                                .thenReturn(document)
-                )
-                // 3. Delete the record from the database
-                .flatMap(document -> documentRepository.deleteById(document.getId()));
-    }
-
-    private String getFileExtension(String filename) {
+                                // 2. Delete the record from the database
+                                .then(documentRepository.deleteById(document.getId()))
+                                .doOnSuccess(v -> documentCatalog.record(
+                                        DocumentCatalogDelta.deleted(document.getCategory(), document.getStatus())))
+                                // 3. Only then hide the document from retrieval, ahead of its de-indexing, so a failed
+                                // deletion does not leave a document that exists but can never be retrieved
+                                .then(retrievalService.deleteDocument(document.getId()))
+                                // 4. Leave the physical file to the sweeper, which deletes it once nothing refers to it
+                                .then(unreferencedFileRepository.mark(document.getStoredName(), document.getPath()))
+                );
+    }
+
+    private static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.PARAMETER_VALIDATION_ERROR, "Invalid cursor: " + cursor);
+        }
+    }
+
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String getFileExtension(String filename) {
         if (filename == null || filename.lastIndexOf('.') == -1) {
             return "";
         }
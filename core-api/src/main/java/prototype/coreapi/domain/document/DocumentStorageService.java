@@ -0,0 +1,381 @@
+package prototype.coreapi.domain.document;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import prototype.coreapi.domain.document.dto.StoredFile;
+import prototype.coreapi.domain.document.dto.UploadedPart;
+import prototype.coreapi.global.exception.BusinessException;
+import prototype.coreapi.global.exception.ErrorCode;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed storage for uploaded document files.
+ * Uploads are streamed to a temporary file while the SHA-256 hash and size are computed in the same pass.
+ * The temporary file is then promoted to a name derived from its hash, so identical content is stored only once.
+ */
+@Slf4j
+@Service
+public class DocumentStorageService {
+
+    private static final String TEMP_PREFIX = ".upload-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String PARTS_DIRECTORY = ".parts";
+    private static final String PART_SUFFIX = ".part";
+    private static final int COPY_BUFFER_SIZE = 1 << 20;
+
+    @Value("${document.storage.path}")
+    private String documentStoragePath;
+
+    /**
+     * Streams the given content to storage, hashing it on the way.
+     *
+     * @param content The file content as a stream of data buffers.
+     * @param extension The file extension to append to the stored name (may be empty).
+     * @return A Mono emitting the stored file description.
+     */
+    public Mono<StoredFile> store(Flux<DataBuffer> content, String extension) {
+        return Mono.defer(() -> {
+            Path tempFile = newTempFile();
+            return writeHashed(content, tempFile)
+                    .flatMap(written -> Mono.fromCallable(() -> promote(tempFile, written.checksum(), extension, written.size()))
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .onErrorResume(e -> deleteQuietly(tempFile).then(Mono.error(e)));
+        });
+    }
+
+    /**
+     * Streams one part of a chunked upload to its own file, hashing it on the way.
+     * The part only replaces a previous copy once its checksum and size have been verified,
+     * so interrupted or corrupted parts can simply be retried.
+     *
+     * @param uploadId The upload session ID.
+     * @param partNumber The 1-based part number.
+     * @param content The part content as a stream of data buffers.
+     * @param expectedChecksum The SHA-256 of the part content (hex) as computed by the client.
+     * @param expectedSize The size the part must have.
+     * @return A Mono emitting the part's checksum and size.
+     * @throws BusinessException if the checksum or size does not match.
+     */
+    public Mono<UploadedPart> storePart(String uploadId, int partNumber, Flux<DataBuffer> content,
+                                        String expectedChecksum, long expectedSize) {
+        return Mono.defer(() -> {
+            Path partFile = partFile(uploadId, partNumber);
+            Path tempFile = partFile.resolveSibling(partNumber + "-" + UUID.randomUUID() + TEMP_SUFFIX);
+            return Mono.fromCallable(() -> Files.createDirectories(partFile.getParent()))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then(writeHashed(content, tempFile))
+                    .flatMap(written -> {
+                        if (!written.checksum().equalsIgnoreCase(expectedChecksum)) {
+                            return Mono.error(new BusinessException(ErrorCode.UPLOAD_CHECKSUM_MISMATCH, String.valueOf(partNumber)));
+                        }
+                        if (written.size() != expectedSize) {
+                            return Mono.error(new BusinessException(ErrorCode.UPLOAD_PART_INVALID, String.valueOf(partNumber)));
+                        }
+                        return Mono.fromCallable(() -> {
+                                    Files.move(tempFile, partFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                                    return new UploadedPart(partNumber, written.checksum(), written.size());
+                                })
+                                .subscribeOn(Schedulers.boundedElastic());
+                    })
+                    .onErrorResume(e -> deleteQuietly(tempFile).then(Mono.error(e)));
+        });
+    }
+
+    /**
+     * Concatenates the parts of a chunked upload into a single stored file, hashing the content as it is copied.
+     * The hash is that of the whole file, so the same content gets the same stored name whether it was uploaded
+     * in one request or in parts.
+     *
+     * @param uploadId The upload session ID.
+     * @param parts The parts to assemble, in order.
+     * @param extension The file extension to append to the stored name (may be empty).
+     * @return A Mono emitting the stored file description.
+     */
+    public Mono<StoredFile> assemble(String uploadId, List<UploadedPart> parts, String extension) {
+        return Mono.fromCallable(() -> {
+                    Path tempFile = newTempFile();
+                    MessageDigest digest = newSha256();
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+                    long size = 0;
+                    try (FileChannel target = FileChannel.open(tempFile,
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                        for (UploadedPart part : parts) {
+                            try (FileChannel source = FileChannel.open(partFile(uploadId, part.partNumber()), StandardOpenOption.READ)) {
+                                while (source.read(buffer) >= 0) {
+                                    buffer.flip();
+                                    size += buffer.remaining();
+                                    digest.update(buffer.duplicate());
+                                    while (buffer.hasRemaining()) {
+                                        target.write(buffer);
+                                    }
+                                    buffer.clear();
+                                }
+                            }
+                        }
+                    } catch (IOException e) {
+                        Files.deleteIfExists(tempFile);
+                        throw e;
+                    }
+                    return promote(tempFile, Hex.encodeHexString(digest.digest()), extension, size);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(storedFile -> discardParts(uploadId).thenReturn(storedFile));
+    }
+
+    /**
+     * Removes all parts stored for a chunked upload.
+     *
+     * @param uploadId The upload session ID.
+     * @return A Mono that completes when the parts have been removed.
+     */
+    public Mono<Void> discardParts(String uploadId) {
+        return Mono.<Void>fromRunnable(() -> {
+                    try {
+                        FileSystemUtils.deleteRecursively(partsDirectory(uploadId));
+                    } catch (IOException e) {
+                        log.warn("Failed to delete parts of upload: {}", uploadId, e);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Writes content to a temporary file in the storage directory without promoting it,
+     * e.g. to expand an uploaded archive. The caller is responsible for deleting the file.
+     *
+     * @param content The content as a stream of data buffers.
+     * @return A Mono emitting the path of the temporary file.
+     */
+    public Mono<Path> spool(Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            Path tempFile = newTempFile();
+            return DataBufferUtils.write(content, tempFile)
+                    .thenReturn(tempFile)
+                    .onErrorResume(e -> deleteQuietly(tempFile).then(Mono.error(e)));
+        });
+    }
+
+    /**
+     * Deletes a stored file from disk.
+     *
+     * @param path The path of the file to delete.
+     * @return A Mono that completes when the file has been deleted.
+     */
+    public Mono<Void> delete(Path path) {
+        return deleteQuietly(path);
+    }
+
+    /**
+     * Deletes a stored file unless it was modified recently.
+     * Promoting an upload onto an existing file touches it, so a file an upload is about to reference survives.
+     *
+     * @param path The path of the file to delete.
+     * @param minAge The time since the last modification below which the file is kept.
+     * @return A Mono emitting whether the file is gone: false if it was kept because it is recent.
+     */
+    public Mono<Boolean> deleteIfIdle(Path path, Duration minAge) {
+        return Mono.fromCallable(() -> {
+                    try {
+                        if (isModifiedWithin(path, minAge)) {
+                            return false;
+                        }
+                        Files.delete(path);
+                    } catch (NoSuchFileException e) {
+                        // Already gone
+                    }
+                    return true;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Lists the content-addressed files in storage, leaving out temporary files, upload parts
+     * and files modified recently, which may belong to an upload whose document is not registered yet.
+     *
+     * @param minAge The time since the last modification below which a file is left out.
+     * @return A Flux emitting the path of each stored file.
+     */
+    public Flux<Path> listStoredFiles(Duration minAge) {
+        return Flux.using(() -> Files.list(storageDirectory()),
+                        files -> Flux.fromStream(files
+                                .filter(path -> !path.getFileName().toString().startsWith("."))
+                                .filter(Files::isRegularFile)
+                                .filter(path -> !isModifiedWithinQuietly(path, minAge))),
+                        Stream::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * @param path The path of a stored file.
+     * @return A Mono emitting whether the file exists.
+     */
+    public Mono<Boolean> exists(Path path) {
+        return Mono.fromCallable(() -> Files.exists(path))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Removes temporary files and chunked upload parts left behind by uploads that never finished,
+     * e.g. because the node stopped in the middle of one.
+     *
+     * @param maxAge The time since the last modification after which an upload is considered abandoned.
+     * @return A Mono emitting the number of temporary files and part directories removed.
+     */
+    public Mono<Long> purgeAbandonedUploads(Duration maxAge) {
+        return Mono.fromCallable(() -> {
+                    long purged = 0;
+                    try (Stream<Path> files = Files.list(storageDirectory())) {
+                        for (Path path : (Iterable<Path>) files::iterator) {
+                            String name = path.getFileName().toString();
+                            if (name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX)
+                                    && !isModifiedWithinQuietly(path, maxAge) && Files.deleteIfExists(path)) {
+                                purged++;
+                            }
+                        }
+                    }
+                    Path partsRoot = storageDirectory().resolve(PARTS_DIRECTORY);
+                    if (Files.isDirectory(partsRoot)) {
+                        try (Stream<Path> uploads = Files.list(partsRoot)) {
+                            for (Path upload : (Iterable<Path>) uploads::iterator) {
+                                if (!isModifiedWithinQuietly(upload, maxAge) && FileSystemUtils.deleteRecursively(upload)) {
+                                    purged++;
+                                }
+                            }
+                        }
+                    }
+                    return purged;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Writes the content to the target file while computing its SHA-256 hash and size.
+     */
+    private Mono<WrittenContent> writeHashed(Flux<DataBuffer> content, Path target) {
+        return Mono.defer(() -> {
+            MessageDigest digest = newSha256();
+            AtomicLong size = new AtomicLong();
+
+            Flux<DataBuffer> hashed = content.doOnNext(buffer -> {
+                size.addAndGet(buffer.readableByteCount());
+                try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                    iterator.forEachRemaining(digest::update);
+                }
+            });
+
+            return DataBufferUtils.write(hashed, target)
+                    .then(Mono.fromSupplier(() -> new WrittenContent(Hex.encodeHexString(digest.digest()), size.get())));
+        });
+    }
+
+    /**
+     * Moves a fully written temporary file to its content-addressed name.
+     * If a file with the same content already exists, the temporary file is discarded instead.
+     */
+    private StoredFile promote(Path tempFile, String contentHash, String extension, long size) throws IOException {
+        String storedName = extension.isEmpty() ? contentHash : contentHash + "." + extension;
+        Path destination = storageDirectory().resolve(storedName);
+
+        if (Files.exists(destination)) {
+            Files.deleteIfExists(tempFile);
+            // Tells the file sweeper this file is in use again before the new document row exists.
+            Files.setLastModifiedTime(destination, FileTime.from(Instant.now()));
+            log.info("Content {} already stored. Reusing existing file.", contentHash);
+        } else {
+            // Same content under the same name, so a concurrent promotion of an identical upload is harmless.
+            Files.move(tempFile, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new StoredFile(storedName, destination, contentHash, size);
+    }
+
+    private Mono<Void> deleteQuietly(Path path) {
+        return Mono.<Void>fromRunnable(() -> {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        log.warn("Failed to delete physical file: {}", path, e);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static boolean isModifiedWithin(Path path, Duration age) throws IOException {
+        return Files.getLastModifiedTime(path).toInstant().isAfter(Instant.now().minus(age));
+    }
+
+    private static boolean isModifiedWithinQuietly(Path path, Duration age) {
+        try {
+            return isModifiedWithin(path, age);
+        } catch (IOException e) {
+            // Vanished or unreadable; treat it as in use and look again next time.
+            return true;
+        }
+    }
+
+    private Path newTempFile() {
+        return storageDirectory().resolve(TEMP_PREFIX + UUID.randomUUID() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Upload IDs are server-generated UUIDs; anything else is rejected, so a crafted ID such as {@code ..}
+     * can never point outside the parts directory.
+     */
+    private Path partsDirectory(String uploadId) {
+        Path partsRoot = storageDirectory().resolve(PARTS_DIRECTORY).normalize();
+        Path directory;
+        try {
+            directory = partsRoot.resolve(UUID.fromString(uploadId).toString()).normalize();
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.UPLOAD_NOT_FOUND);
+        }
+        if (!directory.startsWith(partsRoot) || directory.equals(partsRoot)) {
+            throw new BusinessException(ErrorCode.UPLOAD_NOT_FOUND);
+        }
+        return directory;
+    }
+
+    private Path partFile(String uploadId, int partNumber) {
+        return partsDirectory(uploadId).resolve(partNumber + PART_SUFFIX);
+    }
+
+    private Path storageDirectory() {
+        return Paths.get(documentStoragePath);
+    }
+
+    private record WrittenContent(String checksum, long size) {
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package prototype.coreapi.domain.document;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.document.config.DocumentQueueProperties;
+import prototype.coreapi.domain.document.dto.IndexingJobPayload;
+import prototype.coreapi.domain.document.dto.JobQueueStats;
+import prototype.coreapi.domain.document.enums.JobLane;
+import prototype.coreapi.global.redis.StreamConsumerGroupProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes indexing and de-indexing jobs to Redis Streams.
+ * Each {@link JobLane} is a stream read by the indexing workers through a shared consumer group,
+ * so jobs are acknowledged, can be spread across several workers, and are never lost when a worker dies.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexingJobPublisher {
+
+    static final String PAYLOAD_FIELD = "payload";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final DocumentQueueProperties queueProperties;
+    private final StreamConsumerGroupProvider consumerGroupProvider;
+
+    /**
+     * Creates the consumer group on every lane once the application is ready.
+     * Creation is idempotent; an existing group is left untouched.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createConsumerGroups() {
+        Flux.fromArray(JobLane.values())
+                .flatMap(lane -> consumerGroupProvider.create(lane.getStreamKey(), queueProperties.getConsumerGroup()))
+                .subscribe(
+                        stream -> log.info("Consumer group {} is ready on stream {}", queueProperties.getConsumerGroup(), stream),
+                        e -> log.error("Failed to create indexing consumer groups", e)
+                );
+    }
+
+    /**
+     * Publishes a single job to the given lane.
+     * @param lane The lane to publish to.
+     * @param payload The job payload.
+     * @return A Mono emitting the ID of the stream entry.
+     */
+    public Mono<RecordId> publish(JobLane lane, IndexingJobPayload payload) {
+        return Mono.fromCallable(() -> toRecord(lane, payload))
+                .flatMap(record -> redisTemplate.opsForStream().add(record))
+                .doOnSuccess(recordId -> log.info("Published {} job {} for document id: {}", lane, recordId, payload.documentId()));
+    }
+
+    /**
+     * Publishes many jobs to the given lane in one batch.
+     * All XADD commands are issued without waiting for each reply, so the shared connection
+     * pipelines them and the batch costs roughly one round trip.
+     * @param lane The lane to publish to.
+     * @param payloads The job payloads.
+     * @return A Flux emitting the IDs of the stream entries, in payload order.
+     */
+    public Flux<RecordId> publishAll(JobLane lane, List<IndexingJobPayload> payloads) {
+        return Flux.fromIterable(payloads)
+                .map(payload -> toRecord(lane, payload))
+                .flatMapSequential(record -> redisTemplate.opsForStream().add(record), Math.max(1, payloads.size()))
+                .doOnComplete(() -> log.info("Published {} {} jobs in one batch", payloads.size(), lane));
+    }
+
+    /**
+     * Reports the length and the number of unacknowledged entries of every lane.
+     * @return A Flux emitting the statistics of each lane, in priority order.
+     */
+    public Flux<JobQueueStats> stats() {
+        return Flux.fromArray(JobLane.values())
+                .concatMap(lane -> Mono.zip(
+                        redisTemplate.opsForStream().size(lane.getStreamKey()).defaultIfEmpty(0L),
+                        redisTemplate.opsForStream().pending(lane.getStreamKey(), queueProperties.getConsumerGroup())
+                                .map(PendingMessagesSummary::getTotalPendingMessages)
+                                .onErrorReturn(0L)
+                                .defaultIfEmpty(0L)
+                ).map(tuple -> new JobQueueStats(lane, lane.getStreamKey(), tuple.getT1(), tuple.getT2())));
+    }
+
+    IndexingJobPayload readPayload(String json) throws JsonProcessingException {
+        return objectMapper.readValue(json, IndexingJobPayload.class);
+    }
+
+    private MapRecord<String, String, String> toRecord(JobLane lane, IndexingJobPayload payload) {
+        try {
+            String json = objectMapper.writeValueAsString(payload);
+            return StreamRecords.newRecord()
+                    .in(lane.getStreamKey())
+                    .ofMap(Map.of(PAYLOAD_FIELD, json));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializing indexing job payload", e);
+        }
+    }
+}
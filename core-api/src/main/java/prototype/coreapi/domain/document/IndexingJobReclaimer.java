@@ -0,0 +1,115 @@
+package prototype.coreapi.domain.document;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.document.config.DocumentQueueProperties;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.enums.JobLane;
+import prototype.coreapi.global.redis.StreamConsumerGroupProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Periodically inspects the pending entries of every job lane.
+ * Workers take over entries abandoned by a crashed worker themselves, but never one that reached the delivery limit:
+ * entries that keep getting abandoned are poison jobs, so once they are exhausted and idle they are claimed here,
+ * moved to the dead-letter stream, acknowledged, and their document is marked as failed.
+ * Each lane is also trimmed so the streams do not grow without bound, but only of entries the consumer group is done
+ * with: entries before both the oldest pending entry and the last delivered one. Undelivered jobs are never trimmed,
+ * however long the backlog.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexingJobReclaimer {
+
+    private static final String RECLAIMER_CONSUMER = "core-api-reclaimer";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final StreamConsumerGroupProvider consumerGroupProvider;
+    private final IndexingJobPublisher indexingJobPublisher;
+    private final DocumentService documentService;
+    private final DocumentQueueProperties queueProperties;
+
+    @Scheduled(fixedDelayString = "${document.queue.reclaim-interval:30s}", initialDelayString = "${document.queue.reclaim-interval:30s}")
+    public Mono<Void> reclaim() {
+        return Flux.fromArray(JobLane.values())
+                .concatMap(lane -> deadLetterExhausted(lane)
+                        .then(trim(lane)))
+                .onErrorResume(e -> {
+                    log.error("Failed to reclaim pending indexing jobs", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Long> trim(JobLane lane) {
+        return consumerGroupProvider.trimConsumed(lane.getStreamKey(), queueProperties.getConsumerGroup());
+    }
+
+    private Mono<Void> deadLetterExhausted(JobLane lane) {
+        String stream = lane.getStreamKey();
+        return redisTemplate.opsForStream()
+                .pending(stream, queueProperties.getConsumerGroup(), Range.unbounded(), queueProperties.getReclaimBatchSize())
+                .flatMapIterable(PendingMessages::toList)
+                .filter(pending -> pending.getElapsedTimeSinceLastDelivery().compareTo(queueProperties.getVisibilityTimeout()) >= 0)
+                .filter(pending -> pending.getTotalDeliveryCount() >= queueProperties.getMaxDeliveries())
+                .concatMap(pending -> deadLetter(lane, pending))
+                .then();
+    }
+
+    private Mono<Void> deadLetter(JobLane lane, PendingMessage pending) {
+        String stream = lane.getStreamKey();
+        String id = pending.getIdAsString();
+        // Claimed only if still idle, so a job a worker has just picked up is never dead-lettered under it.
+        XClaimOptions claim = XClaimOptions.minIdle(queueProperties.getVisibilityTimeout()).ids(id);
+
+        return redisTemplate.opsForStream()
+                .claim(stream, queueProperties.getConsumerGroup(), RECLAIMER_CONSUMER, claim)
+                .next()
+                .flatMap(record -> {
+                    String payload = (String) record.getValue().get(IndexingJobPublisher.PAYLOAD_FIELD);
+                    Map<String, String> fields = new HashMap<>();
+                    fields.put(IndexingJobPublisher.PAYLOAD_FIELD, payload);
+                    fields.put("stream", stream);
+                    fields.put("recordId", id);
+                    fields.put("deliveries", String.valueOf(pending.getTotalDeliveryCount()));
+                    fields.put("lastConsumer", pending.getConsumerName());
+                    MapRecord<String, String, String> deadLetter = StreamRecords.newRecord()
+                            .in(queueProperties.getDeadLetterStream())
+                            .ofMap(fields);
+                    return redisTemplate.opsForStream().add(deadLetter)
+                            .then(markFailed(lane, payload))
+                            .then(redisTemplate.opsForStream().acknowledge(stream, queueProperties.getConsumerGroup(), id))
+                            .doOnSuccess(acked -> log.warn("Moved {} job {} to the dead-letter stream after {} deliveries",
+                                    lane, id, pending.getTotalDeliveryCount()));
+                })
+                .then();
+    }
+
+    private Mono<Void> markFailed(JobLane lane, String payload) {
+        if (lane == JobLane.DEINDEX) {
+            // The document row is already gone; nothing to mark.
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> indexingJobPublisher.readPayload(payload))
+                .flatMap(job -> documentService.updateStatus(job.documentId(), IndexingStatus.FAILURE))
+                .onErrorResume(e -> {
+                    log.warn("Could not mark dead-lettered {} job as failed", lane, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
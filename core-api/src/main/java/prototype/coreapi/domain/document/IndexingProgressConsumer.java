@@ -0,0 +1,202 @@
+package prototype.coreapi.domain.document;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.stream.StreamReceiver;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.document.config.DocumentProgressProperties;
+import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.IndexingProgressEvent;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.global.redis.StreamConsumerGroupProvider;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Consumes the indexing progress stream written by the indexing workers.
+ * Events are coalesced in memory to the latest report per document and flushed once per interval:
+ * one batched update to Postgres, one SSE event per changed document, then the events are acknowledged.
+ * A node that stops before flushing leaves its events pending; another node takes them over after a while.
+ */
+@Slf4j
+@Component
+public class IndexingProgressConsumer {
+
+    private final DocumentRepository documentRepository;
+    private final SseEmitterService sseEmitterService;
+    private final DocumentCatalog documentCatalog;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final StreamConsumerGroupProvider consumerGroupProvider;
+    private final DocumentProgressProperties progressProperties;
+    private final StreamReceiver<String, MapRecord<String, String, String>> streamReceiver;
+    private final String consumerName = "core-api-" + UUID.randomUUID();
+
+    // Latest report per document and the stream entries it covers, both waiting for the next flush.
+    private final Map<Long, IndexingProgressEvent> pendingEvents = new ConcurrentHashMap<>();
+    private final Queue<RecordId> pendingRecordIds = new ConcurrentLinkedQueue<>();
+    private Disposable subscription;
+
+    public IndexingProgressConsumer(DocumentRepository documentRepository,
+                                    SseEmitterService sseEmitterService,
+                                    DocumentCatalog documentCatalog,
+                                    ReactiveStringRedisTemplate redisTemplate,
+                                    ReactiveRedisConnectionFactory connectionFactory,
+                                    StreamConsumerGroupProvider consumerGroupProvider,
+                                    DocumentProgressProperties progressProperties) {
+        this.documentRepository = documentRepository;
+        this.sseEmitterService = sseEmitterService;
+        this.documentCatalog = documentCatalog;
+        this.redisTemplate = redisTemplate;
+        this.consumerGroupProvider = consumerGroupProvider;
+        this.progressProperties = progressProperties;
+        this.streamReceiver = StreamReceiver.create(connectionFactory, StreamReceiver.StreamReceiverOptions.builder()
+                .pollTimeout(Duration.ofSeconds(2))
+                .batchSize(progressProperties.getReadBatchSize())
+                .build());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        String stream = progressProperties.getStream();
+        String group = progressProperties.getConsumerGroup();
+
+        subscription = consumerGroupProvider.create(stream, group)
+                .thenMany(streamReceiver.receive(Consumer.from(group, consumerName),
+                        StreamOffset.create(stream, ReadOffset.lastConsumed())))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(this::accept);
+        log.info("Consuming indexing progress from stream {} as {}", stream, consumerName);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${document.progress.flush-interval:1s}")
+    public Mono<Void> flush() {
+        // Record IDs first: an event is always merged before its ID is queued, so every drained ID is covered below.
+        List<RecordId> recordIds = new ArrayList<>();
+        for (RecordId recordId; (recordId = pendingRecordIds.poll()) != null; ) {
+            recordIds.add(recordId);
+        }
+        List<IndexingProgressEvent> events = new ArrayList<>();
+        for (Long documentId : pendingEvents.keySet()) {
+            IndexingProgressEvent event = pendingEvents.remove(documentId);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        if (events.isEmpty() && recordIds.isEmpty()) {
+            return Mono.empty();
+        }
+
+        List<Long> documentIds = events.stream().map(IndexingProgressEvent::documentId).toList();
+        return documentRepository.updateProgress(events)
+                .doOnNext(documentCatalog::record)
+                .thenMany(documentRepository.findAllById(documentIds))
+                .doOnNext(document -> sseEmitterService.send(DocumentResponse.from(document)))
+                .then(acknowledge(recordIds))
+                .doOnSuccess(v -> log.debug("Flushed progress of {} documents from {} events", events.size(), recordIds.size()))
+                .onErrorResume(e -> {
+                    log.error("Failed to flush indexing progress of {} documents. Retrying on the next flush.", events.size(), e);
+                    // Put the reports back underneath anything newer that arrived meanwhile
+                    events.forEach(event -> pendingEvents.merge(event.documentId(), event, (newer, older) -> older.merge(newer)));
+                    pendingRecordIds.addAll(recordIds);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Takes over progress events left unacknowledged by a node that stopped before flushing them.
+     */
+    @Scheduled(fixedDelayString = "${document.progress.claim-idle:1m}")
+    public Mono<Void> claimAbandoned() {
+        String stream = progressProperties.getStream();
+        String group = progressProperties.getConsumerGroup();
+        Duration claimIdle = progressProperties.getClaimIdle();
+
+        return redisTemplate.<String, String>opsForStream()
+                .pending(stream, group, Range.unbounded(), progressProperties.getReadBatchSize())
+                .map(PendingMessages::toList)
+                .map(pending -> pending.stream()
+                        .filter(message -> !consumerName.equals(message.getConsumerName()))
+                        .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(claimIdle) >= 0)
+                        .map(PendingMessage::getId)
+                        .toArray(RecordId[]::new))
+                .filter(recordIds -> recordIds.length > 0)
+                .flatMapMany(recordIds -> redisTemplate.<String, String>opsForStream()
+                        .claim(stream, group, consumerName, claimIdle, recordIds))
+                .doOnNext(this::accept)
+                .count()
+                .doOnNext(claimed -> {
+                    if (claimed > 0) {
+                        log.info("Took over {} abandoned indexing progress events", claimed);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to take over abandoned indexing progress events", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Trims the progress stream of the events the group has acknowledged. Workers do not cap the stream, so the final
+     * status of a job is never dropped before a node has read it, even while every node is down.
+     */
+    @Scheduled(fixedDelayString = "${document.progress.trim-interval:1m}")
+    public Mono<Void> trim() {
+        return consumerGroupProvider.trimConsumed(progressProperties.getStream(), progressProperties.getConsumerGroup())
+                .onErrorResume(e -> {
+                    log.warn("Failed to trim the indexing progress stream", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void accept(MapRecord<String, String, String> record) {
+        try {
+            IndexingProgressEvent event = IndexingProgressEvent.from(record.getValue());
+            pendingEvents.merge(event.documentId(), event, IndexingProgressEvent::merge);
+        } catch (RuntimeException e) {
+            log.warn("Discarding malformed indexing progress event {}: {}", record.getId(), record.getValue(), e);
+        }
+        pendingRecordIds.add(record.getId());
+    }
+
+    private Mono<Void> acknowledge(List<RecordId> recordIds) {
+        if (recordIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return redisTemplate.opsForStream()
+                .acknowledge(progressProperties.getStream(), progressProperties.getConsumerGroup(),
+                        recordIds.toArray(RecordId[]::new))
+                .then();
+    }
+}
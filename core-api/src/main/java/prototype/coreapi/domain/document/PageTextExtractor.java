@@ -0,0 +1,253 @@
+package prototype.coreapi.domain.document;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import prototype.coreapi.domain.document.config.DocumentExtractionProperties;
+import prototype.coreapi.domain.document.dto.PageText;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Extracts the text of uploaded PDFs page by page, so the indexing worker does not have to parse them.
+ * Extraction runs on a bounded pool shared by all uploads. Large documents are split into page ranges extracted in
+ * parallel, each range loading its own copy of the document since PDFBox documents are not thread-safe.
+ * The result is a gzipped JSON Lines artifact with one {@link PageText} per line, named after the stored file,
+ * so identical content is extracted only once. Extraction is best effort: on failure the worker parses the PDF itself.
+ */
+@Slf4j
+@Service
+public class PageTextExtractor {
+
+    private static final String PDF_EXTENSION = "pdf";
+    private static final String ARTIFACT_SUFFIX = ".jsonl.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final DocumentExtractionProperties extractionProperties;
+    private final ObjectMapper objectMapper;
+    private final Scheduler scheduler;
+
+    @Value("${document.storage.path}")
+    private String documentStoragePath;
+
+    public PageTextExtractor(DocumentExtractionProperties extractionProperties, ObjectMapper objectMapper) {
+        this.extractionProperties = extractionProperties;
+        this.objectMapper = objectMapper;
+        this.scheduler = Schedulers.newBoundedElastic(extractionProperties.getParallelism(),
+                extractionProperties.getMaxQueuedTasks(), "pdf-text");
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.dispose();
+    }
+
+    /**
+     * Writes the page-text artifact of a stored file, unless it is not a PDF or the artifact already exists.
+     *
+     * @param storedName The stored name of the file.
+     * @param path The path of the file.
+     * @return A Mono that completes when the artifact is written or extraction was skipped. It never errors.
+     */
+    public Mono<Void> extract(String storedName, Path path) {
+        if (!extractionProperties.isEnabled() || !isPdf(storedName)) {
+            return Mono.empty();
+        }
+        Path artifact = artifactPath(storedName);
+
+        return Mono.fromCallable(() -> Files.exists(artifact))
+                .subscribeOn(Schedulers.boundedElastic())
+                .filter(exists -> !exists)
+                .flatMap(absent -> {
+                    long started = System.nanoTime();
+                    return extractPages(path)
+                            .flatMap(pages -> Mono.fromCallable(() -> write(artifact, pages))
+                                    .subscribeOn(Schedulers.boundedElastic())
+                                    .doOnSuccess(v -> log.info("Extracted {} pages of {} in {} ms", pages.size(),
+                                            storedName, (System.nanoTime() - started) / 1_000_000)));
+                })
+                .timeout(extractionProperties.getTimeout())
+                .onErrorResume(e -> {
+                    log.warn("Page text extraction failed for {}. The indexing worker will parse it instead.", storedName, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Reads the page-text artifact of a stored file.
+     *
+     * @param storedName The stored name of the file.
+     * @return A Mono emitting the pages in order, or empty if the file has no artifact.
+     */
+    public Mono<List<PageText>> read(String storedName) {
+        Path artifact = artifactPath(storedName);
+        return Mono.fromCallable(() -> {
+                    if (!Files.exists(artifact)) {
+                        return null;
+                    }
+                    List<PageText> pages = new ArrayList<>();
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                            new GZIPInputStream(Files.newInputStream(artifact)), StandardCharsets.UTF_8))) {
+                        for (String line; (line = reader.readLine()) != null; ) {
+                            if (!line.isBlank()) {
+                                pages.add(objectMapper.readValue(line, PageText.class));
+                            }
+                        }
+                    }
+                    return pages;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Deletes the page-text artifact of a stored file, if any.
+     *
+     * @param storedName The stored name of the file.
+     * @return A Mono that completes when the artifact is gone.
+     */
+    public Mono<Void> discard(String storedName) {
+        return Mono.<Void>fromRunnable(() -> {
+                    try {
+                        Files.deleteIfExists(artifactPath(storedName));
+                    } catch (IOException e) {
+                        log.warn("Failed to delete page text of {}", storedName, e);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Deletes artifacts whose stored file no longer exists.
+     *
+     * @return A Mono emitting the number of artifacts deleted.
+     */
+    public Mono<Long> purgeOrphaned() {
+        return Mono.fromCallable(() -> {
+                    Path directory = artifactDirectory();
+                    if (!Files.isDirectory(directory)) {
+                        return 0L;
+                    }
+                    long purged = 0;
+                    try (Stream<Path> artifacts = Files.list(directory)) {
+                        for (Path artifact : (Iterable<Path>) artifacts::iterator) {
+                            String name = artifact.getFileName().toString();
+                            if (!name.endsWith(ARTIFACT_SUFFIX)) {
+                                continue;
+                            }
+                            String storedName = name.substring(0, name.length() - ARTIFACT_SUFFIX.length());
+                            if (!Files.exists(storageDirectory().resolve(storedName)) && Files.deleteIfExists(artifact)) {
+                                purged++;
+                            }
+                        }
+                    }
+                    return purged;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Extracts the first page range, which also tells the page count, then the remaining ranges in parallel.
+     * @return A Mono emitting the pages in order.
+     */
+    private Mono<List<PageText>> extractPages(Path path) {
+        int pagesPerTask = Math.max(1, extractionProperties.getPagesPerTask());
+        return Mono.fromCallable(() -> extractRange(path, 1, pagesPerTask))
+                .subscribeOn(scheduler)
+                .flatMap(first -> Flux.range(0, Math.ceilDiv(first.pageCount(), pagesPerTask))
+                        .skip(1)
+                        .flatMapSequential(range -> Mono.fromCallable(
+                                        () -> extractRange(path, range * pagesPerTask + 1, (range + 1) * pagesPerTask))
+                                .subscribeOn(scheduler), extractionProperties.getParallelism())
+                        .collectList()
+                        .map(rest -> {
+                            List<PageText> pages = new ArrayList<>(first.pageCount());
+                            pages.addAll(first.pages());
+                            rest.forEach(range -> pages.addAll(range.pages()));
+                            return pages;
+                        }));
+    }
+
+    /**
+     * Loads the document and extracts the text of the pages from {@code startPage} to {@code endPage}, inclusive.
+     * Pages past the end of the document are ignored.
+     */
+    private static ExtractedRange extractRange(Path path, int startPage, int endPage) throws IOException {
+        try (PDDocument document = Loader.loadPDF(path.toFile())) {
+            int pageCount = document.getNumberOfPages();
+            int lastPage = Math.min(endPage, pageCount);
+            List<PageText> pages = new ArrayList<>(Math.max(0, lastPage - startPage + 1));
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = startPage; page <= lastPage; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                pages.add(new PageText(page, stripper.getText(document)));
+            }
+            return new ExtractedRange(pageCount, pages);
+        }
+    }
+
+    /**
+     * Writes the artifact to a temporary file first, so the worker never reads a partial artifact.
+     */
+    private Void write(Path artifact, List<PageText> pages) throws IOException {
+        Files.createDirectories(artifact.getParent());
+        Path tempFile = artifact.resolveSibling(artifact.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(tempFile)), StandardCharsets.UTF_8))) {
+            for (PageText page : pages) {
+                writer.write(objectMapper.writeValueAsString(page));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, artifact, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return null;
+    }
+
+    private static boolean isPdf(String storedName) {
+        return storedName.toLowerCase(Locale.ROOT).endsWith("." + PDF_EXTENSION);
+    }
+
+    private Path artifactPath(String storedName) {
+        return artifactDirectory().resolve(storedName + ARTIFACT_SUFFIX);
+    }
+
+    private Path artifactDirectory() {
+        return storageDirectory().resolve(extractionProperties.getDirectory());
+    }
+
+    private Path storageDirectory() {
+        return Paths.get(documentStoragePath);
+    }
+
+    private record ExtractedRange(int pageCount, List<PageText> pages) {
+    }
+}
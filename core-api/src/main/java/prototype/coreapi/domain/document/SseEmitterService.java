@@ -1,40 +1,151 @@
 package prototype.coreapi.domain.document;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import prototype.coreapi.domain.document.config.DocumentEventProperties;
 import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.DocumentStatusEvent;
+import prototype.coreapi.global.redis.DocumentEventChannelProvider;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
 import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
 
-@Service
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Fans document status changes out to SSE clients across the whole cluster.
+ * Every change is published to Redis pub/sub with a cluster-wide sequence number, and every node relays what it
+ * receives to its own clients. Each client has a bounded buffer that drops its oldest events when the client
+ * falls behind, so a slow client never affects the others, and a reconnecting client resumes from its last event ID.
+ */
 @Slf4j
+@Service
+@RequiredArgsConstructor
 public class SseEmitterService {
 
-    private final Sinks.Many<DocumentResponse> sink;
+    private final DocumentEventChannelProvider channelProvider;
+    private final ObjectMapper objectMapper;
+    private final DocumentEventProperties eventProperties;
+
+    // Best effort: a subscriber that cannot keep up does not fail emission to the others.
+    private final Sinks.Many<DocumentStatusEvent> sink = Sinks.many().multicast().directBestEffort();
+    // Recent events for resuming clients. Guarded by itself; events are also emitted while holding it,
+    // so a connecting client sees every event exactly once across replay and live delivery.
+    private final Deque<DocumentStatusEvent> history = new ArrayDeque<>();
+    private Disposable relaySubscription;
 
-    public SseEmitterService() {
-        // Use a replay sink with a limit of 1. This creates a hot stream that replays the last
-        // event to new subscribers, which is useful for them to get the most recent status immediately.
-        // It also doesn't terminate when subscribers disconnect.
-        this.sink = Sinks.many().replay().limit(1);
-        log.info("SseEmitterService initialized with a replay(1) sink.");
+    /**
+     * Starts relaying events published by any node once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRelay() {
+        relaySubscription = channelProvider.listen(eventProperties.getChannel())
+                .<DocumentStatusEvent>handle((message, events) -> {
+                    try {
+                        events.next(readEvent(message));
+                    } catch (RuntimeException | JsonProcessingException e) {
+                        log.warn("Discarding malformed document event: {}", message, e);
+                    }
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(this::dispatch);
+        log.info("Relaying document status events from channel {}", eventProperties.getChannel());
     }
 
-    public void send(DocumentResponse document) {
-        Sinks.EmitResult result = sink.tryEmitNext(document);
+    @PreDestroy
+    public void stopRelay() {
+        if (relaySubscription != null) {
+            relaySubscription.dispose();
+        }
+    }
 
-        if (result.isFailure()) {
-            // Log only failures to avoid cluttering the logs
-            log.warn("SSE event send failed for document id: {}. Reason: {}", document.id(), result);
+    /**
+     * Publishes a document status change to every node.
+     * @param document The document in its new state.
+     */
+    public void send(DocumentResponse document) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(document);
+        } catch (JsonProcessingException e) {
+            log.warn("SSE event serialization failed for document id: {}", document.id(), e);
+            return;
         }
+        channelProvider.publish(eventProperties.getChannel(), json)
+                .subscribe(
+                        sequence -> log.debug("Published status event {} for document id: {}", sequence, document.id()),
+                        e -> log.warn("SSE event publish failed for document id: {}", document.id(), e)
+                );
     }
 
-    public Flux<ServerSentEvent<DocumentResponse>> connect() {
-        log.debug("New SSE client connected. Current subscriber count: {}", sink.currentSubscriberCount());
-        return sink.asFlux()
-                .doOnNext(document -> log.debug("Pushing update for document id: {} to a client.", document.id()))
+    /**
+     * Connects an SSE client.
+     * @param documentId Only deliver events of this document, if not null.
+     * @param category Only deliver events of documents in this category, if not null.
+     * @param lastEventId The ID of the last event the client received, or null for live events only.
+     *                    Events older than the retained history cannot be replayed; the client should reload the list.
+     * @return A Flux of server-sent events whose IDs are the event sequence numbers.
+     */
+    public Flux<ServerSentEvent<DocumentResponse>> connect(Long documentId, String category, Long lastEventId) {
+        return Flux.<DocumentStatusEvent>create(emitter -> {
+                    Disposable live;
+                    synchronized (history) {
+                        replayAfter(lastEventId).forEach(emitter::next);
+                        live = sink.asFlux().subscribe(emitter::next, emitter::error, emitter::complete);
+                    }
+                    emitter.onDispose(live);
+                    log.debug("New SSE client connected. Current subscriber count: {}", sink.currentSubscriberCount());
+                }, FluxSink.OverflowStrategy.BUFFER)
+                // Filtered before buffering, so events of other documents never evict the ones the client asked for
+                .filter(event -> documentId == null || Objects.equals(event.document().id(), documentId))
+                .filter(event -> category == null || Objects.equals(event.document().category(), category))
+                .onBackpressureBuffer(eventProperties.getSubscriberBufferSize(),
+                        dropped -> log.debug("Dropped status event {} for a slow SSE client.", dropped.sequence()),
+                        BufferOverflowStrategy.DROP_OLDEST)
                 .doOnCancel(() -> log.debug("SSE client disconnected. Current subscriber count: {}", sink.currentSubscriberCount()))
-                .map(document -> ServerSentEvent.builder(document).build());
+                .map(event -> ServerSentEvent.builder(event.document())
+                        .id(String.valueOf(event.sequence()))
+                        .build());
+    }
+
+    private void dispatch(DocumentStatusEvent event) {
+        synchronized (history) {
+            history.addLast(event);
+            while (history.size() > eventProperties.getHistorySize()) {
+                history.removeFirst();
+            }
+            // Emission is serialized by the lock, so the sink never sees concurrent signals.
+            sink.tryEmitNext(event);
+        }
+    }
+
+    private List<DocumentStatusEvent> replayAfter(Long lastEventId) {
+        if (lastEventId == null) {
+            return List.of();
+        }
+        return history.stream()
+                .filter(event -> event.sequence() > lastEventId)
+                .toList();
+    }
+
+    private DocumentStatusEvent readEvent(String message) throws JsonProcessingException {
+        int separator = message.indexOf(DocumentEventChannelProvider.SEQUENCE_SEPARATOR);
+        long sequence = Long.parseLong(message.substring(0, separator));
+        DocumentResponse document = objectMapper.readValue(message.substring(separator + 1), DocumentResponse.class);
+        return new DocumentStatusEvent(sequence, document);
     }
 }
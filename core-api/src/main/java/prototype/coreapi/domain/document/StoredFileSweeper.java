@@ -0,0 +1,153 @@
+package prototype.coreapi.domain.document;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.document.config.DocumentGcProperties;
+import prototype.coreapi.domain.document.dto.UnreferencedFile;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.domain.document.repository.UnreferencedFileRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reclaims stored document files in the background.
+ * Deleting a document only marks its file as unreferenced; the sweeper deletes marked files in rate-limited batches
+ * once they have been unreferenced for the grace period and still no document points to them.
+ * The storage directory is also reconciled against the documents table from time to time,
+ * which catches files orphaned by a crash and reports documents whose file is missing.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StoredFileSweeper {
+
+    private final UnreferencedFileRepository unreferencedFileRepository;
+    private final DocumentRepository documentRepository;
+    private final DocumentStorageService documentStorageService;
+    private final PageTextExtractor pageTextExtractor;
+    private final DocumentGcProperties gcProperties;
+
+    /**
+     * Deletes one batch of files that have been unreferenced for longer than the grace period.
+     */
+    @Scheduled(fixedDelayString = "${document.gc.sweep-interval:1m}")
+    public Mono<Void> sweep() {
+        Duration gracePeriod = gcProperties.getGracePeriod();
+        Duration pacing = Duration.ofSeconds(1).dividedBy(Math.max(1, gcProperties.getDeletesPerSecond()));
+
+        return unreferencedFileRepository.findMarkedLongerThan(gracePeriod, gcProperties.getSweepBatchSize())
+                .delayElements(pacing)
+                .concatMap(this::reclaim)
+                .filter(Boolean::booleanValue)
+                .count()
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        log.info("Reclaimed {} unreferenced document files", deleted);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("Failed to sweep unreferenced document files", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Compares the storage directory with the documents table.
+     * Stored files no document points to are marked for the sweeper, leftovers of interrupted uploads are removed,
+     * and documents whose file is missing are logged.
+     */
+    @Scheduled(fixedDelayString = "${document.gc.reconcile-interval:6h}",
+            initialDelayString = "${document.gc.reconcile-interval:6h}")
+    public Mono<Void> reconcile() {
+        return documentStorageService.purgeAbandonedUploads(gcProperties.getAbandonedUploadAge())
+                .doOnNext(purged -> {
+                    if (purged > 0) {
+                        log.info("Removed {} leftovers of interrupted uploads", purged);
+                    }
+                })
+                .then(markOrphanedFiles())
+                .then(pageTextExtractor.purgeOrphaned())
+                .doOnNext(purged -> {
+                    if (purged > 0) {
+                        log.info("Removed {} page-text artifacts of deleted files", purged);
+                    }
+                })
+                .then(reportMissingFiles())
+                .onErrorResume(e -> {
+                    log.error("Failed to reconcile document storage", e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Deletes a marked file if it is still unreferenced.
+     * @return A Mono emitting whether the file was deleted.
+     */
+    private Mono<Boolean> reclaim(UnreferencedFile file) {
+        Path path = Paths.get(file.path());
+        return unreferencedFileRepository.release(file.storedName())
+                .flatMap(references -> {
+                    if (references > 0) {
+                        log.debug("File {} is referenced again. Keeping it.", file.storedName());
+                        return Mono.just(false);
+                    }
+                    return documentStorageService.deleteIfIdle(path, gcProperties.getGracePeriod())
+                            .flatMap(deleted -> deleted
+                                    ? pageTextExtractor.discard(file.storedName()).thenReturn(true)
+                                    // An upload is reusing the file right now; look at it again after another grace period.
+                                    : unreferencedFileRepository.mark(file.storedName(), file.path()).thenReturn(false));
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to reclaim document file {}", file.path(), e);
+                    return Mono.just(false);
+                });
+    }
+
+    private Mono<Void> markOrphanedFiles() {
+        return documentStorageService.listStoredFiles(gcProperties.getGracePeriod())
+                .buffer(gcProperties.getReconcileBatchSize())
+                .concatMap(batch -> {
+                    Map<String, Path> byName = batch.stream()
+                            .collect(Collectors.toMap(path -> path.getFileName().toString(), Function.identity()));
+                    return documentRepository.findReferencedStoredNames(byName.keySet())
+                            .collect(Collectors.toSet())
+                            .flatMapMany(referenced -> Flux.fromIterable(byName.entrySet())
+                                    .filter(entry -> !referenced.contains(entry.getKey())))
+                            .concatMap(entry -> unreferencedFileRepository.mark(entry.getKey(), entry.getValue().toString())
+                                    .thenReturn(entry.getKey()));
+                })
+                .count()
+                .doOnNext(orphaned -> {
+                    if (orphaned > 0) {
+                        log.info("Marked {} stored files without a document for reclamation", orphaned);
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> reportMissingFiles() {
+        List<String> missing = new ArrayList<>();
+        return documentRepository.findAllStoredPaths()
+                .concatMap(path -> documentStorageService.exists(Paths.get(path))
+                        .filter(exists -> !exists)
+                        .doOnNext(exists -> missing.add(path)))
+                .then(Mono.fromRunnable(() -> {
+                    if (!missing.isEmpty()) {
+                        log.warn("{} stored files referenced by documents are missing, e.g. {}",
+                                missing.size(), missing.subList(0, Math.min(10, missing.size())));
+                    }
+                }));
+    }
+}
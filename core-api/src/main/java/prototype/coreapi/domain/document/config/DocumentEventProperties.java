@@ -0,0 +1,22 @@
+package prototype.coreapi.domain.document.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "document.events")
+@Data
+public class DocumentEventProperties {
+
+    // Redis pub/sub channel relaying status events between core-api nodes.
+    private String channel = "document-status-events";
+    // Events buffered per SSE client; the oldest are dropped when a client falls behind.
+    private int subscriberBufferSize = 256;
+    // Recent events kept on every node so reconnecting clients can resume from their last event ID.
+    private int historySize = 1_000;
+    // Redis pub/sub channel relaying document catalog changes between core-api nodes.
+    private String catalogChannel = "document-catalog-events";
+    // The in-memory catalog is rebuilt from Postgres this often to repair any missed change.
+    private Duration catalogReconcileInterval = Duration.ofMinutes(10);
+}
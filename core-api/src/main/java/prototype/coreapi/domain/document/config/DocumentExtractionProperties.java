@@ -0,0 +1,22 @@
+package prototype.coreapi.domain.document.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "document.extraction")
+@Data
+public class DocumentExtractionProperties {
+
+    private boolean enabled = true;
+    // Threads extracting page text, shared by all uploads; also the most page ranges of one document extracted at once.
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    // Pages extracted by one task. Each task loads its own copy of the document, so larger documents use more threads.
+    private int pagesPerTask = 50;
+    // Extractions waiting for a thread beyond this are rejected and left to the indexing worker.
+    private int maxQueuedTasks = 10_000;
+    private Duration timeout = Duration.ofMinutes(5);
+    // Directory under the storage path holding page-text artifacts; must match the indexing worker.
+    private String directory = ".pages";
+}
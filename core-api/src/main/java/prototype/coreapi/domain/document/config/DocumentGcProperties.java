@@ -0,0 +1,24 @@
+package prototype.coreapi.domain.document.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "document.gc")
+@Data
+public class DocumentGcProperties {
+
+    // Unreferenced files, and files touched by an upload, are kept at least this long before they are deleted.
+    private Duration gracePeriod = Duration.ofHours(1);
+    private Duration sweepInterval = Duration.ofMinutes(1);
+    // Files examined per sweep.
+    private int sweepBatchSize = 500;
+    // Upper bound on file deletions per second, so mass deletes do not saturate the disk.
+    private int deletesPerSecond = 50;
+    // The storage directory is compared against the documents table this often.
+    private Duration reconcileInterval = Duration.ofHours(6);
+    private int reconcileBatchSize = 1_000;
+    // Temporary files and chunked upload parts older than this are left over from interrupted uploads.
+    private Duration abandonedUploadAge = Duration.ofDays(2);
+}
@@ -0,0 +1,22 @@
+package prototype.coreapi.domain.document.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "document.progress")
+@Data
+public class DocumentProgressProperties {
+
+    private String stream = "document-progress-stream";
+    // Every core-api node joins this group, so each event is handled by one node.
+    private String consumerGroup = "core-api";
+    // Progress is written to Postgres and sent over SSE at most once per interval.
+    private Duration flushInterval = Duration.ofSeconds(1);
+    // Events left unacknowledged this long by a stopped node are taken over.
+    private Duration claimIdle = Duration.ofMinutes(1);
+    private int readBatchSize = 500;
+    // The stream is trimmed of acknowledged events this often; workers do not cap it.
+    private Duration trimInterval = Duration.ofMinutes(1);
+}
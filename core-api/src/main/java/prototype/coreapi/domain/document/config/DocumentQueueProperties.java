@@ -0,0 +1,20 @@
+package prototype.coreapi.domain.document.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "document.queue")
+@Data
+public class DocumentQueueProperties {
+
+    private String consumerGroup = "indexing-workers";
+    private String deadLetterStream = "document-jobs-dead-letter";
+    // Entries pending longer than this are considered abandoned by their worker.
+    private Duration visibilityTimeout = Duration.ofMinutes(10);
+    // Abandoned entries delivered this many times are moved to the dead-letter stream.
+    private int maxDeliveries = 3;
+    private Duration reclaimInterval = Duration.ofSeconds(30);
+    private int reclaimBatchSize = 100;
+}
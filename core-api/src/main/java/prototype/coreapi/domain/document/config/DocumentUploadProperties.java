@@ -0,0 +1,25 @@
+package prototype.coreapi.domain.document.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "document.upload")
+@Data
+public class DocumentUploadProperties {
+
+    // Fixed by the server so the same file always splits into the same parts.
+    private DataSize partSize = DataSize.ofMegabytes(8);
+    private int maxParts = 10_000;
+    private Duration sessionTtl = Duration.ofHours(24);
+    // Bulk uploads: files written to storage at the same time, and rows inserted per statement.
+    private int bulkConcurrency = 4;
+    private int bulkBatchSize = 100;
+    // A batch is registered early if it does not fill up within this window.
+    private Duration bulkBatchWindow = Duration.ofMillis(500);
+    private int maxArchiveEntries = 1_000;
+    // Bytes all entries of one archive may expand to, counted as they are inflated; the rest of the archive is rejected.
+    private DataSize maxArchiveUncompressedSize = DataSize.ofGigabytes(2);
+}
@@ -0,0 +1,25 @@
+package prototype.coreapi.domain.document.dto;
+
+import prototype.coreapi.domain.document.enums.BulkUploadStatus;
+
+/**
+ * The outcome for a single file of a bulk upload.
+ */
+public record BulkUploadResult(
+        String filename,
+        BulkUploadStatus status,
+        DocumentResponse document, // null when the file failed
+        String error // null unless the file failed
+) {
+    public static BulkUploadResult created(String filename, DocumentResponse document) {
+        return new BulkUploadResult(filename, BulkUploadStatus.CREATED, document, null);
+    }
+
+    public static BulkUploadResult duplicate(String filename, DocumentResponse document) {
+        return new BulkUploadResult(filename, BulkUploadStatus.DUPLICATE, document, null);
+    }
+
+    public static BulkUploadResult failed(String filename, String error) {
+        return new BulkUploadResult(filename, BulkUploadStatus.FAILED, null, error);
+    }
+}
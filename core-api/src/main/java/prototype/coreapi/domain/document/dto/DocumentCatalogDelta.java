@@ -0,0 +1,26 @@
+package prototype.coreapi.domain.document.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+
+/**
+ * A change to the document catalog: a document entering a status, leaving one, or moving between two.
+ */
+public record DocumentCatalogDelta(
+        String category,
+        IndexingStatus from, // null when the document was created
+        IndexingStatus to // null when the document was deleted
+) {
+    public static DocumentCatalogDelta created(String category, IndexingStatus status) {
+        return new DocumentCatalogDelta(category, null, status);
+    }
+
+    public static DocumentCatalogDelta deleted(String category, IndexingStatus status) {
+        return new DocumentCatalogDelta(category, status, null);
+    }
+
+    @JsonIgnore
+    public boolean isNoop() {
+        return from == to;
+    }
+}
@@ -0,0 +1,12 @@
+package prototype.coreapi.domain.document.dto;
+
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+
+import java.util.Map;
+
+public record DocumentCatalogStats(
+        long total,
+        Map<IndexingStatus, Long> byStatus,
+        Map<String, Long> byCategory
+) {
+}
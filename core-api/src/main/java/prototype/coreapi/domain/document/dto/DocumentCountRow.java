@@ -0,0 +1,10 @@
+package prototype.coreapi.domain.document.dto;
+
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+
+public record DocumentCountRow(
+        String category,
+        IndexingStatus status,
+        long count
+) {
+}
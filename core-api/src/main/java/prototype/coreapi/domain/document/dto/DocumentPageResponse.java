@@ -0,0 +1,9 @@
+package prototype.coreapi.domain.document.dto;
+
+import java.util.List;
+
+public record DocumentPageResponse(
+        List<DocumentResponse> items,
+        String nextCursor // null on the last page
+) {
+}
@@ -1,6 +1,7 @@
 package prototype.coreapi.domain.document.dto;
 
 import prototype.coreapi.domain.document.entity.Document;
+import prototype.coreapi.domain.document.enums.IndexingStage;
 import prototype.coreapi.domain.document.enums.IndexingStatus;
 
 import java.time.LocalDateTime;
@@ -12,6 +13,9 @@ public record DocumentResponse(
         long size,
         String category,
         IndexingStatus status,
+        IndexingStage stage,
+        int progress, // percent
+        int revision,
         LocalDateTime createdAt
 ) {
     public static DocumentResponse from(Document document) {
@@ -22,6 +26,9 @@ public record DocumentResponse(
                 document.getSize(),
                 document.getCategory(),
                 document.getStatus(),
+                document.getStage(),
+                document.getProgress(),
+                document.getRevision(),
                 document.getCreatedAt()
         );
     }
@@ -0,0 +1,13 @@
+package prototype.coreapi.domain.document.dto;
+
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+
+/**
+ * Optional filters of the document list. Null fields do not filter.
+ */
+public record DocumentSearchCondition(
+        String category,
+        IndexingStatus status,
+        String type
+) {
+}
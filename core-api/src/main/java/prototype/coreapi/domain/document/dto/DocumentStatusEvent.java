@@ -0,0 +1,10 @@
+package prototype.coreapi.domain.document.dto;
+
+/**
+ * A document status change, numbered by a cluster-wide sequence so clients can resume after reconnecting.
+ */
+public record DocumentStatusEvent(
+        long sequence,
+        DocumentResponse document
+) {
+}
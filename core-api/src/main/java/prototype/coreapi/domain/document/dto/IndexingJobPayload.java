@@ -2,11 +2,16 @@ package prototype.coreapi.domain.document.dto;
 
 import lombok.Builder;
 
+import java.util.List;
+
 @Builder
 public record IndexingJobPayload(
         Long documentId,
         String storedName,
         String originalFilename,
-        String category
+        String category,
+        Long sourceDocumentId, // Already indexed document with identical content, if any
+        List<Integer> pages, // Pages to re-index (1-based) after a revision; the whole document if null
+        Integer pageCount // Page count of the revision; chunks of later pages are removed
 ) {
 }
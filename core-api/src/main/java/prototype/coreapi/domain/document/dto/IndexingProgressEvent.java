@@ -0,0 +1,82 @@
+package prototype.coreapi.domain.document.dto;
+
+import prototype.coreapi.domain.document.enums.IndexingStage;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+
+import java.util.Map;
+
+/**
+ * A progress report from an indexing worker, read from the progress stream.
+ * Counters are cumulative, so only the latest event of a document matters.
+ */
+public record IndexingProgressEvent(
+        Long documentId,
+        IndexingStage stage, // null if unchanged
+        int pagesParsed,
+        int totalPages,
+        int chunksEmbedded,
+        int chunksWritten,
+        int totalChunks,
+        IndexingStatus status // SUCCESS or FAILURE once the job has ended, null otherwise
+) {
+    // Share of the overall progress attributed to each step, in percent.
+    private static final int PARSING_WEIGHT = 10;
+    private static final int EMBEDDING_WEIGHT = 70;
+    private static final int WRITING_WEIGHT = 20;
+
+    public static IndexingProgressEvent from(Map<String, String> fields) {
+        return new IndexingProgressEvent(
+                Long.valueOf(fields.get("documentId")),
+                parseEnum(IndexingStage.class, fields.get("stage")),
+                parseInt(fields.get("pagesParsed")),
+                parseInt(fields.get("totalPages")),
+                parseInt(fields.get("chunksEmbedded")),
+                parseInt(fields.get("chunksWritten")),
+                parseInt(fields.get("totalChunks")),
+                parseEnum(IndexingStatus.class, fields.get("status"))
+        );
+    }
+
+    /**
+     * @return The overall progress in percent, from 0 to 100.
+     */
+    public int percent() {
+        if (status == IndexingStatus.SUCCESS) {
+            return 100;
+        }
+        int percent = share(pagesParsed, totalPages, PARSING_WEIGHT)
+                + share(chunksEmbedded, totalChunks, EMBEDDING_WEIGHT)
+                + share(chunksWritten, totalChunks, WRITING_WEIGHT);
+        // 100 is reserved for a completed job.
+        return Math.min(percent, 99);
+    }
+
+    /**
+     * Combines this event with a newer one of the same document.
+     * The newer counters win, but a terminal status is never lost.
+     */
+    public IndexingProgressEvent merge(IndexingProgressEvent newer) {
+        return new IndexingProgressEvent(
+                documentId,
+                newer.stage != null ? newer.stage : stage,
+                newer.pagesParsed,
+                newer.totalPages,
+                newer.chunksEmbedded,
+                newer.chunksWritten,
+                newer.totalChunks,
+                newer.status != null ? newer.status : status
+        );
+    }
+
+    private static int share(int done, int total, int weight) {
+        return total <= 0 ? 0 : (int) ((long) Math.min(done, total) * weight / total);
+    }
+
+    private static int parseInt(String value) {
+        return value == null || value.isEmpty() ? 0 : Integer.parseInt(value);
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        return value == null || value.isEmpty() ? null : Enum.valueOf(type, value);
+    }
+}
@@ -0,0 +1,11 @@
+package prototype.coreapi.domain.document.dto;
+
+import prototype.coreapi.domain.document.enums.JobLane;
+
+public record JobQueueStats(
+        JobLane lane,
+        String stream,
+        long length,     // Entries retained in the stream
+        long pending     // Delivered to a worker but not yet acknowledged
+) {
+}
@@ -0,0 +1,12 @@
+package prototype.coreapi.domain.document.dto;
+
+/**
+ * The text of one PDF page, as written to a page-text artifact.
+ * @param page The 1-based page number.
+ * @param text The extracted text.
+ */
+public record PageText(
+        int page,
+        String text
+) {
+}
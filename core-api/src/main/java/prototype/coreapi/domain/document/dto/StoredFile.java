@@ -0,0 +1,15 @@
+package prototype.coreapi.domain.document.dto;
+
+import java.nio.file.Path;
+
+/**
+ * Describes a file that has been written to document storage.
+ * Files are content-addressed: the stored name is derived from the SHA-256 hash of the content.
+ */
+public record StoredFile(
+        String storedName,
+        Path path,
+        String contentHash,
+        long size
+) {
+}
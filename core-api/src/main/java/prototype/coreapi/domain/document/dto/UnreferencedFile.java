@@ -0,0 +1,10 @@
+package prototype.coreapi.domain.document.dto;
+
+/**
+ * A stored file that no document pointed to when it was marked, waiting to be reclaimed.
+ */
+public record UnreferencedFile(
+        String storedName,
+        String path
+) {
+}
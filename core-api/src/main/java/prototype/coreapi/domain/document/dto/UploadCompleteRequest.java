@@ -0,0 +1,32 @@
+package prototype.coreapi.domain.document.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Schema(description = "Request to complete a chunked document upload")
+public class UploadCompleteRequest {
+
+    @NotEmpty
+    @Valid
+    @Schema(description = "Checksums of all parts, as computed by the client")
+    private List<PartChecksum> parts;
+
+    @Getter
+    public static class PartChecksum {
+
+        @Positive
+        @Schema(description = "1-based part number", example = "1")
+        private int partNumber;
+
+        @NotBlank
+        @Schema(description = "SHA-256 of the part content (hex)")
+        private String checksum;
+    }
+}
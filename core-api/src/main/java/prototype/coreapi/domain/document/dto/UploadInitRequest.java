@@ -0,0 +1,22 @@
+package prototype.coreapi.domain.document.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+
+@Getter
+@Schema(description = "Request to start a chunked document upload")
+public class UploadInitRequest {
+
+    @NotBlank
+    @Schema(description = "Original file name", example = "handbook.pdf")
+    private String filename;
+
+    @Schema(description = "Document category", example = "current")
+    private String category;
+
+    @Positive
+    @Schema(description = "Total file size in bytes", example = "73400320")
+    private long totalSize;
+}
@@ -0,0 +1,14 @@
+package prototype.coreapi.domain.document.dto;
+
+import java.util.List;
+
+public record UploadSessionResponse(
+        String uploadId,
+        String filename,
+        String category,
+        long totalSize,
+        long partSize,
+        int partCount,
+        List<UploadedPart> uploadedParts
+) {
+}
@@ -0,0 +1,11 @@
+package prototype.coreapi.domain.document.dto;
+
+/**
+ * A part of a chunked upload that has been written to disk.
+ */
+public record UploadedPart(
+        int partNumber,
+        String checksum, // SHA-256 of the part content (hex)
+        long size
+) {
+}
@@ -3,6 +3,8 @@ package prototype.coreapi.domain.document.entity;
 import lombok.*;
 import org.springframework.data.relational.core.mapping.Table;
 import prototype.coreapi.domain.BaseEntity;
+import prototype.coreapi.domain.document.dto.StoredFile;
+import prototype.coreapi.domain.document.enums.IndexingStage;
 import prototype.coreapi.domain.document.enums.IndexingStatus;
 
 @Table(name = "documents")
@@ -14,7 +16,7 @@ public class Document extends BaseEntity {
 
     private String name; // User-provided original file name
 
-    private String storedName; // UUID-based name for internal storage
+    private String storedName; // Content-addressed name for internal storage
 
     private String path; // Full path of the saved file
 
@@ -22,11 +24,42 @@ public class Document extends BaseEntity {
 
     private long size; // File size (bytes)
 
+    private String contentHash; // SHA-256 of the file content (hex)
+
     private String category; // Document category for filtering
 
     private IndexingStatus status; // Indexing process status
 
+    private IndexingStage stage; // Step the indexing worker last reported
+
+    private int progress; // Overall indexing progress (percent)
+
+    @Builder.Default
+    private int revision = 1; // Incremented by every uploaded revision
+
     public void updateStatus(IndexingStatus status) {
         this.status = status;
+        if (status == IndexingStatus.PENDING) {
+            // A new indexing run starts from scratch
+            this.stage = null;
+            this.progress = 0;
+        } else if (status == IndexingStatus.SUCCESS) {
+            this.stage = IndexingStage.DONE;
+            this.progress = 100;
+        }
+    }
+
+    /**
+     * Replaces the file of the document with a new revision and resets it for indexing.
+     */
+    public void revise(String name, StoredFile storedFile, String type) {
+        this.name = name;
+        this.storedName = storedFile.storedName();
+        this.path = storedFile.path().toString();
+        this.type = type;
+        this.size = storedFile.size();
+        this.contentHash = storedFile.contentHash();
+        this.revision++;
+        updateStatus(IndexingStatus.PENDING);
     }
 }
\ No newline at end of file
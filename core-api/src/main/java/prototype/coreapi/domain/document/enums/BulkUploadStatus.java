@@ -0,0 +1,7 @@
+package prototype.coreapi.domain.document.enums;
+
+public enum BulkUploadStatus {
+    CREATED,   // 신규 문서 등록 및 색인 요청
+    DUPLICATE, // 동일 카테고리에 같은 내용의 문서가 이미 존재
+    FAILED     // 저장 또는 등록 실패
+}
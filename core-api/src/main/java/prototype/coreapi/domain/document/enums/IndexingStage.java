@@ -0,0 +1,8 @@
+package prototype.coreapi.domain.document.enums;
+
+public enum IndexingStage {
+    PARSING,   // 페이지 텍스트 추출 중
+    EMBEDDING, // 청크 임베딩 중
+    WRITING,   // 색인 저장 중
+    DONE       // 색인 완료
+}
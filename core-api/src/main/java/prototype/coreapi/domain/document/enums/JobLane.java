@@ -0,0 +1,18 @@
+package prototype.coreapi.domain.document.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Redis Streams used as job lanes for the indexing workers, in priority order.
+ * Workers drain a lane completely before taking work from the next one.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum JobLane {
+    DEINDEX("document-deindexing-stream"),  // 문서 삭제에 따른 색인 제거
+    UPLOAD("document-indexing-stream"),     // 신규 업로드 색인
+    REINDEX("document-reindexing-stream");  // 기존 문서 재색인
+
+    private final String streamKey;
+}
@@ -0,0 +1,26 @@
+package prototype.coreapi.domain.document.repository;
+
+import prototype.coreapi.domain.document.dto.DocumentCatalogDelta;
+import prototype.coreapi.domain.document.dto.IndexingProgressEvent;
+import prototype.coreapi.domain.document.entity.Document;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+public interface DocumentBulkRepository {
+
+    /**
+     * Inserts all documents with a single prepared statement whose bindings are sent in one batch.
+     * @param documents The documents to insert.
+     * @return A Flux emitting the generated IDs, in the order of the given documents.
+     */
+    Flux<Long> insertAll(List<Document> documents);
+
+    /**
+     * Applies indexing progress reports with a single prepared statement whose bindings are sent in one batch.
+     * Progress never moves backwards within an indexing run, so reports applied out of order are harmless.
+     * @param events The latest progress report of each document.
+     * @return A Flux emitting the status transition of every updated document, including unchanged ones.
+     */
+    Flux<DocumentCatalogDelta> updateProgress(List<IndexingProgressEvent> events);
+}
@@ -0,0 +1,91 @@
+package prototype.coreapi.domain.document.repository;
+
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import prototype.coreapi.domain.document.dto.DocumentCatalogDelta;
+import prototype.coreapi.domain.document.dto.IndexingProgressEvent;
+import prototype.coreapi.domain.document.entity.Document;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class DocumentBulkRepositoryImpl implements DocumentBulkRepository {
+
+    private static final String INSERT_DOCUMENT = """
+            INSERT INTO documents (name, stored_name, path, type, size, content_hash, category, status)
+            VALUES ($1, $2, $3, $4, $5, $6, $7, $8)
+            """;
+    private static final String UPDATE_PROGRESS = """
+            UPDATE documents AS d
+            SET status = COALESCE($1, d.status),
+                stage = COALESCE($2, d.stage),
+                progress = GREATEST(d.progress, $3)
+            FROM (SELECT id, status FROM documents WHERE id = $4 FOR UPDATE) AS previous
+            WHERE d.id = previous.id
+            RETURNING d.category, previous.status AS previous_status, d.status
+            """;
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Flux<Long> insertAll(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(INSERT_DOCUMENT).returnGeneratedValues("id");
+            for (int i = 0; i < documents.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                Document document = documents.get(i);
+                statement.bind(0, document.getName())
+                        .bind(1, document.getStoredName())
+                        .bind(2, document.getPath())
+                        .bind(3, document.getType())
+                        .bind(4, document.getSize())
+                        .bind(7, document.getStatus().name());
+                bindNullable(statement, 5, document.getContentHash());
+                bindNullable(statement, 6, document.getCategory());
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.map((row, metadata) -> row.get("id", Long.class)));
+        });
+    }
+
+    @Override
+    public Flux<DocumentCatalogDelta> updateProgress(List<IndexingProgressEvent> events) {
+        if (events.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(UPDATE_PROGRESS);
+            for (int i = 0; i < events.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                IndexingProgressEvent event = events.get(i);
+                bindNullable(statement, 0, event.status() == null ? null : event.status().name());
+                bindNullable(statement, 1, event.stage() == null ? null : event.stage().name());
+                statement.bind(2, event.percent())
+                        .bind(3, event.documentId());
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.map((row, metadata) -> new DocumentCatalogDelta(
+                            row.get("category", String.class),
+                            IndexingStatus.valueOf(row.get("previous_status", String.class)),
+                            IndexingStatus.valueOf(row.get("status", String.class)))));
+        });
+    }
+
+    private static void bindNullable(Statement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index, String.class);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+}
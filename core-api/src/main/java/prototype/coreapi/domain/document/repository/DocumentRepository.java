@@ -2,13 +2,24 @@ package prototype.coreapi.domain.document.repository;
 
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import prototype.coreapi.domain.document.dto.DocumentCountRow;
 import prototype.coreapi.domain.document.entity.Document;
 import reactor.core.publisher.Flux;
 
-public interface DocumentRepository extends ReactiveCrudRepository<Document, Long> {
+import java.util.Collection;
 
-    @Query("SELECT DISTINCT category FROM documents WHERE category IS NOT NULL ORDER BY category")
-    Flux<String> findDistinctCategories();
+public interface DocumentRepository extends ReactiveCrudRepository<Document, Long>, DocumentBulkRepository, DocumentSearchRepository {
 
-    Flux<Document> findAllByOrderByCreatedAtDesc();
+    @Query("SELECT category, status, COUNT(*) AS count FROM documents GROUP BY category, status")
+    Flux<DocumentCountRow> countByCategoryAndStatus();
+
+    Flux<Document> findAllByContentHash(String contentHash);
+
+    Flux<Document> findAllByContentHashIn(Collection<String> contentHashes);
+
+    @Query("SELECT DISTINCT stored_name FROM documents WHERE stored_name IN (:storedNames)")
+    Flux<String> findReferencedStoredNames(Collection<String> storedNames);
+
+    @Query("SELECT DISTINCT path FROM documents")
+    Flux<String> findAllStoredPaths();
 }
@@ -0,0 +1,17 @@
+package prototype.coreapi.domain.document.repository;
+
+import prototype.coreapi.domain.document.dto.DocumentSearchCondition;
+import prototype.coreapi.domain.document.entity.Document;
+import reactor.core.publisher.Flux;
+
+public interface DocumentSearchRepository {
+
+    /**
+     * Finds one page of documents, newest first, using the ID as a keyset cursor.
+     * @param condition The filters to apply.
+     * @param beforeId Only return documents with a smaller ID, or null for the first page.
+     * @param limit The maximum number of documents to return.
+     * @return A Flux emitting the documents in descending ID order.
+     */
+    Flux<Document> findPage(DocumentSearchCondition condition, Long beforeId, int limit);
+}
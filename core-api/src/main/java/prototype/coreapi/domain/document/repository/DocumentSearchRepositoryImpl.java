@@ -0,0 +1,40 @@
+package prototype.coreapi.domain.document.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import prototype.coreapi.domain.document.dto.DocumentSearchCondition;
+import prototype.coreapi.domain.document.entity.Document;
+import reactor.core.publisher.Flux;
+
+@RequiredArgsConstructor
+public class DocumentSearchRepositoryImpl implements DocumentSearchRepository {
+
+    private final R2dbcEntityTemplate entityTemplate;
+
+    @Override
+    public Flux<Document> findPage(DocumentSearchCondition condition, Long beforeId, int limit) {
+        Criteria criteria = Criteria.empty();
+        if (beforeId != null) {
+            criteria = criteria.and("id").lessThan(beforeId);
+        }
+        if (condition.category() != null) {
+            criteria = criteria.and("category").is(condition.category());
+        }
+        if (condition.status() != null) {
+            criteria = criteria.and("status").is(condition.status().name());
+        }
+        if (condition.type() != null) {
+            criteria = criteria.and("type").is(condition.type());
+        }
+
+        Query query = Query.query(criteria)
+                .sort(Sort.by(Sort.Direction.DESC, "id"))
+                .limit(limit);
+        return entityTemplate.select(Document.class)
+                .matching(query)
+                .all();
+    }
+}
@@ -0,0 +1,74 @@
+package prototype.coreapi.domain.document.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import prototype.coreapi.domain.document.dto.UnreferencedFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Stored files waiting to be reclaimed by the file sweeper.
+ * Marking is idempotent and keeps the original mark time, so re-marking never postpones reclamation.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UnreferencedFileRepository {
+
+    private static final String MARK = """
+            INSERT INTO unreferenced_files (stored_name, path)
+            VALUES ($1, $2)
+            ON CONFLICT (stored_name) DO NOTHING
+            """;
+    // The cutoff is computed by the database, on the same clock that set marked_at.
+    private static final String FIND_MARKED_LONGER_THAN = """
+            SELECT stored_name, path FROM unreferenced_files
+            WHERE marked_at < CURRENT_TIMESTAMP - $1 * INTERVAL '1 second'
+            ORDER BY marked_at
+            LIMIT $2
+            """;
+    // Unmarks the file and counts, in the same statement, the documents that point to it again.
+    private static final String RELEASE = """
+            DELETE FROM unreferenced_files
+            WHERE stored_name = $1
+            RETURNING (SELECT COUNT(*) FROM documents WHERE stored_name = $1) AS reference_count
+            """;
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<Void> mark(String storedName, String path) {
+        return databaseClient.sql(MARK)
+                .bind(0, storedName)
+                .bind(1, path)
+                .then();
+    }
+
+    /**
+     * @param age Only files marked for longer than this.
+     * @param limit The maximum number of files to return.
+     * @return The oldest marked files.
+     */
+    public Flux<UnreferencedFile> findMarkedLongerThan(Duration age, int limit) {
+        return databaseClient.sql(FIND_MARKED_LONGER_THAN)
+                .bind(0, age.toSeconds())
+                .bind(1, limit)
+                .map((row, metadata) -> new UnreferencedFile(
+                        row.get("stored_name", String.class),
+                        row.get("path", String.class)))
+                .all();
+    }
+
+    /**
+     * Takes a marked file for reclamation. Only one caller across all nodes gets a given file.
+     * @param storedName The stored name of the file.
+     * @return A Mono emitting the number of documents now pointing to the file, or empty if another caller took it.
+     */
+    public Mono<Long> release(String storedName) {
+        return databaseClient.sql(RELEASE)
+                .bind(0, storedName)
+                .map((row, metadata) -> row.get("reference_count", Long.class))
+                .one();
+    }
+}
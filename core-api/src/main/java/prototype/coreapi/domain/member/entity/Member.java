@@ -44,6 +44,10 @@ public class Member extends BaseEntity implements UserDetails {
         this.password = encoder.encode(rawPassword);
     }
 
+    public void updateEncodedPassword(String encodedPassword) {
+        this.password = encodedPassword;
+    }
+
     public void updateLastSignInAt() {
         this.lastSignInAt = LocalDateTime.now();
     }
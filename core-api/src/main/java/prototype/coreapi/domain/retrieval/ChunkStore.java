@@ -0,0 +1,165 @@
+package prototype.coreapi.domain.retrieval;
+
+import prototype.coreapi.domain.retrieval.dto.RetrievedChunk;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The chunks known to the retrieval index, addressed by dense int ids in insertion order.
+ * Keeps what is needed to cite a chunk, the segment holding it and its text,
+ * and the chunks of every document for deletion. Not thread-safe: guarded by the owning index's lock.
+ */
+final class ChunkStore {
+
+    private final List<StoredChunk> chunks = new ArrayList<>();
+    private final Map<String, Integer> idsByChunkId = new HashMap<>();
+    private final Map<Long, List<Integer>> idsByDocument = new HashMap<>();
+    private final Map<Long, String> displayNames = new HashMap<>();
+    private final BitSet liveIds = new BitSet();
+    private int liveChunks;
+
+    /**
+     * @return The id the next chunk will be assigned.
+     */
+    int nextId() {
+        return chunks.size();
+    }
+
+    /**
+     * Adds a chunk.
+     * @param segment The segment holding the chunk.
+     * @param localId The id of the chunk in the segment.
+     * @return The id assigned to the chunk.
+     */
+    int add(String chunkId, long documentId, int page, String displayName, IndexSegment segment, int localId) {
+        int id = chunks.size();
+        chunks.add(new StoredChunk(chunkId, documentId, page, segment, localId));
+        idsByChunkId.put(chunkId, id);
+        idsByDocument.computeIfAbsent(documentId, d -> new ArrayList<>()).add(id);
+        if (displayName != null) {
+            displayNames.put(documentId, displayName);
+        }
+        liveIds.set(id);
+        liveChunks++;
+        return id;
+    }
+
+    void clear() {
+        chunks.clear();
+        idsByChunkId.clear();
+        idsByDocument.clear();
+        displayNames.clear();
+        liveIds.clear();
+        liveChunks = 0;
+    }
+
+    /**
+     * @return The id of the live chunk with the given external ID, or -1.
+     */
+    int idOf(String chunkId) {
+        return idsByChunkId.getOrDefault(chunkId, -1);
+    }
+
+    /**
+     * Removes a chunk from the lookups; its slot stays allocated so ids remain stable.
+     */
+    void remove(int id) {
+        StoredChunk chunk = chunks.get(id);
+        if (chunk == null) {
+            return;
+        }
+        chunks.set(id, null);
+        liveIds.clear(id);
+        idsByChunkId.remove(chunk.chunkId(), id);
+        List<Integer> documentIds = idsByDocument.get(chunk.documentId());
+        if (documentIds != null) {
+            documentIds.remove((Integer) id);
+            if (documentIds.isEmpty()) {
+                idsByDocument.remove(chunk.documentId());
+                displayNames.remove(chunk.documentId());
+            }
+        }
+        liveChunks--;
+    }
+
+    /**
+     * Points a chunk to the segment it was merged into.
+     */
+    void move(int id, IndexSegment segment, int localId) {
+        StoredChunk chunk = chunks.get(id);
+        chunks.set(id, new StoredChunk(chunk.chunkId(), chunk.documentId(), chunk.page(), segment, localId));
+    }
+
+    /**
+     * @return The ids of the live chunks of the document.
+     */
+    List<Integer> idsOf(long documentId) {
+        return List.copyOf(idsByDocument.getOrDefault(documentId, List.of()));
+    }
+
+    /**
+     * @return The documents with live chunks.
+     */
+    List<Long> documentIds() {
+        return List.copyOf(idsByDocument.keySet());
+    }
+
+    boolean isLive(int id) {
+        return liveIds.get(id);
+    }
+
+    IndexSegment segmentOf(int id) {
+        return chunks.get(id).segment();
+    }
+
+    int localIdOf(int id) {
+        return chunks.get(id).localId();
+    }
+
+    String chunkIdOf(int id) {
+        return chunks.get(id).chunkId();
+    }
+
+    long documentIdOf(int id) {
+        return chunks.get(id).documentId();
+    }
+
+    int pageOf(int id) {
+        StoredChunk chunk = chunks.get(id);
+        return chunk == null ? 0 : chunk.page();
+    }
+
+    void rename(long documentId, String displayName) {
+        if (idsByDocument.containsKey(documentId)) {
+            displayNames.put(documentId, displayName);
+        }
+    }
+
+    RetrievedChunk toRetrieved(int id, float score) {
+        StoredChunk chunk = chunks.get(id);
+        return new RetrievedChunk(chunk.chunkId(), chunk.documentId(), displayNames.get(chunk.documentId()),
+                chunk.segment().category(), chunk.page(), chunk.segment().text(chunk.localId()), score);
+    }
+
+    /**
+     * @return The display names of the documents, by document id.
+     */
+    Map<Long, String> displayNames() {
+        return Map.copyOf(displayNames);
+    }
+
+    int liveChunks() {
+        return liveChunks;
+    }
+
+    int documentCount() {
+        return idsByDocument.size();
+    }
+
+    private record StoredChunk(String chunkId, long documentId, int page, IndexSegment segment, int localId) {
+    }
+}
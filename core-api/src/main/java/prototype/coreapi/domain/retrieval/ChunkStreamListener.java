@@ -0,0 +1,102 @@
+package prototype.coreapi.domain.retrieval;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.stream.StreamReceiver;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.dto.ChunkEvent;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static prototype.coreapi.domain.retrieval.RetrievalIndexBackfill.STREAM_START;
+
+/**
+ * Feeds the retrieval index from the chunk stream.
+ * Every node reads the whole stream without a consumer group, starting after the last entry of the index's snapshot,
+ * or from the beginning without one, and resumes from the last applied entry after a connection failure.
+ * Entries are applied in batches to keep lock hand-offs rare.
+ * The stream is trimmed up to the oldest snapshot of the nodes (see {@link ChunkStreamTrimmer}); a node that would
+ * resume before the trim point first rebuilds its index from Elasticsearch (see {@link RetrievalIndexBackfill}).
+ */
+@Slf4j
+@Component
+public class ChunkStreamListener {
+
+    private final RetrievalIndex retrievalIndex;
+    private final RetrievalProperties retrievalProperties;
+    private final RetrievalIndexBackfill backfill;
+    private final StreamReceiver<String, MapRecord<String, String, String>> streamReceiver;
+    private Disposable subscription;
+
+    public ChunkStreamListener(RetrievalIndex retrievalIndex,
+                               RetrievalProperties retrievalProperties,
+                               RetrievalIndexBackfill backfill,
+                               ReactiveRedisConnectionFactory connectionFactory) {
+        this.retrievalIndex = retrievalIndex;
+        this.retrievalProperties = retrievalProperties;
+        this.backfill = backfill;
+        this.streamReceiver = StreamReceiver.create(connectionFactory, StreamReceiver.StreamReceiverOptions.builder()
+                .pollTimeout(Duration.ofSeconds(2))
+                .batchSize(retrievalProperties.getReadBatchSize())
+                .build());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!retrievalProperties.isEnabled()) {
+            return;
+        }
+        String stream = retrievalProperties.getChunkStream();
+        Flux<List<MapRecord<String, String, String>>> follow = Flux.defer(() -> streamReceiver.receive(StreamOffset.create(
+                        stream, ReadOffset.from(Objects.requireNonNullElse(retrievalIndex.lastEventId(), STREAM_START)))))
+                .bufferTimeout(retrievalProperties.getReadBatchSize(), Duration.ofMillis(100))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)));
+
+        subscription = backfill.catchUp()
+                .doOnSuccess(v -> log.info("Following stream {} for the retrieval index from {}", stream,
+                        Objects.requireNonNullElse(retrievalIndex.lastEventId(), STREAM_START)))
+                .thenMany(follow)
+                // Applying a batch waits for its vectors to be added to the graph, so keep it off the Redis event loop.
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(this::apply);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private void apply(List<MapRecord<String, String, String>> records) {
+        List<ChunkEvent> events = new ArrayList<>(records.size());
+        for (MapRecord<String, String, String> record : records) {
+            try {
+                events.add(ChunkEvent.from(record.getValue()));
+            } catch (RuntimeException e) {
+                log.warn("Discarding malformed chunk event {}: {}", record.getId(), record.getValue(), e);
+            }
+        }
+        try {
+            retrievalIndex.apply(events, records.getLast().getId().getValue());
+            log.debug("Applied {} chunk events up to {}", events.size(), retrievalIndex.lastEventId());
+        } catch (RuntimeException e) {
+            // Keep consuming: one bad batch must not stop the index from following the stream.
+            log.error("Failed to apply {} chunk events ending at {}", events.size(), records.getLast().getId(), e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package prototype.coreapi.domain.retrieval;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Trims the chunk stream up to the oldest snapshot of the nodes, so it does not keep every chunk ever indexed.
+ * Each node reports the stream entry of its last snapshot, from which it resumes after a restart, under a node ID
+ * kept in its index directory; the stream is then trimmed by MINID to the oldest reported entry, and the trim point
+ * is recorded. Reports older than the snapshot lease are dropped, so a node that is gone for good does not hold the
+ * trim back forever.
+ * A node starting without a snapshot, or with one older than the trim point, can no longer rebuild its index from
+ * the stream alone and rebuilds it from Elasticsearch instead (see {@link RetrievalIndexBackfill}).
+ */
+@Slf4j
+@Component
+public class ChunkStreamTrimmer {
+
+    private static final String NODE_ID_FILE = "node-id";
+
+    // Reports the snapshot of ARGV[1] at ARGV[2], drops reports older than the lease and trims to the oldest one.
+    // Stream IDs are compared as <milliseconds>-<sequence> pairs.
+    private static final RedisScript<Long> TRIM_SCRIPT = RedisScript.of("""
+            local function parse(id)
+                local ms, seq = string.match(id, '^(%d+)-(%d+)$')
+                return tonumber(ms), tonumber(seq)
+            end
+            local function older(a, b)
+                local ams, aseq = parse(a)
+                local bms, bseq = parse(b)
+                return ams < bms or (ams == bms and aseq < bseq)
+            end
+            local now = tonumber(ARGV[3])
+            redis.call('HSET', KEYS[2], ARGV[1], ARGV[2] .. '|' .. now)
+            local oldest
+            local reports = redis.call('HGETALL', KEYS[2])
+            for i = 1, #reports, 2 do
+                local id, reported = string.match(reports[i + 1], '^(.+)|(%d+)$')
+                if id == nil or now - tonumber(reported) > tonumber(ARGV[4]) then
+                    redis.call('HDEL', KEYS[2], reports[i])
+                elseif oldest == nil or older(id, oldest) then
+                    oldest = id
+                end
+            end
+            redis.call('SET', KEYS[3], oldest)
+            return redis.call('XTRIM', KEYS[1], 'MINID', oldest)
+            """, Long.class);
+
+    private final RetrievalIndex retrievalIndex;
+    private final RetrievalProperties retrievalProperties;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final String nodeId;
+
+    public ChunkStreamTrimmer(RetrievalIndex retrievalIndex, RetrievalProperties retrievalProperties,
+                              ReactiveStringRedisTemplate redisTemplate) {
+        this.retrievalIndex = retrievalIndex;
+        this.retrievalProperties = retrievalProperties;
+        this.redisTemplate = redisTemplate;
+        this.nodeId = readNodeId(retrievalIndex.indexDirectory());
+    }
+
+    /**
+     * @return The key holding the stream ID the chunk stream was last trimmed to.
+     */
+    static String trimmedToKey(String stream) {
+        return stream + ":trimmed-to";
+    }
+
+    /**
+     * Compares two stream IDs of the form {@code <milliseconds>-<sequence>}.
+     */
+    static int compareIds(String a, String b) {
+        int aDash = a.indexOf('-');
+        int bDash = b.indexOf('-');
+        int byTime = Long.compare(Long.parseLong(a.substring(0, aDash)), Long.parseLong(b.substring(0, bDash)));
+        return byTime != 0 ? byTime
+                : Long.compare(Long.parseLong(a.substring(aDash + 1)), Long.parseLong(b.substring(bDash + 1)));
+    }
+
+    @Scheduled(fixedDelayString = "${retrieval.snapshot-interval:5m}", initialDelayString = "${retrieval.snapshot-interval:5m}")
+    public Mono<Void> trim() {
+        String snapshotEventId = retrievalIndex.snapshotEventId();
+        if (!retrievalProperties.isEnabled() || snapshotEventId == null) {
+            return Mono.empty();
+        }
+        String stream = retrievalProperties.getChunkStream();
+        return redisTemplate.execute(TRIM_SCRIPT,
+                        List.of(stream, stream + ":snapshots", trimmedToKey(stream)),
+                        List.of(nodeId, snapshotEventId, String.valueOf(System.currentTimeMillis()),
+                                String.valueOf(retrievalProperties.getSnapshotLease().toMillis())))
+                .next()
+                .doOnNext(trimmed -> {
+                    if (trimmed > 0) {
+                        log.info("Trimmed {} entries from the chunk stream", trimmed);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to trim the chunk stream", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static String readNodeId(Path indexDirectory) {
+        Path file = indexDirectory.resolve(NODE_ID_FILE);
+        try {
+            if (Files.exists(file)) {
+                return Files.readString(file, StandardCharsets.UTF_8).trim();
+            }
+            String nodeId = UUID.randomUUID().toString();
+            Files.writeString(file, nodeId, StandardCharsets.UTF_8);
+            return nodeId;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the node ID in " + indexDirectory, e);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package prototype.coreapi.domain.retrieval;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.dto.ChunkEvent;
+import prototype.coreapi.domain.retrieval.enums.ChunkOperation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads the chunks of the Elasticsearch index written by the indexing workers, to rebuild a retrieval index the chunk
+ * stream cannot catch up. The index is scrolled in batches, each turned into the UPSERT events the workers would have
+ * published. References to near-duplicate chunks are skipped, as the workers do not publish them either.
+ */
+@Slf4j
+@Component
+public class ElasticsearchChunkReader {
+
+    private static final String SCROLL_KEEP_ALIVE = "5m";
+    // A batch of full-precision vectors is far larger than the default buffer limit of the codecs
+    private static final int MAX_RESPONSE_SIZE = (int) DataSize.ofMegabytes(256).toBytes();
+
+    private final RetrievalProperties retrievalProperties;
+    private final WebClient webClient;
+
+    public ElasticsearchChunkReader(RetrievalProperties retrievalProperties, WebClient.Builder webClientBuilder) {
+        this.retrievalProperties = retrievalProperties;
+        WebClient.Builder builder = webClientBuilder.clone()
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_RESPONSE_SIZE));
+        if (StringUtils.hasText(retrievalProperties.getBackfillUrl())) {
+            builder.baseUrl(retrievalProperties.getBackfillUrl());
+        }
+        if (StringUtils.hasText(retrievalProperties.getBackfillPassword())) {
+            builder.defaultHeaders(headers -> headers.setBasicAuth(retrievalProperties.getBackfillUsername(),
+                    retrievalProperties.getBackfillPassword()));
+        }
+        this.webClient = builder.build();
+    }
+
+    /**
+     * @return Whether an Elasticsearch URL is configured.
+     */
+    public boolean isEnabled() {
+        return StringUtils.hasText(retrievalProperties.getBackfillUrl());
+    }
+
+    /**
+     * Reads every canonical chunk of the index.
+     * @return A Flux of batches of UPSERT events, in no particular order.
+     */
+    public Flux<List<ChunkEvent>> readAll() {
+        Map<String, Object> search = Map.of(
+                "size", retrievalProperties.getBackfillBatchSize(),
+                "sort", List.of("_doc"),
+                "_source", List.of("text", "vector", "metadata"),
+                "query", Map.of("bool", Map.of("must_not", List.of(
+                        Map.of("exists", Map.of("field", "duplicate_of")))))
+        );
+        AtomicReference<String> scrollId = new AtomicReference<>();
+        return post("/" + retrievalProperties.getBackfillIndex() + "/_search?scroll=" + SCROLL_KEEP_ALIVE, search)
+                .expand(page -> page.path("hits").path("hits").isEmpty()
+                        ? Mono.empty()
+                        : post("/_search/scroll", Map.of("scroll", SCROLL_KEEP_ALIVE, "scroll_id", page.path("_scroll_id").asText())))
+                .doOnNext(page -> scrollId.set(page.path("_scroll_id").asText(null)))
+                .map(page -> page.path("hits").path("hits"))
+                .takeWhile(hits -> !hits.isEmpty())
+                .map(ElasticsearchChunkReader::toEvents)
+                .doFinally(signal -> clearScroll(scrollId.get()));
+    }
+
+    private Mono<JsonNode> post(String uri, Map<String, Object> body) {
+        return webClient.post()
+                .uri(uri)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(JsonNode.class);
+    }
+
+    /**
+     * Frees the search context ahead of its keep-alive.
+     */
+    private void clearScroll(String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        webClient.method(HttpMethod.DELETE)
+                .uri("/_search/scroll")
+                .bodyValue(Map.of("scroll_id", List.of(scrollId)))
+                .retrieve()
+                .toBodilessEntity()
+                .subscribe(null, e -> log.debug("Failed to clear the Elasticsearch scroll", e));
+    }
+
+    private static List<ChunkEvent> toEvents(JsonNode hits) {
+        List<ChunkEvent> events = new ArrayList<>(hits.size());
+        for (JsonNode hit : hits) {
+            JsonNode source = hit.path("_source");
+            JsonNode metadata = source.path("metadata");
+            events.add(new ChunkEvent(
+                    ChunkOperation.UPSERT,
+                    hit.path("_id").asText(),
+                    metadata.path("doc_id").asLong(),
+                    metadata.path("page_number").asInt(),
+                    emptyToNull(metadata.path("category").asText(null)),
+                    metadata.path("display_name").asText(null),
+                    source.path("text").asText(""),
+                    toVector(source.path("vector")),
+                    List.of(),
+                    0
+            ));
+        }
+        return events;
+    }
+
+    private static float[] toVector(JsonNode values) {
+        if (!values.isArray() || values.isEmpty()) {
+            return null;
+        }
+        float[] vector = new float[values.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = values.get(i).floatValue();
+        }
+        return vector;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,109 @@
+package prototype.coreapi.domain.retrieval;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.dto.HybridRetrievalRequest;
+import prototype.coreapi.domain.retrieval.dto.HybridRetrievalResponse;
+import prototype.coreapi.domain.retrieval.dto.LegResult;
+import prototype.coreapi.domain.retrieval.enums.LegStatus;
+import prototype.coreapi.domain.retrieval.enums.RetrievalLeg;
+import prototype.coreapi.domain.retrieval.support.ReciprocalRankFusion;
+import prototype.coreapi.domain.retrieval.support.TopK;
+import prototype.coreapi.global.exception.BusinessException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the keyword and vector legs of a query in parallel and fuses their rankings by reciprocal rank fusion.
+ * Each leg has its own deadline: a leg that misses it or fails is left out and the answer is marked partial,
+ * so retrieval takes as long as the slowest leg within its deadline rather than the sum of the legs.
+ * A leg that misses its deadline is cancelled, which interrupts its search if it is still waiting for the index.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HybridRetriever {
+
+    private final RetrievalIndex retrievalIndex;
+    private final RetrievalProperties retrievalProperties;
+
+    /**
+     * Retrieves the chunks that best match the query text and embedding.
+     * @param request The query, its optional embedding, the category filter and the number of chunks.
+     * @return A Mono emitting the fused chunks, best first, and how each leg went.
+     */
+    public Mono<HybridRetrievalResponse> retrieve(HybridRetrievalRequest request) {
+        int candidates = request.getCandidates() != null
+                ? request.getCandidates()
+                : Math.max(request.getK(), retrievalProperties.getHybridCandidates());
+
+        Mono<LegOutcome> keyword = leg(RetrievalLeg.KEYWORD, retrievalProperties.getKeywordDeadline(),
+                () -> retrievalIndex.keywordIds(request.getQuery(), request.getCategory(), candidates));
+        Mono<LegOutcome> vector = request.getVector() == null
+                ? Mono.just(new LegOutcome(RetrievalLeg.VECTOR, LegStatus.SKIPPED, null, 0))
+                : leg(RetrievalLeg.VECTOR, retrievalProperties.getVectorDeadline(),
+                () -> retrievalIndex.vectorIds(request.getVector(), request.getCategory(), candidates, request.getEf(), false));
+
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return Mono.zip(keyword, vector)
+                    .map(legs -> fuse(List.of(legs.getT1(), legs.getT2()), request.getK(), started));
+        });
+    }
+
+    private Mono<LegOutcome> leg(RetrievalLeg leg, Duration deadline, Callable<TopK.Result> search) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            // Searches may wait for the index while a batch is applied, so they stay off the parallel workers
+            return Mono.fromCallable(search)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    // A search interrupted by the timeout gives up; nobody is waiting for its outcome any more
+                    .onErrorResume(CancellationException.class, e -> Mono.empty())
+                    .timeout(deadline)
+                    .map(result -> new LegOutcome(leg, LegStatus.OK, result, micros(started)))
+                    .onErrorResume(TimeoutException.class, e -> {
+                        log.warn("{} retrieval missed its deadline of {} ms", leg, deadline.toMillis());
+                        return Mono.just(new LegOutcome(leg, LegStatus.TIMED_OUT, null, micros(started)));
+                    })
+                    // Invalid input is the caller's fault and fails the whole request
+                    .onErrorResume(e -> !(e instanceof BusinessException), e -> {
+                        log.error("{} retrieval failed", leg, e);
+                        return Mono.just(new LegOutcome(leg, LegStatus.FAILED, null, micros(started)));
+                    });
+        });
+    }
+
+    private HybridRetrievalResponse fuse(List<LegOutcome> outcomes, int k, long started) {
+        List<TopK.Result> rankings = new ArrayList<>(outcomes.size());
+        Map<RetrievalLeg, LegResult> legs = new EnumMap<>(RetrievalLeg.class);
+        boolean partial = false;
+        for (LegOutcome outcome : outcomes) {
+            if (outcome.ranking() != null) {
+                rankings.add(outcome.ranking());
+            }
+            partial |= outcome.status() == LegStatus.TIMED_OUT || outcome.status() == LegStatus.FAILED;
+            legs.put(outcome.leg(), new LegResult(outcome.status(),
+                    outcome.ranking() == null ? 0 : outcome.ranking().size(), outcome.tookMicros()));
+        }
+        TopK.Result fused = ReciprocalRankFusion.fuse(rankings, retrievalProperties.getRrfRankConstant(), k);
+        return new HybridRetrievalResponse(retrievalIndex.resolve(fused), legs, partial, micros(started));
+    }
+
+    private static long micros(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000;
+    }
+
+    private record LegOutcome(RetrievalLeg leg, LegStatus status, TopK.Result ranking, long tookMicros) {
+    }
+}
@@ -0,0 +1,115 @@
+package prototype.coreapi.domain.retrieval;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of the retrieval index at a snapshot: its sealed segments with the chunks still live in each,
+ * and the chunk stream entry the snapshot is consistent with, to resume the stream after it on startup.
+ * Replaced atomically, so a crash leaves either the previous or the new manifest; segment files are never
+ * changed after sealing, so the segments a manifest lists stay valid as long as their directories are kept.
+ * @param dimension The vector dimension the segments were built with.
+ * @param lastEventId The last chunk stream entry applied to the segments.
+ * @param nextSegmentId The id the next new segment will get.
+ * @param displayNames The display names of the documents, by document id.
+ */
+record IndexManifest(int dimension, String lastEventId, long generation, int nextSegmentId,
+                     List<SegmentEntry> segments, Map<Long, String> displayNames) {
+
+    private static final String FILE = "manifest.bin";
+    private static final int VERSION = 1;
+
+    /**
+     * @param category The category, or null for chunks without one.
+     * @param liveIds The local ids of the chunks not deleted.
+     */
+    record SegmentEntry(int id, String category, BitSet liveIds) {
+    }
+
+    /**
+     * @return The manifest in the directory, or null if there is none.
+     */
+    static IndexManifest read(Path directory) throws IOException {
+        Path file = directory.resolve(FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != VERSION) {
+                throw new IOException("Unsupported index manifest version in " + file);
+            }
+            int dimension = in.readInt();
+            String lastEventId = in.readUTF();
+            long generation = in.readLong();
+            int nextSegmentId = in.readInt();
+            int segmentCount = in.readInt();
+            List<SegmentEntry> segments = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                int id = in.readInt();
+                String category = in.readBoolean() ? in.readUTF() : null;
+                long[] words = new long[in.readInt()];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = in.readLong();
+                }
+                segments.add(new SegmentEntry(id, category, BitSet.valueOf(words)));
+            }
+            int nameCount = in.readInt();
+            Map<Long, String> displayNames = new HashMap<>(nameCount * 2);
+            for (int i = 0; i < nameCount; i++) {
+                displayNames.put(in.readLong(), in.readUTF());
+            }
+            return new IndexManifest(dimension, lastEventId, generation, nextSegmentId, segments, displayNames);
+        }
+    }
+
+    /**
+     * Writes the manifest to the directory, replacing the previous one.
+     */
+    void write(Path directory) throws IOException {
+        Path temporary = directory.resolve(FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(VERSION);
+            out.writeInt(dimension);
+            out.writeUTF(lastEventId);
+            out.writeLong(generation);
+            out.writeInt(nextSegmentId);
+            out.writeInt(segments.size());
+            for (SegmentEntry segment : segments) {
+                out.writeInt(segment.id());
+                out.writeBoolean(segment.category() != null);
+                if (segment.category() != null) {
+                    out.writeUTF(segment.category());
+                }
+                long[] words = segment.liveIds().toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            out.writeInt(displayNames.size());
+            for (Map.Entry<Long, String> entry : displayNames.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        }
+        // Segment files and the manifest must reach the disk before the manifest replaces the previous one
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,384 @@
+package prototype.coreapi.domain.retrieval;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.FileSystemUtils;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.keyword.Bm25Index;
+import prototype.coreapi.domain.retrieval.keyword.KeywordIndex;
+import prototype.coreapi.domain.retrieval.keyword.KeywordSegment;
+import prototype.coreapi.domain.retrieval.support.TopK;
+import prototype.coreapi.domain.retrieval.vector.HnswIndex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The keyword and vector indexes and the texts of a run of chunks of one category, with dense segment-local ids.
+ * A segment takes new chunks until it is sealed: its keyword index and texts are then written to files in its
+ * directory, next to the already file-backed vector index, and replaced by read-only mappings of those files.
+ * A sealed segment can be opened again after a restart without reading its files; chunks can still be deleted from it.
+ * Sealed segments are merged into larger ones in the background, dropping their deleted chunks.
+ * Writes and searches are guarded by the owning index's lock, except vector inserts, which the graph allows
+ * concurrently with searches.
+ */
+@Slf4j
+final class IndexSegment {
+
+    private final int id;
+    private final String category;
+    private final Path directory;
+    private final HnswIndex vectorIndex;
+    private final BitSet liveIds;
+    private KeywordIndex keywordIndex;
+    // Texts by local id until sealed, then the mapped chunk files
+    private List<String> texts;
+    private SegmentChunks chunks;
+    private int[] chunkIds;
+    private int size;
+    private int liveChunks;
+    // Set while a background merge reads the segment; guarded by the owning index's batch lock
+    private boolean merging;
+
+    private IndexSegment(int id, String category, Path directory, HnswIndex vectorIndex, BitSet liveIds,
+                         KeywordIndex keywordIndex, List<String> texts, SegmentChunks chunks, int size) {
+        this.id = id;
+        this.category = category;
+        this.directory = directory;
+        this.vectorIndex = vectorIndex;
+        this.liveIds = liveIds;
+        this.keywordIndex = keywordIndex;
+        this.texts = texts;
+        this.chunks = chunks;
+        this.chunkIds = new int[Math.max(64, size)];
+        this.size = size;
+        this.liveChunks = liveIds.cardinality();
+    }
+
+    /**
+     * Creates an empty segment that takes new chunks.
+     * @param category The category, or null for chunks without one.
+     * @param directory The directory for the files of the segment, owned by it.
+     */
+    static IndexSegment create(int id, String category, Path directory, RetrievalProperties retrievalProperties) {
+        HnswIndex vectorIndex = new HnswIndex(directory, retrievalProperties.getVectorDimension(),
+                retrievalProperties.getHnswM(), retrievalProperties.getHnswEfConstruction(),
+                retrievalProperties.getExactSearchThreshold(), retrievalProperties.getQuantizationSampleSize(),
+                retrievalProperties.getVectorPageSize().toBytes());
+        return new IndexSegment(id, category, directory, vectorIndex, new BitSet(), new Bm25Index(),
+                new ArrayList<>(), null, 0);
+    }
+
+    /**
+     * Maps a segment sealed before. Its chunks must then be numbered with {@link #assign}.
+     * @param liveIds The local ids of the chunks not deleted since the segment was sealed.
+     */
+    static IndexSegment open(int id, String category, Path directory, BitSet liveIds,
+                             RetrievalProperties retrievalProperties) {
+        SegmentChunks chunks = SegmentChunks.open(directory);
+        KeywordSegment keywordIndex = KeywordSegment.open(directory);
+        HnswIndex vectorIndex = HnswIndex.open(directory, retrievalProperties.getExactSearchThreshold(),
+                retrievalProperties.getVectorPageSize().toBytes());
+        BitSet live = (BitSet) liveIds.clone();
+        live.clear(chunks.size(), Math.max(chunks.size(), live.length()));
+        for (int localId = live.nextClearBit(0); localId < chunks.size(); localId = live.nextClearBit(localId + 1)) {
+            keywordIndex.delete(localId);
+        }
+        return new IndexSegment(id, category, directory, vectorIndex, live, keywordIndex, null, chunks, chunks.size());
+    }
+
+    /**
+     * Writes the live chunks of sealed segments as one new segment and maps it; deleted chunks are dropped and the
+     * vector graph is rebuilt. Runs without the owning index's locks, as it only reads the files of the sources,
+     * which do not change once sealed.
+     * @param liveIds The local ids of the live chunks of each source when the merge started.
+     * @param docMaps Filled with the local id in the new segment of every chunk of each source, or -1 if dropped.
+     * @return The new segment, sealed. Its chunks must then be numbered with {@link #assign}.
+     */
+    static IndexSegment merge(int id, String category, Path directory, List<IndexSegment> sources,
+                              List<BitSet> liveIds, int[][] docMaps, RetrievalProperties retrievalProperties) {
+        int size = 0;
+        for (int s = 0; s < sources.size(); s++) {
+            docMaps[s] = new int[sources.get(s).size()];
+            for (int localId = 0; localId < docMaps[s].length; localId++) {
+                docMaps[s][localId] = liveIds.get(s).get(localId) ? size++ : -1;
+            }
+        }
+        int[] sourceOf = new int[size];
+        int[] localIdOf = new int[size];
+        for (int s = 0; s < sources.size(); s++) {
+            for (int localId = 0; localId < docMaps[s].length; localId++) {
+                if (docMaps[s][localId] >= 0) {
+                    sourceOf[docMaps[s][localId]] = s;
+                    localIdOf[docMaps[s][localId]] = localId;
+                }
+            }
+        }
+
+        IndexSegment merged = create(id, category, directory, retrievalProperties);
+        try {
+            SegmentChunks.write(directory, size,
+                    newId -> sources.get(sourceOf[newId]).chunks().get(localIdOf[newId]));
+            KeywordSegment.write(directory, sources.stream().map(IndexSegment::keywordIndex).toList(), docMaps, size);
+            for (int newId = 0; newId < size; newId++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IllegalStateException("Merge into segment " + id + " interrupted");
+                }
+                float[] vector = sources.get(sourceOf[newId]).vectorIndex.vector(localIdOf[newId]);
+                if (vector != null) {
+                    merged.vectorIndex.insert(newId, vector);
+                }
+            }
+            merged.vectorIndex.seal();
+            sync(directory);
+            merged.vectorIndex.close();
+        } catch (RuntimeException e) {
+            merged.close();
+            merged.deleteFiles();
+            throw e;
+        }
+        BitSet live = new BitSet(size);
+        live.set(0, size);
+        return open(id, category, directory, live, retrievalProperties);
+    }
+
+    /**
+     * Indexes the text of a chunk; its vector is added separately with {@link #insertVector}.
+     * @param chunkId The id of the chunk in the owning index.
+     * @return The segment-local id of the chunk.
+     */
+    int add(int chunkId, String text) {
+        if (isSealed()) {
+            throw new IllegalStateException("Segment " + id + " is sealed");
+        }
+        int localId = size++;
+        assign(localId, chunkId);
+        ((Bm25Index) keywordIndex).add(localId, text);
+        texts.add(text);
+        liveIds.set(localId);
+        liveChunks++;
+        return localId;
+    }
+
+    /**
+     * Sets the id in the owning index of a chunk of an opened segment.
+     */
+    void assign(int localId, int chunkId) {
+        if (localId >= chunkIds.length) {
+            chunkIds = Arrays.copyOf(chunkIds, Math.max(localId + 1, chunkIds.length * 2));
+        }
+        chunkIds[localId] = chunkId;
+    }
+
+    void remove(int localId) {
+        if (liveIds.get(localId)) {
+            keywordIndex.delete(localId);
+            liveIds.clear(localId);
+            liveChunks--;
+        }
+    }
+
+    void insertVector(int localId, float[] vector) {
+        vectorIndex.insert(localId, vector);
+    }
+
+    /**
+     * @return The chunk ids of the owning index and their cosine similarities, best first.
+     */
+    TopK.Result searchVector(float[] vector, int k, int ef, boolean exact) {
+        return toChunkIds(exact
+                ? vectorIndex.exactSearch(vector, liveIds, k)
+                : vectorIndex.search(vector, liveIds, k, ef));
+    }
+
+    /**
+     * Replaces the segment-local ids of a result in place.
+     */
+    TopK.Result toChunkIds(TopK.Result result) {
+        int[] ids = result.ids();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = chunkIds[ids[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Writes the files of the segment, the first step of sealing it. The segment stays searchable, but must not
+     * change until {@link #seal} completes.
+     * @param chunkStore Where to look up the external ids of the chunks.
+     */
+    void writeFiles(ChunkStore chunkStore) {
+        // Deleted chunks keep their local ids for the vector index but drop out of the keyword postings
+        int[] docMap = new int[size];
+        for (int localId = 0; localId < size; localId++) {
+            docMap[localId] = liveIds.get(localId) ? localId : -1;
+        }
+        SegmentChunks.write(directory, size, localId -> {
+            if (!liveIds.get(localId)) {
+                return null;
+            }
+            int chunkId = chunkIds[localId];
+            return new SegmentChunks.Chunk(chunkStore.chunkIdOf(chunkId), chunkStore.documentIdOf(chunkId),
+                    chunkStore.pageOf(chunkId), texts.get(localId));
+        });
+        KeywordSegment.write(directory, List.of(keywordIndex), new int[][]{docMap}, size);
+        vectorIndex.seal();
+        sync(directory);
+    }
+
+    /**
+     * Replaces the keyword index and texts with mappings of the files written by {@link #writeFiles}.
+     * Must be called under the owning index's write lock.
+     */
+    void seal() {
+        KeywordSegment sealedIndex = KeywordSegment.open(directory);
+        for (int localId = liveIds.nextClearBit(0); localId < size; localId = liveIds.nextClearBit(localId + 1)) {
+            sealedIndex.delete(localId);
+        }
+        keywordIndex = sealedIndex;
+        chunks = SegmentChunks.open(directory);
+        texts = null;
+    }
+
+    boolean isSealed() {
+        return chunks != null;
+    }
+
+    boolean isMerging() {
+        return merging;
+    }
+
+    void setMerging(boolean merging) {
+        this.merging = merging;
+    }
+
+    int id() {
+        return id;
+    }
+
+    String category() {
+        return category;
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    KeywordIndex keywordIndex() {
+        return keywordIndex;
+    }
+
+    SegmentChunks chunks() {
+        return chunks;
+    }
+
+    /**
+     * @return The local ids of the chunks not deleted; must not be modified.
+     */
+    BitSet liveIds() {
+        return liveIds;
+    }
+
+    /**
+     * @return The id in the owning index of the chunk.
+     */
+    int chunkIdOf(int localId) {
+        return chunkIds[localId];
+    }
+
+    String text(int localId) {
+        return isSealed() ? chunks.text(localId) : texts.get(localId);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int liveChunks() {
+        return liveChunks;
+    }
+
+    boolean isEmpty() {
+        return liveChunks == 0;
+    }
+
+    int termCount() {
+        return keywordIndex.termCount();
+    }
+
+    long keywordIndexBytes() {
+        return keywordIndex.sizeInBytes();
+    }
+
+    int vectorCount() {
+        return vectorIndex.size();
+    }
+
+    long vectorIndexBytes() {
+        return vectorIndex.sizeInBytes();
+    }
+
+    long fullPrecisionVectorBytes() {
+        return vectorIndex.fullPrecisionBytes();
+    }
+
+    boolean isQuantized() {
+        return vectorIndex.isQuantized();
+    }
+
+    /**
+     * Releases the vector index, keeping the files.
+     */
+    void close() {
+        vectorIndex.close();
+    }
+
+    /**
+     * @return The size of the files of the segment.
+     */
+    long fileBytes() {
+        try (Stream<Path> files = Files.list(directory)) {
+            long bytes = 0;
+            for (Path file : (Iterable<Path>) files::iterator) {
+                bytes += Files.size(file);
+            }
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list the files of segment " + id + " in " + directory, e);
+        }
+    }
+
+    /**
+     * Deletes the files of a closed segment.
+     */
+    void deleteFiles() {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            log.warn("Failed to delete the files of segment {} of category {} in {}", id, category, directory, e);
+        }
+    }
+
+    /**
+     * Makes sure the files written to the directory reach the disk.
+     */
+    private static void sync(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync the segment files in " + directory, e);
+        }
+    }
+}
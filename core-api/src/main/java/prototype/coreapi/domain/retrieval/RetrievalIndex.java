@@ -0,0 +1,882 @@
+package prototype.coreapi.domain.retrieval;
+
+import jakarta.annotation.PreDestroy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.dto.ChunkEvent;
+import prototype.coreapi.domain.retrieval.dto.RetrievalIndexStats;
+import prototype.coreapi.domain.retrieval.dto.RetrievedChunk;
+import prototype.coreapi.domain.retrieval.enums.RetrievalLeg;
+import prototype.coreapi.domain.retrieval.keyword.Bm25Scorer;
+import prototype.coreapi.domain.retrieval.support.TopK;
+import prototype.coreapi.global.exception.BusinessException;
+import prototype.coreapi.global.exception.ErrorCode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * The retrieval index of this node, built from the chunk stream.
+ * Chunks are partitioned into one shard per category, created when the first chunk of a category arrives and dropped
+ * when its last chunk is deleted. A search in one category only touches that category's shard; a search in all
+ * categories searches the shards in parallel and merges their top k.
+ * Writes are applied in batches under a write lock; searches share a read lock.
+ * New chunks go to the active segment of their shard. Periodically and on shutdown the index takes a snapshot:
+ * it seals the active segments, writing them to files that replace their heap structures with memory mappings, and
+ * records the sealed segments and the last applied stream entry in a manifest. On startup the segments of the
+ * manifest are mapped instead of rebuilt and the stream is resumed after that entry, so the node serves within seconds
+ * and the index lives mostly in the page cache.
+ * An active segment is also sealed once it holds enough chunks, so segments stay small and cheap to write. In the
+ * background, on a bounded number of threads, the smallest sealed segments of a shard are merged into larger ones,
+ * up to a maximum size, keeping the number of segments a search visits logarithmic in the shard size. Merges read
+ * only sealed, unchanging files, so they run concurrently with both batches and searches and only take the locks to
+ * swap in the merged segment.
+ * Deleting a chunk only clears it from the live bitset of its segment, which searches skip; merges drop the deleted
+ * chunks from the files, and segments with many of them are rewritten alone.
+ * Every category has a generation, advanced once a batch that changed it has been fully applied or a merge of its
+ * segments has been swapped in, and search results are cached under it.
+ * The vectors of a batch are added to the graph after the write lock is released, in parallel and concurrently with
+ * searches, since graph inserts take long and the graph is safe for concurrent use. Until then a new chunk can be
+ * found by keyword but not by vector.
+ */
+@Slf4j
+@Component
+public class RetrievalIndex {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held while applying a batch, taking a snapshot or swapping in a merged segment; a snapshot writes files without
+    // blocking searches, since nothing else changes the index meanwhile
+    private final ReentrantLock batchLock = new ReentrantLock();
+    private final ChunkStore chunkStore = new ChunkStore();
+    // Keyed by category; chunks without a category share the shard under the null key
+    private final Map<String, RetrievalShard> shards = new HashMap<>();
+    private final RetrievalProperties retrievalProperties;
+    private final Path indexDirectory;
+    private final Bm25Scorer scorer;
+    private final ForkJoinPool insertPool;
+    private final ForkJoinPool searchPool;
+    private final ExecutorService mergePool;
+    private final int dimension;
+    private final int defaultEf;
+    private final RetrievalResultCache resultCache;
+    private final Timer keywordSearchTimer;
+    private final Timer vectorSearchTimer;
+    private final Timer mergeTimer;
+    private final Counter mergedChunks;
+    private final Counter mergedBytes;
+    // Generation of the whole index and of each category (null for chunks without one); a category takes the index
+    // generation of the last batch that changed it, so its generation never repeats even if its shard is recreated
+    private final Map<String, Long> generations = new HashMap<>();
+    private final Set<String> changedCategories = new HashSet<>();
+    // Documents deleted ahead of their de-indexing, by System.nanoTime of the deletion, until the indexing workers'
+    // deletion arrives through the chunk stream or the deletion timeout passes
+    private final Map<Long, Long> deletedDocuments = new ConcurrentHashMap<>();
+    private long generation;
+    private int nextSegmentId;
+    // Sealed segments dropped since the last snapshot; the manifest still lists them until the next one is written
+    private final List<IndexSegment> obsoleteSegments = new ArrayList<>();
+    // Whether a merge changed the segments since the last snapshot, which needs one even without new changes
+    private boolean segmentsChanged;
+    private long lastSnapshotNanos = System.nanoTime();
+    private volatile String snapshotEventId;
+    private boolean closed;
+    private volatile String lastEventId;
+
+    public RetrievalIndex(RetrievalProperties retrievalProperties, MeterRegistry meterRegistry) {
+        this.retrievalProperties = retrievalProperties;
+        this.indexDirectory = Paths.get(retrievalProperties.getIndexDirectory());
+        this.scorer = new Bm25Scorer(retrievalProperties.getBm25K1(), retrievalProperties.getBm25B());
+        this.insertPool = new ForkJoinPool(Math.max(1, retrievalProperties.getInsertParallelism()));
+        this.searchPool = new ForkJoinPool(Math.max(1, retrievalProperties.getSearchParallelism()));
+        CustomizableThreadFactory mergeThreadFactory = new CustomizableThreadFactory("retrieval-merge-");
+        mergeThreadFactory.setDaemon(true);
+        int mergeThreads = Math.max(1, retrievalProperties.getMergeThreads());
+        this.mergePool = ExecutorServiceMetrics.monitor(meterRegistry, new ThreadPoolExecutor(mergeThreads,
+                mergeThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), mergeThreadFactory),
+                "retrieval-merge");
+        this.dimension = retrievalProperties.getVectorDimension();
+        this.defaultEf = retrievalProperties.getHnswEfSearch();
+        this.resultCache = new RetrievalResultCache(retrievalProperties.getResultCacheSize(), meterRegistry);
+        this.keywordSearchTimer = searchTimer(meterRegistry, RetrievalLeg.KEYWORD);
+        this.vectorSearchTimer = searchTimer(meterRegistry, RetrievalLeg.VECTOR);
+        this.mergeTimer = Timer.builder("retrieval.merge")
+                .description("Duration of segment merges")
+                .register(meterRegistry);
+        this.mergedChunks = Counter.builder("retrieval.merge.chunks")
+                .description("Chunks written by segment merges")
+                .register(meterRegistry);
+        this.mergedBytes = Counter.builder("retrieval.merge.bytes")
+                .description("Bytes of segment files written by merges")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        restore();
+    }
+
+    /**
+     * Takes a snapshot, so the next start resumes from here, and releases the segments. Running merges are abandoned.
+     */
+    @PreDestroy
+    public void close() {
+        batchLock.lock();
+        try {
+            closed = true;
+            mergePool.shutdownNow();
+            snapshot();
+            insertPool.shutdownNow();
+            searchPool.shutdownNow();
+            lock.writeLock().lock();
+            try {
+                shards.values().forEach(shard -> shard.segments().forEach(IndexSegment::close));
+                shards.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a batch of chunk changes in stream order.
+     * @param events The changes.
+     * @param lastEventId The stream ID of the last change in the batch, or null for changes read from Elasticsearch
+     *                    while the index is rebuilt.
+     */
+    public void apply(List<ChunkEvent> events, String lastEventId) {
+        batchLock.lock();
+        try {
+            List<PendingVector> pendingVectors = new ArrayList<>();
+            lock.writeLock().lock();
+            try {
+                long deletionTimeout = retrievalProperties.getDeletionTimeout().toNanos();
+                long now = System.nanoTime();
+                deletedDocuments.values().removeIf(deletedAt -> now - deletedAt > deletionTimeout);
+                deletedDocuments.keySet().forEach(this::removeDocument);
+                for (ChunkEvent event : events) {
+                    switch (event.operation()) {
+                        case UPSERT -> {
+                            // Chunks of a deleted document that were still on their way
+                            if (deletedDocuments.containsKey(event.documentId())) {
+                                continue;
+                            }
+                            int id = upsert(event);
+                            if (event.vector() != null) {
+                                pendingVectors.add(new PendingVector(chunkStore.segmentOf(id), chunkStore.localIdOf(id),
+                                        event.vector()));
+                            }
+                        }
+                        case HIDE_DOCUMENT -> {
+                            removeDocument(event.documentId());
+                            deletedDocuments.putIfAbsent(event.documentId(), now);
+                        }
+                        case DELETE_DOCUMENT -> {
+                            removeDocument(event.documentId());
+                            deletedDocuments.remove(event.documentId());
+                        }
+                        case DELETE_PAGES -> deletePages(event);
+                        case RENAME_DOCUMENT -> chunkStore.rename(event.documentId(), event.displayName());
+                    }
+                }
+                this.lastEventId = lastEventId;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!pendingVectors.isEmpty()) {
+                insertPool.submit(() -> pendingVectors.parallelStream().forEach(this::insertVector)).join();
+            }
+            // Only now, since searches must not cache results without the batch's vectors under the new generation,
+            // and the vectors may have been inserted into segments emptied by the same batch
+            completeBatch();
+            flush();
+            if (System.nanoTime() - lastSnapshotNanos >= retrievalProperties.getSnapshotInterval().toNanos()) {
+                snapshot();
+            }
+            scheduleMerges();
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Removes every chunk and forgets the stream position, ahead of rebuilding the index from Elasticsearch.
+     * No snapshot is taken until a batch records a stream position again, so a restart meanwhile rebuilds it again.
+     */
+    public void clear() {
+        batchLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                chunkStore.documentIds().forEach(this::removeDocument);
+                lastEventId = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            completeBatch();
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes a document at once, ahead of the chunk stream entry of its de-indexing.
+     * Its chunks are cleared from the live bitsets of their segments, so searches skip them from now on and merges
+     * drop them from the files later. If a batch is being applied, the chunks are cleared when the next one starts,
+     * and are dropped from results until then. The document stays deleted, ignoring chunks of it still on their way,
+     * until the indexing workers' deletion arrives through the stream or the deletion timeout passes.
+     * @param documentId The ID of the document.
+     */
+    public void deleteDocument(long documentId) {
+        deletedDocuments.putIfAbsent(documentId, System.nanoTime());
+        if (!batchLock.tryLock()) {
+            return;
+        }
+        try {
+            lock.writeLock().lock();
+            try {
+                removeDocument(documentId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            completeBatch();
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the chunks that best match the query by BM25.
+     * @param query The query text.
+     * @param category Only search chunks in this category, or all chunks if null.
+     * @param k The number of chunks to return.
+     * @return The matching chunks, best first.
+     */
+    public List<RetrievedChunk> searchKeyword(String query, String category, int k) {
+        return resolve(keywordIds(query, category, k));
+    }
+
+    /**
+     * Like {@link #searchKeyword}, but returns chunk ids to be resolved later with {@link #resolve}.
+     */
+    public TopK.Result keywordIds(String query, String category, int k) {
+        long start = System.nanoTime();
+        try {
+            return resultCache.keyword(query, category, generationOf(category), k,
+                    () -> search(category, shard -> shard.searchKeyword(query, k), k));
+        } finally {
+            keywordSearchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Finds the chunks whose embeddings are closest to the query embedding.
+     * @param vector The query embedding.
+     * @param category Only search chunks in this category, or all chunks if null.
+     * @param k The number of chunks to return.
+     * @param ef The candidate list size, or null for the configured default.
+     * @param exact Whether to compare the query with every chunk at full precision instead of searching the graph.
+     * @return The matching chunks, most similar first, scored by cosine similarity.
+     */
+    public List<RetrievedChunk> searchVector(float[] vector, String category, int k, Integer ef, boolean exact) {
+        return resolve(vectorIds(vector, category, k, ef, exact));
+    }
+
+    /**
+     * Like {@link #searchVector}, but returns chunk ids to be resolved later with {@link #resolve}.
+     */
+    public TopK.Result vectorIds(float[] vector, String category, int k, Integer ef, boolean exact) {
+        if (vector.length != dimension) {
+            throw new BusinessException(ErrorCode.PARAMETER_VALIDATION_ERROR,
+                    "Expected a vector of " + dimension + " dimensions but got " + vector.length);
+        }
+        int candidates = ef == null ? defaultEf : ef;
+        long start = System.nanoTime();
+        try {
+            return resultCache.vector(vector, category, generationOf(category), k, candidates, exact,
+                    () -> search(category, shard -> shard.searchVector(vector, k, candidates, exact), k));
+        } finally {
+            vectorSearchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Looks up ranked chunk ids, dropping chunks deleted since they were found.
+     * @param result Chunk ids and scores, best first.
+     * @return The chunks with the given scores, best first.
+     */
+    public List<RetrievedChunk> resolve(TopK.Result result) {
+        lock.readLock().lock();
+        try {
+            List<RetrievedChunk> chunks = new ArrayList<>(result.size());
+            for (int i = 0; i < result.size(); i++) {
+                int id = result.ids()[i];
+                if (chunkStore.isLive(id) && (deletedDocuments.isEmpty()
+                        || !deletedDocuments.containsKey(chunkStore.documentIdOf(id)))) {
+                    chunks.add(chunkStore.toRetrieved(id, result.scores()[i]));
+                }
+            }
+            return chunks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public RetrievalIndexStats stats() {
+        lock.readLock().lock();
+        try {
+            int categories = 0, segments = 0, sealedSegments = 0, terms = 0, vectors = 0, quantizedSegments = 0;
+            long keywordIndexBytes = 0, vectorIndexBytes = 0, fullPrecisionVectorBytes = 0;
+            for (RetrievalShard shard : shards.values()) {
+                categories += shard.category() == null ? 0 : 1;
+                for (IndexSegment segment : shard.segments()) {
+                    segments++;
+                    sealedSegments += segment.isSealed() ? 1 : 0;
+                    terms += segment.termCount();
+                    keywordIndexBytes += segment.keywordIndexBytes();
+                    vectors += segment.vectorCount();
+                    vectorIndexBytes += segment.vectorIndexBytes();
+                    fullPrecisionVectorBytes += segment.fullPrecisionVectorBytes();
+                    quantizedSegments += segment.isQuantized() ? 1 : 0;
+                }
+            }
+            CacheStats cacheStats = resultCache.stats();
+            return new RetrievalIndexStats(chunkStore.liveChunks(), chunkStore.documentCount(), categories,
+                    shards.size(), segments, sealedSegments, terms, keywordIndexBytes, vectors, vectorIndexBytes,
+                    fullPrecisionVectorBytes, quantizedSegments, generation, cacheStats.hitCount(),
+                    cacheStats.missCount(), lastEventId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String lastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * @return The stream ID of the last change in the last snapshot, from which the next start resumes, or null if
+     * there is none.
+     */
+    public String snapshotEventId() {
+        return snapshotEventId;
+    }
+
+    Path indexDirectory() {
+        return indexDirectory;
+    }
+
+    /**
+     * Seals the segments taking new chunks and writes a manifest of all segments, unless neither the chunks nor the
+     * segments changed since the last snapshot. Must be called holding the batch lock. A failure is logged and leaves
+     * the previous manifest.
+     */
+    private void snapshot() {
+        lastSnapshotNanos = System.nanoTime();
+        if (lastEventId == null || (lastEventId.equals(snapshotEventId) && !segmentsChanged)) {
+            return;
+        }
+        // Includes segments that failed to seal before
+        List<IndexSegment> unsealed = shards.values().stream()
+                .flatMap(shard -> shard.segments().stream())
+                .filter(segment -> !segment.isSealed())
+                .toList();
+        shards.values().forEach(RetrievalShard::detachActiveSegment);
+        try {
+            seal(unsealed);
+            manifest().write(indexDirectory);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to take a snapshot of the retrieval index at {}", lastEventId, e);
+            return;
+        }
+        snapshotEventId = lastEventId;
+        segmentsChanged = false;
+        obsoleteSegments.forEach(IndexSegment::deleteFiles);
+        obsoleteSegments.clear();
+        log.info("Took a snapshot of the retrieval index at {}, sealing {} segments in {} ms", lastEventId,
+                unsealed.size(), (System.nanoTime() - lastSnapshotNanos) / 1_000_000);
+    }
+
+    /**
+     * Seals the active segments that reached the flush size. Must be called holding the batch lock.
+     */
+    private void flush() {
+        List<IndexSegment> full = new ArrayList<>();
+        for (RetrievalShard shard : shards.values()) {
+            IndexSegment active = shard.activeSegment();
+            if (active != null && active.size() >= retrievalProperties.getFlushChunks()) {
+                shard.detachActiveSegment();
+                full.add(active);
+            }
+        }
+        try {
+            seal(full);
+        } catch (RuntimeException e) {
+            // The segments stay searchable on the heap; the next snapshot tries again
+            log.error("Failed to seal {} retrieval index segments", full.size(), e);
+        }
+    }
+
+    /**
+     * Writes the files of segments no longer taking chunks and swaps them in. Must be called holding the batch lock.
+     */
+    private void seal(List<IndexSegment> segments) {
+        // Their vector indexes are sealed from here on, even if writing the other files fails
+        for (IndexSegment segment : segments) {
+            segment.writeFiles(chunkStore);
+        }
+        lock.writeLock().lock();
+        try {
+            segments.forEach(IndexSegment::seal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts merges for the shards with enough small sealed segments or with segments holding many deleted chunks.
+     * Must be called holding the batch lock.
+     */
+    private void scheduleMerges() {
+        for (RetrievalShard shard : shards.values()) {
+            List<IndexSegment> sources;
+            while ((sources = selectMerge(shard)) != null) {
+                sources.forEach(segment -> segment.setMerging(true));
+                // Chunks deleted during the merge are deleted from the result when it is swapped in
+                List<BitSet> liveIds = sources.stream().map(segment -> (BitSet) segment.liveIds().clone()).toList();
+                int id = nextSegmentId++;
+                List<IndexSegment> merging = sources;
+                mergePool.execute(() -> merge(shard, merging, liveIds, id));
+            }
+        }
+    }
+
+    /**
+     * Picks the {@code mergeFactor} sealed segments of the shard with the fewest live chunks, dropping the largest
+     * of them while the merged segment would exceed the maximum size. Segments are thus merged with others of
+     * similar size, and those too large to merge stay as they are.
+     * Without such a merge, picks the sealed segment with the largest share of deleted chunks, if it exceeds the
+     * maximum, to rewrite it without them.
+     * @return The segments to merge, or null if no merge is due.
+     */
+    private List<IndexSegment> selectMerge(RetrievalShard shard) {
+        List<IndexSegment> candidates = shard.segments().stream()
+                .filter(segment -> segment.isSealed() && !segment.isMerging())
+                .sorted(Comparator.comparingInt(IndexSegment::liveChunks))
+                .toList();
+        int mergeFactor = Math.max(2, retrievalProperties.getMergeFactor());
+        if (candidates.size() >= mergeFactor) {
+            List<IndexSegment> selected = new ArrayList<>(candidates.subList(0, mergeFactor));
+            long chunks = selected.stream().mapToLong(IndexSegment::liveChunks).sum();
+            while (chunks > retrievalProperties.getMaxSegmentChunks() && selected.size() > 2) {
+                chunks -= selected.removeLast().liveChunks();
+            }
+            if (chunks <= retrievalProperties.getMaxSegmentChunks()) {
+                return selected;
+            }
+        }
+        double maxDeletedRatio = retrievalProperties.getMaxDeletedRatio();
+        return candidates.stream()
+                .filter(segment -> !segment.isEmpty() && deletedRatio(segment) > maxDeletedRatio)
+                .max(Comparator.comparingDouble(RetrievalIndex::deletedRatio))
+                .map(List::of)
+                .orElse(null);
+    }
+
+    private static double deletedRatio(IndexSegment segment) {
+        return 1.0 - (double) segment.liveChunks() / segment.size();
+    }
+
+    /**
+     * Merges segments on a merge thread, then swaps the result in.
+     */
+    private void merge(RetrievalShard shard, List<IndexSegment> sources, List<BitSet> liveIds, int id) {
+        long start = System.nanoTime();
+        int[][] docMaps = new int[sources.size()][];
+        IndexSegment merged;
+        try {
+            merged = IndexSegment.merge(id, shard.category(), segmentDirectory(id), sources, liveIds, docMaps,
+                    retrievalProperties);
+        } catch (RuntimeException e) {
+            batchLock.lock();
+            try {
+                if (!closed) {
+                    log.error("Failed to merge {} segments of category {}", sources.size(), shard.category(), e);
+                    sources.forEach(segment -> segment.setMerging(false));
+                }
+            } finally {
+                batchLock.unlock();
+            }
+            return;
+        }
+        long bytes = merged.fileBytes();
+        batchLock.lock();
+        try {
+            if (closed) {
+                merged.close();
+                merged.deleteFiles();
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                for (int s = 0; s < sources.size(); s++) {
+                    IndexSegment source = sources.get(s);
+                    for (int localId = 0; localId < docMaps[s].length; localId++) {
+                        int mergedId = docMaps[s][localId];
+                        if (mergedId < 0) {
+                            continue;
+                        }
+                        int chunkId = source.chunkIdOf(localId);
+                        merged.assign(mergedId, chunkId);
+                        if (source.liveIds().get(localId)) {
+                            chunkStore.move(chunkId, merged, mergedId);
+                        } else {
+                            // Deleted while merging
+                            merged.remove(mergedId);
+                        }
+                    }
+                }
+                shard.replace(sources, merged);
+                sources.forEach(this::retire);
+                shard.removeEmptySegments().forEach(this::retire);
+                if (shard.isEmpty() && shards.get(shard.category()) == shard) {
+                    shards.remove(shard.category());
+                }
+                // The merged segment has its own BM25 statistics and graph, so cached results of the category are stale
+                generation++;
+                generations.put(shard.category(), generation);
+                segmentsChanged = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // Recorded at once rather than with the next batch, which may never come on an idle node; otherwise a
+            // restart would delete the merged segment as unreferenced and bring back its sources
+            snapshot();
+        } finally {
+            batchLock.unlock();
+        }
+        long nanos = System.nanoTime() - start;
+        mergeTimer.record(nanos, TimeUnit.NANOSECONDS);
+        mergedChunks.increment(merged.size());
+        mergedBytes.increment(bytes);
+        log.info("Merged {} segments of category {} into segment {} with {} chunks in {} ms", sources.size(),
+                shard.category(), id, merged.size(), nanos / 1_000_000);
+    }
+
+    private IndexManifest manifest() {
+        List<IndexManifest.SegmentEntry> segments = shards.values().stream()
+                .flatMap(shard -> shard.segments().stream())
+                .map(segment -> new IndexManifest.SegmentEntry(segment.id(), segment.category(),
+                        (BitSet) segment.liveIds().clone()))
+                .toList();
+        return new IndexManifest(dimension, lastEventId, generation, nextSegmentId, segments,
+                chunkStore.displayNames());
+    }
+
+    /**
+     * Maps the segments of the last snapshot, if any, and deletes the files no snapshot refers to.
+     */
+    private void restore() {
+        long start = System.nanoTime();
+        IndexManifest manifest;
+        try {
+            Files.createDirectories(indexDirectory);
+            manifest = IndexManifest.read(indexDirectory);
+            if (manifest != null && manifest.dimension() != dimension) {
+                log.warn("Discarding the retrieval index snapshot in {}, built for {} dimensions", indexDirectory,
+                        manifest.dimension());
+                manifest = null;
+            }
+            if (manifest != null) {
+                load(manifest);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load the retrieval index snapshot in {}; rebuilding it from the chunk stream",
+                    indexDirectory, e);
+            manifest = null;
+        }
+        deleteUnreferenced(manifest);
+        if (manifest == null) {
+            log.info("No retrieval index snapshot in {}; building the index from the chunk stream", indexDirectory);
+        } else {
+            log.info("Mapped {} segments with {} chunks from the retrieval index snapshot at {} in {} ms",
+                    manifest.segments().size(), chunkStore.liveChunks(), lastEventId,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void load(IndexManifest manifest) {
+        List<IndexSegment> segments = new ArrayList<>(manifest.segments().size());
+        try {
+            for (IndexManifest.SegmentEntry entry : manifest.segments()) {
+                IndexSegment segment = IndexSegment.open(entry.id(), entry.category(), segmentDirectory(entry.id()),
+                        entry.liveIds(), retrievalProperties);
+                segments.add(segment);
+                shards.computeIfAbsent(segment.category(), this::createShard).addSealed(segment);
+                generations.put(segment.category(), manifest.generation());
+                SegmentChunks chunks = segment.chunks();
+                BitSet liveIds = segment.liveIds();
+                for (int localId = liveIds.nextSetBit(0); localId >= 0; localId = liveIds.nextSetBit(localId + 1)) {
+                    long documentId = chunks.documentId(localId);
+                    segment.assign(localId, chunkStore.add(chunks.chunkId(localId), documentId, chunks.page(localId),
+                            manifest.displayNames().get(documentId), segment, localId));
+                }
+            }
+        } catch (RuntimeException e) {
+            segments.forEach(IndexSegment::close);
+            shards.clear();
+            generations.clear();
+            chunkStore.clear();
+            throw e;
+        }
+        generation = manifest.generation();
+        nextSegmentId = manifest.nextSegmentId();
+        lastEventId = manifest.lastEventId();
+        snapshotEventId = lastEventId;
+    }
+
+    /**
+     * Deletes what the manifest does not refer to: segments of runs that stopped before their next snapshot,
+     * or everything if there is no manifest.
+     */
+    private void deleteUnreferenced(IndexManifest manifest) {
+        try {
+            if (manifest == null) {
+                FileSystemUtils.deleteRecursively(indexDirectory);
+                Files.createDirectories(indexDirectory);
+                return;
+            }
+            Set<Path> referenced = new HashSet<>();
+            manifest.segments().forEach(segment -> referenced.add(segmentDirectory(segment.id())));
+            try (Stream<Path> files = Files.list(indexDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().startsWith(SEGMENT_PREFIX) && !referenced.contains(file)) {
+                        FileSystemUtils.deleteRecursively(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clean up " + indexDirectory, e);
+        }
+    }
+
+    /**
+     * Searches the shard of the category, or all shards in parallel if the category is null.
+     * The caller does not hold the read lock while it waits for the parallel searches, each of which holds it while
+     * searching its shard, so a batch waiting for the write lock never waits on a caller that waits on the pool.
+     * Waits are interruptible: a search cancelled by its caller gives up with a {@link CancellationException}.
+     * @return The merged top k of the searched shards.
+     */
+    private TopK.Result search(String category, Function<RetrievalShard, TopK.Result> search, int k) {
+        List<RetrievalShard> all;
+        lockForSearch();
+        try {
+            if (category != null) {
+                RetrievalShard shard = shards.get(category);
+                return shard == null ? new TopK(k).drain() : search.apply(shard);
+            }
+            if (shards.size() <= 1) {
+                return shards.isEmpty() ? new TopK(k).drain() : search.apply(shards.values().iterator().next());
+            }
+            all = List.copyOf(shards.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        ForkJoinTask<List<TopK.Result>> task = searchPool.submit(() -> all.parallelStream()
+                .map(shard -> searchShard(shard, search))
+                .toList());
+        List<TopK.Result> results;
+        try {
+            results = task.get();
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Search cancelled");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+        TopK merged = new TopK(k);
+        for (TopK.Result result : results) {
+            for (int i = 0; i < result.size(); i++) {
+                merged.offer(result.ids()[i], result.scores()[i]);
+            }
+        }
+        return merged.drain();
+    }
+
+    /**
+     * Searches one shard of a fan-out under the read lock, unless a batch or merge dropped it meanwhile.
+     */
+    private TopK.Result searchShard(RetrievalShard shard, Function<RetrievalShard, TopK.Result> search) {
+        lockForSearch();
+        try {
+            return shards.get(shard.category()) == shard ? search.apply(shard)
+                    : new TopK.Result(new int[0], new float[0]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void lockForSearch() {
+        try {
+            lock.readLock().lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Search cancelled while waiting for the index");
+        }
+    }
+
+    /**
+     * @return The id of the new chunk.
+     */
+    private int upsert(ChunkEvent event) {
+        int existing = chunkStore.idOf(event.chunkId());
+        if (existing >= 0) {
+            remove(existing);
+        }
+        RetrievalShard shard = shards.computeIfAbsent(event.category(), this::createShard);
+        changedCategories.add(event.category());
+        IndexSegment segment = shard.activeSegment(() -> createSegment(event.category()));
+        int localId = segment.add(chunkStore.nextId(), event.text());
+        return chunkStore.add(event.chunkId(), event.documentId(), event.page(), event.displayName(), segment, localId);
+    }
+
+    private static Timer searchTimer(MeterRegistry meterRegistry, RetrievalLeg leg) {
+        return Timer.builder("retrieval.search")
+                .description("Latency of retrieval index searches, including cache hits")
+                .tag("leg", leg.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private RetrievalShard createShard(String category) {
+        log.info("Creating the retrieval shard of category {}", category);
+        return new RetrievalShard(category, scorer);
+    }
+
+    private IndexSegment createSegment(String category) {
+        int id = nextSegmentId++;
+        return IndexSegment.create(id, category, segmentDirectory(id), retrievalProperties);
+    }
+
+    private Path segmentDirectory(int id) {
+        return indexDirectory.resolve(SEGMENT_PREFIX + id);
+    }
+
+    /**
+     * Advances the generations of the categories changed by the batch and drops the segments and shards it emptied.
+     */
+    private void completeBatch() {
+        lock.writeLock().lock();
+        try {
+            if (changedCategories.isEmpty()) {
+                return;
+            }
+            generation++;
+            for (String category : changedCategories) {
+                generations.put(category, generation);
+                RetrievalShard shard = shards.get(category);
+                if (shard == null) {
+                    continue;
+                }
+                shard.removeEmptySegments().forEach(this::retire);
+                if (shard.isEmpty()) {
+                    log.info("Dropping the retrieval shard of category {}", category);
+                    shards.remove(category);
+                }
+            }
+            changedCategories.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The generation of the category, or of the whole index if the category is null.
+     */
+    private long generationOf(String category) {
+        lockForSearch();
+        try {
+            return category == null ? generation : generations.getOrDefault(category, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Closes a dropped segment and deletes its files, once no manifest refers to them.
+     */
+    private void retire(IndexSegment segment) {
+        segment.close();
+        if (segment.isSealed()) {
+            obsoleteSegments.add(segment);
+        } else {
+            segment.deleteFiles();
+        }
+    }
+
+    private void insertVector(PendingVector pending) {
+        try {
+            pending.segment().insertVector(pending.localId(), pending.vector());
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping the vector of chunk {} in category {}: {}", pending.localId(),
+                    pending.segment().category(), e.getMessage());
+        }
+    }
+
+    private void deletePages(ChunkEvent event) {
+        Set<Integer> pages = new HashSet<>(event.pages());
+        for (int id : chunkStore.idsOf(event.documentId())) {
+            int page = chunkStore.pageOf(id);
+            if (pages.contains(page) || page > event.pageCount()) {
+                remove(id);
+            }
+        }
+    }
+
+    private void removeDocument(long documentId) {
+        chunkStore.idsOf(documentId).forEach(this::remove);
+    }
+
+    private void remove(int id) {
+        IndexSegment segment = chunkStore.segmentOf(id);
+        segment.remove(chunkStore.localIdOf(id));
+        changedCategories.add(segment.category());
+        chunkStore.remove(id);
+    }
+
+    private record PendingVector(IndexSegment segment, int localId, float[] vector) {
+    }
+}
@@ -0,0 +1,101 @@
+package prototype.coreapi.domain.retrieval;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds the retrieval index from Elasticsearch when the chunk stream can no longer catch it up: the node has no
+ * snapshot, or one older than the point the stream was trimmed to, so the entries it would resume from are gone.
+ * The head of the stream is read first, then the index is cleared, refilled with every chunk in Elasticsearch, and
+ * set to resume the stream from that head. The indexing workers write a change to Elasticsearch before its stream
+ * entry, so every change up to the head is in what is read, and later ones are replayed on top of it; replaying a
+ * change that was already read is harmless, since chunks are upserted by ID.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RetrievalIndexBackfill {
+
+    static final String STREAM_START = "0-0";
+
+    private final RetrievalIndex retrievalIndex;
+    private final RetrievalProperties retrievalProperties;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ElasticsearchChunkReader chunkReader;
+
+    /**
+     * Rebuilds the index if the chunk stream was trimmed past the entry the index resumes from.
+     * Retries until the rebuild succeeds.
+     * @return A Mono that completes once the index can follow the stream from {@link RetrievalIndex#lastEventId()}.
+     */
+    public Mono<Void> catchUp() {
+        String stream = retrievalProperties.getChunkStream();
+        String resumeFrom = Objects.requireNonNullElse(retrievalIndex.lastEventId(), STREAM_START);
+        return redisTemplate.opsForValue().get(ChunkStreamTrimmer.trimmedToKey(stream))
+                .filter(trimmedTo -> ChunkStreamTrimmer.compareIds(resumeFrom, trimmedTo) < 0)
+                .onErrorResume(e -> {
+                    log.warn("Failed to check how far stream {} was trimmed", stream, e);
+                    return Mono.empty();
+                })
+                .flatMap(trimmedTo -> {
+                    if (!chunkReader.isEnabled()) {
+                        log.error("Stream {} was trimmed to {}, after this node's position {}; the retrieval index "
+                                + "misses the chunks in between until retrieval.backfill-url is set to rebuild it "
+                                + "from Elasticsearch", stream, trimmedTo, resumeFrom);
+                        return Mono.empty();
+                    }
+                    log.warn("Stream {} was trimmed to {}, after this node's position {}; rebuilding the retrieval "
+                            + "index from Elasticsearch", stream, trimmedTo, resumeFrom);
+                    return backfill(stream)
+                            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                                    .maxBackoff(Duration.ofMinutes(1))
+                                    .doBeforeRetry(signal -> log.warn("Failed to rebuild the retrieval index; retrying",
+                                            signal.failure())));
+                });
+    }
+
+    private Mono<Void> backfill(String stream) {
+        return head(stream).flatMap(head -> {
+            long started = System.nanoTime();
+            AtomicLong chunks = new AtomicLong();
+            return Mono.fromRunnable(retrievalIndex::clear)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .thenMany(chunkReader.readAll())
+                    // Applying a batch waits for its vectors to be added to the graph
+                    .publishOn(Schedulers.boundedElastic())
+                    .doOnNext(events -> {
+                        retrievalIndex.apply(events, null);
+                        chunks.addAndGet(events.size());
+                    })
+                    .then(Mono.fromRunnable(() -> retrievalIndex.apply(List.of(), head)))
+                    .doOnSuccess(v -> log.info("Rebuilt the retrieval index with {} chunks from Elasticsearch in {} ms; "
+                            + "following stream {} from {}", chunks.get(), (System.nanoTime() - started) / 1_000_000,
+                            stream, head))
+                    .then();
+        });
+    }
+
+    /**
+     * @return The ID of the last entry of the stream, or the stream start if it is empty.
+     */
+    private Mono<String> head(String stream) {
+        return redisTemplate.opsForStream()
+                .reverseRange(stream, Range.unbounded(), Limit.limit().count(1))
+                .next()
+                .map(record -> record.getId().getValue())
+                .defaultIfEmpty(STREAM_START);
+    }
+}
@@ -0,0 +1,40 @@
+package prototype.coreapi.domain.retrieval;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+import prototype.coreapi.domain.retrieval.dto.HybridRetrievalRequest;
+import prototype.coreapi.domain.retrieval.dto.HybridRetrievalResponse;
+import prototype.coreapi.domain.retrieval.dto.RetrievalIndexStats;
+import prototype.coreapi.domain.retrieval.dto.RetrievalRequest;
+import prototype.coreapi.domain.retrieval.dto.RetrievalResponse;
+import prototype.coreapi.domain.retrieval.dto.VectorRetrievalRequest;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/internal/retrieval")
+@RequiredArgsConstructor
+public class RetrievalInternalController {
+
+    private final RetrievalService retrievalService;
+
+    @PostMapping("/keyword")
+    public Mono<RetrievalResponse> keyword(@Valid @RequestBody RetrievalRequest request) {
+        return retrievalService.keyword(request);
+    }
+
+    @PostMapping("/vector")
+    public Mono<RetrievalResponse> vector(@Valid @RequestBody VectorRetrievalRequest request) {
+        return retrievalService.vector(request);
+    }
+
+    @PostMapping("/hybrid")
+    public Mono<HybridRetrievalResponse> hybrid(@Valid @RequestBody HybridRetrievalRequest request) {
+        return retrievalService.hybrid(request);
+    }
+
+    @GetMapping("/stats")
+    public Mono<RetrievalIndexStats> stats() {
+        return retrievalService.stats();
+    }
+}
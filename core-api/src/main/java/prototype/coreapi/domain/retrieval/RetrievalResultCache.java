@@ -0,0 +1,102 @@
+package prototype.coreapi.domain.retrieval;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.codec.digest.DigestUtils;
+import prototype.coreapi.domain.retrieval.enums.RetrievalLeg;
+import prototype.coreapi.domain.retrieval.keyword.Analyzer;
+import prototype.coreapi.domain.retrieval.support.TopK;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Caches the ranked chunk ids of keyword and vector searches.
+ * Keys carry the generation of the searched category, which the index advances whenever a batch of changes to the
+ * category has been applied or its segments have been merged, so an entry is never found again once the category changed and needs no invalidation;
+ * stale entries age out by size. Results are resolved to chunks on every hit, which drops chunks deleted since.
+ * Keyword queries are keyed by their normalized terms, so queries differing in case, punctuation or term order share
+ * an entry; vector queries by a SHA-256 digest of the embedding rather than the embedding itself.
+ * A miss runs the search outside the cache, so the search never blocks other lookups and concurrent misses on the same
+ * key may each run it. Cached results are shared and must not be modified.
+ */
+final class RetrievalResultCache {
+
+    private final Cache<Key, TopK.Result> cache;
+
+    /**
+     * @param maximumSize The number of results to keep, or 0 to disable caching.
+     * @param meterRegistry The registry the cache statistics are published to, tagged like Spring's caches.
+     */
+    RetrievalResultCache(long maximumSize, MeterRegistry meterRegistry) {
+        this.cache = maximumSize > 0 ? Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build() : null;
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "retrievalResultCache",
+                    Tags.of("cache.manager", "retrievalIndex"));
+        }
+    }
+
+    TopK.Result keyword(String query, String category, long generation, int k, Supplier<TopK.Result> search) {
+        return get(new Key(RetrievalLeg.KEYWORD, category, generation, k, Analyzer.normalize(query), null, 0, false),
+                search);
+    }
+
+    TopK.Result vector(float[] vector, String category, long generation, int k, int ef, boolean exact,
+                       Supplier<TopK.Result> search) {
+        return get(new Key(RetrievalLeg.VECTOR, category, generation, k, null, digest(vector), exact ? 0 : ef, exact),
+                search);
+    }
+
+    CacheStats stats() {
+        return cache == null ? CacheStats.empty() : cache.stats();
+    }
+
+    private TopK.Result get(Key key, Supplier<TopK.Result> search) {
+        if (cache == null) {
+            return search.get();
+        }
+        TopK.Result cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        TopK.Result result = search.get();
+        cache.put(key, result);
+        return result;
+    }
+
+    /**
+     * Digests the embedding, so an entry keeps 32 bytes instead of the whole vector. The query embedding of a
+     * repeated question is the same each time.
+     */
+    private static byte[] digest(float[] vector) {
+        ByteBuffer bytes = ByteBuffer.allocate(vector.length * Float.BYTES);
+        bytes.asFloatBuffer().put(vector);
+        return DigestUtils.sha256(bytes.array());
+    }
+
+    /**
+     * @param vector The digest of the query embedding, compared by content.
+     */
+    private record Key(RetrievalLeg leg, String category, long generation, int k, String query, byte[] vector,
+                       int ef, boolean exact) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other
+                    && leg == other.leg && generation == other.generation && k == other.k && ef == other.ef
+                    && exact == other.exact && Objects.equals(category, other.category)
+                    && Objects.equals(query, other.query) && Arrays.equals(vector, other.vector);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(leg, category, generation, k, query, Arrays.hashCode(vector), ef, exact);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package prototype.coreapi.domain.retrieval;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.dto.HybridRetrievalRequest;
+import prototype.coreapi.domain.retrieval.dto.HybridRetrievalResponse;
+import prototype.coreapi.domain.retrieval.dto.RetrievalIndexStats;
+import prototype.coreapi.domain.retrieval.dto.RetrievalRequest;
+import prototype.coreapi.domain.retrieval.dto.RetrievalResponse;
+import prototype.coreapi.domain.retrieval.dto.VectorRetrievalRequest;
+import prototype.coreapi.domain.retrieval.enums.ChunkOperation;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetrievalService {
+
+    private final RetrievalIndex retrievalIndex;
+    private final HybridRetriever hybridRetriever;
+    private final RetrievalProperties retrievalProperties;
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    /**
+     * Retrieves the chunks that best match the query by keyword (BM25).
+     * Searches may wait for the index while a batch is applied, so they run on the bounded elastic scheduler rather
+     * than the event loop or the parallel workers.
+     * @param request The query, category filter and number of chunks.
+     * @return A Mono emitting the chunks, best first.
+     */
+    public Mono<RetrievalResponse> keyword(RetrievalRequest request) {
+        return Mono.fromCallable(() -> {
+                    long started = System.nanoTime();
+                    var chunks = retrievalIndex.searchKeyword(request.getQuery(), request.getCategory(), request.getK());
+                    return new RetrievalResponse(chunks, (System.nanoTime() - started) / 1_000);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Retrieves the chunks whose embeddings are most similar to the query embedding (approximate kNN).
+     * @param request The query embedding, category filter, number of chunks and candidate list size.
+     * @return A Mono emitting the chunks, most similar first.
+     */
+    public Mono<RetrievalResponse> vector(VectorRetrievalRequest request) {
+        return Mono.fromCallable(() -> {
+                    long started = System.nanoTime();
+                    var chunks = retrievalIndex.searchVector(request.getVector(), request.getCategory(), request.getK(),
+                            request.getEf(), request.isExact());
+                    return new RetrievalResponse(chunks, (System.nanoTime() - started) / 1_000);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Retrieves chunks by keyword and, if the request carries an embedding, by vector in parallel,
+     * fusing both rankings.
+     * @param request The query, its optional embedding, the category filter and the number of chunks.
+     * @return A Mono emitting the fused chunks, best first.
+     */
+    public Mono<HybridRetrievalResponse> hybrid(HybridRetrievalRequest request) {
+        return hybridRetriever.retrieve(request);
+    }
+
+    /**
+     * Removes a document from retrieval at once: on this node directly, and on the other nodes through a
+     * {@link ChunkOperation#HIDE_DOCUMENT} added to the chunk stream, without waiting for the indexing workers to
+     * de-index it. Unlike their deletion, it keeps the nodes ignoring chunks of the document still on their way.
+     * A failure to add it is only logged, since the workers add their deletion once they have de-indexed it.
+     * @param documentId The ID of the document.
+     * @return A Mono completing once the deletion has been added to the chunk stream.
+     */
+    public Mono<Void> deleteDocument(Long documentId) {
+        Map<String, String> deletion = Map.of(
+                "op", ChunkOperation.HIDE_DOCUMENT.name(),
+                "documentId", documentId.toString());
+        // Waits for the index's write lock, so keep it off the event loop
+        return Mono.fromRunnable(() -> retrievalIndex.deleteDocument(documentId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(redisTemplate.opsForStream()
+                        .add(StreamRecords.newRecord().in(retrievalProperties.getChunkStream()).ofMap(deletion))
+                        .doOnError(e -> log.warn("Failed to add the deletion of document {} to the chunk stream",
+                                documentId, e))
+                        .onErrorComplete())
+                .then();
+    }
+
+    public Mono<RetrievalIndexStats> stats() {
+        return Mono.fromSupplier(retrievalIndex::stats);
+    }
+}
@@ -0,0 +1,132 @@
+package prototype.coreapi.domain.retrieval;
+
+import prototype.coreapi.domain.retrieval.keyword.Bm25Scorer;
+import prototype.coreapi.domain.retrieval.keyword.KeywordIndex;
+import prototype.coreapi.domain.retrieval.support.TopK;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The chunks of one category, in segments: the sealed segments, memory-mapped from files, and at most one active
+ * segment taking new chunks; segments that failed to seal stay searchable on the heap until a later attempt.
+ * Results of the segments are mapped to the chunk ids of the owning index and merged.
+ * Scores are comparable across shards for vectors (cosine), but BM25 uses the term statistics of each shard, summed
+ * over its segments, like a search engine scoring shards independently.
+ * Guarded by the owning index's lock.
+ */
+final class RetrievalShard {
+
+    private final String category;
+    private final Bm25Scorer scorer;
+    private final List<IndexSegment> segments = new ArrayList<>();
+    private IndexSegment activeSegment;
+
+    /**
+     * @param category The category, or null for chunks without one.
+     */
+    RetrievalShard(String category, Bm25Scorer scorer) {
+        this.category = category;
+        this.scorer = scorer;
+    }
+
+    /**
+     * @param create Creates the active segment if there is none.
+     * @return The segment to add new chunks to.
+     */
+    IndexSegment activeSegment(Supplier<IndexSegment> create) {
+        if (activeSegment == null) {
+            activeSegment = create.get();
+            segments.add(activeSegment);
+        }
+        return activeSegment;
+    }
+
+    /**
+     * @return The segment taking new chunks, or null.
+     */
+    IndexSegment activeSegment() {
+        return activeSegment;
+    }
+
+    /**
+     * Stops adding chunks to the active segment, to seal it; the next chunk starts a new one.
+     */
+    void detachActiveSegment() {
+        activeSegment = null;
+    }
+
+    /**
+     * Adds a segment opened from files.
+     */
+    void addSealed(IndexSegment segment) {
+        segments.add(segment);
+    }
+
+    /**
+     * Replaces merged segments by the segment they were merged into.
+     */
+    void replace(List<IndexSegment> sources, IndexSegment merged) {
+        segments.removeAll(sources);
+        segments.add(merged);
+    }
+
+    /**
+     * Removes the segments whose chunks have all been deleted, except those being merged.
+     * @return The removed segments, to be closed by the caller.
+     */
+    List<IndexSegment> removeEmptySegments() {
+        List<IndexSegment> removed = new ArrayList<>();
+        segments.removeIf(segment -> segment.isEmpty() && !segment.isMerging() && removed.add(segment));
+        if (activeSegment != null && activeSegment.isEmpty()) {
+            activeSegment = null;
+        }
+        return removed;
+    }
+
+    /**
+     * @return The chunk ids of the owning index and their BM25 scores, best first.
+     */
+    TopK.Result searchKeyword(String query, int k) {
+        List<KeywordIndex> indexes = segments.stream().map(IndexSegment::keywordIndex).toList();
+        List<TopK.Result> results = scorer.search(indexes, query, k);
+        TopK merged = new TopK(k);
+        for (int i = 0; i < results.size(); i++) {
+            offerAll(merged, segments.get(i).toChunkIds(results.get(i)));
+        }
+        return merged.drain();
+    }
+
+    /**
+     * @return The chunk ids of the owning index and their cosine similarities, best first.
+     */
+    TopK.Result searchVector(float[] vector, int k, int ef, boolean exact) {
+        if (segments.size() == 1) {
+            return segments.getFirst().searchVector(vector, k, ef, exact);
+        }
+        TopK merged = new TopK(k);
+        for (IndexSegment segment : segments) {
+            offerAll(merged, segment.searchVector(vector, k, ef, exact));
+        }
+        return merged.drain();
+    }
+
+    String category() {
+        return category;
+    }
+
+    List<IndexSegment> segments() {
+        return segments;
+    }
+
+    boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    private static void offerAll(TopK merged, TopK.Result result) {
+        for (int i = 0; i < result.size(); i++) {
+            merged.offer(result.ids()[i], result.scores()[i]);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package prototype.coreapi.domain.retrieval;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+
+/**
+ * The chunks of a sealed segment, memory-mapped read-only: what is needed to return and cite a chunk and to rebuild
+ * the chunk lookups at startup. Texts are decoded only when a chunk is returned.
+ * {@code chunks.bin} holds a header and a fixed-size record per chunk, {@code ids.bin} the external chunk ids and
+ * {@code text.bin} the texts as UTF-8, apart so that rebuilding the lookups does not page in the texts.
+ * Deleted chunks are written as empty records to keep the segment-local ids.
+ */
+final class SegmentChunks {
+
+    private static final String CHUNKS_FILE = "chunks.bin";
+    private static final String IDS_FILE = "ids.bin";
+    private static final String TEXT_FILE = "text.bin";
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    // document id, page, chunk id offset and length, text offset and length
+    private static final int RECORD_BYTES = Long.BYTES + 5 * Integer.BYTES;
+
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer ids;
+    private final MappedByteBuffer text;
+    private final int size;
+
+    private SegmentChunks(MappedByteBuffer records, MappedByteBuffer ids, MappedByteBuffer text) throws IOException {
+        if (records.getInt(0) != VERSION) {
+            throw new IOException("Unsupported segment chunks version " + records.getInt(0));
+        }
+        this.records = records;
+        this.ids = ids;
+        this.text = text;
+        this.size = records.getInt(Integer.BYTES);
+    }
+
+    /**
+     * @param size The number of chunks.
+     * @param chunks Gets a chunk by its id in the segment; null for deleted chunks.
+     */
+    static void write(Path directory, int size, IntFunction<Chunk> chunks) {
+        try (DataOutputStream recordsOut = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(directory.resolve(CHUNKS_FILE))));
+             OutputStream idsOut = new BufferedOutputStream(Files.newOutputStream(directory.resolve(IDS_FILE)));
+             OutputStream textOut = new BufferedOutputStream(Files.newOutputStream(directory.resolve(TEXT_FILE)))) {
+            recordsOut.writeInt(VERSION);
+            recordsOut.writeInt(size);
+            long idOffset = 0;
+            long textOffset = 0;
+            for (int localId = 0; localId < size; localId++) {
+                Chunk chunk = chunks.apply(localId);
+                byte[] chunkId = chunk == null ? new byte[0] : chunk.chunkId().getBytes(StandardCharsets.UTF_8);
+                byte[] chunkText = chunk == null ? new byte[0] : chunk.text().getBytes(StandardCharsets.UTF_8);
+                if (Math.max(idOffset + chunkId.length, textOffset + chunkText.length) > Integer.MAX_VALUE) {
+                    throw new IOException("Segment texts exceed 2 GB");
+                }
+                recordsOut.writeLong(chunk == null ? -1 : chunk.documentId());
+                recordsOut.writeInt(chunk == null ? 0 : chunk.page());
+                recordsOut.writeInt((int) idOffset);
+                recordsOut.writeInt(chunkId.length);
+                recordsOut.writeInt((int) textOffset);
+                recordsOut.writeInt(chunkText.length);
+                idsOut.write(chunkId);
+                textOut.write(chunkText);
+                idOffset += chunkId.length;
+                textOffset += chunkText.length;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the segment chunks in " + directory, e);
+        }
+    }
+
+    static SegmentChunks open(Path directory) {
+        try {
+            return new SegmentChunks(map(directory.resolve(CHUNKS_FILE)), map(directory.resolve(IDS_FILE)),
+                    map(directory.resolve(TEXT_FILE)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the segment chunks in " + directory, e);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long documentId(int localId) {
+        return records.getLong(record(localId));
+    }
+
+    int page(int localId) {
+        return records.getInt(record(localId) + Long.BYTES);
+    }
+
+    String chunkId(int localId) {
+        return string(ids, record(localId) + Long.BYTES + Integer.BYTES);
+    }
+
+    String text(int localId) {
+        return string(text, record(localId) + Long.BYTES + 3 * Integer.BYTES);
+    }
+
+    Chunk get(int localId) {
+        return new Chunk(chunkId(localId), documentId(localId), page(localId), text(localId));
+    }
+
+    long sizeInBytes() {
+        return (long) records.capacity() + ids.capacity() + text.capacity();
+    }
+
+    private static int record(int localId) {
+        return HEADER_BYTES + localId * RECORD_BYTES;
+    }
+
+    /**
+     * Decodes the string whose offset in the file and length are at the position of the record file.
+     */
+    private String string(MappedByteBuffer file, int position) {
+        byte[] bytes = new byte[records.getInt(position + Integer.BYTES)];
+        file.get(records.getInt(position), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " exceeds 2 GB");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @param chunkId The external ID of the chunk.
+     */
+    record Chunk(String chunkId, long documentId, int page, String text) {
+    }
+}
@@ -0,0 +1,76 @@
+package prototype.coreapi.domain.retrieval.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "retrieval")
+@Data
+public class RetrievalProperties {
+
+    private boolean enabled = true;
+    // Redis stream of chunk changes written by the indexing workers; every node reads all of it.
+    private String chunkStream = "document-chunk-stream";
+    private int readBatchSize = 500;
+    // BM25 term frequency saturation and length normalization.
+    private float bm25K1 = 1.2f;
+    private float bm25B = 0.75f;
+    // Segment files and the manifest of the last snapshot, one subdirectory per segment. Kept across restarts: a node
+    // maps the segments of the last snapshot and only replays the stream after it.
+    private String indexDirectory = System.getProperty("java.io.tmpdir") + "/retrieval";
+    // How often new chunks are sealed into memory-mapped segments and a snapshot is taken; also taken on shutdown.
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+    // Nodes report the stream entry of their last snapshot, and the chunk stream is trimmed up to the oldest one; a
+    // node that has not reported for this long no longer holds the trim back and rebuilds its index from
+    // Elasticsearch when it returns.
+    private Duration snapshotLease = Duration.ofDays(7);
+    // Elasticsearch holding the chunks written by the indexing workers, from which a node without a snapshot, or with
+    // one older than the trim point of the chunk stream, rebuilds its index. No URL disables the rebuild.
+    private String backfillUrl;
+    private String backfillUsername = "elastic";
+    private String backfillPassword;
+    // Must match the index of the indexing workers.
+    private String backfillIndex = "rag_documents";
+    // Chunks read per request; each carries its full-precision vector.
+    private int backfillBatchSize = 200;
+    // A document deleted ahead of its de-indexing ignores chunks of it still on their way until the indexing workers'
+    // deletion arrives through the chunk stream, or for at most this long.
+    private Duration deletionTimeout = Duration.ofHours(1);
+    // New chunks of a category are sealed into a segment once this many have arrived, even between snapshots.
+    private int flushChunks = 10_000;
+    // Sealed segments of a category are merged this many at a time, smallest first, into segments of at most
+    // maxSegmentChunks chunks, by mergeThreads background threads.
+    private int mergeFactor = 10;
+    private int maxSegmentChunks = 250_000;
+    private int mergeThreads = 1;
+    // A sealed segment with more than this fraction of its chunks deleted is rewritten alone to drop them, when no
+    // merge of several segments is due.
+    private double maxDeletedRatio = 0.3;
+    // Vector index (HNSW), stored in memory-mapped files of the segment and mapped in pages of this size.
+    private DataSize vectorPageSize = DataSize.ofMegabytes(64);
+    // Must match the embedding model of the indexing workers.
+    private int vectorDimension = 1024;
+    // Links per node on the upper layers; the bottom layer keeps twice as many.
+    private int hnswM = 16;
+    private int hnswEfConstruction = 100;
+    // Default candidate list size of a search; larger finds more of the true neighbours but takes longer.
+    private int hnswEfSearch = 64;
+    // Filters matching at most this many chunks are scanned exactly instead of searched through the graph.
+    private int exactSearchThreshold = 4_096;
+    // Vectors are int8-quantized once this many have arrived to learn the value ranges from; 0 keeps full precision.
+    private int quantizationSampleSize = 10_000;
+    // Threads adding the vectors of a batch to the graph.
+    private int insertParallelism = Runtime.getRuntime().availableProcessors();
+    // Threads searching the category shards in parallel when a query spans all categories.
+    private int searchParallelism = Runtime.getRuntime().availableProcessors();
+    // Search results kept, keyed by the generation of the searched category; 0 disables the cache.
+    private long resultCacheSize = 10_000;
+    // Hybrid retrieval: candidates per leg, the reciprocal rank fusion constant, and how long each leg may take
+    // before the answer is fused from the other legs alone.
+    private int hybridCandidates = 20;
+    private int rrfRankConstant = 60;
+    private Duration keywordDeadline = Duration.ofMillis(100);
+    private Duration vectorDeadline = Duration.ofMillis(200);
+}
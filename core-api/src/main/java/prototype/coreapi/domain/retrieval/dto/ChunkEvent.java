@@ -0,0 +1,72 @@
+package prototype.coreapi.domain.retrieval.dto;
+
+import prototype.coreapi.domain.retrieval.enums.ChunkOperation;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A change to the indexed chunks, read from the chunk stream written by the indexing workers.
+ * The stream is the replication log of the retrieval index: replaying it from the start rebuilds the index.
+ */
+public record ChunkEvent(
+        ChunkOperation operation,
+        String chunkId, // Elasticsearch document ID of the chunk (UPSERT)
+        Long documentId,
+        int page, // 1-based (UPSERT)
+        String category, // (UPSERT)
+        String displayName, // (UPSERT, RENAME_DOCUMENT)
+        String text, // (UPSERT)
+        float[] vector, // Embedding of the text, or null if the worker sent none (UPSERT)
+        List<Integer> pages, // Changed pages to remove (DELETE_PAGES)
+        int pageCount // Pages after this one are removed too (DELETE_PAGES)
+) {
+    public static ChunkEvent from(Map<String, String> fields) {
+        return new ChunkEvent(
+                ChunkOperation.valueOf(fields.get("op")),
+                fields.get("chunkId"),
+                Long.valueOf(fields.get("documentId")),
+                parseInt(fields.get("page")),
+                emptyToNull(fields.get("category")),
+                fields.get("displayName"),
+                fields.get("text"),
+                parseVector(fields.get("vector")),
+                parsePages(fields.get("pages")),
+                parseInt(fields.get("pageCount"))
+        );
+    }
+
+    private static int parseInt(String value) {
+        return value == null || value.isEmpty() ? 0 : Integer.parseInt(value);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Decodes a vector sent as base64 of little-endian float32 values.
+     */
+    private static float[] parseVector(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(Base64.getDecoder().decode(value)).order(ByteOrder.LITTLE_ENDIAN);
+        float[] vector = new float[bytes.remaining() / Float.BYTES];
+        bytes.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private static List<Integer> parsePages(String value) {
+        if (value == null || value.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(value.split(","))
+                .map(Integer::valueOf)
+                .toList();
+    }
+}
@@ -0,0 +1,44 @@
+package prototype.coreapi.domain.retrieval.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Schema(description = "Hybrid retrieval request")
+@AllArgsConstructor
+@NoArgsConstructor
+public class HybridRetrievalRequest {
+
+    @NotBlank
+    @Size(max = 1000)
+    @Schema(description = "Query text for the keyword leg", example = "How do I reset the device?")
+    private String query;
+
+    @Size(min = 1, max = 4096)
+    @Schema(description = "Query embedding for the vector leg; the vector leg is skipped if omitted.")
+    private float[] vector;
+
+    @Schema(description = "Only retrieve chunks of documents in this category; all categories if omitted.", example = "current")
+    private String category;
+
+    @Positive
+    @Max(100)
+    @Schema(description = "Number of chunks to return", example = "4")
+    private int k = 4;
+
+    @Positive
+    @Max(1000)
+    @Schema(description = "Candidates each leg contributes to fusion; the server default if omitted.", example = "20")
+    private Integer candidates;
+
+    @Positive
+    @Max(1000)
+    @Schema(description = "Candidate list size of the graph search; the server default if omitted.", example = "64")
+    private Integer ef;
+}
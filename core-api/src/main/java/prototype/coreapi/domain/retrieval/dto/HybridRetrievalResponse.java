@@ -0,0 +1,14 @@
+package prototype.coreapi.domain.retrieval.dto;
+
+import prototype.coreapi.domain.retrieval.enums.RetrievalLeg;
+
+import java.util.List;
+import java.util.Map;
+
+public record HybridRetrievalResponse(
+        List<RetrievedChunk> chunks, // best first, scored by reciprocal rank fusion
+        Map<RetrievalLeg, LegResult> legs,
+        boolean partial, // a leg that was asked for timed out or failed
+        long tookMicros
+) {
+}
@@ -0,0 +1,10 @@
+package prototype.coreapi.domain.retrieval.dto;
+
+import prototype.coreapi.domain.retrieval.enums.LegStatus;
+
+public record LegResult(
+        LegStatus status,
+        int hits, // candidates the leg contributed to fusion
+        long tookMicros
+) {
+}
@@ -0,0 +1,21 @@
+package prototype.coreapi.domain.retrieval.dto;
+
+public record RetrievalIndexStats(
+        int chunks, // live chunks
+        int documents,
+        int categories,
+        int shards, // one per category, plus one for chunks without a category
+        int segments,
+        int sealedSegments, // memory-mapped from files; the rest take new chunks
+        int terms, // summed over the segments
+        long keywordIndexBytes, // on the heap for active segments, memory-mapped for sealed ones
+        int vectors, // vectors in the graphs, including those of deleted chunks
+        long vectorIndexBytes, // memory-mapped graph and the vectors it is searched on
+        long fullPrecisionVectorBytes, // memory-mapped; only read to re-rank once quantized
+        int quantizedSegments, // segments that have seen enough vectors to quantize
+        long generation, // advanced by every applied batch that changed chunks
+        long resultCacheHits,
+        long resultCacheMisses,
+        String lastEventId // last chunk stream entry applied
+) {
+}
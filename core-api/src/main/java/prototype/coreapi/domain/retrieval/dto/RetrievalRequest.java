@@ -0,0 +1,30 @@
+package prototype.coreapi.domain.retrieval.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Schema(description = "Retrieval request")
+@AllArgsConstructor
+@NoArgsConstructor
+public class RetrievalRequest {
+
+    @NotBlank
+    @Size(max = 1000)
+    @Schema(description = "Query text", example = "How do I reset the device?")
+    private String query;
+
+    @Schema(description = "Only retrieve chunks of documents in this category; all categories if omitted.", example = "current")
+    private String category;
+
+    @Positive
+    @Max(100)
+    @Schema(description = "Number of chunks to return", example = "4")
+    private int k = 4;
+}
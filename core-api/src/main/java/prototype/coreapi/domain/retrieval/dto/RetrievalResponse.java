@@ -0,0 +1,9 @@
+package prototype.coreapi.domain.retrieval.dto;
+
+import java.util.List;
+
+public record RetrievalResponse(
+        List<RetrievedChunk> chunks, // best first
+        long tookMicros
+) {
+}
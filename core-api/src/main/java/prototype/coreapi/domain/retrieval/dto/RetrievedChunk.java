@@ -0,0 +1,15 @@
+package prototype.coreapi.domain.retrieval.dto;
+
+/**
+ * A chunk returned by retrieval, with the metadata needed to cite it.
+ */
+public record RetrievedChunk(
+        String chunkId,
+        Long documentId,
+        String displayName,
+        String category,
+        int page,
+        String text,
+        float score
+) {
+}
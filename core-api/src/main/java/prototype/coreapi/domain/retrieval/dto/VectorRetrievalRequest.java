@@ -0,0 +1,39 @@
+package prototype.coreapi.domain.retrieval.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Schema(description = "Vector retrieval request")
+@AllArgsConstructor
+@NoArgsConstructor
+public class VectorRetrievalRequest {
+
+    @NotNull
+    @Size(min = 1, max = 4096)
+    @Schema(description = "Query embedding, from the same model as the indexed chunks")
+    private float[] vector;
+
+    @Schema(description = "Only retrieve chunks of documents in this category; all categories if omitted.", example = "current")
+    private String category;
+
+    @Positive
+    @Max(100)
+    @Schema(description = "Number of chunks to return", example = "4")
+    private int k = 4;
+
+    @Positive
+    @Max(1000)
+    @Schema(description = "Candidate list size of the graph search; the server default if omitted.", example = "64")
+    private Integer ef;
+
+    @Schema(description = "Compare the query with every chunk at full precision instead of searching the graph; "
+            + "slower, but gives the exact nearest neighbours to measure recall against.", example = "false")
+    private boolean exact;
+}
@@ -0,0 +1,9 @@
+package prototype.coreapi.domain.retrieval.enums;
+
+public enum ChunkOperation {
+    UPSERT,          // 청크 추가 또는 교체
+    DELETE_DOCUMENT, // 문서의 모든 청크 삭제
+    HIDE_DOCUMENT,   // 비인덱싱 전에 문서를 검색에서 제외 (core-api 발행, 워커의 DELETE_DOCUMENT 도착 시까지 유지)
+    DELETE_PAGES,    // 변경된 페이지와 마지막 페이지 이후의 청크 삭제
+    RENAME_DOCUMENT  // 문서 표시 이름 변경
+}
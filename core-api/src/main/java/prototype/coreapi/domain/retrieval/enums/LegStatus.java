@@ -0,0 +1,8 @@
+package prototype.coreapi.domain.retrieval.enums;
+
+public enum LegStatus {
+    OK,        // 기한 내 완료
+    TIMED_OUT, // 기한 초과로 결과에서 제외
+    FAILED,    // 오류로 결과에서 제외
+    SKIPPED    // 요청에 입력이 없어 실행하지 않음
+}
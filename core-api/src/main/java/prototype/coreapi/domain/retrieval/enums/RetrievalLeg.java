@@ -0,0 +1,6 @@
+package prototype.coreapi.domain.retrieval.enums;
+
+public enum RetrievalLeg {
+    KEYWORD, // BM25 키워드 검색
+    VECTOR   // HNSW 벡터 검색
+}
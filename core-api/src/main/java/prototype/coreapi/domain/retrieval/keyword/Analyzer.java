@@ -0,0 +1,52 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * Splits text into lowercase terms at every character that is neither a letter nor a digit.
+ * Works on code points, so Hangul and other non-Latin scripts are kept intact.
+ */
+public final class Analyzer {
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private Analyzer() {
+    }
+
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder term = new StringBuilder();
+        text.codePoints().forEach(codePoint -> {
+            if (Character.isLetterOrDigit(codePoint)) {
+                term.appendCodePoint(codePoint);
+            } else {
+                flush(term, terms);
+            }
+        });
+        flush(term, terms);
+        return terms;
+    }
+
+    /**
+     * @return The distinct terms of the text in sorted order, joined by spaces. Texts with the same normalized form
+     *         get the same BM25 ranking, since queries are scored by their distinct terms in this order.
+     */
+    public static String normalize(String text) {
+        return String.join(" ", new TreeSet<>(analyze(text)));
+    }
+
+    private static void flush(StringBuilder term, List<String> terms) {
+        if (!term.isEmpty()) {
+            if (term.length() <= MAX_TERM_LENGTH) {
+                terms.add(term.toString().toLowerCase(Locale.ROOT));
+            }
+            term.setLength(0);
+        }
+    }
+}
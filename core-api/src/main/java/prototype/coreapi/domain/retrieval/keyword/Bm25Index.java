@@ -0,0 +1,84 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory inverted index that chunks are added to one at a time, scored with {@link Bm25Scorer}.
+ * Chunks are identified by dense int ids assigned in increasing order, so postings stay sorted by construction.
+ * Not thread-safe: writes and searches must be guarded by the owner's lock.
+ */
+public final class Bm25Index extends KeywordIndex {
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private int[] lengths = new int[1024];
+    private int maxDoc;
+
+    /**
+     * Indexes a chunk.
+     * @param doc The chunk id, greater than every id indexed before.
+     * @param text The chunk text.
+     */
+    public void add(int doc, String text) {
+        List<String> terms = Analyzer.analyze(text);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        frequencies.forEach((term, freq) -> postings.computeIfAbsent(term, t -> new PostingList()).add(doc, freq));
+
+        if (doc >= lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(lengths.length * 2, doc + 1));
+        }
+        lengths[doc] = terms.size();
+        maxDoc = Math.max(maxDoc, doc + 1);
+        added(terms.size());
+    }
+
+    @Override
+    public int maxDoc() {
+        return maxDoc;
+    }
+
+    @Override
+    public int docFrequency(String term) {
+        PostingList postingList = postings.get(term);
+        return postingList == null ? 0 : postingList.size();
+    }
+
+    @Override
+    public PostingsIterator postings(String term) {
+        PostingList postingList = postings.get(term);
+        return postingList == null ? null : postingList.iterator();
+    }
+
+    @Override
+    public int length(int doc) {
+        return lengths[doc];
+    }
+
+    @Override
+    public int termCount() {
+        return postings.size();
+    }
+
+    @Override
+    public void forEachTerm(Consumer<String> action) {
+        postings.keySet().forEach(action);
+    }
+
+    /**
+     * @return The approximate heap footprint in bytes, excluding the term strings.
+     */
+    @Override
+    public long sizeInBytes() {
+        long bytes = 4L * lengths.length + deletedBytes();
+        for (PostingList postingList : postings.values()) {
+            bytes += postingList.sizeInBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,86 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+import prototype.coreapi.domain.retrieval.support.IntFloatHashMap;
+import prototype.coreapi.domain.retrieval.support.TopK;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Scores chunks with Okapi BM25 over keyword indexes searched as one collection: chunk counts, lengths and document
+ * frequencies are summed over the indexes, so a chunk gets the same score whichever index holds it.
+ */
+public final class Bm25Scorer {
+
+    private final float k1;
+    private final float b;
+
+    /**
+     * @param k1 Term frequency saturation.
+     * @param b Length normalization.
+     */
+    public Bm25Scorer(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * Finds the best matching chunks for the query in every index.
+     * @param indexes The indexes of the collection.
+     * @param query The query text.
+     * @param k The number of chunks to return per index.
+     * @return For each index, its chunk ids and their BM25 scores, best first.
+     */
+    public List<TopK.Result> search(List<? extends KeywordIndex> indexes, String query, int k) {
+        long liveDocs = 0;
+        long liveLength = 0;
+        List<IntFloatHashMap> scores = new ArrayList<>(indexes.size());
+        for (KeywordIndex index : indexes) {
+            liveDocs += index.liveDocs();
+            liveLength += index.liveLength();
+            scores.add(new IntFloatHashMap(256));
+        }
+
+        if (liveDocs > 0) {
+            float averageLength = Math.max(1f, (float) liveLength / liveDocs);
+            // Query term frequency does not change the ranking enough to be worth weighting; terms are scored in
+            // sorted order so queries with the same terms get bit-identical scores
+            for (String term : new TreeSet<>(Analyzer.analyze(query))) {
+                long documentFrequency = 0;
+                for (KeywordIndex index : indexes) {
+                    documentFrequency += index.docFrequency(term);
+                }
+                if (documentFrequency == 0) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + (liveDocs - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                for (int i = 0; i < indexes.size(); i++) {
+                    score(indexes.get(i), term, idf, averageLength, scores.get(i));
+                }
+            }
+        }
+
+        List<TopK.Result> results = new ArrayList<>(indexes.size());
+        for (IntFloatHashMap indexScores : scores) {
+            TopK topK = new TopK(k);
+            indexScores.forEach(topK::offer);
+            results.add(topK.drain());
+        }
+        return results;
+    }
+
+    private void score(KeywordIndex index, String term, float idf, float averageLength, IntFloatHashMap scores) {
+        PostingsIterator postings = index.postings(term);
+        if (postings == null) {
+            return;
+        }
+        for (int doc = postings.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+            if (!index.isDeleted(doc)) {
+                int freq = postings.freq();
+                float norm = k1 * (1 - b + b * index.length(doc) / averageLength);
+                scores.addTo(doc, idf * freq * (k1 + 1) / (freq + norm));
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+/**
+ * The postings of a set of chunks identified by dense int ids, and which of those chunks are deleted.
+ * Deleted chunks stay in the postings and are skipped while scoring with {@link Bm25Scorer}.
+ * Not thread-safe: writes and searches must be guarded by the owner's lock.
+ */
+public abstract class KeywordIndex {
+
+    private final BitSet deleted = new BitSet();
+    private int liveDocs;
+    private long liveLength;
+
+    /**
+     * @return One more than the highest chunk id indexed.
+     */
+    public abstract int maxDoc();
+
+    /**
+     * @return The number of chunks containing the term, including deleted ones.
+     */
+    public abstract int docFrequency(String term);
+
+    /**
+     * @return The postings of the term, or null if no chunk contains it.
+     */
+    public abstract PostingsIterator postings(String term);
+
+    /**
+     * @return The number of terms in the chunk.
+     */
+    public abstract int length(int doc);
+
+    public abstract int termCount();
+
+    /**
+     * Calls the action for every term, in no particular order.
+     */
+    public abstract void forEachTerm(Consumer<String> action);
+
+    /**
+     * @return The approximate size in bytes, on the heap or mapped.
+     */
+    public abstract long sizeInBytes();
+
+    public void delete(int doc) {
+        if (doc < maxDoc() && !deleted.get(doc)) {
+            deleted.set(doc);
+            liveDocs--;
+            liveLength -= length(doc);
+        }
+    }
+
+    public boolean isDeleted(int doc) {
+        return deleted.get(doc);
+    }
+
+    public int liveDocs() {
+        return liveDocs;
+    }
+
+    public long liveLength() {
+        return liveLength;
+    }
+
+    /**
+     * Counts a chunk that was indexed with the given number of terms as live.
+     */
+    protected void added(int length) {
+        liveDocs++;
+        liveLength += length;
+    }
+
+    protected long deletedBytes() {
+        return deleted.size() / 8;
+    }
+}
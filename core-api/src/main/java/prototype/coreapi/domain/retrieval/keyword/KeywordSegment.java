@@ -0,0 +1,433 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A keyword index written once to files and memory-mapped read-only, so opening it reads nothing and its postings
+ * live in the page cache instead of the heap. Postings are compressed in blocks like {@link PostingList}, the last
+ * block included. Terms are sorted by their UTF-8 bytes and found by binary search in the mapped dictionary.
+ * Each file is a single mapping, which limits it to 2 GB; segments are kept far below that.
+ * <p>
+ * {@code terms.bin}: version, maxDoc, term count, the length of every chunk, then per term the offset of its bytes,
+ * the offset of its postings and its document frequency, then the term bytes.
+ * {@code postings.bin}: per term the block count, the last doc id and the offset of every block, then the blocks.
+ */
+public final class KeywordSegment extends KeywordIndex {
+
+    private static final String TERMS_FILE = "terms.bin";
+    private static final String POSTINGS_FILE = "postings.bin";
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    private final MappedByteBuffer terms;
+    private final MappedByteBuffer postings;
+    private final int maxDoc;
+    private final int termCount;
+    private final int termOffsetsStart;
+    private final int postingsOffsetsStart;
+    private final int docFrequenciesStart;
+    private final int termBytesStart;
+
+    private KeywordSegment(MappedByteBuffer terms, MappedByteBuffer postings) throws IOException {
+        if (terms.getInt(0) != VERSION) {
+            throw new IOException("Unsupported keyword segment version " + terms.getInt(0));
+        }
+        this.terms = terms;
+        this.postings = postings;
+        this.maxDoc = terms.getInt(Integer.BYTES);
+        this.termCount = terms.getInt(2 * Integer.BYTES);
+        this.termOffsetsStart = HEADER_BYTES + maxDoc * Integer.BYTES;
+        this.postingsOffsetsStart = termOffsetsStart + (termCount + 1) * Integer.BYTES;
+        this.docFrequenciesStart = postingsOffsetsStart + termCount * Integer.BYTES;
+        this.termBytesStart = docFrequenciesStart + termCount * Integer.BYTES;
+        for (int doc = 0; doc < maxDoc; doc++) {
+            added(length(doc));
+        }
+    }
+
+    /**
+     * Maps a segment written by {@link #write}. Every chunk starts out live.
+     * @param directory The directory the segment was written to.
+     */
+    public static KeywordSegment open(Path directory) {
+        try {
+            return new KeywordSegment(map(directory.resolve(TERMS_FILE)), map(directory.resolve(POSTINGS_FILE)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the keyword segment in " + directory, e);
+        }
+    }
+
+    /**
+     * Writes the postings of one or more indexes as one segment, renumbering their chunks.
+     * Deleted chunks are written like live ones unless the doc maps drop them.
+     * @param directory The directory to write the segment files to.
+     * @param sources The indexes to write.
+     * @param docMaps For every source, the new id of each of its chunks or -1 to drop the chunk. New ids must increase
+     *                with the old ids and from one source to the next.
+     * @param maxDoc One more than the highest new id.
+     */
+    public static void write(Path directory, List<? extends KeywordIndex> sources, int[][] docMaps, int maxDoc) {
+        Set<String> termSet = new HashSet<>();
+        sources.forEach(source -> source.forEachTerm(termSet::add));
+        byte[][] sortedTerms = termSet.stream()
+                .map(term -> term.getBytes(StandardCharsets.UTF_8))
+                .sorted(Arrays::compareUnsigned)
+                .toArray(byte[][]::new);
+
+        int[] lengths = new int[maxDoc];
+        for (int s = 0; s < sources.size(); s++) {
+            for (int doc = 0; doc < docMaps[s].length; doc++) {
+                if (docMaps[s][doc] >= 0) {
+                    lengths[docMaps[s][doc]] = sources.get(s).length(doc);
+                }
+            }
+        }
+
+        int[] postingsOffsets = new int[sortedTerms.length];
+        int[] docFrequencies = new int[sortedTerms.length];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(directory.resolve(POSTINGS_FILE))))) {
+            BlockWriter blocks = new BlockWriter();
+            for (int t = 0; t < sortedTerms.length; t++) {
+                String term = new String(sortedTerms[t], StandardCharsets.UTF_8);
+                blocks.clear();
+                for (int s = 0; s < sources.size(); s++) {
+                    PostingsIterator iterator = sources.get(s).postings(term);
+                    if (iterator == null) {
+                        continue;
+                    }
+                    for (int doc = iterator.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+                        int newDoc = docMaps[s][doc];
+                        if (newDoc >= 0) {
+                            blocks.add(newDoc, iterator.freq());
+                        }
+                    }
+                }
+                postingsOffsets[t] = out.size();
+                docFrequencies[t] = blocks.size();
+                blocks.writeTo(out);
+                if (out.size() == Integer.MAX_VALUE) {
+                    throw new IOException("Keyword segment postings exceed 2 GB");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the keyword postings in " + directory, e);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(directory.resolve(TERMS_FILE))))) {
+            out.writeInt(VERSION);
+            out.writeInt(maxDoc);
+            out.writeInt(sortedTerms.length);
+            for (int length : lengths) {
+                out.writeInt(length);
+            }
+            int termOffset = 0;
+            for (byte[] term : sortedTerms) {
+                out.writeInt(termOffset);
+                termOffset += term.length;
+            }
+            out.writeInt(termOffset);
+            for (int offset : postingsOffsets) {
+                out.writeInt(offset);
+            }
+            for (int frequency : docFrequencies) {
+                out.writeInt(frequency);
+            }
+            for (byte[] term : sortedTerms) {
+                out.write(term);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the keyword terms in " + directory, e);
+        }
+    }
+
+    @Override
+    public int maxDoc() {
+        return maxDoc;
+    }
+
+    @Override
+    public int docFrequency(String term) {
+        int ordinal = find(term);
+        return ordinal < 0 ? 0 : terms.getInt(docFrequenciesStart + ordinal * Integer.BYTES);
+    }
+
+    @Override
+    public PostingsIterator postings(String term) {
+        int ordinal = find(term);
+        return ordinal < 0 ? null : new Iterator(terms.getInt(postingsOffsetsStart + ordinal * Integer.BYTES));
+    }
+
+    @Override
+    public int length(int doc) {
+        return terms.getInt(HEADER_BYTES + doc * Integer.BYTES);
+    }
+
+    @Override
+    public int termCount() {
+        return termCount;
+    }
+
+    @Override
+    public void forEachTerm(Consumer<String> action) {
+        for (int ordinal = 0; ordinal < termCount; ordinal++) {
+            int start = termStart(ordinal);
+            byte[] bytes = new byte[termStart(ordinal + 1) - start];
+            terms.get(termBytesStart + start, bytes);
+            action.accept(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return The mapped size of the files plus the heap used for deletions.
+     */
+    @Override
+    public long sizeInBytes() {
+        return (long) terms.capacity() + postings.capacity() + deletedBytes();
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " exceeds 2 GB");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @return The ordinal of the term, or -1 if no chunk contains it.
+     */
+    private int find(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareTerm(middle, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int compareTerm(int ordinal, byte[] key) {
+        int start = termBytesStart + termStart(ordinal);
+        int length = termStart(ordinal + 1) - termStart(ordinal);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(terms.get(start + i), key[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private int termStart(int ordinal) {
+        return terms.getInt(termOffsetsStart + ordinal * Integer.BYTES);
+    }
+
+    /**
+     * Collects the postings of one term and encodes them in blocks.
+     */
+    private static final class BlockWriter {
+
+        private int[] docs = new int[PostingList.BLOCK_SIZE];
+        private int[] freqs = new int[PostingList.BLOCK_SIZE];
+        private int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * Writes the block count, the last doc id and offset of every block, then the blocks.
+         * Offsets are relative to the start of the blocks.
+         */
+        void writeTo(DataOutputStream out) throws IOException {
+            int blockCount = (size + PostingList.BLOCK_SIZE - 1) / PostingList.BLOCK_SIZE;
+            List<byte[]> encoded = new ArrayList<>(blockCount);
+            out.writeInt(blockCount);
+            for (int block = 0; block < blockCount; block++) {
+                int end = Math.min(size, (block + 1) * PostingList.BLOCK_SIZE);
+                out.writeInt(docs[end - 1]);
+            }
+            int offset = 0;
+            int previous = 0;
+            for (int block = 0; block < blockCount; block++) {
+                int start = block * PostingList.BLOCK_SIZE;
+                int end = Math.min(size, start + PostingList.BLOCK_SIZE);
+                VIntBuffer bytes = new VIntBuffer();
+                for (int i = start; i < end; i++) {
+                    bytes.write(docs[i] - previous);
+                    bytes.write(freqs[i]);
+                    previous = docs[i];
+                }
+                encoded.add(bytes.toByteArray());
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            for (byte[] block : encoded) {
+                out.write(block);
+            }
+        }
+    }
+
+    private static final class VIntBuffer {
+
+        private byte[] data = new byte[256];
+        private int length;
+
+        void write(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+    }
+
+    /**
+     * Iterates over the postings of one term in the mapped file, decoding one block at a time.
+     */
+    private final class Iterator implements PostingsIterator {
+
+        private final int[] docs = new int[PostingList.BLOCK_SIZE];
+        private final int[] freqs = new int[PostingList.BLOCK_SIZE];
+        private final int blockCount;
+        private final int lastDocsStart;
+        private final int offsetsStart;
+        private final int blocksStart;
+        private int block = -1;
+        private int length;
+        private int index;
+        private int doc = -1;
+
+        Iterator(int start) {
+            this.blockCount = postings.getInt(start);
+            this.lastDocsStart = start + Integer.BYTES;
+            this.offsetsStart = lastDocsStart + blockCount * Integer.BYTES;
+            this.blocksStart = offsetsStart + blockCount * Integer.BYTES;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (++index >= length && !loadBlock(block + 1)) {
+                return doc = NO_MORE_DOCS;
+            }
+            return doc = docs[index];
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            if (index + 1 >= length || docs[length - 1] < target) {
+                int next = block + 1;
+                while (next < blockCount && lastDoc(next) < target) {
+                    next++;
+                }
+                if (!loadBlock(next)) {
+                    return doc = NO_MORE_DOCS;
+                }
+            } else {
+                index++;
+            }
+            while (docs[index] < target) {
+                if (++index >= length) {
+                    return doc = NO_MORE_DOCS;
+                }
+            }
+            return doc = docs[index];
+        }
+
+        @Override
+        public int freq() {
+            return freqs[index];
+        }
+
+        private int lastDoc(int block) {
+            return postings.getInt(lastDocsStart + block * Integer.BYTES);
+        }
+
+        private boolean loadBlock(int next) {
+            if (next >= blockCount) {
+                length = 0;
+                return false;
+            }
+            int offset = blocksStart + postings.getInt(offsetsStart + next * Integer.BYTES);
+            int previous = next == 0 ? 0 : lastDoc(next - 1);
+            int last = lastDoc(next);
+            int count = 0;
+            while (previous != last || count == 0) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = postings.get(offset++);
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                int freq = 0;
+                shift = 0;
+                do {
+                    b = postings.get(offset++);
+                    freq |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += delta;
+                docs[count] = previous;
+                freqs[count] = freq;
+                count++;
+            }
+            length = count;
+            block = next;
+            index = 0;
+            return true;
+        }
+    }
+}
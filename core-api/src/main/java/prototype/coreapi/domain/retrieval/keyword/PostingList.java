@@ -0,0 +1,194 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+import java.util.Arrays;
+
+/**
+ * The postings of one term: the ids of the chunks containing it, in increasing order, with the term frequency in each.
+ * Full blocks of {@value #BLOCK_SIZE} postings are compressed as variable-length integers, doc ids as deltas from
+ * the previous id; only the last, partial block is kept as plain ints. The last doc id of every block is kept
+ * uncompressed so iterators can skip whole blocks without decoding them.
+ * Not thread-safe: appends and iteration must be guarded by the owner's lock.
+ */
+public final class PostingList {
+
+    static final int BLOCK_SIZE = 128;
+
+    private byte[] data = new byte[16];
+    private int dataLength;
+    private int[] blockOffsets = new int[1];
+    private int[] blockLastDocs = new int[1];
+    private int blockCount;
+
+    private final int[] tailDocs = new int[BLOCK_SIZE];
+    private final int[] tailFreqs = new int[BLOCK_SIZE];
+    private int tailSize;
+
+    private int lastDoc = -1;
+    private int size;
+
+    /**
+     * Appends a posting.
+     * @param doc The chunk id, greater than every id added before.
+     * @param freq The number of occurrences of the term in the chunk.
+     */
+    public void add(int doc, int freq) {
+        if (doc <= lastDoc) {
+            throw new IllegalArgumentException("Postings must be added in increasing order: " + doc + " after " + lastDoc);
+        }
+        tailDocs[tailSize] = doc;
+        tailFreqs[tailSize] = freq;
+        tailSize++;
+        lastDoc = doc;
+        size++;
+        if (tailSize == BLOCK_SIZE) {
+            sealTail();
+        }
+    }
+
+    /**
+     * @return The number of chunks containing the term, including deleted ones.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The approximate heap footprint in bytes.
+     */
+    public long sizeInBytes() {
+        return data.length + 4L * (blockOffsets.length + blockLastDocs.length) + 8L * BLOCK_SIZE;
+    }
+
+    public Iterator iterator() {
+        return new Iterator();
+    }
+
+    private void sealTail() {
+        ensureBlockCapacity();
+        blockOffsets[blockCount] = dataLength;
+        blockLastDocs[blockCount] = tailDocs[tailSize - 1];
+        int previous = blockCount == 0 ? 0 : blockLastDocs[blockCount - 1];
+        for (int i = 0; i < tailSize; i++) {
+            writeVInt(tailDocs[i] - previous);
+            writeVInt(tailFreqs[i]);
+            previous = tailDocs[i];
+        }
+        blockCount++;
+        tailSize = 0;
+    }
+
+    private void ensureBlockCapacity() {
+        if (blockCount == blockOffsets.length) {
+            blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+            blockLastDocs = Arrays.copyOf(blockLastDocs, blockCount * 2);
+        }
+    }
+
+    private void writeVInt(int value) {
+        if (dataLength + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + 5));
+        }
+        while ((value & ~0x7F) != 0) {
+            data[dataLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[dataLength++] = (byte) value;
+    }
+
+    /**
+     * Iterates over the postings in doc id order, decoding one block at a time.
+     */
+    public final class Iterator implements PostingsIterator {
+
+        private final int[] docs = new int[BLOCK_SIZE];
+        private final int[] freqs = new int[BLOCK_SIZE];
+        private final int sealedBlocks = blockCount;
+        private final int tailLength = tailSize;
+        private int block = -1;
+        private int length;
+        private int index;
+        private int doc = -1;
+
+        private Iterator() {
+        }
+
+        @Override
+        public int nextDoc() {
+            if (++index >= length && !loadBlock(block + 1)) {
+                return doc = NO_MORE_DOCS;
+            }
+            return doc = docs[index];
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            if (index + 1 >= length || docs[length - 1] < target) {
+                int next = block + 1;
+                while (next < sealedBlocks && blockLastDocs[next] < target) {
+                    next++;
+                }
+                if (!loadBlock(next)) {
+                    return doc = NO_MORE_DOCS;
+                }
+            } else {
+                index++;
+            }
+            while (docs[index] < target) {
+                if (++index >= length) {
+                    return doc = NO_MORE_DOCS;
+                }
+            }
+            return doc = docs[index];
+        }
+
+        public int docId() {
+            return doc;
+        }
+
+        @Override
+        public int freq() {
+            return freqs[index];
+        }
+
+        private boolean loadBlock(int next) {
+            if (next < sealedBlocks) {
+                int offset = blockOffsets[next];
+                int previous = next == 0 ? 0 : blockLastDocs[next - 1];
+                for (int i = 0; i < BLOCK_SIZE; i++) {
+                    int delta = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[offset++];
+                        delta |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    int freq = 0;
+                    shift = 0;
+                    do {
+                        b = data[offset++];
+                        freq |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    previous += delta;
+                    docs[i] = previous;
+                    freqs[i] = freq;
+                }
+                length = BLOCK_SIZE;
+            } else if (next == sealedBlocks && tailLength > 0) {
+                System.arraycopy(tailDocs, 0, docs, 0, tailLength);
+                System.arraycopy(tailFreqs, 0, freqs, 0, tailLength);
+                length = tailLength;
+            } else {
+                length = 0;
+                return false;
+            }
+            block = next;
+            index = 0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+/**
+ * Iterates over the postings of one term in doc id order.
+ */
+public interface PostingsIterator {
+
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * @return The next doc id, or {@link #NO_MORE_DOCS}.
+     */
+    int nextDoc();
+
+    /**
+     * Moves to the first doc id at or after the target, skipping whole blocks where possible.
+     * @return The doc id found, or {@link #NO_MORE_DOCS}.
+     */
+    int advance(int target);
+
+    /**
+     * @return The number of occurrences of the term in the current doc.
+     */
+    int freq();
+}
@@ -0,0 +1,102 @@
+package prototype.coreapi.domain.retrieval.support;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from non-negative int keys to float values, without boxing.
+ * Used to accumulate per-chunk scores during a single query; not thread-safe.
+ */
+public final class IntFloatHashMap {
+
+    private static final int EMPTY = -1;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private float[] values;
+    private int size;
+    private int resizeAt;
+
+    public IntFloatHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Adds the delta to the value of the key, starting from zero if absent.
+     */
+    public void addTo(int key, float delta) {
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            values[slot] = delta;
+            if (++size >= resizeAt) {
+                rehash();
+            }
+        } else {
+            values[slot] += delta;
+        }
+    }
+
+    public float get(int key) {
+        int slot = slot(key);
+        return keys[slot] == EMPTY ? 0f : values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return keys[slot(key)] != EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Calls the consumer with every entry, in no particular order.
+     */
+    public void forEach(IntFloatConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int slot(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        float[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new float[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @FunctionalInterface
+    public interface IntFloatConsumer {
+        void accept(int key, float value);
+    }
+}
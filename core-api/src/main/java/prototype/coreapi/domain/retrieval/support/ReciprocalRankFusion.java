@@ -0,0 +1,37 @@
+package prototype.coreapi.domain.retrieval.support;
+
+import java.util.List;
+
+/**
+ * Merges ranked result lists by reciprocal rank fusion: every id scores the sum of 1 / (rankConstant + rank)
+ * over the lists it appears in, with ranks starting at 1. Only ranks matter, so lists scored on different scales
+ * (BM25, cosine similarity) combine without normalization.
+ */
+public final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * @param rankings Result lists, best first.
+     * @param rankConstant Dampens the weight of the top ranks; 60 is the usual choice.
+     * @param k The number of ids to return.
+     * @return The k ids with the highest fused score, best first.
+     */
+    public static TopK.Result fuse(List<TopK.Result> rankings, int rankConstant, int k) {
+        int total = 0;
+        for (TopK.Result ranking : rankings) {
+            total += ranking.size();
+        }
+        IntFloatHashMap scores = new IntFloatHashMap(total);
+        for (TopK.Result ranking : rankings) {
+            int[] ids = ranking.ids();
+            for (int rank = 0; rank < ids.length; rank++) {
+                scores.addTo(ids[rank], 1f / (rankConstant + rank + 1));
+            }
+        }
+        TopK top = new TopK(k);
+        scores.forEach(top::offer);
+        return top.drain();
+    }
+}
@@ -0,0 +1,115 @@
+package prototype.coreapi.domain.retrieval.support;
+
+/**
+ * Keeps the k highest-scoring ids seen so far in a binary min-heap over primitive arrays.
+ * Ties are broken by the lower id, so results are deterministic. Not thread-safe.
+ */
+public final class TopK {
+
+    private final int[] ids;
+    private final float[] scores;
+    private int size;
+
+    public TopK(int k) {
+        this.ids = new int[Math.max(1, k)];
+        this.scores = new float[Math.max(1, k)];
+    }
+
+    public void offer(int id, float score) {
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (isBetter(id, score, 0)) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @return The lowest score kept, or negative infinity while fewer than k ids have been offered.
+     */
+    public float threshold() {
+        return size < ids.length ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the heap.
+     * @return The kept ids and scores, best first.
+     */
+    public Result drain() {
+        int count = size;
+        int[] sortedIds = new int[count];
+        float[] sortedScores = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sortedIds[i] = ids[0];
+            sortedScores[i] = scores[0];
+            size--;
+            ids[0] = ids[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return new Result(sortedIds, sortedScores);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBetter(ids[parent], scores[parent], index)) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && isBetter(ids[smallest], scores[smallest], left)) {
+                smallest = left;
+            }
+            if (right < size && isBetter(ids[smallest], scores[smallest], right)) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    /**
+     * @return Whether the given entry ranks above the entry at the heap index.
+     */
+    private boolean isBetter(int id, float score, int index) {
+        return score > scores[index] || (score == scores[index] && id < ids[index]);
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    /**
+     * Ids and their scores, best first.
+     */
+    public record Result(int[] ids, float[] scores) {
+
+        public int size() {
+            return ids.length;
+        }
+    }
+}
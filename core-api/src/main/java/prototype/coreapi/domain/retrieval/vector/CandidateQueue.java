@@ -0,0 +1,75 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import java.util.Arrays;
+
+/**
+ * Nodes waiting to be expanded during a graph search, closest first, in a growable binary max-heap over primitive arrays.
+ * Not thread-safe: every search thread uses its own queue.
+ */
+final class CandidateQueue {
+
+    private int[] nodes = new int[64];
+    private float[] scores = new float[64];
+    private int size;
+
+    void push(int node, float score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] >= score) {
+                break;
+            }
+            nodes[index] = nodes[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        nodes[index] = node;
+        scores[index] = score;
+    }
+
+    float bestScore() {
+        return scores[0];
+    }
+
+    /**
+     * Removes the closest node.
+     * @return The node.
+     */
+    int pop() {
+        int best = nodes[0];
+        size--;
+        int node = nodes[size];
+        float score = scores[size];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && scores[child + 1] > scores[child]) {
+                child++;
+            }
+            if (scores[child] <= score) {
+                break;
+            }
+            nodes[index] = nodes[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        nodes[index] = node;
+        scores[index] = score;
+        return best;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
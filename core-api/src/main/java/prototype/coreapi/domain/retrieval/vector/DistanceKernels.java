@@ -0,0 +1,66 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Similarity and distance kernels over float vectors and signed int8 codes.
+ * {@link #get()} returns SIMD kernels built on the incubating vector API when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}, and plain loops otherwise; both return the same results up to
+ * floating-point rounding. Arrays must have the same length.
+ */
+public interface DistanceKernels {
+
+    float dot(float[] a, float[] b);
+
+    float cosine(float[] a, float[] b);
+
+    float squaredDistance(float[] a, float[] b);
+
+    /**
+     * @return Σ weights[i] · codes[i].
+     */
+    float dot(float[] weights, byte[] codes);
+
+    /**
+     * @return Σ weights[i] · a[i] · b[i].
+     */
+    float dot(float[] weights, byte[] a, byte[] b);
+
+    /**
+     * @return The fastest kernels this JVM supports.
+     */
+    static DistanceKernels get() {
+        return Holder.INSTANCE;
+    }
+
+    static DistanceKernels scalar() {
+        return ScalarDistanceKernels.INSTANCE;
+    }
+
+    @Slf4j
+    final class Holder {
+
+        private static final String VECTOR_MODULE = "jdk.incubator.vector";
+        private static final DistanceKernels INSTANCE = load();
+
+        private Holder() {
+        }
+
+        private static DistanceKernels load() {
+            if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+                log.info("Module {} is not enabled; using scalar distance kernels", VECTOR_MODULE);
+                return ScalarDistanceKernels.INSTANCE;
+            }
+            try {
+                // Loaded reflectively so this class links without the module
+                DistanceKernels kernels = (DistanceKernels) Class.forName(DistanceKernels.class.getPackageName()
+                        + ".PanamaDistanceKernels").getDeclaredConstructor().newInstance();
+                log.info("Using SIMD distance kernels: {}", kernels);
+                return kernels;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("Failed to load SIMD distance kernels; using scalar kernels", e);
+                return ScalarDistanceKernels.INSTANCE;
+            }
+        }
+    }
+}
@@ -0,0 +1,692 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import prototype.coreapi.domain.retrieval.support.TopK;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Approximate nearest neighbour search over unit vectors by cosine similarity with a hierarchical navigable small world
+ * graph (HNSW). Vectors and adjacency lists are kept off-heap in memory-mapped files, so the index adds almost nothing
+ * to the heap however many chunks it holds.
+ * <p>
+ * Inserts may run concurrently with each other and with searches. Adjacency lists are changed under striped locks and
+ * read without locks: list entries and counts are published with release stores, and a reader racing a rewrite sees
+ * a mix of old and new neighbours, all of which are valid nodes.
+ * <p>
+ * Nodes are never removed. Searches take a filter of the node ids they may return, so deleted chunks and other
+ * categories are skipped in the results but still route the search. Filters small enough to scan are searched exactly.
+ * <p>
+ * Once enough vectors have arrived to learn the range of every dimension, vectors are also stored int8 scalar-quantized
+ * ({@link ScalarQuantizer}), and the graph is built and searched on the quantized copies, a quarter of the size.
+ * The candidates of a search are then re-ranked by their full-precision vectors, which are only read for that,
+ * so the full-precision file can stay mostly on disk.
+ * <p>
+ * A sealed index takes no more inserts and has its entry point and quantizer written next to its files, so it can be
+ * opened again read-only by mapping the files as they are.
+ */
+public final class HnswIndex implements AutoCloseable {
+
+    private static final int MAX_LEVEL = 16;
+    private static final int LOCK_STRIPES = 1024;
+    private static final String META_FILE = "hnsw.meta";
+    private static final int META_VERSION = 1;
+
+    // Fields of a bottom-layer record, followed by the neighbours
+    private static final int LEVEL = 0; // node level + 1; 0 until the vector is stored
+    private static final int UPPER = 1; // index of the node's first upper-layer record
+    private static final int QUANTIZED = 2; // 1 once the quantized vector is stored
+    private static final int BASE_COUNT = 3;
+    // Field of an upper-layer record, followed by the neighbours
+    private static final int UPPER_COUNT = 0;
+
+    private final Path directory;
+    private final int dimension;
+    private final int maxNeighbours;
+    private final int maxBaseNeighbours;
+    private final int efConstruction;
+    private final int exactSearchThreshold;
+    private final int quantizationSampleSize;
+    private final double levelMultiplier;
+
+    private final MappedRecords vectors;
+    private final MappedRecords quantizedVectors;
+    private final MappedRecords baseLayer;
+    private final MappedRecords upperLayers;
+    private final AtomicInteger upperRecords = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Object entryLock = new Object();
+    private final Object quantizerLock = new Object();
+    private volatile EntryPoint entryPoint;
+    private volatile ScalarQuantizer quantizer;
+    private volatile boolean sealed;
+    private final DistanceKernels kernels = DistanceKernels.get();
+    private final ThreadLocal<SearchState> searchState;
+
+    /**
+     * Creates an empty index, replacing any files left in the directory.
+     * @param directory The directory for the memory-mapped files.
+     * @param dimension The number of components of every vector.
+     * @param m The number of neighbours per node on the upper layers; the bottom layer keeps twice as many.
+     * @param efConstruction The candidate list size used to find the neighbours of a new node.
+     * @param exactSearchThreshold Filters matching at most this many nodes are scanned instead of searched through the graph.
+     * @param quantizationSampleSize The number of vectors to learn quantization from, or 0 to keep full precision.
+     * @param pageBytes The size of each mapping of the files.
+     */
+    public HnswIndex(Path directory, int dimension, int m, int efConstruction, int exactSearchThreshold,
+                     int quantizationSampleSize, long pageBytes) {
+        this(directory, dimension, m, efConstruction, exactSearchThreshold, quantizationSampleSize, pageBytes, false);
+    }
+
+    private HnswIndex(Path directory, int dimension, int m, int efConstruction, int exactSearchThreshold,
+                      int quantizationSampleSize, long pageBytes, boolean existing) {
+        if (dimension <= 0 || m < 2 || efConstruction <= 0) {
+            throw new IllegalArgumentException("Invalid HNSW parameters: dimension=%d, m=%d, efConstruction=%d"
+                    .formatted(dimension, m, efConstruction));
+        }
+        this.directory = directory;
+        this.dimension = dimension;
+        this.maxNeighbours = m;
+        this.maxBaseNeighbours = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.exactSearchThreshold = exactSearchThreshold;
+        this.quantizationSampleSize = quantizationSampleSize;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = records(directory.resolve("vectors.f32"), dimension * Float.BYTES, pageBytes, existing);
+        this.quantizedVectors = records(directory.resolve("vectors.i8"), ScalarQuantizer.recordBytes(dimension),
+                pageBytes, existing);
+        this.baseLayer = records(directory.resolve("graph-0.bin"),
+                (BASE_COUNT + 1 + maxBaseNeighbours) * Integer.BYTES, pageBytes, existing);
+        this.upperLayers = records(directory.resolve("graph-upper.bin"),
+                (UPPER_COUNT + 1 + maxNeighbours) * Integer.BYTES, pageBytes, existing);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.searchState = ThreadLocal.withInitial(() -> new SearchState(dimension));
+    }
+
+    /**
+     * Opens a sealed index read-only, mapping its files without reading them.
+     * @param directory The directory the index was sealed in.
+     * @param exactSearchThreshold Filters matching at most this many nodes are scanned instead of searched through the graph.
+     * @param pageBytes The size of each mapping of the files.
+     * @throws UncheckedIOException If the index is missing, unreadable or was written on a machine of other byte order.
+     */
+    public static HnswIndex open(Path directory, int exactSearchThreshold, long pageBytes) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(META_FILE))))) {
+            if (in.readInt() != META_VERSION || in.readBoolean() != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN)) {
+                throw new IOException("Unsupported HNSW index format in " + directory);
+            }
+            int dimension = in.readInt();
+            int m = in.readInt();
+            HnswIndex index = new HnswIndex(directory, dimension, m, m, exactSearchThreshold, 0, pageBytes, true);
+            index.size.set(in.readInt());
+            index.upperRecords.set(in.readInt());
+            int entryNode = in.readInt();
+            int entryLevel = in.readInt();
+            index.entryPoint = entryNode < 0 ? null : new EntryPoint(entryNode, entryLevel);
+            index.quantizer = in.readBoolean() ? ScalarQuantizer.readFrom(in, dimension, index.kernels) : null;
+            index.sealed = true;
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the HNSW index in " + directory, e);
+        }
+    }
+
+    /**
+     * Adds a vector under a node id that has not been used before. Ids should be dense, as storage grows up to the highest.
+     * @param node The node id.
+     * @param vector The vector; it is normalized to unit length on the way in.
+     */
+    public void insert(int node, float[] vector) {
+        if (sealed) {
+            throw new IllegalStateException("The HNSW index in " + directory + " is sealed");
+        }
+        float[] unit = normalize(vector);
+        int level = randomLevel();
+
+        vectors.reserve(node);
+        vectors.writeFloats(node, 0, unit);
+        baseLayer.reserve(node);
+        if (level > 0) {
+            int first = upperRecords.getAndAdd(level);
+            upperLayers.reserve(first + level - 1);
+            baseLayer.setIntRelease(node, UPPER, first);
+        }
+        // Publishes the vector: a node is only searched once this is set.
+        baseLayer.setIntRelease(node, LEVEL, level + 1);
+        // Either this thread sees the quantizer or the thread training it sees this node, and quantizes it.
+        VarHandle.fullFence();
+        int count = size.incrementAndGet();
+        ScalarQuantizer trained = quantizer;
+        if (trained != null) {
+            quantize(node, unit, trained);
+        } else if (quantizationSampleSize > 0 && count >= quantizationSampleSize) {
+            trainQuantizer();
+        }
+
+        EntryPoint entry = entryPoint;
+        if (entry == null) {
+            synchronized (entryLock) {
+                if (entryPoint == null) {
+                    entryPoint = new EntryPoint(node, level);
+                    return;
+                }
+                entry = entryPoint;
+            }
+        }
+
+        SearchState state = searchState.get();
+        Scorer scorer = new Scorer(state, unit);
+        int current = entry.node();
+        float currentScore = scorer.score(current);
+        for (int layer = entry.level(); layer > level; layer--) {
+            current = greedyClosest(scorer, current, currentScore, layer);
+            currentScore = scorer.score(current);
+        }
+        for (int layer = Math.min(level, entry.level()); layer >= 0; layer--) {
+            TopK.Result found = searchLayer(state, scorer, node, current, currentScore, efConstruction, layer, null);
+            int[] selected = selectNeighbours(state, found.ids(), found.scores(), found.size(), maxNeighbours(layer));
+            synchronized (lock(node)) {
+                writeNeighbours(node, layer, selected, selected.length);
+            }
+            for (int neighbour : selected) {
+                link(state, neighbour, node, layer);
+            }
+            current = found.ids()[0];
+            currentScore = found.scores()[0];
+        }
+
+        if (level > entry.level()) {
+            synchronized (entryLock) {
+                if (level > entryPoint.level()) {
+                    entryPoint = new EntryPoint(node, level);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the nodes most similar to the query among those in the filter.
+     * @param query The query vector.
+     * @param filter The node ids that may be returned.
+     * @param k The number of nodes to return.
+     * @param ef The candidate list size; larger finds more of the true nearest neighbours but takes longer.
+     * @return The nodes and their cosine similarities, most similar first.
+     */
+    public TopK.Result search(float[] query, BitSet filter, int k, int ef) {
+        float[] unit = normalize(query);
+        EntryPoint entry = entryPoint;
+        if (entry == null || filter.isEmpty()) {
+            return new TopK(k).drain();
+        }
+        SearchState state = searchState.get();
+        Scorer scorer = new Scorer(state, unit);
+        int candidates = Math.max(ef, k);
+        if (filter.cardinality() <= exactSearchThreshold) {
+            return rerank(state, unit, scan(scorer, filter, scorer.isQuantized() ? candidates : k), k);
+        }
+
+        int current = entry.node();
+        float currentScore = scorer.score(current);
+        for (int layer = entry.level(); layer > 0; layer--) {
+            current = greedyClosest(scorer, current, currentScore, layer);
+            currentScore = scorer.score(current);
+        }
+        return rerank(state, unit, searchLayer(state, scorer, -1, current, currentScore, candidates, 0, filter), k);
+    }
+
+    /**
+     * Finds the nodes most similar to the query among those in the filter by comparing the query with every one of
+     * their full-precision vectors. Slower than {@link #search} but exact, which makes it the baseline to measure
+     * the recall of graph search against.
+     * @param query The query vector.
+     * @param filter The node ids that may be returned.
+     * @param k The number of nodes to return.
+     * @return The nodes and their cosine similarities, most similar first.
+     */
+    public TopK.Result exactSearch(float[] query, BitSet filter, int k) {
+        float[] unit = normalize(query);
+        SearchState state = searchState.get();
+        TopK top = new TopK(k);
+        for (int node = filter.nextSetBit(0); node >= 0; node = filter.nextSetBit(node + 1)) {
+            if (contains(node)) {
+                top.offer(node, similarity(state, unit, node));
+            }
+        }
+        return top.drain();
+    }
+
+    /**
+     * Stops inserts and writes what is needed to {@link #open} the index again.
+     * Must not run concurrently with inserts.
+     */
+    public void seal() {
+        sealed = true;
+        vectors.force();
+        quantizedVectors.force();
+        baseLayer.force();
+        upperLayers.force();
+        Path file = directory.resolve(META_FILE);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(META_VERSION);
+            out.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
+            out.writeInt(dimension);
+            out.writeInt(maxNeighbours);
+            out.writeInt(size.get());
+            out.writeInt(upperRecords.get());
+            EntryPoint entry = entryPoint;
+            out.writeInt(entry == null ? -1 : entry.node());
+            out.writeInt(entry == null ? -1 : entry.level());
+            ScalarQuantizer trained = quantizer;
+            out.writeBoolean(trained != null);
+            if (trained != null) {
+                trained.writeTo(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + file, e);
+        }
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * @return The full-precision vector of the node, normalized to unit length, or null if the node has none.
+     */
+    public float[] vector(int node) {
+        return contains(node) ? readVector(node) : null;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @return Whether vectors are quantized yet.
+     */
+    public boolean isQuantized() {
+        return quantizer != null;
+    }
+
+    /**
+     * @return The bytes mapped for the vectors and adjacency lists searched, excluding full-precision vectors once
+     *         the index is quantized.
+     */
+    public long sizeInBytes() {
+        long graphBytes = baseLayer.sizeInBytes() + upperLayers.sizeInBytes();
+        return graphBytes + (isQuantized() ? quantizedVectors.sizeInBytes() : vectors.sizeInBytes());
+    }
+
+    /**
+     * @return The bytes mapped for full-precision vectors.
+     */
+    public long fullPrecisionBytes() {
+        return vectors.sizeInBytes();
+    }
+
+    @Override
+    public void close() {
+        vectors.close();
+        quantizedVectors.close();
+        baseLayer.close();
+        upperLayers.close();
+    }
+
+    private static MappedRecords records(Path path, int recordBytes, long pageBytes, boolean existing) {
+        return existing ? MappedRecords.open(path, recordBytes, pageBytes) : new MappedRecords(path, recordBytes, pageBytes);
+    }
+
+    private TopK.Result scan(Scorer scorer, BitSet filter, int k) {
+        TopK top = new TopK(k);
+        for (int node = filter.nextSetBit(0); node >= 0; node = filter.nextSetBit(node + 1)) {
+            if (contains(node)) {
+                top.offer(node, scorer.score(node));
+            }
+        }
+        return top.drain();
+    }
+
+    /**
+     * Scores candidates by their full-precision vectors.
+     * @return The k best candidates, most similar first.
+     */
+    private TopK.Result rerank(SearchState state, float[] query, TopK.Result candidates, int k) {
+        TopK top = new TopK(k);
+        for (int i = 0; i < candidates.size(); i++) {
+            int node = candidates.ids()[i];
+            top.offer(node, isQuantized(node) ? similarity(state, query, node) : candidates.scores()[i]);
+        }
+        return top.drain();
+    }
+
+    /**
+     * Learns the quantizer from the first vectors and quantizes every vector stored so far.
+     */
+    private void trainQuantizer() {
+        synchronized (quantizerLock) {
+            if (quantizer != null) {
+                return;
+            }
+            List<float[]> sample = new ArrayList<>(quantizationSampleSize);
+            for (int node = 0; node < baseLayer.capacity() && sample.size() < quantizationSampleSize; node++) {
+                if (contains(node)) {
+                    sample.add(readVector(node));
+                }
+            }
+            ScalarQuantizer trained = ScalarQuantizer.train(sample, dimension, kernels);
+            quantizer = trained;
+            VarHandle.fullFence();
+            for (int node = 0; node < baseLayer.capacity(); node++) {
+                if (contains(node) && !isQuantized(node)) {
+                    quantize(node, readVector(node), trained);
+                }
+            }
+        }
+    }
+
+    private void quantize(int node, float[] unit, ScalarQuantizer trained) {
+        byte[] codes = new byte[dimension];
+        float correction = trained.quantize(unit, codes);
+        quantizedVectors.reserve(node);
+        quantizedVectors.page(node).putFloat(quantizedVectors.offset(node), correction);
+        quantizedVectors.writeBytes(node, Float.BYTES, codes);
+        baseLayer.setIntRelease(node, QUANTIZED, 1);
+    }
+
+    private boolean isQuantized(int node) {
+        return baseLayer.getIntAcquire(node, QUANTIZED) != 0;
+    }
+
+    private float[] readVector(int node) {
+        float[] vector = new float[dimension];
+        vectors.readFloats(node, 0, vector);
+        return vector;
+    }
+
+    /**
+     * Walks to the neighbour closest to the query until no neighbour is closer.
+     */
+    private int greedyClosest(Scorer scorer, int start, float startScore, int layer) {
+        int current = start;
+        float currentScore = startScore;
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            int count = neighbourCount(current, layer);
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbour(current, layer, i);
+                float score = scorer.score(neighbour);
+                if (score > currentScore) {
+                    current = neighbour;
+                    currentScore = score;
+                    moved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer from an entry node.
+     * @param exclude A node to skip, or -1.
+     * @param filter The nodes that may be returned, or null for all. Other nodes are still expanded.
+     * @return Up to ef nodes, most similar first.
+     */
+    private TopK.Result searchLayer(SearchState state, Scorer scorer, int exclude, int entry, float entryScore, int ef,
+                                    int layer, BitSet filter) {
+        VisitedSet visited = state.visited;
+        CandidateQueue candidates = state.candidates;
+        visited.reset((int) Math.min(Integer.MAX_VALUE, baseLayer.capacity()));
+        candidates.clear();
+        TopK results = new TopK(ef);
+
+        if (exclude >= 0) {
+            visited.visit(exclude);
+        }
+        visited.visit(entry);
+        candidates.push(entry, entryScore);
+        if (filter == null || filter.get(entry)) {
+            results.offer(entry, entryScore);
+        }
+        while (!candidates.isEmpty()) {
+            if (results.size() == ef && candidates.bestScore() < results.threshold()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            int count = neighbourCount(candidate, layer);
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbour(candidate, layer, i);
+                if (!visited.visit(neighbour)) {
+                    continue;
+                }
+                float score = scorer.score(neighbour);
+                if (results.size() < ef || score > results.threshold()) {
+                    candidates.push(neighbour, score);
+                    if (filter == null || filter.get(neighbour)) {
+                        results.offer(neighbour, score);
+                    }
+                }
+            }
+        }
+        return results.drain();
+    }
+
+    /**
+     * Picks neighbours that are closer to the base node than to any neighbour already picked, which keeps links
+     * pointing in different directions and the graph navigable.
+     * @param candidates Candidate nodes, most similar to the base node first.
+     * @param scores Their similarities to the base node.
+     */
+    private int[] selectNeighbours(SearchState state, int[] candidates, float[] scores, int count, int max) {
+        int[] selected = new int[Math.min(count, max)];
+        int size = 0;
+        for (int i = 0; i < count && size < selected.length; i++) {
+            boolean diverse = true;
+            for (int j = 0; j < size; j++) {
+                if (similarity(state, candidates[i], selected[j]) > scores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[size++] = candidates[i];
+            }
+        }
+        return size == selected.length ? selected : Arrays.copyOf(selected, size);
+    }
+
+    /**
+     * Adds a back link to a neighbour of a new node, re-selecting the neighbour's links if it has too many.
+     */
+    private void link(SearchState state, int node, int newNeighbour, int layer) {
+        synchronized (lock(node)) {
+            int max = maxNeighbours(layer);
+            int count = neighbourCount(node, layer);
+            if (count < max) {
+                writeNeighbour(node, layer, count, newNeighbour);
+                writeCount(node, layer, count + 1);
+                return;
+            }
+            TopK ranked = new TopK(count + 1);
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbour(node, layer, i);
+                ranked.offer(neighbour, similarity(state, node, neighbour));
+            }
+            ranked.offer(newNeighbour, similarity(state, node, newNeighbour));
+            TopK.Result candidates = ranked.drain();
+            int[] selected = selectNeighbours(state, candidates.ids(), candidates.scores(), candidates.size(), max);
+            writeNeighbours(node, layer, selected, selected.length);
+        }
+    }
+
+    private boolean contains(int node) {
+        return node < baseLayer.capacity() && baseLayer.getIntAcquire(node, LEVEL) > 0;
+    }
+
+    private int neighbourCount(int node, int layer) {
+        int count = layer == 0
+                ? baseLayer.getIntAcquire(node, BASE_COUNT)
+                : upperLayers.getIntAcquire(upperRecord(node, layer), UPPER_COUNT);
+        return Math.min(count, maxNeighbours(layer));
+    }
+
+    private int neighbour(int node, int layer, int i) {
+        return layer == 0
+                ? baseLayer.getIntAcquire(node, BASE_COUNT + 1 + i)
+                : upperLayers.getIntAcquire(upperRecord(node, layer), UPPER_COUNT + 1 + i);
+    }
+
+    private void writeNeighbour(int node, int layer, int i, int neighbour) {
+        if (layer == 0) {
+            baseLayer.setIntRelease(node, BASE_COUNT + 1 + i, neighbour);
+        } else {
+            upperLayers.setIntRelease(upperRecord(node, layer), UPPER_COUNT + 1 + i, neighbour);
+        }
+    }
+
+    private void writeCount(int node, int layer, int count) {
+        if (layer == 0) {
+            baseLayer.setIntRelease(node, BASE_COUNT, count);
+        } else {
+            upperLayers.setIntRelease(upperRecord(node, layer), UPPER_COUNT, count);
+        }
+    }
+
+    /**
+     * Replaces a node's list. Entries are written before the count, so readers never see unwritten slots.
+     */
+    private void writeNeighbours(int node, int layer, int[] neighbours, int count) {
+        for (int i = 0; i < count; i++) {
+            writeNeighbour(node, layer, i, neighbours[i]);
+        }
+        writeCount(node, layer, count);
+    }
+
+    private int upperRecord(int node, int layer) {
+        return baseLayer.getIntAcquire(node, UPPER) + layer - 1;
+    }
+
+    private int maxNeighbours(int layer) {
+        return layer == 0 ? maxBaseNeighbours : maxNeighbours;
+    }
+
+    private Object lock(int node) {
+        return locks[node & (LOCK_STRIPES - 1)];
+    }
+
+    private int randomLevel() {
+        double uniform = 1 - ThreadLocalRandom.current().nextDouble();
+        return (int) Math.min(MAX_LEVEL, -Math.log(uniform) * levelMultiplier);
+    }
+
+    private float similarity(SearchState state, float[] query, int node) {
+        vectors.readFloats(node, 0, state.vectorA);
+        return kernels.dot(query, state.vectorA);
+    }
+
+    private float similarity(SearchState state, int a, int b) {
+        ScalarQuantizer trained = quantizer;
+        if (trained != null && isQuantized(a) && isQuantized(b)) {
+            quantizedVectors.readBytes(a, Float.BYTES, state.codesA);
+            quantizedVectors.readBytes(b, Float.BYTES, state.codesB);
+            return trained.dot(state.codesA, correction(a), state.codesB, correction(b));
+        }
+        vectors.readFloats(a, 0, state.vectorA);
+        vectors.readFloats(b, 0, state.vectorB);
+        return kernels.dot(state.vectorA, state.vectorB);
+    }
+
+    private float correction(int node) {
+        return quantizedVectors.page(node).getFloat(quantizedVectors.offset(node));
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a vector of %d dimensions but got %d"
+                    .formatted(dimension, vector.length));
+        }
+        double norm = 0;
+        for (float component : vector) {
+            norm += component * component;
+        }
+        float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        float[] unit = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            unit[i] = vector[i] * scale;
+        }
+        return unit;
+    }
+
+    private record EntryPoint(int node, int level) {
+    }
+
+    /**
+     * Scores nodes against one query, on their quantized vectors where the node has one.
+     */
+    private final class Scorer {
+
+        private final SearchState state;
+        private final float[] query;
+        private final ScalarQuantizer.Query quantizedQuery;
+
+        Scorer(SearchState state, float[] query) {
+            this.state = state;
+            this.query = query;
+            ScalarQuantizer trained = quantizer;
+            this.quantizedQuery = trained == null ? null : trained.query(query);
+        }
+
+        boolean isQuantized() {
+            return quantizedQuery != null;
+        }
+
+        float score(int node) {
+            if (quantizedQuery != null && HnswIndex.this.isQuantized(node)) {
+                quantizedVectors.readBytes(node, Float.BYTES, state.codesA);
+                return quantizedQuery.dot(state.codesA);
+            }
+            return similarity(state, query, node);
+        }
+    }
+
+    /**
+     * Per-thread buffers, so searches and inserts allocate nothing per visited node.
+     */
+    private static final class SearchState {
+        final VisitedSet visited = new VisitedSet();
+        final CandidateQueue candidates = new CandidateQueue();
+        final float[] vectorA;
+        final float[] vectorB;
+        final byte[] codesA;
+        final byte[] codesB;
+
+        SearchState(int dimension) {
+            vectorA = new float[dimension];
+            vectorB = new float[dimension];
+            codesA = new byte[dimension];
+            codesB = new byte[dimension];
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Fixed-size records stored off-heap in a memory-mapped file, addressed by dense int index.
+ * The file is mapped in pages that hold a whole number of records, so no record spans two mappings,
+ * and grows a page at a time as higher indexes are reserved. The data lives in the page cache rather than the heap,
+ * so millions of records add nothing to garbage collection.
+ * Int fields can be read with acquire and written with release semantics for lock-free readers.
+ * A file written before can be opened again read-only, mapping all of it at once without reading it.
+ * Records are read in bulk into arrays for the distance kernels, since the vector API of Java 21 cannot load
+ * straight from a buffer without preview features.
+ */
+final class MappedRecords implements AutoCloseable {
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final int recordBytes;
+    private final int recordsPerPage;
+    private final boolean readOnly;
+    private volatile Mapping[] pages = new Mapping[0];
+    private long openedRecords;
+
+    /**
+     * Creates an empty record file, replacing any file at the path.
+     * @param path The backing file.
+     * @param recordBytes The size of a record; a multiple of 4.
+     * @param pageBytes The preferred size of a mapping; rounded down to whole records, but at least one record.
+     */
+    MappedRecords(Path path, int recordBytes, long pageBytes) {
+        this(path, recordBytes, pageBytes, false);
+    }
+
+    private MappedRecords(Path path, int recordBytes, long pageBytes, boolean readOnly) {
+        if (recordBytes <= 0 || recordBytes % Integer.BYTES != 0) {
+            throw new IllegalArgumentException("Record size must be a positive multiple of 4: " + recordBytes);
+        }
+        this.recordBytes = recordBytes;
+        this.recordsPerPage = (int) Math.clamp(pageBytes / recordBytes, 1, Integer.MAX_VALUE / recordBytes);
+        this.readOnly = readOnly;
+        try {
+            if (readOnly) {
+                this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            } else {
+                Files.createDirectories(path.getParent());
+                this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + path, e);
+        }
+    }
+
+    /**
+     * Maps an existing record file read-only. The page size need not match the one the file was written with.
+     */
+    static MappedRecords open(Path path, int recordBytes, long pageBytes) {
+        MappedRecords records = new MappedRecords(path, recordBytes, pageBytes, true);
+        try {
+            long fileBytes = records.channel.size();
+            long pageSize = (long) records.recordsPerPage * recordBytes;
+            Mapping[] pages = new Mapping[(int) ((fileBytes + pageSize - 1) / pageSize)];
+            for (int i = 0; i < pages.length; i++) {
+                long position = i * pageSize;
+                MappedByteBuffer bytes = records.channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(pageSize, fileBytes - position));
+                bytes.order(ByteOrder.nativeOrder());
+                pages[i] = new Mapping(bytes, bytes.asFloatBuffer());
+            }
+            records.pages = pages;
+            records.openedRecords = fileBytes / recordBytes;
+        } catch (IOException e) {
+            records.close();
+            throw new UncheckedIOException("Failed to map " + path, e);
+        }
+        return records;
+    }
+
+    /**
+     * Makes sure the record at the index is mapped. New records read as zeros.
+     */
+    void reserve(int index) {
+        int page = index / recordsPerPage;
+        if (page < pages.length) {
+            return;
+        }
+        if (readOnly) {
+            throw new IllegalStateException("Record file is read-only");
+        }
+        synchronized (this) {
+            Mapping[] current = pages;
+            if (page < current.length) {
+                return;
+            }
+            Mapping[] grown = Arrays.copyOf(current, page + 1);
+            long pageBytes = (long) recordsPerPage * recordBytes;
+            try {
+                for (int i = current.length; i <= page; i++) {
+                    MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_WRITE, i * pageBytes, pageBytes);
+                    bytes.order(ByteOrder.nativeOrder());
+                    grown[i] = new Mapping(bytes, bytes.asFloatBuffer());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map record page " + page, e);
+            }
+            pages = grown;
+        }
+    }
+
+    /**
+     * @return The mapping holding the record; the record starts at {@link #offset(int)}.
+     */
+    MappedByteBuffer page(int index) {
+        return pages[index / recordsPerPage].bytes();
+    }
+
+    /**
+     * @return The byte offset of the record within its page.
+     */
+    int offset(int index) {
+        return (index % recordsPerPage) * recordBytes;
+    }
+
+    /**
+     * @return The number of records mapped so far.
+     */
+    long capacity() {
+        return readOnly ? openedRecords : (long) pages.length * recordsPerPage;
+    }
+
+    long sizeInBytes() {
+        return capacity() * recordBytes;
+    }
+
+    /**
+     * Copies floats of a record into the array.
+     * @param byteOffset The position of the first float within the record; a multiple of 4.
+     */
+    void readFloats(int index, int byteOffset, float[] destination) {
+        FloatBuffer floats = pages[index / recordsPerPage].floats();
+        floats.get((offset(index) + byteOffset) / Float.BYTES, destination, 0, destination.length);
+    }
+
+    /**
+     * Copies bytes of a record into the array.
+     * @param byteOffset The position of the first byte within the record.
+     */
+    void readBytes(int index, int byteOffset, byte[] destination) {
+        page(index).get(offset(index) + byteOffset, destination, 0, destination.length);
+    }
+
+    void writeFloats(int index, int byteOffset, float[] source) {
+        FloatBuffer floats = pages[index / recordsPerPage].floats();
+        floats.put((offset(index) + byteOffset) / Float.BYTES, source, 0, source.length);
+    }
+
+    void writeBytes(int index, int byteOffset, byte[] source) {
+        page(index).put(offset(index) + byteOffset, source, 0, source.length);
+    }
+
+    int getIntAcquire(int index, int field) {
+        return (int) INT.getAcquire(page(index), offset(index) + field * Integer.BYTES);
+    }
+
+    void setIntRelease(int index, int field, int value) {
+        INT.setRelease(page(index), offset(index) + field * Integer.BYTES, value);
+    }
+
+    /**
+     * Writes changes to the mapped records to the file.
+     */
+    void force() {
+        if (readOnly) {
+            return;
+        }
+        for (Mapping page : pages) {
+            page.bytes().force();
+        }
+    }
+
+    @Override
+    public void close() {
+        pages = new Mapping[0];
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Mapping(MappedByteBuffer bytes, FloatBuffer floats) {
+    }
+}
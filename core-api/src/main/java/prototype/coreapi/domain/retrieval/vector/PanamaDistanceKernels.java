@@ -0,0 +1,118 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Distance kernels on the incubating vector API, using the widest float vectors the CPU supports.
+ * Int8 codes are widened to floats a vector at a time, which needs float vectors of at least 8 lanes;
+ * on narrower hardware the int8 kernels fall back to plain loops. Only loaded when the vector module is enabled.
+ */
+final class PanamaDistanceKernels implements DistanceKernels {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // As many byte lanes as float lanes, so one load of codes widens into one float vector
+    private static final VectorSpecies<Byte> BYTES = FLOATS.length() >= 8
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(FLOATS.length() * Byte.SIZE))
+            : null;
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(a.length); i < bound; i += FLOATS.length()) {
+            sum = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        FloatVector dotSum = FloatVector.zero(FLOATS);
+        FloatVector normASum = FloatVector.zero(FLOATS);
+        FloatVector normBSum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(a.length); i < bound; i += FLOATS.length()) {
+            FloatVector va = FloatVector.fromArray(FLOATS, a, i);
+            FloatVector vb = FloatVector.fromArray(FLOATS, b, i);
+            dotSum = va.fma(vb, dotSum);
+            normASum = va.fma(va, normASum);
+            normBSum = vb.fma(vb, normBSum);
+        }
+        float dot = dotSum.reduceLanes(VectorOperators.ADD);
+        float normA = normASum.reduceLanes(VectorOperators.ADD);
+        float normB = normBSum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : (float) (dot / Math.sqrt((double) normA * normB));
+    }
+
+    @Override
+    public float squaredDistance(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(a.length); i < bound; i += FLOATS.length()) {
+            FloatVector difference = FloatVector.fromArray(FLOATS, a, i).sub(FloatVector.fromArray(FLOATS, b, i));
+            sum = difference.fma(difference, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            float difference = a[i] - b[i];
+            result += difference * difference;
+        }
+        return result;
+    }
+
+    @Override
+    public float dot(float[] weights, byte[] codes) {
+        if (BYTES == null) {
+            return ScalarDistanceKernels.INSTANCE.dot(weights, codes);
+        }
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(weights.length); i < bound; i += FLOATS.length()) {
+            sum = FloatVector.fromArray(FLOATS, weights, i).fma(widen(codes, i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < weights.length; i++) {
+            result += weights[i] * codes[i];
+        }
+        return result;
+    }
+
+    @Override
+    public float dot(float[] weights, byte[] a, byte[] b) {
+        if (BYTES == null) {
+            return ScalarDistanceKernels.INSTANCE.dot(weights, a, b);
+        }
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(weights.length); i < bound; i += FLOATS.length()) {
+            sum = FloatVector.fromArray(FLOATS, weights, i).mul(widen(a, i)).fma(widen(b, i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < weights.length; i++) {
+            result += weights[i] * a[i] * b[i];
+        }
+        return result;
+    }
+
+    private static FloatVector widen(byte[] codes, int offset) {
+        return (FloatVector) ByteVector.fromArray(BYTES, codes, offset).convertShape(VectorOperators.B2F, FLOATS, 0);
+    }
+
+    @Override
+    public String toString() {
+        return FLOATS.length() + " float lanes" + (BYTES == null ? ", scalar int8" : "");
+    }
+}
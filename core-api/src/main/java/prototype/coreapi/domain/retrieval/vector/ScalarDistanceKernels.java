@@ -0,0 +1,67 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+/**
+ * Distance kernels as plain loops, for JVMs without the vector API and as the reference for the SIMD kernels.
+ */
+final class ScalarDistanceKernels implements DistanceKernels {
+
+    static final ScalarDistanceKernels INSTANCE = new ScalarDistanceKernels();
+
+    private ScalarDistanceKernels() {
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        float dot = 0;
+        float normA = 0;
+        float normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : (float) (dot / Math.sqrt((double) normA * normB));
+    }
+
+    @Override
+    public float squaredDistance(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            float difference = a[i] - b[i];
+            sum += difference * difference;
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] weights, byte[] codes) {
+        float sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i] * codes[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] weights, byte[] a, byte[] b) {
+        float sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i] * a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,145 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-dimension int8 scalar quantization: component i is stored as a signed byte code c with
+ * x[i] ≈ origin[i] + step[i] * c, where origin and step map the range of that dimension in a sample of vectors onto
+ * the 256 codes. Values outside the sampled range are clipped.
+ * <p>
+ * A quantized record holds a float correction term followed by the codes. Dot products are computed without decoding:
+ * query · x = Σ q[i]·origin[i] + Σ (q[i]·step[i])·c[i], and for two stored vectors
+ * x · y = Σ origin[i]² + corr(x) + corr(y) + Σ step[i]²·cx[i]·cy[i], with corr(x) = Σ origin[i]·step[i]·cx[i].
+ */
+final class ScalarQuantizer {
+
+    private static final int LEVELS = 255;
+    private static final int CODE_OFFSET = 128;
+
+    private final DistanceKernels kernels;
+    private final float[] origin;
+    private final float[] step;
+    private final float[] originStep;
+    private final float[] stepSquared;
+    private final float originNormSquared;
+
+    private ScalarQuantizer(DistanceKernels kernels, float[] origin, float[] step) {
+        int dimension = origin.length;
+        this.kernels = kernels;
+        this.origin = origin;
+        this.step = step;
+        this.originStep = new float[dimension];
+        this.stepSquared = new float[dimension];
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            originStep[i] = origin[i] * step[i];
+            stepSquared[i] = step[i] * step[i];
+            sum += origin[i] * origin[i];
+        }
+        this.originNormSquared = sum;
+    }
+
+    /**
+     * Learns the range of every dimension from a sample.
+     */
+    static ScalarQuantizer train(List<float[]> sample, int dimension, DistanceKernels kernels) {
+        float[] min = new float[dimension];
+        float[] max = new float[dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (float[] vector : sample) {
+            for (int i = 0; i < dimension; i++) {
+                min[i] = Math.min(min[i], vector[i]);
+                max[i] = Math.max(max[i], vector[i]);
+            }
+        }
+        float[] origin = new float[dimension];
+        float[] step = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            if (min[i] > max[i]) {
+                min[i] = 0;
+                max[i] = 0;
+            }
+            step[i] = max[i] > min[i] ? (max[i] - min[i]) / LEVELS : 0;
+            origin[i] = min[i] + CODE_OFFSET * step[i];
+        }
+        return new ScalarQuantizer(kernels, origin, step);
+    }
+
+    /**
+     * Reads a quantizer written by {@link #writeTo}.
+     */
+    static ScalarQuantizer readFrom(DataInput in, int dimension, DistanceKernels kernels) throws IOException {
+        float[] origin = new float[dimension];
+        float[] step = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            origin[i] = in.readFloat();
+            step[i] = in.readFloat();
+        }
+        return new ScalarQuantizer(kernels, origin, step);
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        for (int i = 0; i < origin.length; i++) {
+            out.writeFloat(origin[i]);
+            out.writeFloat(step[i]);
+        }
+    }
+
+    /**
+     * @return The size of a quantized record: the correction term and the codes, padded to a multiple of 4.
+     */
+    static int recordBytes(int dimension) {
+        return Float.BYTES + (dimension + 3) / 4 * 4;
+    }
+
+    /**
+     * Quantizes a vector.
+     * @param codes Receives the codes.
+     * @return The correction term to store with the codes.
+     */
+    float quantize(float[] vector, byte[] codes) {
+        for (int i = 0; i < vector.length; i++) {
+            int level = step[i] == 0 ? 0 : Math.clamp(Math.round((vector[i] - origin[i]) / step[i] + CODE_OFFSET), 0, LEVELS);
+            codes[i] = (byte) (level - CODE_OFFSET);
+        }
+        return kernels.dot(originStep, codes);
+    }
+
+    /**
+     * Prepares a query for scoring against quantized records.
+     */
+    Query query(float[] vector) {
+        float base = 0;
+        float[] weights = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            base += vector[i] * origin[i];
+            weights[i] = vector[i] * step[i];
+        }
+        return new Query(kernels, base, weights);
+    }
+
+    /**
+     * @return The approximate dot product of two quantized vectors.
+     */
+    float dot(byte[] codesA, float correctionA, byte[] codesB, float correctionB) {
+        return originNormSquared + correctionA + correctionB + kernels.dot(stepSquared, codesA, codesB);
+    }
+
+    /**
+     * A query vector folded with the quantization parameters.
+     */
+    record Query(DistanceKernels kernels, float base, float[] weights) {
+
+        /**
+         * @return The approximate dot product of the query and a quantized vector.
+         */
+        float dot(byte[] codes) {
+            return base + kernels.dot(weights, codes);
+        }
+    }
+}
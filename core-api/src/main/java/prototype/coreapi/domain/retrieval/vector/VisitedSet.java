@@ -0,0 +1,43 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import java.util.Arrays;
+
+/**
+ * The nodes a graph search has visited, reusable across searches without clearing:
+ * a node counts as visited when its mark equals the current epoch, and starting a new search just moves the epoch on.
+ * Not thread-safe: every search thread uses its own set.
+ */
+final class VisitedSet {
+
+    private int[] marks = new int[0];
+    private int epoch;
+
+    /**
+     * Forgets all visits and makes room for node ids below the capacity; higher ids make room as they are visited.
+     */
+    void reset(int capacity) {
+        if (marks.length < capacity) {
+            marks = new int[Math.max(capacity, marks.length + (marks.length >> 1))];
+            epoch = 0;
+        }
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * Marks the node as visited.
+     * @return Whether the node had not been visited yet.
+     */
+    boolean visit(int node) {
+        if (node >= marks.length) {
+            // The graph grew during the search
+            marks = Arrays.copyOf(marks, Math.max(node + 1, marks.length + (marks.length >> 1)));
+        } else if (marks[node] == epoch) {
+            return false;
+        }
+        marks[node] = epoch;
+        return true;
+    }
+}
@@ -0,0 +1,58 @@
+package prototype.coreapi.domain.telemetry;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in exponentially growing buckets, each 20% wider than the one before, from 10µs to over five
+ * minutes. Recording is lock-free and constant in size whatever the number of samples; a percentile is reported as
+ * the upper bound of the bucket it falls in, so it overstates the true value by at most 20%.
+ */
+final class LatencyHistogram {
+
+    private static final double MIN_NANOS = 10_000;
+    private static final double GROWTH = 1.2;
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+    private static final int BUCKETS = 96;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * @param quantile Between 0 and 1.
+     * @return The upper bound of the bucket holding the quantile, in nanoseconds, or 0 if nothing was recorded.
+     */
+    long percentile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    static int bucket(long nanos) {
+        if (nanos <= MIN_NANOS) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, (int) Math.ceil(Math.log(nanos / MIN_NANOS) / LOG_GROWTH));
+    }
+
+    static long upperBound(int bucket) {
+        return (long) (MIN_NANOS * Math.pow(GROWTH, bucket));
+    }
+}
@@ -0,0 +1,55 @@
+package prototype.coreapi.domain.telemetry;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import lombok.RequiredArgsConstructor;
+import prototype.coreapi.domain.telemetry.enums.DataStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the commands of the Mongo client. The command document is only readable while the command starts, so the
+ * fingerprint is taken then. Executions are logged by fingerprint, never with the command itself, whose values may
+ * hold user data such as prompts and answers.
+ */
+@RequiredArgsConstructor
+public class MongoQueryListener implements CommandListener {
+
+    private final QueryTelemetry queryTelemetry;
+    private final Map<Integer, Started> running = new ConcurrentHashMap<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (!queryTelemetry.isEnabled()) {
+            return;
+        }
+        String fingerprint = QueryFingerprints.mongo(event.getCommandName(), event.getCommand());
+        running.put(event.getRequestId(), new Started(event.getDatabaseName(), fingerprint));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        finish(event.getRequestId(), event.getElapsedTime(TimeUnit.NANOSECONDS), true);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        finish(event.getRequestId(), event.getElapsedTime(TimeUnit.NANOSECONDS), false);
+    }
+
+    private void finish(int requestId, long nanos, boolean success) {
+        Started started = running.remove(requestId);
+        if (started == null) {
+            return;
+        }
+        queryTelemetry.record(DataStore.MONGO, started.fingerprint(), nanos, success, queryTelemetry.sample(),
+                () -> started.database() + " " + started.fingerprint());
+    }
+
+    private record Started(String database, String fingerprint) {
+    }
+}
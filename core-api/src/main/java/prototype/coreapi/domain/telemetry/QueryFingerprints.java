@@ -0,0 +1,206 @@
+package prototype.coreapi.domain.telemetry;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces queries to fingerprints: the query with every literal value replaced by {@code ?}, so executions of the
+ * same statement with different values are counted together.
+ */
+final class QueryFingerprints {
+
+    private static final int MAX_LENGTH = 1_000;
+    private static final int MAX_DEPTH = 6;
+    // Elements of an array shaped before the rest are assumed to look alike, as in $in lists and inserted documents.
+    private static final int MAX_ARRAY_ELEMENTS = 8;
+    private static final Pattern VALUE_LIST = Pattern.compile("\\?(?:, \\?)+");
+    private static final Pattern ROW_LIST = Pattern.compile("\\(\\?\\)(?:, \\(\\?\\))+");
+    // Session, transaction and cursor fields the driver adds to commands, which do not make a query different.
+    private static final Set<String> MONGO_IGNORED_FIELDS = Set.of("$db", "lsid", "$clusterTime", "txnNumber",
+            "autocommit", "startTransaction", "$readPreference", "readConcern", "writeConcern", "ordered", "cursor",
+            "batchSize", "maxTimeMS", "singleBatch", "comment", "apiVersion", "apiStrict", "apiDeprecationErrors");
+
+    private QueryFingerprints() {
+    }
+
+    /**
+     * Replaces string and numeric literals and bind markers with {@code ?}, collapses whitespace and reduces lists of
+     * values or rows to one, so that {@code IN} lists and multi-row inserts of any length share a fingerprint.
+     */
+    static String sql(String sql) {
+        StringBuilder out = new StringBuilder(Math.min(sql.length(), MAX_LENGTH));
+        int n = sql.length();
+        int i = 0;
+        boolean pendingSpace = false;
+        while (i < n && out.length() < MAX_LENGTH) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = !out.isEmpty();
+                i++;
+                continue;
+            }
+            if (pendingSpace && c != ',') {
+                out.append(' ');
+            }
+            pendingSpace = false;
+            if (c == '\'') {
+                i = skipString(sql, i + 1);
+                out.append('?');
+            } else if (c == '"') {
+                int end = sql.indexOf('"', i + 1);
+                end = end < 0 ? n : end + 1;
+                out.append(sql, i, end);
+                i = end;
+            } else if (c == '$' && i + 1 < n && Character.isDigit(sql.charAt(i + 1))) {
+                i = skipDigits(sql, i + 1);
+                out.append('?');
+            } else if (Character.isDigit(c)) {
+                i = skipDigits(sql, i);
+                out.append('?');
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+                    i++;
+                }
+                out.append(sql, start, i);
+            } else {
+                // Space after commas so "(?,?)" and "(?, ?)" collapse alike
+                out.append(c);
+                if (c == ',') {
+                    pendingSpace = true;
+                }
+                i++;
+            }
+        }
+        String values = VALUE_LIST.matcher(out).replaceAll("?");
+        return ROW_LIST.matcher(values).replaceAll("(?)");
+    }
+
+    /**
+     * Shapes a Mongo command as its name, collection and the remaining fields with values replaced by {@code ?},
+     * keeping field names and operators. Must be called while the command document is valid, in commandStarted.
+     */
+    static String mongo(String commandName, BsonDocument command) {
+        StringBuilder out = new StringBuilder(commandName);
+        String collection = collection(commandName, command);
+        if (collection != null) {
+            out.append(' ').append(collection);
+        }
+        if (commandName.equals("getMore") || commandName.equals("killCursors")) {
+            return out.toString();
+        }
+        for (Map.Entry<String, BsonValue> field : command.entrySet()) {
+            String name = field.getKey();
+            if (name.equals(commandName) || name.equals("collection") || MONGO_IGNORED_FIELDS.contains(name)) {
+                continue;
+            }
+            out.append(' ').append(name).append('=');
+            shape(field.getValue(), out, 0);
+            if (out.length() >= MAX_LENGTH) {
+                out.setLength(MAX_LENGTH);
+                break;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Keys usually end in an identifier, as in {@code RT:42} or {@code UPLOAD_PARTS:<session>}, so every segment after
+     * the first colon is replaced by {@code ?}; keys without a colon, such as stream names, are kept.
+     * @param key The first key of the command, or null if it has none.
+     */
+    static String redis(String command, String key) {
+        if (key == null) {
+            return command;
+        }
+        int colon = key.indexOf(':');
+        if (colon < 0) {
+            return command + " " + key;
+        }
+        StringBuilder out = new StringBuilder(command).append(' ').append(key, 0, colon);
+        for (int i = colon; i >= 0; i = key.indexOf(':', i + 1)) {
+            out.append(":?");
+        }
+        return out.toString();
+    }
+
+    private static String collection(String commandName, BsonDocument command) {
+        BsonValue target = command.get(commandName);
+        if (target != null && target.isString()) {
+            return target.asString().getValue();
+        }
+        BsonValue collection = command.get("collection");
+        return collection != null && collection.isString() ? collection.asString().getValue() : null;
+    }
+
+    private static void shape(BsonValue value, StringBuilder out, int depth) {
+        if (value.isDocument()) {
+            if (depth >= MAX_DEPTH) {
+                out.append("{...}");
+                return;
+            }
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<String, BsonValue> field : value.asDocument().entrySet()) {
+                if (!first) {
+                    out.append(", ");
+                }
+                first = false;
+                out.append(field.getKey()).append(": ");
+                shape(field.getValue(), out, depth + 1);
+            }
+            out.append('}');
+        } else if (value.isArray()) {
+            if (depth >= MAX_DEPTH) {
+                out.append("[...]");
+                return;
+            }
+            // Consecutive elements of the same shape are shown once, so arrays of any length share a fingerprint
+            List<BsonValue> values = value.asArray().getValues();
+            out.append('[');
+            String previous = null;
+            for (int i = 0; i < Math.min(values.size(), MAX_ARRAY_ELEMENTS); i++) {
+                StringBuilder element = new StringBuilder();
+                shape(values.get(i), element, depth + 1);
+                String shaped = element.toString();
+                if (!shaped.equals(previous)) {
+                    if (previous != null) {
+                        out.append(", ");
+                    }
+                    out.append(shaped);
+                    previous = shaped;
+                }
+            }
+            out.append(']');
+        } else {
+            out.append('?');
+        }
+    }
+
+    private static int skipString(String sql, int i) {
+        while (i < sql.length()) {
+            if (sql.charAt(i) == '\'') {
+                // A doubled quote is an escaped quote inside the literal
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipDigits(String sql, int i) {
+        while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,163 @@
+package prototype.coreapi.domain.telemetry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.domain.telemetry.config.QueryTelemetryProperties;
+import prototype.coreapi.domain.telemetry.dto.QueryFingerprintStats;
+import prototype.coreapi.domain.telemetry.dto.QueryStatsResponse;
+import prototype.coreapi.domain.telemetry.enums.DataStore;
+import prototype.coreapi.domain.telemetry.enums.QueryStatsOrder;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Aggregates the executions of R2DBC queries and Mongo and Redis commands per fingerprint, and logs the full detail of
+ * slow executions and of a small sample of the rest. Formatting a query for the log is deferred until it is known to
+ * be logged, so an ordinary execution costs a map lookup and a few atomic increments.
+ * Fingerprints stay on the node rather than becoming meter tags, which would grow without bound; the per-store
+ * timers are published by the drivers' own metrics.
+ */
+@Component
+@Slf4j
+public class QueryTelemetry {
+
+    private static final String OTHER = "(other)";
+    private static final int MAX_TOP = 200;
+
+    private final QueryTelemetryProperties properties;
+    private final long slowThresholdNanos;
+    private final Map<FingerprintKey, FingerprintStats> stats = new ConcurrentHashMap<>();
+    private volatile Instant since = Instant.now();
+
+    public QueryTelemetry(QueryTelemetryProperties properties) {
+        this.properties = properties;
+        this.slowThresholdNanos = properties.getSlowThreshold().toNanos();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Decides whether an execution is logged in full whatever its duration. Stores that can only capture the detail
+     * when the execution starts call this up front and pass the decision to {@link #record}.
+     */
+    public boolean sample() {
+        return properties.getSampleRate() > 0 && ThreadLocalRandom.current().nextDouble() < properties.getSampleRate();
+    }
+
+    /**
+     * @param sampled Whether the execution was chosen by {@link #sample()}.
+     * @param detail Describes the execution for the log; only called if it is logged.
+     */
+    public void record(DataStore store, String fingerprint, long nanos, boolean success, boolean sampled,
+                       Supplier<String> detail) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        count(store, fingerprint, nanos, success);
+        if (nanos >= slowThresholdNanos) {
+            log.warn("Slow {} query took {}ms{}: {}", store, TimeUnit.NANOSECONDS.toMillis(nanos),
+                    success ? "" : " and failed", detail.get());
+        } else if (sampled) {
+            log.info("Sampled {} query took {}ms{}: {}", store, TimeUnit.NANOSECONDS.toMillis(nanos),
+                    success ? "" : " and failed", detail.get());
+        }
+    }
+
+    /**
+     * Aggregates an execution without ever logging it, for commands that are slow by design such as blocking reads.
+     */
+    public void count(DataStore store, String fingerprint, long nanos, boolean success) {
+        if (properties.isEnabled()) {
+            statsOf(store, fingerprint).record(nanos, success);
+        }
+    }
+
+    /**
+     * @param store Only include this store, or all stores if null.
+     * @param limit The number of fingerprints to return, at most 200.
+     */
+    public QueryStatsResponse top(DataStore store, QueryStatsOrder order, int limit) {
+        List<QueryFingerprintStats> top = stats.entrySet().stream()
+                .filter(entry -> store == null || entry.getKey().store() == store)
+                .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .sorted(comparator(order).reversed())
+                .limit(Math.clamp(limit, 1, MAX_TOP))
+                .toList();
+        return new QueryStatsResponse(since, stats.size(), top);
+    }
+
+    public void reset() {
+        stats.clear();
+        since = Instant.now();
+    }
+
+    private FingerprintStats statsOf(DataStore store, String fingerprint) {
+        FingerprintStats existing = stats.get(new FingerprintKey(store, fingerprint));
+        if (existing != null) {
+            return existing;
+        }
+        // Past the limit new fingerprints share one entry per store, so unparameterized queries cannot exhaust memory
+        FingerprintKey key = stats.size() < properties.getMaxFingerprints()
+                ? new FingerprintKey(store, fingerprint) : new FingerprintKey(store, OTHER);
+        return stats.computeIfAbsent(key, k -> new FingerprintStats());
+    }
+
+    private static Comparator<QueryFingerprintStats> comparator(QueryStatsOrder order) {
+        return switch (order) {
+            case TOTAL_TIME -> Comparator.comparingDouble(QueryFingerprintStats::totalMillis);
+            case COUNT -> Comparator.comparingLong(QueryFingerprintStats::count);
+            case P99 -> Comparator.comparingDouble(QueryFingerprintStats::p99Millis);
+            case MAX -> Comparator.comparingDouble(QueryFingerprintStats::maxMillis);
+        };
+    }
+
+    private record FingerprintKey(DataStore store, String fingerprint) {
+    }
+
+    private static final class FingerprintStats {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        void record(long nanos, boolean success) {
+            count.increment();
+            if (!success) {
+                errors.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.record(nanos);
+        }
+
+        QueryFingerprintStats snapshot(FingerprintKey key) {
+            long n = count.sum();
+            double total = millis(totalNanos.sum());
+            double max = millis(maxNanos.get());
+            return new QueryFingerprintStats(key.store(), key.fingerprint(), n, errors.sum(), total,
+                    n == 0 ? 0 : total / n, percentile(0.5, max), percentile(0.95, max), percentile(0.99, max), max);
+        }
+
+        private double percentile(double quantile, double max) {
+            // A bucket's upper bound may exceed anything recorded in it
+            return Math.min(millis(histogram.percentile(quantile)), max);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
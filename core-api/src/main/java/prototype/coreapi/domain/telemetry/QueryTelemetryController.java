@@ -0,0 +1,46 @@
+package prototype.coreapi.domain.telemetry;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import prototype.coreapi.domain.telemetry.dto.QueryStatsResponse;
+import prototype.coreapi.domain.telemetry.enums.DataStore;
+import prototype.coreapi.domain.telemetry.enums.QueryStatsOrder;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/admin/queries")
+@Tag(name = "Query Telemetry", description = "APIs for inspecting data store query statistics")
+@PreAuthorize("hasRole('ADMIN')")
+@RequiredArgsConstructor
+public class QueryTelemetryController {
+
+    private final QueryTelemetry queryTelemetry;
+
+    /**
+     * Lists the query fingerprints of this node that cost the most since the statistics were last reset.
+     * @param store Only list fingerprints of this data store.
+     * @param order What the fingerprints are ranked by.
+     * @param limit The number of fingerprints to return (at most 200).
+     * @return A Mono emitting the top fingerprints with their counts and latency percentiles.
+     */
+    @GetMapping
+    @Operation(summary = "Get top queries", description = "Returns the query fingerprints of this node ranked by total time, count or latency.")
+    public Mono<QueryStatsResponse> getTopQueries(
+            @RequestParam(required = false) DataStore store,
+            @RequestParam(defaultValue = "TOTAL_TIME") QueryStatsOrder order,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        return Mono.fromSupplier(() -> queryTelemetry.top(store, order, limit));
+    }
+
+    @DeleteMapping
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @Operation(summary = "Reset query statistics", description = "Clears the query statistics of this node.")
+    public Mono<Void> resetQueryStats() {
+        return Mono.fromRunnable(queryTelemetry::reset);
+    }
+}
@@ -0,0 +1,50 @@
+package prototype.coreapi.domain.telemetry;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.r2dbc.proxy.core.QueryExecutionInfo;
+import io.r2dbc.proxy.core.QueryInfo;
+import io.r2dbc.proxy.listener.ProxyExecutionListener;
+import io.r2dbc.proxy.support.QueryExecutionInfoFormatter;
+import lombok.RequiredArgsConstructor;
+import prototype.coreapi.domain.telemetry.enums.DataStore;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Records the R2DBC queries of a proxied connection factory. Statements are parameterized, so the same few SQL strings
+ * repeat and their fingerprints are cached.
+ */
+@RequiredArgsConstructor
+public class R2dbcQueryListener implements ProxyExecutionListener {
+
+    // Bind values are left out of the log since they hold password hashes, tokens and emails; their count is kept
+    private static final QueryExecutionInfoFormatter FORMATTER = new QueryExecutionInfoFormatter()
+            .showTime()
+            .showSuccess()
+            .showType()
+            .showBatchSize()
+            .showBindingsSize()
+            .showQuery();
+
+    private final QueryTelemetry queryTelemetry;
+    private final Cache<String, String> fingerprints = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    @Override
+    public void afterQuery(QueryExecutionInfo execInfo) {
+        if (!queryTelemetry.isEnabled()) {
+            return;
+        }
+        List<QueryInfo> queries = execInfo.getQueries();
+        String fingerprint = queries.size() == 1
+                ? fingerprint(queries.get(0).getQuery())
+                : queries.stream().map(query -> fingerprint(query.getQuery())).collect(Collectors.joining("; "));
+        queryTelemetry.record(DataStore.R2DBC, fingerprint, execInfo.getExecuteDuration().toNanos(),
+                execInfo.isSuccess(), queryTelemetry.sample(), () -> FORMATTER.format(execInfo));
+    }
+
+    private String fingerprint(String sql) {
+        return fingerprints.get(sql, QueryFingerprints::sql);
+    }
+}
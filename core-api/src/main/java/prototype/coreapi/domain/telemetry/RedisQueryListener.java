@@ -0,0 +1,69 @@
+package prototype.coreapi.domain.telemetry;
+
+import io.lettuce.core.event.command.CommandFailedEvent;
+import io.lettuce.core.event.command.CommandListener;
+import io.lettuce.core.event.command.CommandStartedEvent;
+import io.lettuce.core.event.command.CommandSucceededEvent;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.RedisCommand;
+import lombok.RequiredArgsConstructor;
+import prototype.coreapi.domain.telemetry.enums.DataStore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the commands of the Lettuce client. Values are left out of the log, since they hold tokens and session
+ * state; the detail is the command, its first key and its argument count.
+ * Blocking reads, which the stream consumers issue continuously and which wait by design, are counted but never
+ * logged as slow.
+ */
+@RequiredArgsConstructor
+public class RedisQueryListener implements CommandListener {
+
+    private static final String STARTED = "queryTelemetry.started";
+    private static final Set<String> BLOCKING_COMMANDS = Set.of("XREAD", "XREADGROUP", "BLPOP", "BRPOP", "BLMOVE",
+            "BRPOPLPUSH", "BZPOPMIN", "BZPOPMAX", "BLMPOP", "BZMPOP", "WAIT");
+
+    private final QueryTelemetry queryTelemetry;
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (queryTelemetry.isEnabled()) {
+            event.getContext().put(STARTED, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        finish(event.getCommand(), event.getContext(), true);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        finish(event.getCommand(), event.getContext(), false);
+    }
+
+    private void finish(RedisCommand<Object, Object, Object> command, Map<String, Object> context, boolean success) {
+        if (!(context.get(STARTED) instanceof Long started)) {
+            return;
+        }
+        long nanos = System.nanoTime() - started;
+        String type = command.getType().toString();
+        CommandArgs<Object, Object> args = command.getArgs();
+        String key = firstKey(args);
+        if (BLOCKING_COMMANDS.contains(type)) {
+            queryTelemetry.count(DataStore.REDIS, QueryFingerprints.redis(type, key), nanos, success);
+            return;
+        }
+        queryTelemetry.record(DataStore.REDIS, QueryFingerprints.redis(type, key), nanos, success,
+                queryTelemetry.sample(), () -> type + " " + key + " (" + (args == null ? 0 : args.count()) + " args)");
+    }
+
+    private static String firstKey(CommandArgs<Object, Object> args) {
+        ByteBuffer key = args == null ? null : args.getFirstEncodedKey();
+        return key == null ? null : StandardCharsets.UTF_8.decode(key.duplicate()).toString();
+    }
+}
@@ -0,0 +1,42 @@
+package prototype.coreapi.domain.telemetry.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import prototype.coreapi.domain.telemetry.MongoQueryListener;
+import prototype.coreapi.domain.telemetry.QueryTelemetry;
+import prototype.coreapi.domain.telemetry.RedisQueryListener;
+
+/**
+ * Attaches the query telemetry to the Mongo and Redis clients. The R2DBC listener is added where the proxied
+ * connection factory is built.
+ */
+@Configuration
+public class QueryTelemetryConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoQueryTelemetryCustomizer(QueryTelemetry queryTelemetry) {
+        return settings -> settings.addCommandListener(new MongoQueryListener(queryTelemetry));
+    }
+
+    /**
+     * Lettuce applies command listeners to connections opened after they are added, so the listener is added as soon
+     * as the connection factory has created its client and before anything has used it.
+     * @param queryTelemetry Looked up lazily; a post-processor is created before regular beans.
+     */
+    @Bean
+    public static BeanPostProcessor redisQueryTelemetryRegistrar(ObjectProvider<QueryTelemetry> queryTelemetry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof LettuceConnectionFactory factory && factory.getNativeClient() != null) {
+                    factory.getNativeClient().addListener(new RedisQueryListener(queryTelemetry.getObject()));
+                }
+                return bean;
+            }
+        };
+    }
+}
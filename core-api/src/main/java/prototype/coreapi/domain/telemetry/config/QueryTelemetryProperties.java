@@ -0,0 +1,19 @@
+package prototype.coreapi.domain.telemetry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "telemetry.queries")
+@Data
+public class QueryTelemetryProperties {
+
+    private boolean enabled = true;
+    // Queries taking longer are logged in full at WARN.
+    private Duration slowThreshold = Duration.ofMillis(200);
+    // Share of the other queries logged in full at INFO, between 0 and 1.
+    private double sampleRate = 0.001;
+    // Distinct fingerprints tracked per node; queries with new fingerprints beyond this are counted as "(other)".
+    private int maxFingerprints = 1_000;
+}
@@ -0,0 +1,22 @@
+package prototype.coreapi.domain.telemetry.dto;
+
+import prototype.coreapi.domain.telemetry.enums.DataStore;
+
+/**
+ * Latencies are in milliseconds; percentiles overstate the true value by at most 20%.
+ * @param fingerprint The query with its literal values replaced by {@code ?}.
+ * @param errors Executions that failed, included in count.
+ */
+public record QueryFingerprintStats(
+        DataStore store,
+        String fingerprint,
+        long count,
+        long errors,
+        double totalMillis,
+        double meanMillis,
+        double p50Millis,
+        double p95Millis,
+        double p99Millis,
+        double maxMillis
+) {
+}
@@ -0,0 +1,15 @@
+package prototype.coreapi.domain.telemetry.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * @param since When the statistics were last reset, or the node started.
+ * @param fingerprints The distinct fingerprints tracked, of all stores.
+ */
+public record QueryStatsResponse(
+        Instant since,
+        int fingerprints,
+        List<QueryFingerprintStats> top
+) {
+}
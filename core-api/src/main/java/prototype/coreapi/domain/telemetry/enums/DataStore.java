@@ -0,0 +1,7 @@
+package prototype.coreapi.domain.telemetry.enums;
+
+public enum DataStore {
+    R2DBC, // PostgreSQL 쿼리
+    MONGO, // MongoDB 명령
+    REDIS  // Redis 명령
+}
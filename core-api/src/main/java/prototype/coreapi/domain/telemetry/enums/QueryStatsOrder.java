@@ -0,0 +1,8 @@
+package prototype.coreapi.domain.telemetry.enums;
+
+public enum QueryStatsOrder {
+    TOTAL_TIME, // 누적 실행 시간 순
+    COUNT,      // 실행 횟수 순
+    P99,        // 99백분위 지연 시간 순
+    MAX         // 최대 지연 시간 순
+}
@@ -2,11 +2,31 @@ package prototype.coreapi.global.config;
 
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import prototype.coreapi.domain.auth.config.SignInProperties;
+import prototype.coreapi.domain.document.config.DocumentEventProperties;
+import prototype.coreapi.domain.document.config.DocumentExtractionProperties;
+import prototype.coreapi.domain.document.config.DocumentGcProperties;
+import prototype.coreapi.domain.document.config.DocumentProgressProperties;
+import prototype.coreapi.domain.document.config.DocumentQueueProperties;
+import prototype.coreapi.domain.document.config.DocumentUploadProperties;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.telemetry.config.QueryTelemetryProperties;
 
 @Configuration
 @EnableConfigurationProperties({
         RagServiceWebClientProperties.class,
-        IndexingServiceWebClientProperties.class
+        IndexingServiceWebClientProperties.class,
+        SignInProperties.class,
+        DocumentUploadProperties.class,
+        DocumentQueueProperties.class,
+        DocumentEventProperties.class,
+        DocumentProgressProperties.class,
+        DocumentGcProperties.class,
+        DocumentExtractionProperties.class,
+        RetrievalProperties.class,
+        QueryTelemetryProperties.class,
+        ForwardedHeaderProperties.class,
+        InternalServerProperties.class
 })
 public class AppPropertiesConfig {
 }
@@ -21,6 +21,7 @@ public class CacheConfig {
         cacheManager.setCaffeine(Caffeine.newBuilder()
                 .expireAfterWrite(30, TimeUnit.MINUTES) // Evict after 30 minutes from last write
                 .maximumSize(1000) // Maximum number of entries
+                .recordStats() // Published as cache.* meters
         );
         return cacheManager;
     }
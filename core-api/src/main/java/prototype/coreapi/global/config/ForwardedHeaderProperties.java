@@ -0,0 +1,15 @@
+package prototype.coreapi.global.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "forwarded-headers")
+@Data
+public class ForwardedHeaderProperties {
+
+    // Addresses or CIDR ranges of the reverse proxies in front of the server. Forwarded headers are only applied on
+    // requests coming from them, and stripped from any other request; none are trusted by default.
+    private List<String> trustedProxies = List.of();
+}
@@ -0,0 +1,26 @@
+package prototype.coreapi.global.config;
+
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Matches requests received on the internal port. The port is that of the socket the request came in on, not the one
+ * of the Host or forwarded headers, which the client chooses.
+ */
+class InternalPortMatcher implements ServerWebExchangeMatcher {
+
+    private final int internalPort;
+
+    InternalPortMatcher(int internalPort) {
+        this.internalPort = internalPort;
+    }
+
+    @Override
+    public Mono<MatchResult> matches(ServerWebExchange exchange) {
+        InetSocketAddress local = exchange.getRequest().getLocalAddress();
+        return local != null && local.getPort() == internalPort ? MatchResult.match() : MatchResult.notMatch();
+    }
+}
@@ -0,0 +1,13 @@
+package prototype.coreapi.global.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "internal-server")
+@Data
+public class InternalServerProperties {
+
+    // Port serving the /internal/** routes called by the other services; it must never be published. Those routes
+    // are refused on any other port.
+    private int port = 8082;
+}
@@ -0,0 +1,48 @@
+package prototype.coreapi.global.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves the application on {@link InternalServerProperties#getPort()} as well as on the public port, so that the
+ * other services can reach the /internal/** routes on a port that is not published. The same handler, and so the
+ * same security chain, serves both ports; {@link InternalPortMatcher} only lets the internal routes through on
+ * this one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InternalWebServer implements SmartLifecycle {
+
+    private final InternalServerProperties internalServerProperties;
+    private final HttpHandler httpHandler;
+
+    private volatile WebServer webServer;
+
+    @Override
+    public void start() {
+        WebServer server = new NettyReactiveWebServerFactory(internalServerProperties.getPort()).getWebServer(httpHandler);
+        server.start();
+        webServer = server;
+        log.info("Internal routes served on port {}", server.getPort());
+    }
+
+    @Override
+    public void stop() {
+        WebServer server = webServer;
+        if (server != null) {
+            server.stop();
+            webServer = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return webServer != null;
+    }
+}
@@ -0,0 +1,38 @@
+package prototype.coreapi.global.config;
+
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.regex.Pattern;
+
+/**
+ * Metrics not covered by Spring Boot's auto-configuration.
+ * Boot already records per-route latency ({@code http.server.requests}, tagged with the route template), WebClient
+ * calls ({@code http.client.requests}, tagged with the downstream host as {@code client.name}), cache statistics,
+ * Lettuce and Mongo command latency, R2DBC pool usage and JVM/GC gauges; all meters carry the common tags set under
+ * {@code management.metrics.tags}. This adds the Reactor Netty server metrics: connections, data sent and received.
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final Pattern IDENTIFIER_SEGMENT =
+            Pattern.compile("/(\\d+|[0-9a-fA-F]{8}-[0-9a-fA-F-]{27}|[0-9a-fA-F]{24,})(?=/|$)");
+
+    @Bean
+    public NettyServerCustomizer nettyServerMetricsCustomizer() {
+        return httpServer -> httpServer.metrics(true, MetricsConfig::uriTag);
+    }
+
+    /**
+     * Reactor Netty tags its meters with the raw path; identifiers in it are collapsed so the number of series stays
+     * bounded.
+     * @param uri The request path, possibly with a query string.
+     * @return The path without query string, with numeric ids, UUIDs and object ids replaced by {@code {id}}.
+     */
+    static String uriTag(String uri) {
+        int query = uri.indexOf('?');
+        String path = query < 0 ? uri : uri.substring(0, query);
+        return IDENTIFIER_SEGMENT.matcher(path).replaceAll("/{id}");
+    }
+}
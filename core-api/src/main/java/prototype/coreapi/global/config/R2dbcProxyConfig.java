@@ -1,26 +1,31 @@
 package prototype.coreapi.global.config;
 
+import io.micrometer.observation.ObservationRegistry;
 import io.r2dbc.proxy.ProxyConnectionFactory;
-import io.r2dbc.proxy.support.QueryExecutionInfoFormatter;
+import io.r2dbc.proxy.observation.ObservationProxyExecutionListener;
 import io.r2dbc.spi.ConnectionFactories;
 import io.r2dbc.spi.ConnectionFactory;
 import io.r2dbc.spi.ConnectionFactoryOptions;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import prototype.coreapi.domain.telemetry.QueryTelemetry;
+import prototype.coreapi.domain.telemetry.R2dbcQueryListener;
 
+import java.util.Objects;
+
+import static io.r2dbc.spi.ConnectionFactoryOptions.HOST;
 import static io.r2dbc.spi.ConnectionFactoryOptions.PASSWORD;
 import static io.r2dbc.spi.ConnectionFactoryOptions.USER;
 
 @Configuration
-@Slf4j
 public class R2dbcProxyConfig {
 
     @Bean
     @Primary
-    public ConnectionFactory connectionFactory(R2dbcProperties props) {
+    public ConnectionFactory connectionFactory(R2dbcProperties props, ObservationRegistry observationRegistry,
+                                               QueryTelemetry queryTelemetry) {
         ConnectionFactoryOptions baseOpts = ConnectionFactoryOptions.parse(props.getUrl());
 
         ConnectionFactoryOptions opts = ConnectionFactoryOptions.builder()
@@ -31,10 +36,14 @@ public class R2dbcProxyConfig {
 
         ConnectionFactory actual = ConnectionFactories.get(opts);
 
+        // Records the r2dbc.query timer; Boot's own R2DBC observation only wraps the connection factory it creates
+        ObservationProxyExecutionListener observationListener = new ObservationProxyExecutionListener(
+                observationRegistry, actual, Objects.toString(baseOpts.getValue(HOST), null));
+
         return ProxyConnectionFactory.builder(actual)
-                .onAfterQuery(exec ->
-                        log.info(QueryExecutionInfoFormatter.showAll().format(exec))
-                )
+                .listener(observationListener)
+                // Aggregates queries by fingerprint and logs only slow or sampled ones in full
+                .listener(new R2dbcQueryListener(queryTelemetry))
                 .build();
     }
 }
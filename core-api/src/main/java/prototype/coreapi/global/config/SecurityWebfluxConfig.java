@@ -2,7 +2,10 @@ package prototype.coreapi.global.config;
 
 import prototype.coreapi.global.exception.ErrorCode;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import prototype.coreapi.domain.auth.config.SignInProperties;
 import prototype.coreapi.domain.auth.security.JwtAuthenticationWebFilter;
+import prototype.coreapi.domain.auth.security.MeteredPasswordEncoder;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,8 +18,10 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.util.matcher.AndServerWebExchangeMatcher;
 import prototype.coreapi.global.response.WebfluxErrorResponseWriter;
 
+import static org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers.pathMatchers;
 import static prototype.coreapi.global.enums.Role.ADMIN;
 
 /**
@@ -32,6 +37,7 @@ public class SecurityWebfluxConfig {
     private final JwtAuthenticationWebFilter jwtAuthenticationWebFilter;
     private final CorsConfig corsConfig;
     private final WebfluxErrorResponseWriter webfluxErrorResponseWriter;
+    private final InternalServerProperties internalServerProperties;
 
     /**
      * Configures the security filter chain for the application.
@@ -65,9 +71,16 @@ public class SecurityWebfluxConfig {
                 .authorizeExchange(authz -> authz
                         .pathMatchers("/auth/sign-in", "/auth/sign-up", "/auth/refresh").permitAll()
                         .pathMatchers(HttpMethod.HEAD, "/members/email-exists").permitAll()
-                        .pathMatchers("/internal/**").permitAll()
+                        // Internal routes are only served on the internal port, which is not published
+                        .matchers(new AndServerWebExchangeMatcher(
+                                pathMatchers("/internal/**"),
+                                new InternalPortMatcher(internalServerProperties.getPort()))).permitAll()
+                        .pathMatchers("/internal/**").denyAll()
                         .pathMatchers("/admin/**").hasRole(ADMIN.name())
                         .pathMatchers(HttpMethod.GET, "/common/health").permitAll()
+                        // Actuator endpoints are only served on the management port, which is not published
+                        .pathMatchers(HttpMethod.GET, "/actuator/health/**", "/actuator/prometheus").permitAll()
+                        .pathMatchers("/actuator/**").hasRole(ADMIN.name())
                         .pathMatchers("/docs/**", "/swagger-ui/**", "/v3/api-docs/**").permitAll()
                         .anyExchange().authenticated() // All other requests must be authenticated.
                 )
@@ -90,12 +103,18 @@ public class SecurityWebfluxConfig {
     /**
      * Provides a BCryptPasswordEncoder bean for hashing passwords.
      * This is used for securely storing and verifying user passwords.
+     * The cost factor comes from configuration, and every operation is timed.
      * 
-     * @return A BCryptPasswordEncoder instance.
+     * @param signInProperties The sign-in properties holding the BCrypt cost factor.
+     * @param meterRegistry The registry used to record hashing latency.
+     * @return A metered BCryptPasswordEncoder instance.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
+    public PasswordEncoder passwordEncoder(SignInProperties signInProperties, MeterRegistry meterRegistry) {
         
-        return new BCryptPasswordEncoder();
+        return new MeteredPasswordEncoder(
+                new BCryptPasswordEncoder(signInProperties.getHashing().getStrength()),
+                meterRegistry
+        );
     }
 }
\ No newline at end of file
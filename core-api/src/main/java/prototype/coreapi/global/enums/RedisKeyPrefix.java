@@ -11,7 +11,12 @@ public enum RedisKeyPrefix {
 
     REFRESH_TOKEN("RT"),
     ACCESS_TOKEN_HASH("AT_HASH"),
-    ACCESS_TOKEN_BLACKLIST("BL_HASH");
+    ACCESS_TOKEN_BLACKLIST("BL_HASH"),
+    SIGN_IN_ATTEMPT_IP("SI_IP"),
+    SIGN_IN_ATTEMPT_EMAIL("SI_EMAIL"),
+    UPLOAD_SESSION("UPLOAD"),
+    UPLOAD_PARTS("UPLOAD_PARTS"),
+    DOCUMENT_EVENT_SEQUENCE("DOC_EVENT_SEQ");
 
     private final String prefix;
 
@@ -22,6 +22,13 @@ public enum ErrorCode {
     ALREADY_EXIST_VALUE(400, "%1 already exists."),
     BAD_REQUEST(400, "Bad request."),
 
+    // Upload related errors
+    UPLOAD_NOT_FOUND(404, "Upload session does not exist or has expired."),
+    UPLOAD_TOO_LARGE(400, "The file exceeds the maximum upload size."),
+    UPLOAD_PART_INVALID(400, "Part %1 is invalid."),
+    UPLOAD_CHECKSUM_MISMATCH(400, "Checksum mismatch for part %1."),
+    UPLOAD_INCOMPLETE(400, "Upload is missing parts: %1."),
+
     // Member related errors
     EXIST_EMAIL(400, "This email is already in use."),
     DELETED_USER(400, "This account has already been deleted."),
@@ -31,6 +38,8 @@ public enum ErrorCode {
     SIGN_IN_FAILED(400, "Sign-in failed."),
     WRONG_USERNAME(400,  "User does not exist."),
     WRONG_PASSWORD(400,  "Incorrect password."),
+    TOO_MANY_SIGN_IN_ATTEMPTS(429, "Too many sign-in attempts. Please try again later."),
+    SIGN_IN_BUSY(503, "Sign-in is temporarily unavailable. Please try again shortly."),
 
     // Authentication, token, and permission related errors
     EXPIRED_TOKEN(401, "Sign-in has expired."),
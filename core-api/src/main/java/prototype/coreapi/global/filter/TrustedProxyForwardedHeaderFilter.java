@@ -0,0 +1,142 @@
+package prototype.coreapi.global.filter;
+
+import lombok.NonNull;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.server.adapter.ForwardedHeaderTransformer;
+import prototype.coreapi.global.config.ForwardedHeaderProperties;
+import reactor.core.publisher.Mono;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Applies forwarded headers only on requests coming from a trusted proxy, and strips them from any other request,
+ * so clients cannot choose the address the server sees, for instance to escape the per-IP sign-in limit.
+ * The client address is the last X-Forwarded-For entry that is not itself a trusted proxy: entries to its left were
+ * written by the client and are not believed.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TrustedProxyForwardedHeaderFilter implements WebFilter {
+
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9A-Fa-f:.]+");
+
+    private final List<AddressRange> trustedProxies;
+    private final ForwardedHeaderTransformer applier = new ForwardedHeaderTransformer();
+    private final ForwardedHeaderTransformer remover = new ForwardedHeaderTransformer();
+
+    public TrustedProxyForwardedHeaderFilter(ForwardedHeaderProperties properties) {
+        this.trustedProxies = properties.getTrustedProxies().stream().map(AddressRange::parse).toList();
+        this.remover.setRemoveOnly(true);
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        InetSocketAddress peer = request.getRemoteAddress();
+        if (peer == null || peer.getAddress() == null || !isTrusted(peer.getAddress())) {
+            return chain.filter(exchange.mutate().request(remover.apply(request)).build());
+        }
+        // The transformer takes the remote address from the leftmost entry, so it is replaced afterwards
+        InetAddress client = clientAddress(request.getHeaders().get(X_FORWARDED_FOR));
+        ServerHttpRequest forwarded = applier.apply(request).mutate()
+                .remoteAddress(new InetSocketAddress(client != null ? client : peer.getAddress(), 0))
+                .build();
+        return chain.filter(exchange.mutate().request(forwarded).build());
+    }
+
+    /**
+     * @return The last hop that is not a trusted proxy, the first hop if all are, or null if that hop is not an IP
+     * address.
+     */
+    private InetAddress clientAddress(List<String> forwardedFor) {
+        if (forwardedFor == null) {
+            return null;
+        }
+        List<String> hops = forwardedFor.stream()
+                .flatMap(header -> Arrays.stream(header.split(",")))
+                .map(String::trim)
+                .filter(hop -> !hop.isEmpty())
+                .toList();
+        if (hops.isEmpty()) {
+            return null;
+        }
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            InetAddress hop = parseLiteral(hops.get(i));
+            if (hop == null || !isTrusted(hop)) {
+                return hop;
+            }
+        }
+        return parseLiteral(hops.getFirst());
+    }
+
+    /**
+     * Parses an IP address without resolving host names, which a client could use to make the server look them up.
+     */
+    private static InetAddress parseLiteral(String address) {
+        if (!IP_LITERAL.matcher(address).matches()) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(address);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private boolean isTrusted(InetAddress address) {
+        return trustedProxies.stream().anyMatch(range -> range.contains(address));
+    }
+
+    /**
+     * An address, or a CIDR range such as {@code 10.0.0.0/8}. IPv4 and IPv6 ranges only contain addresses of their
+     * own family.
+     */
+    record AddressRange(byte[] network, int prefixLength) {
+
+        static AddressRange parse(String range) {
+            int slash = range.indexOf('/');
+            InetAddress network = parseLiteral(slash < 0 ? range : range.substring(0, slash));
+            if (network == null) {
+                throw new IllegalArgumentException("Invalid trusted proxy address: " + range);
+            }
+            int bits = network.getAddress().length * 8;
+            int prefixLength = slash < 0 ? bits : Integer.parseInt(range.substring(slash + 1));
+            if (prefixLength < 0 || prefixLength > bits) {
+                throw new IllegalArgumentException("Invalid trusted proxy prefix length: " + range);
+            }
+            return new AddressRange(network.getAddress(), prefixLength);
+        }
+
+        boolean contains(InetAddress address) {
+            byte[] bytes = address.getAddress();
+            if (bytes.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (bytes[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - remainingBits);
+            return (bytes[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package prototype.coreapi.global.redis;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static prototype.coreapi.global.enums.RedisKeyPrefix.DOCUMENT_EVENT_SEQUENCE;
+
+/**
+ * Relays document events between core-api nodes through Redis pub/sub.
+ * Each message is numbered by a Redis counter in the same script that publishes it,
+ * so every node receives the events in sequence order.
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentEventChannelProvider {
+
+    public static final char SEQUENCE_SEPARATOR = '|';
+
+    private static final RedisScript<Long> PUBLISH_SCRIPT = RedisScript.of("""
+            local sequence = redis.call('INCR', KEYS[1])
+            redis.call('PUBLISH', ARGV[1], sequence .. '|' .. ARGV[2])
+            return sequence
+            """, Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    /**
+     * Publishes a message as {@code <sequence>|<message>}.
+     * @return A Mono emitting the sequence number assigned to the message.
+     */
+    public Mono<Long> publish(String channel, String message) {
+        return redisTemplate.execute(PUBLISH_SCRIPT, List.of(DOCUMENT_EVENT_SEQUENCE.key(channel)), List.of(channel, message))
+                .next();
+    }
+
+    /**
+     * Publishes a message as is, for events that need no ordering across nodes.
+     */
+    public Mono<Long> broadcast(String channel, String message) {
+        return redisTemplate.convertAndSend(channel, message);
+    }
+
+    public Flux<String> listen(String channel) {
+        return redisTemplate.listenToChannel(channel)
+                .map(ReactiveSubscription.Message::getMessage);
+    }
+}
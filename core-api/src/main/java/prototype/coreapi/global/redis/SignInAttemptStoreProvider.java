@@ -0,0 +1,41 @@
+package prototype.coreapi.global.redis;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import prototype.coreapi.global.enums.RedisKeyPrefix;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@Component
+@RequiredArgsConstructor
+public class SignInAttemptStoreProvider {
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    /**
+     * Increments the attempt counter for a subject within a fixed window.
+     * The window starts with the first attempt; the key expires when the window ends.
+     */
+    public Mono<Long> increment(RedisKeyPrefix prefix, String subject, Duration window) {
+        String key = prefix.key(subject);
+        return redisTemplate.opsForValue().increment(key)
+                .flatMap(count -> count == 1
+                        ? redisTemplate.expire(key, window).thenReturn(count)
+                        : Mono.just(count));
+    }
+
+    /**
+     * Reads the attempt counter for a subject without incrementing it.
+     */
+    public Mono<Long> count(RedisKeyPrefix prefix, String subject) {
+        return redisTemplate.opsForValue().get(prefix.key(subject))
+                .map(Long::valueOf)
+                .defaultIfEmpty(0L);
+    }
+
+    public Mono<Void> reset(RedisKeyPrefix prefix, String subject) {
+        return redisTemplate.delete(prefix.key(subject)).then();
+    }
+}
@@ -0,0 +1,74 @@
+package prototype.coreapi.global.redis;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class StreamConsumerGroupProvider {
+
+    // Trims by MINID to the oldest entry the group still needs. Pending entries were all delivered, so the oldest
+    // pending entry, if any, is never after the last delivered one.
+    private static final RedisScript<Long> TRIM_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            local lastDelivered
+            for _, group in ipairs(redis.call('XINFO', 'GROUPS', KEYS[1])) do
+                local fields = {}
+                for i = 1, #group, 2 do
+                    fields[group[i]] = group[i + 1]
+                end
+                if fields['name'] == ARGV[1] then
+                    lastDelivered = fields['last-delivered-id']
+                end
+            end
+            if lastDelivered == nil or lastDelivered == '0-0' then
+                return 0
+            end
+            local pending = redis.call('XPENDING', KEYS[1], ARGV[1])
+            local minId = pending[1] > 0 and pending[2] or lastDelivered
+            return redis.call('XTRIM', KEYS[1], 'MINID', minId)
+            """, Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    /**
+     * Creates a consumer group reading the stream from the beginning, creating the stream if needed.
+     * Creation is idempotent; an existing group is left untouched.
+     * @return A Mono emitting the stream key once the group exists.
+     */
+    public Mono<String> create(String streamKey, String group) {
+        ByteBuffer key = ByteBuffer.wrap(streamKey.getBytes(StandardCharsets.UTF_8));
+        return redisTemplate.execute(connection -> connection.streamCommands()
+                        .xGroupCreate(key, group, ReadOffset.from("0"), true))
+                .then(Mono.just(streamKey))
+                .onErrorResume(StreamConsumerGroupProvider::isBusyGroup, e -> Mono.just(streamKey));
+    }
+
+    /**
+     * Trims a stream of the entries a consumer group is done with: those before both its oldest pending entry and its
+     * last delivered one. Entries the group has not read yet are never trimmed.
+     * @return A Mono emitting the number of entries removed.
+     */
+    public Mono<Long> trimConsumed(String streamKey, String group) {
+        return redisTemplate.execute(TRIM_SCRIPT, List.of(streamKey), List.of(group)).next();
+    }
+
+    private static boolean isBusyGroup(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("BUSYGROUP")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
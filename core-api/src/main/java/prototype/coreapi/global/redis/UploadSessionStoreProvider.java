@@ -0,0 +1,50 @@
+package prototype.coreapi.global.redis;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static prototype.coreapi.global.enums.RedisKeyPrefix.UPLOAD_PARTS;
+import static prototype.coreapi.global.enums.RedisKeyPrefix.UPLOAD_SESSION;
+
+/**
+ * Stores chunked upload sessions in Redis so that parts can be sent to any core-api node.
+ * Session attributes and received parts are kept in two hashes that expire together.
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadSessionStoreProvider {
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    public Mono<Boolean> save(String uploadId, Map<String, String> attributes, Duration ttl) {
+        String key = UPLOAD_SESSION.key(uploadId);
+        return redisTemplate.opsForHash().putAll(key, attributes)
+                .then(redisTemplate.expire(key, ttl));
+    }
+
+    public Mono<Map<Object, Object>> get(String uploadId) {
+        return redisTemplate.opsForHash().entries(UPLOAD_SESSION.key(uploadId))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .filter(entries -> !entries.isEmpty());
+    }
+
+    public Mono<Boolean> savePart(String uploadId, int partNumber, String value, Duration ttl) {
+        String key = UPLOAD_PARTS.key(uploadId);
+        return redisTemplate.opsForHash().put(key, String.valueOf(partNumber), value)
+                .then(redisTemplate.expire(key, ttl));
+    }
+
+    public Mono<Map<Object, Object>> getParts(String uploadId) {
+        return redisTemplate.opsForHash().entries(UPLOAD_PARTS.key(uploadId))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    public Mono<Void> delete(String uploadId) {
+        return redisTemplate.delete(UPLOAD_SESSION.key(uploadId), UPLOAD_PARTS.key(uploadId)).then();
+    }
+}
@@ -0,0 +1,154 @@
+package prototype.coreapi.domain.auth;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import prototype.coreapi.domain.auth.dto.AuthRequest;
+import prototype.coreapi.domain.auth.security.JwtService;
+import prototype.coreapi.domain.auth.security.SignInRateLimiter;
+import prototype.coreapi.domain.member.MemberService;
+import prototype.coreapi.domain.member.entity.Member;
+import prototype.coreapi.global.enums.Status;
+import prototype.coreapi.global.exception.BusinessException;
+import prototype.coreapi.global.exception.ErrorCode;
+import prototype.coreapi.global.redis.AccessTokenStoreProvider;
+import prototype.coreapi.global.redis.RefreshTokenStoreProvider;
+import prototype.coreapi.global.redis.TokenBlacklistStoreProvider;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthServiceTest {
+
+    private static final String CLIENT_IP = "203.0.113.7";
+    private static final String EMAIL = "member@example.com";
+
+    private ReactiveAuthenticationManager authenticationManager;
+    private JwtService jwtService;
+    private SignInRateLimiter signInRateLimiter;
+    private AccessTokenStoreProvider accessTokenStoreProvider;
+    private RefreshTokenStoreProvider refreshTokenStoreProvider;
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        authenticationManager = mock(ReactiveAuthenticationManager.class);
+        jwtService = mock(JwtService.class);
+        signInRateLimiter = mock(SignInRateLimiter.class);
+        accessTokenStoreProvider = mock(AccessTokenStoreProvider.class);
+        refreshTokenStoreProvider = mock(RefreshTokenStoreProvider.class);
+        authService = new AuthService(authenticationManager, jwtService, mock(MemberService.class), signInRateLimiter,
+                accessTokenStoreProvider, refreshTokenStoreProvider, mock(TokenBlacklistStoreProvider.class));
+
+        when(signInRateLimiter.acquire(CLIENT_IP, EMAIL)).thenReturn(Mono.empty());
+        when(signInRateLimiter.recordFailure(CLIENT_IP)).thenReturn(Mono.empty());
+        when(signInRateLimiter.reset(EMAIL)).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void countsAWrongPasswordAgainstTheClientIp() {
+        when(authenticationManager.authenticate(any())).thenReturn(Mono.error(new BadCredentialsException("bad")));
+
+        StepVerifier.create(authService.signIn(request(), CLIENT_IP))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.WRONG_PASSWORD, ex));
+
+        verify(signInRateLimiter).recordFailure(CLIENT_IP);
+        verify(signInRateLimiter, never()).reset(anyString());
+    }
+
+    @Test
+    void countsAnUnknownEmailAgainstTheClientIp() {
+        when(authenticationManager.authenticate(any()))
+                .thenReturn(Mono.error(new BusinessException(ErrorCode.NOT_FOUND_USER)));
+
+        StepVerifier.create(authService.signIn(request(), CLIENT_IP))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.NOT_FOUND_USER, ex));
+
+        verify(signInRateLimiter).recordFailure(CLIENT_IP);
+    }
+
+    @Test
+    void countsAnUnusableAccountAgainstTheClientIp() {
+        Member suspended = member();
+        suspended.updateStatus(Status.SUSPENDED);
+        when(authenticationManager.authenticate(any())).thenReturn(Mono.just(authenticated(suspended)));
+
+        StepVerifier.create(authService.signIn(request(), CLIENT_IP))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.SUSPENDED_USER, ex));
+
+        verify(signInRateLimiter).recordFailure(CLIENT_IP);
+    }
+
+    @Test
+    void doesNotAuthenticateOrCountAShapedAttempt() {
+        when(signInRateLimiter.acquire(CLIENT_IP, EMAIL))
+                .thenReturn(Mono.error(new BusinessException(ErrorCode.TOO_MANY_SIGN_IN_ATTEMPTS)));
+
+        StepVerifier.create(authService.signIn(request(), CLIENT_IP))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.TOO_MANY_SIGN_IN_ATTEMPTS, ex));
+
+        verify(authenticationManager, never()).authenticate(any());
+        verify(signInRateLimiter, never()).recordFailure(anyString());
+    }
+
+    @Test
+    void doesNotCountAnAttemptShedByTheHashingExecutor() {
+        when(authenticationManager.authenticate(any())).thenReturn(Mono.error(new RejectedExecutionException()));
+
+        StepVerifier.create(authService.signIn(request(), CLIENT_IP))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.SIGN_IN_BUSY, ex));
+
+        verify(signInRateLimiter, never()).recordFailure(anyString());
+    }
+
+    @Test
+    void resetsTheEmailCounterOnSuccess() {
+        Member member = member();
+        when(authenticationManager.authenticate(any())).thenReturn(Mono.just(authenticated(member)));
+        when(jwtService.generateAccessToken(any(), any())).thenReturn("access");
+        when(jwtService.generateRefreshToken(any())).thenReturn("refresh");
+        when(jwtService.getRemainingValidity(anyString())).thenReturn(60_000L);
+        when(accessTokenStoreProvider.save(any(), anyString(), any())).thenReturn(Mono.just(true));
+        when(refreshTokenStoreProvider.save(any(), anyString(), any())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(authService.signIn(request(), CLIENT_IP))
+                .assertNext(info -> assertEquals("access", info.accessToken()))
+                .verifyComplete();
+
+        verify(signInRateLimiter).reset(EMAIL);
+        verify(signInRateLimiter, never()).recordFailure(anyString());
+    }
+
+    private static AuthRequest request() {
+        // Bound from JSON in the controller; it has no setters.
+        AuthRequest request = mock(AuthRequest.class);
+        when(request.getEmail()).thenReturn(EMAIL);
+        when(request.getPassword()).thenReturn("password");
+        return request;
+    }
+
+    private static Member member() {
+        return Member.builder().email(EMAIL).password("{noop}password").build();
+    }
+
+    private static Authentication authenticated(Member member) {
+        return UsernamePasswordAuthenticationToken.authenticated(member, null, member.getAuthorities());
+    }
+
+    private static void assertErrorCode(ErrorCode expected, Throwable actual) {
+        assertEquals(BusinessException.class, actual.getClass());
+        assertEquals(expected, ((BusinessException) actual).getErrorCode());
+    }
+}
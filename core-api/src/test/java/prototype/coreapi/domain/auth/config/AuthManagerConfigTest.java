@@ -0,0 +1,86 @@
+package prototype.coreapi.domain.auth.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import prototype.coreapi.domain.member.entity.Member;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthManagerConfigTest {
+
+    private static final String EMAIL = "member@example.com";
+    private static final String PASSWORD = "password";
+    private static final int STRENGTH = 5;
+
+    private final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(STRENGTH);
+    private ReactiveUserDetailsService userDetailsService;
+    private ReactiveUserDetailsPasswordService passwordService;
+    private ReactiveAuthenticationManager manager;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = mock(ReactiveUserDetailsService.class);
+        passwordService = mock(ReactiveUserDetailsPasswordService.class);
+        when(passwordService.updatePassword(any(), anyString()))
+                .thenAnswer(invocation -> Mono.just(invocation.<UserDetails>getArgument(0)));
+        manager = new AuthManagerConfig().reactiveAuthenticationManager(
+                userDetailsService, passwordService, encoder, Schedulers.immediate());
+    }
+
+    @Test
+    void rehashesAPasswordStoredBelowTheConfiguredCost() {
+        Member member = member(new BCryptPasswordEncoder(STRENGTH - 1).encode(PASSWORD));
+        when(userDetailsService.findByUsername(EMAIL)).thenReturn(Mono.just(member));
+
+        StepVerifier.create(manager.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(EMAIL, PASSWORD)))
+                .expectNextMatches(Authentication::isAuthenticated)
+                .verifyComplete();
+
+        verify(passwordService).updatePassword(eq(member), argThat(hash ->
+                hash.startsWith("$2a$0" + STRENGTH + "$") && encoder.matches(PASSWORD, hash)));
+    }
+
+    @Test
+    void keepsAPasswordStoredAtTheConfiguredCost() {
+        when(userDetailsService.findByUsername(EMAIL)).thenReturn(Mono.just(member(encoder.encode(PASSWORD))));
+
+        StepVerifier.create(manager.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(EMAIL, PASSWORD)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(passwordService, never()).updatePassword(any(), anyString());
+    }
+
+    @Test
+    void doesNotRehashAfterAWrongPassword() {
+        when(userDetailsService.findByUsername(EMAIL))
+                .thenReturn(Mono.just(member(new BCryptPasswordEncoder(STRENGTH - 1).encode(PASSWORD))));
+
+        StepVerifier.create(manager.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(EMAIL, "wrong")))
+                .verifyError(BadCredentialsException.class);
+
+        verify(passwordService, never()).updatePassword(any(), anyString());
+    }
+
+    private static Member member(String encodedPassword) {
+        return Member.builder().email(EMAIL).password(encodedPassword).build();
+    }
+}
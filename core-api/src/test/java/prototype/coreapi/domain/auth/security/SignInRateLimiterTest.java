@@ -0,0 +1,109 @@
+package prototype.coreapi.domain.auth.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import prototype.coreapi.domain.auth.config.SignInProperties;
+import prototype.coreapi.global.exception.BusinessException;
+import prototype.coreapi.global.exception.ErrorCode;
+import prototype.coreapi.global.redis.SignInAttemptStoreProvider;
+import prototype.coreapi.global.util.TokenHashUtil;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static prototype.coreapi.global.enums.RedisKeyPrefix.SIGN_IN_ATTEMPT_EMAIL;
+import static prototype.coreapi.global.enums.RedisKeyPrefix.SIGN_IN_ATTEMPT_IP;
+
+class SignInRateLimiterTest {
+
+    private static final String CLIENT_IP = "203.0.113.7";
+    private static final String EMAIL = "member@example.com";
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+
+    private SignInAttemptStoreProvider store;
+    private SignInRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        SignInProperties properties = new SignInProperties();
+        properties.getShaping().setWindow(WINDOW);
+        properties.getShaping().setMaxFailuresPerIp(3);
+        properties.getShaping().setMaxAttemptsPerEmail(2);
+        store = mock(SignInAttemptStoreProvider.class);
+        limiter = new SignInRateLimiter(store, properties);
+    }
+
+    @Test
+    void allowsAttemptsUnderBothLimits() {
+        when(store.count(SIGN_IN_ATTEMPT_IP, CLIENT_IP)).thenReturn(Mono.just(2L));
+        when(store.increment(eq(SIGN_IN_ATTEMPT_EMAIL), anyString(), eq(WINDOW))).thenReturn(Mono.just(2L));
+
+        StepVerifier.create(limiter.acquire(CLIENT_IP, EMAIL)).verifyComplete();
+    }
+
+    @Test
+    void rejectsAnAddressAtItsFailureLimit() {
+        when(store.count(SIGN_IN_ATTEMPT_IP, CLIENT_IP)).thenReturn(Mono.just(3L));
+        when(store.increment(eq(SIGN_IN_ATTEMPT_EMAIL), anyString(), eq(WINDOW))).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(limiter.acquire(CLIENT_IP, EMAIL))
+                .verifyErrorSatisfies(SignInRateLimiterTest::assertTooManyAttempts);
+    }
+
+    @Test
+    void rejectsAnEmailOverItsAttemptLimit() {
+        when(store.count(SIGN_IN_ATTEMPT_IP, CLIENT_IP)).thenReturn(Mono.just(0L));
+        when(store.increment(eq(SIGN_IN_ATTEMPT_EMAIL), anyString(), eq(WINDOW))).thenReturn(Mono.just(3L));
+
+        StepVerifier.create(limiter.acquire(CLIENT_IP, EMAIL))
+                .verifyErrorSatisfies(SignInRateLimiterTest::assertTooManyAttempts);
+    }
+
+    @Test
+    void shapesOnlyByEmailWhenTheAddressIsUnknown() {
+        when(store.increment(eq(SIGN_IN_ATTEMPT_EMAIL), anyString(), eq(WINDOW))).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(limiter.acquire(null, EMAIL)).verifyComplete();
+        StepVerifier.create(limiter.recordFailure(null)).verifyComplete();
+
+        verify(store, never()).count(eq(SIGN_IN_ATTEMPT_IP), any());
+        verify(store, never()).increment(eq(SIGN_IN_ATTEMPT_IP), any(), any());
+    }
+
+    @Test
+    void countsFailuresAgainstTheAddress() {
+        when(store.increment(SIGN_IN_ATTEMPT_IP, CLIENT_IP, WINDOW)).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(limiter.recordFailure(CLIENT_IP)).verifyComplete();
+
+        verify(store).increment(SIGN_IN_ATTEMPT_IP, CLIENT_IP, WINDOW);
+    }
+
+    @Test
+    void keysEmailsByTheirNormalisedHash() {
+        String key = TokenHashUtil.sha256(EMAIL);
+        when(store.count(SIGN_IN_ATTEMPT_IP, CLIENT_IP)).thenReturn(Mono.just(0L));
+        when(store.increment(SIGN_IN_ATTEMPT_EMAIL, key, WINDOW)).thenReturn(Mono.just(1L));
+        when(store.reset(SIGN_IN_ATTEMPT_EMAIL, key)).thenReturn(Mono.empty());
+
+        StepVerifier.create(limiter.acquire(CLIENT_IP, " Member@Example.COM ")).verifyComplete();
+        StepVerifier.create(limiter.reset("MEMBER@example.com")).verifyComplete();
+
+        verify(store).increment(SIGN_IN_ATTEMPT_EMAIL, key, WINDOW);
+        verify(store).reset(SIGN_IN_ATTEMPT_EMAIL, key);
+    }
+
+    private static void assertTooManyAttempts(Throwable actual) {
+        assertEquals(BusinessException.class, actual.getClass());
+        assertEquals(ErrorCode.TOO_MANY_SIGN_IN_ATTEMPTS, ((BusinessException) actual).getErrorCode());
+    }
+}
@@ -0,0 +1,161 @@
+package prototype.coreapi.domain.document;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import prototype.coreapi.domain.document.config.DocumentUploadProperties;
+import prototype.coreapi.domain.document.dto.BulkUploadResult;
+import prototype.coreapi.domain.document.entity.Document;
+import prototype.coreapi.domain.document.enums.BulkUploadStatus;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static prototype.coreapi.domain.document.DocumentStorageServiceTest.content;
+
+class BulkUploadServiceTest {
+
+    private static final int ENTRY_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private final Map<Long, Document> saved = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private DocumentUploadProperties properties;
+    private BulkUploadService bulkUploadService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        DocumentStorageService storageService = new DocumentStorageService();
+        ReflectionTestUtils.setField(storageService, "documentStoragePath", directory.toString());
+        DocumentRepository documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.findAllByContentHashIn(any())).thenReturn(Flux.empty());
+        when(documentRepository.insertAll(anyList())).thenAnswer(invocation -> Flux.fromIterable(
+                invocation.<List<Document>>getArgument(0)).map(document -> {
+                    long id = ids.incrementAndGet();
+                    ReflectionTestUtils.setField(document, "id", id);
+                    saved.put(id, document);
+                    return id;
+                }));
+        when(documentRepository.findAllById(any(Iterable.class))).thenAnswer(invocation -> {
+            List<Document> found = new ArrayList<>();
+            invocation.<Iterable<Long>>getArgument(0).forEach(id -> found.add(saved.get(id)));
+            return Flux.fromIterable(found);
+        });
+        properties = new DocumentUploadProperties();
+        // One entry at a time, so which entry exhausts the budget is deterministic.
+        properties.setBulkConcurrency(1);
+        bulkUploadService = new BulkUploadService(storageService, documentRepository, properties,
+                mock(DocumentCatalog.class), mock(DocumentService.class));
+    }
+
+    @Test
+    void registersEveryEntryOfAnArchiveWithinTheBudget() throws Exception {
+        Map<String, BulkUploadResult> results = upload(archive("docs.zip", "a.pdf", "b.pdf", "c.pdf"));
+
+        assertEquals(List.of("a.pdf", "b.pdf", "c.pdf"), List.copyOf(results.keySet()));
+        results.values().forEach(result -> assertEquals(BulkUploadStatus.CREATED, result.status()));
+    }
+
+    @Test
+    void rejectsEntriesOnceTheArchiveExpandsBeyondItsBudget() throws Exception {
+        // Room for the first entry and half of the second
+        properties.setMaxArchiveUncompressedSize(DataSize.ofBytes(ENTRY_SIZE * 3 / 2));
+
+        Map<String, BulkUploadResult> results = upload(archive("docs.zip", "a.pdf", "b.pdf", "c.pdf"));
+
+        assertEquals(BulkUploadStatus.CREATED, results.get("a.pdf").status());
+        for (String rejected : List.of("b.pdf", "c.pdf")) {
+            assertEquals(BulkUploadStatus.FAILED, results.get(rejected).status());
+            assertTrue(results.get(rejected).error().contains("expands to more than"), results.get(rejected).error());
+        }
+        // Neither the partly inflated entry nor the spooled archive is left behind
+        assertEquals(1, filesInStorage());
+    }
+
+    @Test
+    void budgetsEachArchiveSeparately() throws Exception {
+        properties.setMaxArchiveUncompressedSize(DataSize.ofBytes(ENTRY_SIZE * 3 / 2));
+
+        Map<String, BulkUploadResult> results = upload(archive("one.zip", "a.pdf"), archive("two.zip", "b.pdf"));
+
+        assertEquals(BulkUploadStatus.CREATED, results.get("a.pdf").status());
+        assertEquals(BulkUploadStatus.CREATED, results.get("b.pdf").status());
+    }
+
+    @Test
+    void rejectsAnArchiveWithTooManyEntries() throws Exception {
+        properties.setMaxArchiveEntries(2);
+
+        Map<String, BulkUploadResult> results = upload(archive("docs.zip", "a.pdf", "b.pdf", "c.pdf"));
+
+        assertEquals(List.of("docs.zip"), List.copyOf(results.keySet()));
+        assertEquals(BulkUploadStatus.FAILED, results.get("docs.zip").status());
+    }
+
+    @Test
+    void skipsArchiverMetadataAndHiddenFiles() throws Exception {
+        Map<String, BulkUploadResult> results = upload(archive("docs.zip", "a.pdf", "__MACOSX/._a.pdf", "dir/.DS_Store"));
+
+        assertEquals(List.of("a.pdf"), List.copyOf(results.keySet()));
+    }
+
+    private Map<String, BulkUploadResult> upload(FilePart... parts) {
+        Map<String, BulkUploadResult> results = new LinkedHashMap<>();
+        bulkUploadService.upload(Flux.just(parts), "legal")
+                .doOnNext(result -> results.put(result.filename(), result))
+                .blockLast();
+        return results;
+    }
+
+    /**
+     * @return An archive whose entries each inflate to {@value #ENTRY_SIZE} bytes of distinct content.
+     */
+    private static FilePart archive(String filename, String... entryNames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String entryName : entryNames) {
+                zip.putNextEntry(new ZipEntry(entryName));
+                byte[] entry = new byte[ENTRY_SIZE];
+                byte[] name = entryName.getBytes();
+                System.arraycopy(name, 0, entry, 0, name.length);
+                zip.write(entry);
+                zip.closeEntry();
+            }
+        }
+        FilePart part = mock(FilePart.class);
+        when(part.filename()).thenReturn(filename);
+        when(part.content()).thenReturn(content(bytes.toByteArray(), 1024));
+        return part;
+    }
+
+    private long filesInStorage() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package prototype.coreapi.domain.document;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import prototype.coreapi.domain.document.config.DocumentUploadProperties;
+import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.StoredFile;
+import prototype.coreapi.domain.document.dto.UploadCompleteRequest;
+import prototype.coreapi.domain.document.dto.UploadInitRequest;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.global.exception.BusinessException;
+import prototype.coreapi.global.exception.ErrorCode;
+import prototype.coreapi.global.redis.UploadSessionStoreProvider;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static prototype.coreapi.domain.document.DocumentStorageServiceTest.content;
+
+class ChunkedUploadServiceTest {
+
+    private static final int PART_SIZE = 8;
+    private static final byte[] CONTENT = "%PDF-1.7 nineteen b".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Map<Object, Object>> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Map<Object, Object>> parts = new ConcurrentHashMap<>();
+    private DocumentService documentService;
+    private ChunkedUploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        DocumentStorageService storageService = new DocumentStorageService();
+        ReflectionTestUtils.setField(storageService, "documentStoragePath", directory.toString());
+        documentService = mock(DocumentService.class);
+        when(documentService.register(any(), anyString(), any())).thenAnswer(invocation -> Mono.just(
+                DocumentResponse.from(DocumentServiceTest.document(1L, invocation.getArgument(2), IndexingStatus.PENDING))));
+        DocumentUploadProperties properties = new DocumentUploadProperties();
+        properties.setPartSize(DataSize.ofBytes(PART_SIZE));
+        uploadService = new ChunkedUploadService(storageService, documentService, sessionStore(), properties);
+    }
+
+    @Test
+    void assemblesPartsSentOutOfOrderIntoTheWholeFile() throws Exception {
+        String uploadId = initiate();
+        for (int partNumber : new int[]{3, 1, 2}) {
+            uploadPart(uploadId, partNumber, part(partNumber)).block();
+        }
+
+        uploadService.complete(uploadId, completeRequest(part(1), part(2), part(3))).block();
+
+        StoredFile stored = registeredFile();
+        assertEquals(DigestUtils.sha256Hex(CONTENT), stored.contentHash());
+        assertArrayEquals(CONTENT, Files.readAllBytes(stored.path()));
+        assertFalse(sessions.containsKey(uploadId));
+        assertFalse(Files.exists(directory.resolve(".parts").resolve(uploadId)));
+    }
+
+    @Test
+    void acceptsAPartSentAgain() {
+        String uploadId = initiate();
+        byte[] corrupted = part(1).clone();
+        corrupted[0] ^= 1;
+        StepVerifier.create(uploadService.uploadPart(uploadId, 1, DigestUtils.sha256Hex(part(1)), content(corrupted, 3)))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.UPLOAD_CHECKSUM_MISMATCH, ex));
+        for (int partNumber = 1; partNumber <= 3; partNumber++) {
+            uploadPart(uploadId, partNumber, part(partNumber)).block();
+        }
+
+        uploadService.complete(uploadId, completeRequest(part(1), part(2), part(3))).block();
+
+        assertEquals(DigestUtils.sha256Hex(CONTENT), registeredFile().contentHash());
+    }
+
+    @Test
+    void rejectsAPartOfTheWrongSize() {
+        String uploadId = initiate();
+
+        StepVerifier.create(uploadPart(uploadId, 1, Arrays.copyOf(part(1), PART_SIZE - 1)))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.UPLOAD_PART_INVALID, ex));
+        StepVerifier.create(uploadPart(uploadId, 4, part(3)))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.UPLOAD_PART_INVALID, ex));
+    }
+
+    @Test
+    void doesNotCompleteWithMissingParts() {
+        String uploadId = initiate();
+        uploadPart(uploadId, 1, part(1)).block();
+
+        StepVerifier.create(uploadService.complete(uploadId, completeRequest(part(1), part(2), part(3))))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.UPLOAD_INCOMPLETE, ex));
+        verify(documentService, never()).register(any(), anyString(), any());
+    }
+
+    @Test
+    void doesNotCompleteWhenTheClientChecksumsDiffer() {
+        String uploadId = initiate();
+        for (int partNumber = 1; partNumber <= 3; partNumber++) {
+            uploadPart(uploadId, partNumber, part(partNumber)).block();
+        }
+
+        StepVerifier.create(uploadService.complete(uploadId, completeRequest(part(1), part(1), part(3))))
+                .verifyErrorSatisfies(ex -> assertErrorCode(ErrorCode.UPLOAD_CHECKSUM_MISMATCH, ex));
+        verify(documentService, never()).register(any(), anyString(), any());
+    }
+
+    private String initiate() {
+        UploadInitRequest request = read(
+                "{\"filename\":\"handbook.pdf\",\"category\":\"legal\",\"totalSize\":" + CONTENT.length + "}",
+                UploadInitRequest.class);
+        return uploadService.initiate(request).block().uploadId();
+    }
+
+    private Mono<?> uploadPart(String uploadId, int partNumber, byte[] bytes) {
+        return uploadService.uploadPart(uploadId, partNumber, DigestUtils.sha256Hex(bytes), content(bytes, 3));
+    }
+
+    private static byte[] part(int partNumber) {
+        return Arrays.copyOfRange(CONTENT, (partNumber - 1) * PART_SIZE, Math.min(CONTENT.length, partNumber * PART_SIZE));
+    }
+
+    private UploadCompleteRequest completeRequest(byte[]... partContents) {
+        String checksums = IntStream.range(0, partContents.length)
+                .mapToObj(i -> "{\"partNumber\":" + (i + 1) + ",\"checksum\":\"" + DigestUtils.sha256Hex(partContents[i]) + "\"}")
+                .collect(Collectors.joining(","));
+        return read("{\"parts\":[" + checksums + "]}", UploadCompleteRequest.class);
+    }
+
+    private StoredFile registeredFile() {
+        ArgumentCaptor<StoredFile> storedFile = ArgumentCaptor.forClass(StoredFile.class);
+        verify(documentService).register(storedFile.capture(), eq("handbook.pdf"), eq("legal"));
+        return storedFile.getValue();
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return A session store that keeps sessions in memory instead of Redis hashes.
+     */
+    private UploadSessionStoreProvider sessionStore() {
+        UploadSessionStoreProvider store = mock(UploadSessionStoreProvider.class);
+        when(store.save(anyString(), anyMap(), any())).thenAnswer(invocation -> {
+            sessions.put(invocation.getArgument(0), new HashMap<>(invocation.<Map<String, String>>getArgument(1)));
+            return Mono.just(true);
+        });
+        when(store.get(anyString())).thenAnswer(invocation -> Mono.justOrEmpty(sessions.get(invocation.<String>getArgument(0))));
+        when(store.savePart(anyString(), anyInt(), anyString(), any())).thenAnswer(invocation -> {
+            parts.computeIfAbsent(invocation.getArgument(0), id -> new ConcurrentHashMap<>())
+                    .put(String.valueOf(invocation.<Integer>getArgument(1)), invocation.getArgument(2));
+            return Mono.just(true);
+        });
+        when(store.getParts(anyString())).thenAnswer(invocation ->
+                Mono.just(parts.getOrDefault(invocation.<String>getArgument(0), Map.of())));
+        when(store.delete(anyString())).thenAnswer(invocation -> {
+            sessions.remove(invocation.<String>getArgument(0));
+            parts.remove(invocation.<String>getArgument(0));
+            return Mono.empty();
+        });
+        return store;
+    }
+
+    private static void assertErrorCode(ErrorCode expected, Throwable actual) {
+        assertEquals(BusinessException.class, actual.getClass());
+        assertEquals(expected, ((BusinessException) actual).getErrorCode());
+    }
+}
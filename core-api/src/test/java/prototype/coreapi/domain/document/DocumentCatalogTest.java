@@ -0,0 +1,105 @@
+package prototype.coreapi.domain.document;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import prototype.coreapi.domain.document.config.DocumentEventProperties;
+import prototype.coreapi.domain.document.dto.DocumentCatalogDelta;
+import prototype.coreapi.domain.document.dto.DocumentCatalogStats;
+import prototype.coreapi.domain.document.dto.DocumentCountRow;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.global.redis.DocumentEventChannelProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentCatalogTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Sinks.Many<String> channel = Sinks.many().unicast().onBackpressureBuffer();
+    private DocumentRepository documentRepository;
+    private DocumentEventChannelProvider channelProvider;
+    private DocumentCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository = mock(DocumentRepository.class);
+        channelProvider = mock(DocumentEventChannelProvider.class);
+        catalog = new DocumentCatalog(documentRepository, channelProvider, objectMapper, new DocumentEventProperties());
+
+        when(documentRepository.countByCategoryAndStatus()).thenReturn(Flux.just(
+                new DocumentCountRow("legal", IndexingStatus.SUCCESS, 3),
+                new DocumentCountRow("finance", IndexingStatus.PENDING, 1),
+                new DocumentCountRow(null, IndexingStatus.FAILURE, 2)));
+        when(channelProvider.listen(anyString())).thenReturn(channel.asFlux());
+        // Changes come back to every node, this one included, through the channel
+        when(channelProvider.broadcast(anyString(), anyString())).thenAnswer(invocation -> {
+            channel.tryEmitNext(invocation.getArgument(1));
+            return Mono.just(1L);
+        });
+        catalog.start();
+    }
+
+    @Test
+    void loadsTheCountsFromPostgres() {
+        DocumentCatalogStats stats = catalog.stats();
+
+        assertEquals(6, stats.total());
+        assertEquals(3L, stats.byStatus().get(IndexingStatus.SUCCESS));
+        assertEquals(2L, stats.byStatus().get(IndexingStatus.FAILURE));
+        // Documents without a category are counted, but not listed as a category
+        assertEquals(Map.of("finance", 1L, "legal", 3L), stats.byCategory());
+        assertEquals(List.of("finance", "legal"), catalog.categories());
+    }
+
+    @Test
+    void appliesRelayedChanges() {
+        catalog.record(new DocumentCatalogDelta("finance", IndexingStatus.PENDING, IndexingStatus.SUCCESS));
+        catalog.record(DocumentCatalogDelta.created("hr", IndexingStatus.PENDING));
+        catalog.record(DocumentCatalogDelta.deleted("finance", IndexingStatus.SUCCESS));
+
+        DocumentCatalogStats stats = catalog.stats();
+        assertEquals(6, stats.total());
+        assertEquals(1L, stats.byStatus().get(IndexingStatus.PENDING));
+        assertEquals(3L, stats.byStatus().get(IndexingStatus.SUCCESS));
+        assertEquals(List.of("hr", "legal"), catalog.categories());
+    }
+
+    @Test
+    void appliesChangesLocallyWhenTheBroadcastFails() {
+        when(channelProvider.broadcast(anyString(), anyString())).thenReturn(Mono.error(new IllegalStateException("down")));
+
+        catalog.record(DocumentCatalogDelta.created("hr", IndexingStatus.PENDING));
+
+        assertEquals(List.of("finance", "hr", "legal"), catalog.categories());
+    }
+
+    @Test
+    void reconciliationRepairsMissedChanges() {
+        catalog.record(DocumentCatalogDelta.created("hr", IndexingStatus.PENDING));
+        when(documentRepository.countByCategoryAndStatus())
+                .thenReturn(Flux.just(new DocumentCountRow("legal", IndexingStatus.SUCCESS, 5)));
+
+        catalog.reconcile().block();
+
+        assertEquals(5, catalog.stats().total());
+        assertEquals(List.of("legal"), catalog.categories());
+    }
+
+    @Test
+    void ignoresMalformedMessages() {
+        channel.tryEmitNext("{not json");
+        catalog.record(DocumentCatalogDelta.created("hr", IndexingStatus.PENDING));
+
+        assertEquals(List.of("finance", "hr", "legal"), catalog.categories());
+    }
+}
@@ -0,0 +1,163 @@
+package prototype.coreapi.domain.document;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.codec.multipart.FilePart;
+import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.IndexingJobPayload;
+import prototype.coreapi.domain.document.dto.PageText;
+import prototype.coreapi.domain.document.dto.StoredFile;
+import prototype.coreapi.domain.document.entity.Document;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.enums.JobLane;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.domain.document.repository.UnreferencedFileRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentRevisionServiceTest {
+
+    private static final String PREVIOUS_NAME = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.pdf";
+    private static final String REVISION_HASH = "60303ae22b998861bce3b28f33eec1be758a213c86c93c076dbe9f558c11c752";
+    private static final StoredFile REVISION =
+            new StoredFile(REVISION_HASH + ".pdf", Path.of("/data/documents", REVISION_HASH + ".pdf"), REVISION_HASH, 2048);
+
+    private DocumentRepository documentRepository;
+    private DocumentStorageService documentStorageService;
+    private PageTextExtractor pageTextExtractor;
+    private IndexingJobPublisher indexingJobPublisher;
+    private UnreferencedFileRepository unreferencedFileRepository;
+    private DocumentRevisionService revisionService;
+    private FilePart filePart;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository = mock(DocumentRepository.class);
+        documentStorageService = mock(DocumentStorageService.class);
+        pageTextExtractor = mock(PageTextExtractor.class);
+        indexingJobPublisher = mock(IndexingJobPublisher.class);
+        unreferencedFileRepository = mock(UnreferencedFileRepository.class);
+        revisionService = new DocumentRevisionService(documentRepository, documentStorageService, pageTextExtractor,
+                indexingJobPublisher, unreferencedFileRepository, mock(DocumentCatalog.class), mock(SseEmitterService.class));
+        filePart = mock(FilePart.class);
+
+        when(filePart.filename()).thenReturn("contract-v2.pdf");
+        when(filePart.content()).thenReturn(Flux.empty());
+        when(documentStorageService.store(any(), eq("pdf"))).thenReturn(Mono.just(REVISION));
+        when(documentRepository.save(any(Document.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(pageTextExtractor.extract(anyString(), any())).thenReturn(Mono.empty());
+        when(indexingJobPublisher.publish(any(), any())).thenReturn(Mono.empty());
+        when(unreferencedFileRepository.mark(anyString(), anyString())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void reindexesOnlyTheChangedPages() {
+        existing(IndexingStatus.SUCCESS);
+        pages(PREVIOUS_NAME, "intro", "terms", "prices", "signatures");
+        pages(REVISION.storedName(), "intro", "amended terms", "prices", "signatures", "annex");
+
+        DocumentResponse response = revisionService.revise(7L, filePart).block();
+
+        IndexingJobPayload payload = publishedPayload();
+        assertEquals(List.of(2, 5), payload.pages());
+        assertEquals(5, payload.pageCount());
+        assertEquals(REVISION.storedName(), payload.storedName());
+        assertEquals("contract-v2.pdf", payload.originalFilename());
+        assertEquals(IndexingStatus.PENDING, response.status());
+        assertEquals(2, response.revision());
+        // The previous file is left to the sweeper
+        verify(unreferencedFileRepository).mark(PREVIOUS_NAME, "/data/documents/" + PREVIOUS_NAME);
+    }
+
+    @Test
+    void dropsThePagesPastTheNewEnd() {
+        existing(IndexingStatus.SUCCESS);
+        pages(PREVIOUS_NAME, "intro", "terms", "prices", "signatures");
+        pages(REVISION.storedName(), "intro", "terms");
+
+        revisionService.revise(7L, filePart).block();
+
+        IndexingJobPayload payload = publishedPayload();
+        assertEquals(List.of(), payload.pages());
+        assertEquals(2, payload.pageCount());
+    }
+
+    @Test
+    void shiftsEveryPageAfterAnInsertion() {
+        existing(IndexingStatus.SUCCESS);
+        pages(PREVIOUS_NAME, "intro", "terms", "prices");
+        pages(REVISION.storedName(), "intro", "summary", "terms", "prices");
+
+        revisionService.revise(7L, filePart).block();
+
+        assertEquals(IntStream.rangeClosed(2, 4).boxed().toList(), publishedPayload().pages());
+    }
+
+    @Test
+    void reindexesTheWholeRevisionOfADocumentNotFullyIndexed() {
+        existing(IndexingStatus.FAILURE);
+
+        revisionService.revise(7L, filePart).block();
+
+        IndexingJobPayload payload = publishedPayload();
+        assertNull(payload.pages());
+        assertNull(payload.pageCount());
+        verify(pageTextExtractor, never()).read(anyString());
+    }
+
+    @Test
+    void reindexesTheWholeRevisionWithoutPageText() {
+        existing(IndexingStatus.SUCCESS);
+        pages(PREVIOUS_NAME, "intro");
+        when(pageTextExtractor.read(REVISION.storedName())).thenReturn(Mono.empty());
+
+        revisionService.revise(7L, filePart).block();
+
+        assertNull(publishedPayload().pages());
+    }
+
+    @Test
+    void ignoresARevisionWithTheSameContent() {
+        Document document = existing(IndexingStatus.SUCCESS);
+        when(documentStorageService.store(any(), eq("pdf"))).thenReturn(Mono.just(
+                new StoredFile(PREVIOUS_NAME, Path.of("/data/documents", PREVIOUS_NAME), document.getContentHash(), 1024)));
+
+        DocumentResponse response = revisionService.revise(7L, filePart).block();
+
+        assertEquals(IndexingStatus.SUCCESS, response.status());
+        verify(indexingJobPublisher, never()).publish(any(), any());
+        verify(documentRepository, never()).save(any());
+    }
+
+    private Document existing(IndexingStatus status) {
+        Document document = DocumentServiceTest.document(7L, "legal", status);
+        when(documentRepository.findById(7L)).thenReturn(Mono.just(document));
+        return document;
+    }
+
+    private void pages(String storedName, String... texts) {
+        List<PageText> pages = IntStream.range(0, texts.length).mapToObj(i -> new PageText(i + 1, texts[i])).toList();
+        when(pageTextExtractor.read(storedName)).thenReturn(Mono.just(pages));
+    }
+
+    private IndexingJobPayload publishedPayload() {
+        ArgumentCaptor<IndexingJobPayload> payload = ArgumentCaptor.forClass(IndexingJobPayload.class);
+        verify(indexingJobPublisher).publish(eq(JobLane.REINDEX), payload.capture());
+        return payload.getValue();
+    }
+}
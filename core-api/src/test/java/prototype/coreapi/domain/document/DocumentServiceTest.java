@@ -0,0 +1,281 @@
+package prototype.coreapi.domain.document;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.test.util.ReflectionTestUtils;
+import prototype.coreapi.domain.document.dto.DocumentPageResponse;
+import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.dto.DocumentSearchCondition;
+import prototype.coreapi.domain.document.dto.IndexingJobPayload;
+import prototype.coreapi.domain.document.dto.StoredFile;
+import prototype.coreapi.domain.document.entity.Document;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.enums.JobLane;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.domain.document.repository.UnreferencedFileRepository;
+import prototype.coreapi.domain.retrieval.RetrievalService;
+import prototype.coreapi.global.config.WebClientFactory;
+import prototype.coreapi.global.exception.BusinessException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.publisher.PublisherProbe;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentServiceTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    private final AtomicLong ids = new AtomicLong(100);
+    private DocumentRepository documentRepository;
+    private IndexingJobPublisher indexingJobPublisher;
+    private PageTextExtractor pageTextExtractor;
+    private UnreferencedFileRepository unreferencedFileRepository;
+    private RetrievalService retrievalService;
+    private DocumentService documentService;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository = mock(DocumentRepository.class);
+        indexingJobPublisher = mock(IndexingJobPublisher.class);
+        pageTextExtractor = mock(PageTextExtractor.class);
+        unreferencedFileRepository = mock(UnreferencedFileRepository.class);
+        retrievalService = mock(RetrievalService.class);
+        documentService = new DocumentService(documentRepository, mock(WebClientFactory.class), indexingJobPublisher,
+                mock(SseEmitterService.class), mock(DocumentStorageService.class), mock(DocumentCatalog.class),
+                unreferencedFileRepository, pageTextExtractor, retrievalService);
+
+        when(documentRepository.save(any(Document.class))).thenAnswer(invocation -> {
+            Document document = invocation.getArgument(0);
+            if (document.getId() == null) {
+                ReflectionTestUtils.setField(document, "id", ids.incrementAndGet());
+            }
+            return Mono.just(document);
+        });
+        when(documentRepository.findById(any(Long.class)))
+                .thenAnswer(invocation -> Mono.just(document(invocation.getArgument(0), "legal", IndexingStatus.PENDING)));
+        when(documentRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            Iterable<Long> documentIds = invocation.getArgument(0);
+            return Flux.fromIterable(documentIds).map(id -> document(id, "legal", IndexingStatus.PENDING));
+        });
+        when(indexingJobPublisher.publishAll(any(), anyList())).thenReturn(Flux.empty());
+        when(pageTextExtractor.extract(any(), any())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void returnsTheDocumentAlreadyHoldingTheContentInTheCategory() {
+        when(documentRepository.findAllByContentHash(HASH))
+                .thenReturn(Flux.just(document(7L, "legal", IndexingStatus.SUCCESS)));
+
+        DocumentResponse response = documentService.register(storedFile(), "contract.pdf", "legal").block();
+
+        assertEquals(7L, response.id());
+        verify(documentRepository, never()).save(any());
+        verify(indexingJobPublisher, never()).publishAll(any(), anyList());
+    }
+
+    @Test
+    void copiesTheChunksOfContentIndexedInAnotherCategory() {
+        when(documentRepository.findAllByContentHash(HASH))
+                .thenReturn(Flux.just(document(7L, "finance", IndexingStatus.SUCCESS)));
+
+        DocumentResponse response = documentService.register(storedFile(), "contract.pdf", "legal").block();
+
+        IndexingJobPayload payload = publishedPayload(JobLane.UPLOAD);
+        assertEquals(response.id(), payload.documentId());
+        assertEquals(7L, payload.sourceDocumentId());
+        verify(pageTextExtractor, never()).extract(any(), any());
+    }
+
+    @Test
+    void indexesContentWhoseEarlierUploadFailed() {
+        when(documentRepository.findAllByContentHash(HASH))
+                .thenReturn(Flux.just(document(7L, "legal", IndexingStatus.FAILURE)));
+
+        DocumentResponse response = documentService.register(storedFile(), "contract.pdf", "legal").block();
+
+        IndexingJobPayload payload = publishedPayload(JobLane.UPLOAD);
+        assertEquals(response.id(), payload.documentId());
+        assertNull(payload.sourceDocumentId());
+        verify(pageTextExtractor).extract(eq(HASH + ".pdf"), any());
+    }
+
+    @Test
+    void skipsTheJobOfADocumentDeletedDuringExtraction() {
+        when(documentRepository.findAllByContentHash(HASH)).thenReturn(Flux.empty());
+        when(documentRepository.findAllById(anyIterable())).thenReturn(Flux.empty());
+
+        documentService.register(storedFile(), "contract.pdf", "legal").block();
+
+        verify(pageTextExtractor).extract(eq(HASH + ".pdf"), any());
+        verify(indexingJobPublisher, never()).publishAll(any(), anyList());
+    }
+
+    @Test
+    void publishesOnlyTheDocumentsThatStillExist() {
+        Document kept = document(1L, "legal", IndexingStatus.PENDING);
+        Document deleted = document(2L, "legal", IndexingStatus.PENDING);
+        when(documentRepository.findAllById(anyIterable())).thenReturn(Flux.just(kept));
+
+        documentService.publishAfterExtraction(JobLane.REINDEX, List.of(kept, deleted), Arrays.asList(null, null));
+
+        IndexingJobPayload payload = publishedPayload(JobLane.REINDEX);
+        assertEquals(1L, payload.documentId());
+    }
+
+    @Test
+    void walksThePagesByKeyset() {
+        DocumentSearchCondition condition = new DocumentSearchCondition("legal", null, null);
+        // Ids 10 down to 1, newest first
+        when(documentRepository.findPage(eq(condition), any(), anyInt())).thenAnswer(invocation -> {
+            Long beforeId = invocation.getArgument(1);
+            int limit = invocation.getArgument(2);
+            long from = beforeId == null ? 10 : beforeId - 1;
+            return Flux.fromStream(LongStream.iterate(from, id -> id >= 1, id -> id - 1).limit(limit).boxed())
+                    .map(id -> document(id, "legal", IndexingStatus.SUCCESS));
+        });
+
+        DocumentPageResponse first = documentService.findPage(condition, null, 4).block();
+        DocumentPageResponse second = documentService.findPage(condition, first.nextCursor(), 4).block();
+        DocumentPageResponse last = documentService.findPage(condition, second.nextCursor(), 4).block();
+
+        assertEquals(List.of(10L, 9L, 8L, 7L), ids(first));
+        assertEquals(List.of(6L, 5L, 4L, 3L), ids(second));
+        assertEquals(List.of(2L, 1L), ids(last));
+        assertNull(last.nextCursor());
+        // One row more than the page, to tell whether another page follows
+        verify(documentRepository).findPage(eq(condition), isNull(), eq(5));
+        verify(documentRepository).findPage(condition, 7L, 5);
+        verify(documentRepository).findPage(condition, 3L, 5);
+    }
+
+    @Test
+    void endsOnAPageThatIsExactlyFull() {
+        DocumentSearchCondition condition = new DocumentSearchCondition(null, null, null);
+        when(documentRepository.findPage(eq(condition), any(), anyInt()))
+                .thenReturn(Flux.just(document(2L, "legal", IndexingStatus.SUCCESS), document(1L, "legal", IndexingStatus.SUCCESS)));
+
+        DocumentPageResponse page = documentService.findPage(condition, null, 2).block();
+
+        assertEquals(List.of(2L, 1L), ids(page));
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void clampsThePageSize() {
+        DocumentSearchCondition condition = new DocumentSearchCondition(null, null, null);
+        when(documentRepository.findPage(eq(condition), any(), anyInt())).thenReturn(Flux.empty());
+
+        documentService.findPage(condition, null, 10_000).block();
+        documentService.findPage(condition, null, 0).block();
+
+        verify(documentRepository).findPage(condition, null, 201);
+        verify(documentRepository).findPage(condition, null, 2);
+    }
+
+    @Test
+    void rejectsAMalformedCursor() {
+        DocumentSearchCondition condition = new DocumentSearchCondition(null, null, null);
+
+        assertThrows(BusinessException.class, () -> documentService.findPage(condition, "not a cursor!", 20));
+        assertThrows(BusinessException.class, () -> documentService.findPage(condition, "YWJj", 20));
+        verify(documentRepository, never()).findPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void hidesADeletedDocumentFromRetrievalOnceItsRowIsDeleted() {
+        PublisherProbe<Void> hide = stubDeletion(Mono.just(RecordId.of("1-0")), Mono.empty());
+        PublisherProbe<Void> mark = PublisherProbe.empty();
+        when(unreferencedFileRepository.mark(HASH + ".pdf", "/data/documents/" + HASH + ".pdf")).thenReturn(mark.mono());
+
+        documentService.deleteById(5L).block();
+
+        hide.assertWasSubscribed();
+        mark.assertWasSubscribed();
+    }
+
+    @Test
+    void keepsADocumentRetrievableWhenItsRowCannotBeDeleted() {
+        PublisherProbe<Void> hide = stubDeletion(Mono.just(RecordId.of("1-0")),
+                Mono.error(new IllegalStateException("connection lost")));
+
+        assertThrows(IllegalStateException.class, () -> documentService.deleteById(5L).block());
+
+        hide.assertWasNotSubscribed();
+    }
+
+    @Test
+    void keepsADocumentRetrievableWhenItsDeIndexingCannotBePublished() {
+        PublisherProbe<Void> delete = PublisherProbe.empty();
+        PublisherProbe<Void> hide = stubDeletion(Mono.error(new IllegalStateException("connection lost")), delete.mono());
+
+        assertThrows(IllegalStateException.class, () -> documentService.deleteById(5L).block());
+
+        delete.assertWasNotSubscribed();
+        hide.assertWasNotSubscribed();
+    }
+
+    /**
+     * Stubs the steps of deleting document 5.
+     * @return A probe of hiding the document from retrieval.
+     */
+    private PublisherProbe<Void> stubDeletion(Mono<RecordId> deindexing, Mono<Void> rowDeletion) {
+        PublisherProbe<Void> hide = PublisherProbe.empty();
+        when(indexingJobPublisher.publish(eq(JobLane.DEINDEX), any())).thenReturn(deindexing);
+        when(documentRepository.deleteById(5L)).thenReturn(rowDeletion);
+        when(retrievalService.deleteDocument(5L)).thenReturn(hide.mono());
+        when(unreferencedFileRepository.mark(any(), any())).thenReturn(Mono.empty());
+        return hide;
+    }
+
+    @SuppressWarnings("unchecked")
+    private IndexingJobPayload publishedPayload(JobLane lane) {
+        ArgumentCaptor<List<IndexingJobPayload>> payloads = ArgumentCaptor.forClass(List.class);
+        verify(indexingJobPublisher).publishAll(eq(lane), payloads.capture());
+        assertEquals(1, payloads.getValue().size());
+        return payloads.getValue().getFirst();
+    }
+
+    private static List<Long> ids(DocumentPageResponse page) {
+        return page.items().stream().map(DocumentResponse::id).toList();
+    }
+
+    private static StoredFile storedFile() {
+        return new StoredFile(HASH + ".pdf", Path.of("/data/documents", HASH + ".pdf"), HASH, 1024);
+    }
+
+    static Document document(Long id, String category, IndexingStatus status) {
+        Document document = Document.builder()
+                .name("contract.pdf")
+                .storedName(HASH + ".pdf")
+                .path("/data/documents/" + HASH + ".pdf")
+                .type("pdf")
+                .size(1024)
+                .contentHash(HASH)
+                .category(category)
+                .status(status)
+                .build();
+        ReflectionTestUtils.setField(document, "id", id);
+        return document;
+    }
+}
@@ -0,0 +1,93 @@
+package prototype.coreapi.domain.document;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import prototype.coreapi.domain.document.dto.StoredFile;
+import prototype.coreapi.global.exception.BusinessException;
+import prototype.coreapi.global.exception.ErrorCode;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class DocumentStorageServiceTest {
+
+    private static final byte[] CONTENT = "%PDF-1.7 contract terms and payment schedule".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private DocumentStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new DocumentStorageService();
+        ReflectionTestUtils.setField(storageService, "documentStoragePath", directory.toString());
+    }
+
+    @Test
+    void namesAFileAfterTheHashOfItsContent() throws Exception {
+        StoredFile stored = storageService.store(content(CONTENT, 7), "pdf").block();
+
+        String hash = DigestUtils.sha256Hex(CONTENT);
+        assertEquals(hash, stored.contentHash());
+        assertEquals(hash + ".pdf", stored.storedName());
+        assertEquals(CONTENT.length, stored.size());
+        assertArrayEquals(CONTENT, Files.readAllBytes(stored.path()));
+    }
+
+    @Test
+    void storesIdenticalContentOnce() throws Exception {
+        StoredFile first = storageService.store(content(CONTENT, 5), "pdf").block();
+        StoredFile second = storageService.store(content(CONTENT, 11), "pdf").block();
+
+        assertEquals(first.storedName(), second.storedName());
+        assertEquals(List.of(first.path()), storedFiles());
+    }
+
+    @Test
+    void storesDifferentContentSeparately() throws Exception {
+        StoredFile first = storageService.store(content(CONTENT, 5), "pdf").block();
+        byte[] changed = CONTENT.clone();
+        changed[changed.length - 1] ^= 1;
+        StoredFile second = storageService.store(content(changed, 5), "pdf").block();
+
+        assertNotEquals(first.contentHash(), second.contentHash());
+        assertEquals(2, storedFiles().size());
+    }
+
+    @Test
+    void rejectsAnUploadIdOutsideThePartsDirectory() {
+        StepVerifier.create(storageService.storePart("../..", 1, content(CONTENT, 5), DigestUtils.sha256Hex(CONTENT), CONTENT.length))
+                .verifyErrorSatisfies(ex -> assertEquals(ErrorCode.UPLOAD_NOT_FOUND, ((BusinessException) ex).getErrorCode()));
+    }
+
+    static Flux<DataBuffer> content(byte[] bytes, int bufferSize) {
+        return Flux.range(0, (bytes.length + bufferSize - 1) / bufferSize)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        Arrays.copyOfRange(bytes, i * bufferSize, Math.min(bytes.length, (i + 1) * bufferSize))));
+    }
+
+    /**
+     * @return The files in storage, without temporary files or upload parts.
+     */
+    private List<Path> storedFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> !path.getFileName().toString().startsWith(".")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package prototype.coreapi.domain.document;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import prototype.coreapi.domain.document.config.DocumentQueueProperties;
+import prototype.coreapi.domain.document.dto.IndexingJobPayload;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.enums.JobLane;
+import prototype.coreapi.global.redis.StreamConsumerGroupProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IndexingJobReclaimerTest {
+
+    private static final String GROUP = "indexing-workers";
+    private static final String STREAM = JobLane.UPLOAD.getStreamKey();
+    private static final String PAYLOAD = "{\"documentId\":42}";
+    private static final Duration VISIBILITY_TIMEOUT = Duration.ofMinutes(10);
+
+    private ReactiveStreamOperations<String, Object, Object> streams;
+    private IndexingJobPublisher indexingJobPublisher;
+    private DocumentService documentService;
+    private IndexingJobReclaimer reclaimer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        ReactiveStringRedisTemplate redisTemplate = mock(ReactiveStringRedisTemplate.class);
+        streams = mock(ReactiveStreamOperations.class);
+        indexingJobPublisher = mock(IndexingJobPublisher.class);
+        documentService = mock(DocumentService.class);
+        DocumentQueueProperties properties = new DocumentQueueProperties();
+        properties.setConsumerGroup(GROUP);
+        properties.setVisibilityTimeout(VISIBILITY_TIMEOUT);
+        properties.setMaxDeliveries(3);
+        StreamConsumerGroupProvider consumerGroupProvider = mock(StreamConsumerGroupProvider.class);
+        reclaimer = new IndexingJobReclaimer(redisTemplate, consumerGroupProvider, indexingJobPublisher, documentService,
+                properties);
+
+        when(redisTemplate.opsForStream()).thenReturn(streams);
+        when(consumerGroupProvider.trimConsumed(anyString(), eq(GROUP))).thenReturn(Mono.just(0L));
+        when(streams.pending(anyString(), eq(GROUP), any(Range.class), anyLong()))
+                .thenReturn(Mono.just(new PendingMessages(GROUP, List.of())));
+        when(streams.add(any(MapRecord.class))).thenReturn(Mono.just(RecordId.of("9-0")));
+        when(streams.acknowledge(anyString(), eq(GROUP), any(String[].class))).thenReturn(Mono.just(1L));
+        when(indexingJobPublisher.readPayload(PAYLOAD)).thenReturn(IndexingJobPayload.builder().documentId(42L).build());
+        when(documentService.updateStatus(42L, IndexingStatus.FAILURE)).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void deadLettersAnIdleJobThatReachedTheDeliveryLimit() {
+        pending(3, VISIBILITY_TIMEOUT.plusMinutes(1));
+        when(streams.claim(eq(STREAM), eq(GROUP), anyString(), any(XClaimOptions.class)))
+                .thenReturn(Flux.just(StreamRecords.newRecord().in(STREAM).withId("1-0")
+                        .ofMap(Map.<Object, Object>of("payload", PAYLOAD))));
+
+        reclaimer.reclaim().block();
+
+        ArgumentCaptor<XClaimOptions> claim = ArgumentCaptor.forClass(XClaimOptions.class);
+        verify(streams).claim(eq(STREAM), eq(GROUP), anyString(), claim.capture());
+        assertEquals(VISIBILITY_TIMEOUT, claim.getValue().getMinIdleTime());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<MapRecord<String, String, String>> deadLetter = ArgumentCaptor.forClass(MapRecord.class);
+        verify(streams).add(deadLetter.capture());
+        assertEquals("document-jobs-dead-letter", deadLetter.getValue().getStream());
+        assertEquals(PAYLOAD, deadLetter.getValue().getValue().get("payload"));
+        assertEquals("1-0", deadLetter.getValue().getValue().get("recordId"));
+        verify(streams).acknowledge(STREAM, GROUP, "1-0");
+        verify(documentService).updateStatus(42L, IndexingStatus.FAILURE);
+    }
+
+    @Test
+    void leavesAJobUnderTheDeliveryLimitToTheWorkers() {
+        pending(2, VISIBILITY_TIMEOUT.plusMinutes(1));
+
+        reclaimer.reclaim().block();
+
+        verify(streams, never()).claim(anyString(), anyString(), anyString(), any(XClaimOptions.class));
+        verify(streams, never()).acknowledge(anyString(), anyString(), any(String[].class));
+    }
+
+    @Test
+    void leavesAJobOnItsLastDeliveryWhileItIsWorkedOn() {
+        pending(3, VISIBILITY_TIMEOUT.minusMinutes(1));
+
+        reclaimer.reclaim().block();
+
+        verify(streams, never()).claim(anyString(), anyString(), anyString(), any(XClaimOptions.class));
+        verify(streams, never()).acknowledge(anyString(), anyString(), any(String[].class));
+    }
+
+    @Test
+    void leavesAJobThatWasClaimedInTheMeantime() {
+        pending(3, VISIBILITY_TIMEOUT.plusMinutes(1));
+        when(streams.claim(eq(STREAM), eq(GROUP), anyString(), any(XClaimOptions.class))).thenReturn(Flux.empty());
+
+        reclaimer.reclaim().block();
+
+        verify(streams, never()).add(ArgumentMatchers.<MapRecord<String, Object, Object>>any());
+        verify(streams, never()).acknowledge(anyString(), anyString(), any(String[].class));
+        verify(documentService, never()).updateStatus(any(), any());
+    }
+
+    private void pending(long deliveries, Duration idle) {
+        PendingMessage message = new PendingMessage(RecordId.of("1-0"), Consumer.from(GROUP, "worker-1"), idle, deliveries);
+        when(streams.pending(eq(STREAM), eq(GROUP), any(Range.class), anyLong()))
+                .thenReturn(Mono.just(new PendingMessages(GROUP, List.of(message))));
+    }
+}
@@ -0,0 +1,152 @@
+package prototype.coreapi.domain.document;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import prototype.coreapi.domain.document.config.DocumentProgressProperties;
+import prototype.coreapi.domain.document.dto.IndexingProgressEvent;
+import prototype.coreapi.domain.document.enums.IndexingStage;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.global.redis.StreamConsumerGroupProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IndexingProgressConsumerTest {
+
+    private static final String STREAM = "document-progress-stream";
+    private static final String GROUP = "core-api";
+
+    private ReactiveStreamOperations<String, Object, Object> streams;
+    private DocumentRepository documentRepository;
+    private StreamConsumerGroupProvider consumerGroupProvider;
+    private final List<RecordId> acknowledged = new ArrayList<>();
+    private IndexingProgressConsumer progressConsumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReactiveStringRedisTemplate redisTemplate = mock(ReactiveStringRedisTemplate.class);
+        streams = mock(ReactiveStreamOperations.class);
+        documentRepository = mock(DocumentRepository.class);
+        consumerGroupProvider = mock(StreamConsumerGroupProvider.class);
+        progressConsumer = new IndexingProgressConsumer(documentRepository, mock(SseEmitterService.class),
+                mock(DocumentCatalog.class), redisTemplate, mock(ReactiveRedisConnectionFactory.class),
+                consumerGroupProvider, new DocumentProgressProperties());
+
+        when(redisTemplate.opsForStream()).thenReturn(streams);
+        // Like the Redis template, the acknowledgement is only sent once subscribed to
+        when(streams.acknowledge(anyString(), anyString(), any(RecordId[].class))).thenAnswer(invocation -> {
+            List<RecordId> recordIds = List.of((RecordId[]) invocation.getRawArguments()[2]);
+            return Mono.fromCallable(() -> acknowledged.addAll(recordIds) ? 1L : 0L);
+        });
+        when(documentRepository.updateProgress(anyList())).thenReturn(Flux.empty());
+        when(documentRepository.findAllById(any(Iterable.class))).thenReturn(Flux.empty());
+    }
+
+    @Test
+    void flushesTheLatestReportOfADocumentWithoutLosingItsFinalStatus() {
+        takeOver(
+                report("1-0", "EMBEDDING", null),
+                report("2-0", "DONE", "SUCCESS")
+        );
+
+        progressConsumer.flush().block();
+
+        IndexingProgressEvent event = flushedEvents().getFirst();
+        assertEquals(IndexingStatus.SUCCESS, event.status());
+        assertEquals(IndexingStage.DONE, event.stage());
+        assertEquals(100, event.percent());
+        assertEquals(List.of(RecordId.of("1-0"), RecordId.of("2-0")), acknowledged);
+    }
+
+    @Test
+    void acknowledgesEventsOnlyOnceTheyAreWritten() {
+        when(documentRepository.updateProgress(anyList()))
+                .thenReturn(Flux.error(new IllegalStateException("connection reset")))
+                .thenReturn(Flux.empty());
+        takeOver(report("1-0", "DONE", "SUCCESS"));
+
+        progressConsumer.flush().block();
+        assertEquals(List.of(), acknowledged);
+
+        progressConsumer.flush().block();
+        verify(documentRepository, times(2)).updateProgress(anyList());
+        assertEquals(IndexingStatus.SUCCESS, flushedEvents().getLast().status());
+        assertEquals(List.of(RecordId.of("1-0")), acknowledged);
+    }
+
+    @Test
+    void trimsOnlyTheEventsTheGroupIsDoneWith() {
+        when(consumerGroupProvider.trimConsumed(STREAM, GROUP)).thenReturn(Mono.just(3L));
+
+        progressConsumer.trim().block();
+
+        verify(consumerGroupProvider).trimConsumed(STREAM, GROUP);
+    }
+
+    /**
+     * Hands the reports to the consumer as events abandoned by another node.
+     */
+    @SafeVarargs
+    private void takeOver(MapRecord<String, Object, Object>... records) {
+        List<PendingMessage> pending = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            pending.add(new PendingMessage(record.getId(), Consumer.from(GROUP, "core-api-stopped"), Duration.ofMinutes(2), 1));
+        }
+        when(streams.pending(eq(STREAM), eq(GROUP), any(Range.class), anyLong()))
+                .thenReturn(Mono.just(new PendingMessages(GROUP, pending)));
+        when(streams.claim(eq(STREAM), eq(GROUP), anyString(), any(Duration.class), any(RecordId[].class)))
+                .thenReturn(Flux.just(records));
+
+        progressConsumer.claimAbandoned().block();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<IndexingProgressEvent> flushedEvents() {
+        ArgumentCaptor<List<IndexingProgressEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(documentRepository, atLeastOnce()).updateProgress(events.capture());
+        List<IndexingProgressEvent> flushed = events.getAllValues().stream().flatMap(List::stream).toList();
+        flushed.forEach(event -> assertEquals(5L, event.documentId()));
+        return flushed;
+    }
+
+    private static MapRecord<String, Object, Object> report(String id, String stage, String status) {
+        Map<Object, Object> fields = new HashMap<>(Map.of(
+                "documentId", "5", "stage", stage,
+                "pagesParsed", "10", "totalPages", "10",
+                "chunksEmbedded", "40", "chunksWritten", "40", "totalChunks", "40"));
+        if (status != null) {
+            fields.put("status", status);
+        }
+        return StreamRecords.newRecord().in(STREAM).withId(RecordId.of(id)).ofMap(fields);
+    }
+}
@@ -0,0 +1,130 @@
+package prototype.coreapi.domain.document;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import prototype.coreapi.domain.document.config.DocumentExtractionProperties;
+import prototype.coreapi.domain.document.dto.PageText;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageTextExtractorTest {
+
+    @TempDir
+    Path storage;
+
+    private DocumentExtractionProperties extractionProperties;
+    private PageTextExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        extractionProperties = new DocumentExtractionProperties();
+        extractionProperties.setParallelism(3);
+        extractionProperties.setPagesPerTask(4);
+        extractor = new PageTextExtractor(extractionProperties, new ObjectMapper());
+        ReflectionTestUtils.setField(extractor, "documentStoragePath", storage.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        extractor.stop();
+    }
+
+    @Test
+    void extractsEveryPageInOrderAcrossPageRanges() throws IOException {
+        Path pdf = pdf("report.pdf", 10);
+
+        extractor.extract("report.pdf", pdf).block();
+
+        List<PageText> pages = extractor.read("report.pdf").block();
+        assertEquals(IntStream.rangeClosed(1, 10).boxed().toList(), pages.stream().map(PageText::page).toList());
+        for (PageText page : pages) {
+            assertEquals("Page " + page.page(), page.text().strip());
+        }
+    }
+
+    @Test
+    void extractsADocumentSmallerThanOneRange() throws IOException {
+        Path pdf = pdf("memo.pdf", 2);
+
+        extractor.extract("memo.pdf", pdf).block();
+
+        assertEquals(2, extractor.read("memo.pdf").block().size());
+    }
+
+    @Test
+    void extractsADocumentOfExactlyOneRange() throws IOException {
+        Path pdf = pdf("memo.pdf", 4);
+
+        extractor.extract("memo.pdf", pdf).block();
+
+        assertEquals(4, extractor.read("memo.pdf").block().size());
+    }
+
+    @Test
+    void leavesFilesItCannotParseToTheWorker() throws IOException {
+        Path broken = Files.writeString(storage.resolve("broken.pdf"), "not a pdf");
+
+        extractor.extract("broken.pdf", broken).block();
+
+        assertNull(extractor.read("broken.pdf").block());
+        assertFalse(Files.exists(storage.resolve(".pages")));
+    }
+
+    @Test
+    void skipsFilesThatAreNotPdfs() throws IOException {
+        Path text = Files.writeString(storage.resolve("notes.txt"), "notes");
+
+        extractor.extract("notes.txt", text).block();
+
+        assertFalse(Files.exists(storage.resolve(".pages")));
+    }
+
+    @Test
+    void purgesArtifactsOfDeletedFiles() throws IOException {
+        Path pdf = pdf("report.pdf", 1);
+        extractor.extract("report.pdf", pdf).block();
+        Files.delete(pdf);
+
+        assertEquals(1L, extractor.purgeOrphaned().block());
+        assertTrue(Files.isDirectory(storage.resolve(".pages")));
+        assertNull(extractor.read("report.pdf").block());
+    }
+
+    private Path pdf(String name, int pageCount) throws IOException {
+        Path path = storage.resolve(name);
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int page = 1; page <= pageCount; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.newLineAtOffset(72, 720);
+                    content.showText("Page " + page);
+                    content.endText();
+                }
+            }
+            document.save(path.toFile());
+        }
+        return path;
+    }
+}
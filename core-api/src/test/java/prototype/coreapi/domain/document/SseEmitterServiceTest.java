@@ -0,0 +1,134 @@
+package prototype.coreapi.domain.document;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import prototype.coreapi.domain.document.config.DocumentEventProperties;
+import prototype.coreapi.domain.document.dto.DocumentResponse;
+import prototype.coreapi.domain.document.enums.IndexingStatus;
+import prototype.coreapi.global.redis.DocumentEventChannelProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.function.Predicate;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SseEmitterServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final Sinks.Many<String> channel = Sinks.many().unicast().onBackpressureBuffer();
+    private DocumentEventProperties properties;
+    private SseEmitterService sseEmitterService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new DocumentEventProperties();
+        DocumentEventChannelProvider channelProvider = mock(DocumentEventChannelProvider.class);
+        when(channelProvider.listen(properties.getChannel())).thenReturn(channel.asFlux());
+        sseEmitterService = new SseEmitterService(channelProvider, objectMapper, properties);
+        sseEmitterService.startRelay();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sseEmitterService.stopRelay();
+    }
+
+    @Test
+    void replaysTheEventsAfterTheLastEventIdThenGoesLive() {
+        relay(1, 10L, "legal");
+        relay(2, 11L, "legal");
+        relay(3, 10L, "finance");
+
+        StepVerifier.create(sseEmitterService.connect(null, null, 1L))
+                .expectNextMatches(event(2, 11L))
+                .expectNextMatches(event(3, 10L))
+                .then(() -> relay(4, 12L, "legal"))
+                .expectNextMatches(event(4, 12L))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void deliversOnlyLiveEventsWithoutALastEventId() {
+        relay(1, 10L, "legal");
+
+        StepVerifier.create(sseEmitterService.connect(null, null, null))
+                .then(() -> relay(2, 11L, "legal"))
+                .expectNextMatches(event(2, 11L))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void replaysOnlyTheEventsTheClientSubscribedTo() {
+        relay(1, 10L, "legal");
+        relay(2, 11L, "legal");
+        relay(3, 10L, "finance");
+
+        StepVerifier.create(sseEmitterService.connect(10L, null, 0L))
+                .expectNextMatches(event(1, 10L))
+                .expectNextMatches(event(3, 10L))
+                .then(() -> relay(4, 11L, "legal"))
+                .then(() -> relay(5, 10L, "finance"))
+                .expectNextMatches(event(5, 10L))
+                .thenCancel()
+                .verify();
+
+        StepVerifier.create(sseEmitterService.connect(null, "legal", 0L))
+                .expectNextMatches(event(1, 10L))
+                .expectNextMatches(event(2, 11L))
+                .expectNextMatches(event(4, 11L))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void replaysNoFurtherBackThanTheRetainedHistory() {
+        properties.setHistorySize(2);
+        for (int sequence = 1; sequence <= 4; sequence++) {
+            relay(sequence, 10L, "legal");
+        }
+
+        StepVerifier.create(sseEmitterService.connect(null, null, 0L))
+                .expectNextMatches(event(3, 10L))
+                .expectNextMatches(event(4, 10L))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void skipsMalformedEvents() {
+        channel.tryEmitNext("not an event");
+        relay(1, 10L, "legal");
+
+        StepVerifier.create(sseEmitterService.connect(null, null, 0L))
+                .expectNextMatches(event(1, 10L))
+                .thenCancel()
+                .verify();
+    }
+
+    /**
+     * Emits an event as another node would publish it to the channel.
+     */
+    private void relay(long sequence, Long documentId, String category) {
+        DocumentResponse document = new DocumentResponse(documentId, "contract.pdf", "pdf", 1024, category,
+                IndexingStatus.PENDING, null, 0, 1, null);
+        try {
+            channel.tryEmitNext(sequence + String.valueOf(DocumentEventChannelProvider.SEQUENCE_SEPARATOR)
+                    + objectMapper.writeValueAsString(document));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Predicate<ServerSentEvent<DocumentResponse>> event(long sequence, Long documentId) {
+        return event -> String.valueOf(sequence).equals(event.id()) && documentId.equals(event.data().id());
+    }
+}
@@ -0,0 +1,129 @@
+package prototype.coreapi.domain.document;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import prototype.coreapi.domain.document.config.DocumentGcProperties;
+import prototype.coreapi.domain.document.dto.UnreferencedFile;
+import prototype.coreapi.domain.document.repository.DocumentRepository;
+import prototype.coreapi.domain.document.repository.UnreferencedFileRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StoredFileSweeperTest {
+
+    private static final UnreferencedFile FILE = new UnreferencedFile("a.pdf", "/data/documents/a.pdf");
+
+    private UnreferencedFileRepository unreferencedFileRepository;
+    private DocumentRepository documentRepository;
+    private DocumentStorageService documentStorageService;
+    private PageTextExtractor pageTextExtractor;
+    private DocumentGcProperties gcProperties;
+    private StoredFileSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        unreferencedFileRepository = mock(UnreferencedFileRepository.class);
+        documentRepository = mock(DocumentRepository.class);
+        documentStorageService = mock(DocumentStorageService.class);
+        pageTextExtractor = mock(PageTextExtractor.class);
+        gcProperties = new DocumentGcProperties();
+        gcProperties.setDeletesPerSecond(1_000);
+        sweeper = new StoredFileSweeper(unreferencedFileRepository, documentRepository, documentStorageService,
+                pageTextExtractor, gcProperties);
+
+        when(unreferencedFileRepository.findMarkedLongerThan(any(), anyInt())).thenReturn(Flux.just(FILE));
+        when(unreferencedFileRepository.mark(anyString(), anyString())).thenReturn(Mono.empty());
+        when(pageTextExtractor.discard(anyString())).thenReturn(Mono.empty());
+        when(pageTextExtractor.purgeOrphaned()).thenReturn(Mono.just(0L));
+        when(documentStorageService.purgeAbandonedUploads(any())).thenReturn(Mono.just(0L));
+        when(documentRepository.findAllStoredPaths()).thenReturn(Flux.empty());
+    }
+
+    @Test
+    void deletesFilesUnreferencedForTheGracePeriod() {
+        when(unreferencedFileRepository.release("a.pdf")).thenReturn(Mono.just(0L));
+        when(documentStorageService.deleteIfIdle(any(), any())).thenReturn(Mono.just(true));
+
+        sweeper.sweep().block();
+
+        // The grace period is handed to the database, which compares it with its own mark times
+        verify(unreferencedFileRepository).findMarkedLongerThan(Duration.ofHours(1), 500);
+        verify(documentStorageService).deleteIfIdle(Path.of("/data/documents/a.pdf"), Duration.ofHours(1));
+        verify(pageTextExtractor).discard("a.pdf");
+    }
+
+    @Test
+    void keepsAFileReferencedAgain() {
+        when(unreferencedFileRepository.release("a.pdf")).thenReturn(Mono.just(1L));
+
+        sweeper.sweep().block();
+
+        verify(documentStorageService, never()).deleteIfIdle(any(), any());
+        verify(unreferencedFileRepository, never()).mark(anyString(), anyString());
+    }
+
+    @Test
+    void skipsAFileAnotherNodeTook() {
+        when(unreferencedFileRepository.release("a.pdf")).thenReturn(Mono.empty());
+
+        sweeper.sweep().block();
+
+        verify(documentStorageService, never()).deleteIfIdle(any(), any());
+    }
+
+    @Test
+    void marksAFileInUseByAnUploadAgain() {
+        when(unreferencedFileRepository.release("a.pdf")).thenReturn(Mono.just(0L));
+        when(documentStorageService.deleteIfIdle(any(), any())).thenReturn(Mono.just(false));
+
+        sweeper.sweep().block();
+
+        verify(unreferencedFileRepository).mark("a.pdf", "/data/documents/a.pdf");
+        verify(pageTextExtractor, never()).discard(anyString());
+    }
+
+    @Test
+    void carriesOnAfterAFailedDeletion() {
+        UnreferencedFile other = new UnreferencedFile("b.pdf", "/data/documents/b.pdf");
+        when(unreferencedFileRepository.findMarkedLongerThan(any(), anyInt())).thenReturn(Flux.just(FILE, other));
+        when(unreferencedFileRepository.release(anyString())).thenReturn(Mono.just(0L));
+        when(documentStorageService.deleteIfIdle(eq(Path.of(FILE.path())), any()))
+                .thenReturn(Mono.error(new IllegalStateException("busy")));
+        when(documentStorageService.deleteIfIdle(eq(Path.of(other.path())), any())).thenReturn(Mono.just(true));
+
+        sweeper.sweep().block();
+
+        verify(pageTextExtractor).discard("b.pdf");
+        verify(pageTextExtractor, never()).discard("a.pdf");
+    }
+
+    @Test
+    void marksStoredFilesNoDocumentPointsTo() {
+        when(documentStorageService.listStoredFiles(any()))
+                .thenReturn(Flux.just(Path.of("/data/documents/a.pdf"), Path.of("/data/documents/b.pdf")));
+        when(documentRepository.findReferencedStoredNames(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> names = invocation.getArgument(0);
+            return Flux.fromIterable(names).filter(Set.of("b.pdf")::contains);
+        });
+
+        sweeper.reconcile().block();
+
+        verify(unreferencedFileRepository).mark("a.pdf", "/data/documents/a.pdf");
+        verify(unreferencedFileRepository, never()).mark(eq("b.pdf"), anyString());
+    }
+}
@@ -0,0 +1,129 @@
+package prototype.coreapi.domain.retrieval;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.dto.ChunkEvent;
+import prototype.coreapi.domain.retrieval.enums.ChunkOperation;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElasticsearchChunkReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<ClientRequest> requests = new ArrayList<>();
+    private final List<JsonNode> bodies = new ArrayList<>();
+    private final Deque<String> pages = new ArrayDeque<>();
+    private RetrievalProperties properties;
+    private ElasticsearchChunkReader reader;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RetrievalProperties();
+        properties.setBackfillUrl("http://elasticsearch:9200");
+        properties.setBackfillPassword("secret");
+        properties.setBackfillBatchSize(2);
+        WebClient.Builder builder = WebClient.builder().exchangeFunction(request -> {
+            requests.add(request);
+            bodies.add(body(request));
+            String page = request.method() == HttpMethod.DELETE ? "{}" : pages.removeFirst();
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(page)
+                    .build());
+        });
+        reader = new ElasticsearchChunkReader(properties, builder);
+    }
+
+    @Test
+    void scrollsEveryCanonicalChunk() {
+        pages.add("""
+                {"_scroll_id": "s1", "hits": {"hits": [
+                  {"_id": "c1", "_source": {"text": "payment terms", "vector": [0.5, -1.0],
+                    "metadata": {"doc_id": 7, "page_number": 2, "category": "legal", "display_name": "contract.pdf"}}},
+                  {"_id": "c2", "_source": {"text": "no vector",
+                    "metadata": {"doc_id": 8, "page_number": 1, "display_name": "memo.pdf"}}}
+                ]}}""");
+        pages.add("""
+                {"_scroll_id": "s2", "hits": {"hits": [
+                  {"_id": "c3", "_source": {"text": "invoice", "vector": [1.0, 0.0],
+                    "metadata": {"doc_id": 9, "page_number": 1, "category": "", "display_name": "invoice.pdf"}}}
+                ]}}""");
+        pages.add("""
+                {"_scroll_id": "s2", "hits": {"hits": []}}""");
+
+        List<List<ChunkEvent>> batches = reader.readAll().collectList().block();
+
+        assertEquals(2, batches.size());
+        ChunkEvent first = batches.getFirst().getFirst();
+        assertEquals(ChunkOperation.UPSERT, first.operation());
+        assertEquals("c1", first.chunkId());
+        assertEquals(7L, first.documentId());
+        assertEquals(2, first.page());
+        assertEquals("legal", first.category());
+        assertEquals("contract.pdf", first.displayName());
+        assertEquals("payment terms", first.text());
+        assertArrayEquals(new float[]{0.5f, -1.0f}, first.vector());
+        assertNull(batches.getFirst().get(1).vector());
+        assertNull(batches.getFirst().get(1).category());
+        assertNull(batches.get(1).getFirst().category());
+
+        // The first search skips references to near-duplicates; the scroll continues from the last scroll ID
+        assertEquals("/rag_documents/_search", requests.getFirst().url().getPath());
+        assertEquals("duplicate_of", bodies.getFirst().at("/query/bool/must_not/0/exists/field").asText());
+        assertEquals(2, bodies.getFirst().path("size").asInt());
+        assertEquals("s1", bodies.get(1).path("scroll_id").asText());
+        assertEquals("s2", bodies.get(2).path("scroll_id").asText());
+        assertTrue(requests.getFirst().headers().getFirst(HttpHeaders.AUTHORIZATION).startsWith("Basic "));
+        // The scroll is cleared once done
+        assertEquals(HttpMethod.DELETE, requests.getLast().method());
+        assertEquals("s2", bodies.getLast().path("scroll_id").get(0).asText());
+    }
+
+    @Test
+    void readsNothingFromAnEmptyIndex() {
+        pages.add("""
+                {"_scroll_id": "s1", "hits": {"hits": []}}""");
+
+        assertTrue(reader.readAll().collectList().block().isEmpty());
+    }
+
+    @Test
+    void isDisabledWithoutAUrl() {
+        properties.setBackfillUrl(null);
+
+        assertFalse(reader.isEnabled());
+    }
+
+    private JsonNode body(ClientRequest request) {
+        MockClientHttpRequest outbound = new MockClientHttpRequest(request.method(), request.url());
+        request.writeTo(outbound, ExchangeStrategies.withDefaults()).block();
+        try {
+            return objectMapper.readTree(outbound.getBodyAsString().block());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
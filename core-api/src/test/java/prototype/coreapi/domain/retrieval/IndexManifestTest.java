@@ -0,0 +1,49 @@
+package prototype.coreapi.domain.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IndexManifestTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWhatWasWritten() throws IOException {
+        BitSet liveIds = new BitSet();
+        liveIds.set(0, 130);
+        liveIds.clear(64);
+        IndexManifest manifest = new IndexManifest(1024, "1712345678901-3", 42, 7, List.of(
+                new IndexManifest.SegmentEntry(3, "법률", liveIds),
+                new IndexManifest.SegmentEntry(5, null, new BitSet())
+        ), Map.of(1L, "계약서.pdf", 2L, "report.pdf"));
+
+        manifest.write(directory);
+
+        assertEquals(manifest, IndexManifest.read(directory));
+    }
+
+    @Test
+    void replacesThePreviousManifest() throws IOException {
+        new IndexManifest(8, "1-0", 1, 1, List.of(), Map.of()).write(directory);
+        IndexManifest latest = new IndexManifest(8, "2-0", 2, 2, List.of(), Map.of());
+
+        latest.write(directory);
+
+        assertEquals(latest, IndexManifest.read(directory));
+    }
+
+    @Test
+    void readsNothingWithoutAManifest() throws IOException {
+        assertNull(IndexManifest.read(directory));
+    }
+}
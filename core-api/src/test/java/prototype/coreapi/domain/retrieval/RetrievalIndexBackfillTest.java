@@ -0,0 +1,167 @@
+package prototype.coreapi.domain.retrieval;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.dto.ChunkEvent;
+import prototype.coreapi.domain.retrieval.dto.RetrievedChunk;
+import prototype.coreapi.domain.retrieval.enums.ChunkOperation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RetrievalIndexBackfillTest {
+
+    private static final String STREAM = "document-chunk-stream";
+
+    @TempDir
+    Path directory;
+
+    private RetrievalProperties properties;
+    private RetrievalIndex index;
+    private ReactiveValueOperations<String, String> valueOperations;
+    private ReactiveStreamOperations<String, Object, Object> streamOperations;
+    private ElasticsearchChunkReader chunkReader;
+    private RetrievalIndexBackfill backfill;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties = new RetrievalProperties();
+        properties.setIndexDirectory(directory.toString());
+        properties.setVectorDimension(2);
+        properties.setQuantizationSampleSize(0);
+        properties.setResultCacheSize(0);
+        properties.setInsertParallelism(1);
+        properties.setSearchParallelism(1);
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+
+        ReactiveStringRedisTemplate redisTemplate = mock(ReactiveStringRedisTemplate.class);
+        valueOperations = mock(ReactiveValueOperations.class);
+        streamOperations = mock(ReactiveStreamOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForStream()).thenReturn(streamOperations);
+        when(valueOperations.get(anyString())).thenReturn(Mono.empty());
+        MapRecord<String, Object, Object> head = StreamRecords.newRecord()
+                .in(STREAM)
+                .ofMap(Map.<Object, Object>of("op", "UPSERT"))
+                .withId(RecordId.of("900-0"));
+        when(streamOperations.reverseRange(eq(STREAM), ArgumentMatchers.<Range<String>>any(), any(Limit.class)))
+                .thenReturn(Flux.just(head));
+        chunkReader = mock(ElasticsearchChunkReader.class);
+        when(chunkReader.isEnabled()).thenReturn(true);
+        when(chunkReader.readAll()).thenReturn(Flux.just(
+                List.of(upsert("es-1", 1L, "contract payment"), upsert("es-2", 2L, "invoice delivery")),
+                List.of(upsert("es-3", 3L, "payment schedule"))));
+        backfill = new RetrievalIndexBackfill(index, properties, redisTemplate, chunkReader);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    @Test
+    void rebuildsAnIndexWithoutSnapshotOnceTheStreamWasTrimmed() {
+        when(valueOperations.get(ChunkStreamTrimmer.trimmedToKey(STREAM))).thenReturn(Mono.just("500-0"));
+
+        backfill.catchUp().block();
+
+        assertEquals(3, index.stats().chunks());
+        // The stream is then followed from its head at the start of the rebuild
+        assertEquals("900-0", index.lastEventId());
+        assertEquals(List.of(1L, 3L), documentIds(index.searchKeyword("payment", null, 10)));
+    }
+
+    @Test
+    void replacesAnIndexOlderThanTheTrimPoint() {
+        // A document deleted while the node was away is gone from Elasticsearch, and must not survive the rebuild
+        index.apply(List.of(upsert("old-1", 1L, "contract payment"), upsert("old-9", 9L, "payment overdue")), "100-0");
+        when(valueOperations.get(ChunkStreamTrimmer.trimmedToKey(STREAM))).thenReturn(Mono.just("500-0"));
+
+        backfill.catchUp().block();
+
+        assertEquals(3, index.stats().chunks());
+        List<RetrievedChunk> results = index.searchKeyword("payment", null, 10);
+        assertEquals(List.of(1L, 3L), documentIds(results));
+        assertTrue(results.stream().noneMatch(chunk -> chunk.chunkId().startsWith("old-")));
+    }
+
+    @Test
+    void startsFromTheStreamStartWhenTheStreamIsEmpty() {
+        when(valueOperations.get(ChunkStreamTrimmer.trimmedToKey(STREAM))).thenReturn(Mono.just("500-0"));
+        when(streamOperations.reverseRange(eq(STREAM), ArgumentMatchers.<Range<String>>any(), any(Limit.class)))
+                .thenReturn(Flux.empty());
+
+        backfill.catchUp().block();
+
+        assertEquals("0-0", index.lastEventId());
+    }
+
+    @Test
+    void leavesAnIndexTheStreamCanCatchUp() {
+        index.apply(List.of(upsert("old-1", 1L, "contract payment")), "600-0");
+        when(valueOperations.get(ChunkStreamTrimmer.trimmedToKey(STREAM))).thenReturn(Mono.just("500-0"));
+
+        backfill.catchUp().block();
+
+        assertEquals("600-0", index.lastEventId());
+        assertEquals(1, index.stats().chunks());
+        verify(chunkReader, never()).readAll();
+    }
+
+    @Test
+    void replaysAStreamThatWasNeverTrimmed() {
+        backfill.catchUp().block();
+
+        assertNull(index.lastEventId());
+        verify(chunkReader, never()).readAll();
+    }
+
+    @Test
+    void leavesTheIndexAloneWithoutElasticsearch() {
+        index.apply(List.of(upsert("old-1", 1L, "contract payment")), "100-0");
+        when(valueOperations.get(ChunkStreamTrimmer.trimmedToKey(STREAM))).thenReturn(Mono.just("500-0"));
+        when(chunkReader.isEnabled()).thenReturn(false);
+
+        backfill.catchUp().block();
+
+        assertEquals("100-0", index.lastEventId());
+        assertEquals(1, index.stats().chunks());
+    }
+
+    private static List<Long> documentIds(List<RetrievedChunk> chunks) {
+        return chunks.stream().map(RetrievedChunk::documentId).sorted().toList();
+    }
+
+    private static ChunkEvent upsert(String chunkId, long documentId, String text) {
+        return new ChunkEvent(ChunkOperation.UPSERT, chunkId, documentId, 1, "legal", "doc-" + documentId + ".pdf",
+                text, new float[]{1.0f, 0.0f}, List.of(), 0);
+    }
+}
@@ -0,0 +1,280 @@
+package prototype.coreapi.domain.retrieval;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import prototype.coreapi.domain.retrieval.config.RetrievalProperties;
+import prototype.coreapi.domain.retrieval.dto.ChunkEvent;
+import prototype.coreapi.domain.retrieval.dto.RetrievalIndexStats;
+import prototype.coreapi.domain.retrieval.dto.RetrievedChunk;
+import prototype.coreapi.domain.retrieval.enums.ChunkOperation;
+import prototype.coreapi.domain.retrieval.support.TopK;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetrievalIndexTest {
+
+    private static final int DIMENSION = 8;
+    private static final String[] WORDS = {"contract", "invoice", "payment", "delivery", "계약", "청구", "지급", "납품"};
+
+    @TempDir
+    Path directory;
+
+    private RetrievalProperties properties;
+    private RetrievalIndex index;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RetrievalProperties();
+        properties.setIndexDirectory(directory.toString());
+        properties.setVectorDimension(DIMENSION);
+        properties.setQuantizationSampleSize(0);
+        properties.setResultCacheSize(0);
+        properties.setInsertParallelism(2);
+        properties.setSearchParallelism(2);
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    @Test
+    void restoresTheLastSnapshot() {
+        index.apply(upserts(1, "legal", 0), "1-0");
+        index.apply(upserts(2, "finance", 1), "2-0");
+        index.apply(upserts(3, null, 2), "3-0");
+        index.apply(List.of(
+                event(ChunkOperation.DELETE_DOCUMENT, 2L, null),
+                event(ChunkOperation.RENAME_DOCUMENT, 1L, "renamed.pdf")
+        ), "4-0");
+        float[] query = vector(new Random(99));
+        List<RetrievedChunk> keyword = index.searchKeyword("contract payment 계약", null, 20);
+        List<RetrievedChunk> legalKeyword = index.searchKeyword("invoice", "legal", 20);
+        List<RetrievedChunk> vector = index.searchVector(query, null, 20, null, true);
+        int chunks = index.stats().chunks();
+
+        index.close();
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+
+        assertEquals("4-0", index.lastEventId());
+        assertEquals("4-0", index.snapshotEventId());
+        assertEquals(chunks, index.stats().chunks());
+        assertEquals(keyword, index.searchKeyword("contract payment 계약", null, 20));
+        assertEquals(legalKeyword, index.searchKeyword("invoice", "legal", 20));
+        assertEquals(vector, index.searchVector(query, null, 20, null, true));
+        assertTrue(keyword.stream().noneMatch(chunk -> chunk.documentId() == 2L));
+        assertTrue(legalKeyword.stream().allMatch(chunk -> chunk.displayName().equals("renamed.pdf")));
+    }
+
+    @Test
+    void takesChangesAfterARestore() {
+        index.apply(upserts(1, "legal", 0), "1-0");
+        index.close();
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+
+        index.apply(List.of(event(ChunkOperation.DELETE_DOCUMENT, 1L, null)), "2-0");
+        index.apply(upserts(4, "legal", 3), "3-0");
+
+        assertTrue(index.searchKeyword("contract invoice payment delivery", "legal", 50).stream()
+                .allMatch(chunk -> chunk.documentId() == 4L));
+        index.close();
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+        assertEquals("3-0", index.lastEventId());
+        assertTrue(index.searchKeyword("contract invoice payment delivery", "legal", 50).stream()
+                .allMatch(chunk -> chunk.documentId() == 4L));
+    }
+
+    @Test
+    void discardsASnapshotOfAnotherDimension() {
+        index.apply(upserts(1, "legal", 0), "1-0");
+        index.close();
+
+        properties.setVectorDimension(DIMENSION * 2);
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+
+        assertNull(index.lastEventId());
+        assertEquals(0, index.stats().chunks());
+    }
+
+    @Test
+    void doesNotServeACachedResultOnceItsCategoryChanged() {
+        properties.setResultCacheSize(100);
+        index.close();
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+        index.apply(upserts(1, "legal", 0), "1-0");
+        index.apply(upserts(2, "finance", 1), "2-0");
+        index.searchKeyword("contract invoice payment delivery", "legal", 50);
+        index.searchKeyword("contract invoice payment delivery", "finance", 50);
+
+        index.apply(upserts(4, "legal", 3), "3-0");
+
+        assertTrue(index.searchKeyword("contract invoice payment delivery", "legal", 50).stream()
+                .anyMatch(chunk -> chunk.documentId() == 4L));
+        index.searchKeyword("contract invoice payment delivery", "finance", 50);
+        // Only the search of the category the batch left alone is a hit
+        assertEquals(1, index.stats().resultCacheHits());
+        assertEquals(3, index.stats().resultCacheMisses());
+    }
+
+    @Test
+    void swapsInAMergedSegment() {
+        // Every batch of upserts fills and seals a segment, and three sealed segments are merged
+        properties.setFlushChunks(30);
+        properties.setMergeFactor(3);
+        index.close();
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+        index.apply(upserts(1, "legal", 0), "1-0");
+        index.apply(upserts(2, "legal", 1), "2-0");
+        List<RetrievedChunk> before = index.searchKeyword("contract invoice payment delivery", "legal", 100);
+        long generation = index.stats().generation();
+
+        ChunkEvent deleteFirstPage = new ChunkEvent(ChunkOperation.DELETE_PAGES, null, 1L, 0, null, null, null, null,
+                List.of(1), 3);
+        index.apply(concat(List.of(deleteFirstPage), upserts(3, "legal", 2)), "3-0");
+        awaitSegments(1);
+
+        RetrievalIndexStats stats = index.stats();
+        assertEquals(80, stats.chunks());
+        // The merged segment no longer holds the deleted chunks
+        assertEquals(80, stats.vectors());
+        assertTrue(stats.generation() > generation + 1, "generation advanced by the merge");
+        List<RetrievedChunk> after = index.searchKeyword("contract invoice payment delivery", "legal", 100);
+        assertEquals(80, after.size());
+        assertTrue(after.stream().noneMatch(chunk -> chunk.chunkId().startsWith("1-1-")));
+        assertTrue(after.stream().map(RetrievedChunk::chunkId).collect(Collectors.toSet()).containsAll(
+                before.stream().map(RetrievedChunk::chunkId).filter(id -> !id.startsWith("1-1-")).toList()));
+        assertEquals(80, index.searchVector(vector(new Random(99)), "legal", 100, null, true).size());
+    }
+
+    @Test
+    void keepsAMergedSegmentAcrossARestart() {
+        properties.setFlushChunks(30);
+        properties.setMergeFactor(2);
+        index.close();
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+        index.apply(upserts(1, "legal", 0), "1-0");
+        index.apply(upserts(2, "legal", 1), "2-0");
+        awaitSegments(1);
+        List<RetrievedChunk> merged = index.searchKeyword("contract invoice payment delivery", "legal", 100);
+
+        // No batch follows the merge, so only the snapshot the merge takes itself records it
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!"2-0".equals(index.snapshotEventId())) {
+            assertTrue(System.nanoTime() < deadline, "snapshot taken in time");
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        RetrievalIndex restarted = new RetrievalIndex(properties, new SimpleMeterRegistry());
+        try {
+            assertEquals(1, restarted.stats().segments());
+            assertEquals(merged, restarted.searchKeyword("contract invoice payment delivery", "legal", 100));
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void hidesADeletedDocumentAtOnce() {
+        index.apply(upserts(1, "legal", 0), "1-0");
+        index.apply(upserts(2, "legal", 1), "2-0");
+        // Cached before the deletion, and resolved again on the next hit
+        TopK.Result cached = index.keywordIds("contract invoice payment delivery", "legal", 100);
+
+        index.deleteDocument(1L);
+
+        assertEquals(30, index.stats().chunks());
+        assertTrue(index.resolve(cached).stream().allMatch(chunk -> chunk.documentId() == 2L));
+        assertTrue(index.searchKeyword("contract invoice payment delivery", "legal", 100).stream()
+                .allMatch(chunk -> chunk.documentId() == 2L));
+        assertTrue(index.searchVector(vector(new Random(99)), null, 100, null, true).stream()
+                .allMatch(chunk -> chunk.documentId() == 2L));
+    }
+
+    @Test
+    void ignoresChunksOfAHiddenDocumentUntilItsDeIndexingArrives() {
+        index.deleteDocument(1L);
+        index.apply(List.of(event(ChunkOperation.HIDE_DOCUMENT, 2L, null)), "1-0");
+
+        // Upserts still on their way when the documents were deleted
+        index.apply(concat(upserts(1, "legal", 0), upserts(2, "legal", 1)), "2-0");
+        assertEquals(0, index.stats().chunks());
+
+        // The indexing workers' deletion clears the tombstone of the first document only
+        index.apply(List.of(event(ChunkOperation.DELETE_DOCUMENT, 1L, null)), "3-0");
+        index.apply(concat(upserts(1, "legal", 0), upserts(2, "legal", 1)), "4-0");
+        assertTrue(index.searchKeyword("contract invoice payment delivery", "legal", 100).stream()
+                .allMatch(chunk -> chunk.documentId() == 1L));
+        assertEquals(30, index.stats().chunks());
+    }
+
+    @Test
+    void forgetsATombstoneAfterTheDeletionTimeout() {
+        properties.setDeletionTimeout(Duration.ofMillis(1));
+        index.close();
+        index = new RetrievalIndex(properties, new SimpleMeterRegistry());
+        index.deleteDocument(1L);
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+
+        index.apply(upserts(1, "legal", 0), "1-0");
+
+        assertEquals(30, index.stats().chunks());
+    }
+
+    private static List<ChunkEvent> upserts(long documentId, String category, long seed) {
+        Random random = new Random(seed);
+        List<ChunkEvent> events = new ArrayList<>();
+        for (int page = 1; page <= 3; page++) {
+            for (int i = 0; i < 10; i++) {
+                StringBuilder text = new StringBuilder();
+                for (int w = 0; w < 12; w++) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                events.add(new ChunkEvent(ChunkOperation.UPSERT, documentId + "-" + page + "-" + i, documentId, page,
+                        category, "document-" + documentId + ".pdf", text.toString(), vector(random), null, 0));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Waits for the background merges to leave the given number of segments.
+     */
+    private void awaitSegments(int segments) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (index.stats().segments() != segments) {
+            assertTrue(System.nanoTime() < deadline, "merge finished in time");
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private static List<ChunkEvent> concat(List<ChunkEvent> first, List<ChunkEvent> second) {
+        return Stream.concat(first.stream(), second.stream()).toList();
+    }
+
+    private static ChunkEvent event(ChunkOperation operation, long documentId, String displayName) {
+        return new ChunkEvent(operation, null, documentId, 0, null, displayName, null, null, List.of(), 0);
+    }
+
+    private static float[] vector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
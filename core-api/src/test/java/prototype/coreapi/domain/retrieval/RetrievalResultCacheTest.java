@@ -0,0 +1,93 @@
+package prototype.coreapi.domain.retrieval;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import prototype.coreapi.domain.retrieval.support.TopK;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RetrievalResultCacheTest {
+
+    private final RetrievalResultCache cache = new RetrievalResultCache(100, new SimpleMeterRegistry());
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @Test
+    void servesARepeatedSearchOfTheSameGeneration() {
+        TopK.Result first = cache.keyword("contract payment", "legal", 3, 10, search());
+
+        assertSame(first, cache.keyword("contract payment", "legal", 3, 10, search()));
+        assertEquals(1, searches.get());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void searchesAgainOnceTheGenerationAdvanced() {
+        cache.keyword("contract payment", "legal", 3, 10, search());
+        cache.vector(new float[]{1, 2, 3}, "legal", 3, 10, 64, false, search());
+
+        cache.keyword("contract payment", "legal", 4, 10, search());
+        cache.vector(new float[]{1, 2, 3}, "legal", 4, 10, 64, false, search());
+
+        assertEquals(4, searches.get());
+        assertEquals(0, cache.stats().hitCount());
+    }
+
+    @Test
+    void keysOnTheCategoryAndTheSearchParameters() {
+        cache.keyword("contract", "legal", 3, 10, search());
+        cache.keyword("contract", "finance", 3, 10, search());
+        cache.keyword("contract", null, 3, 10, search());
+        cache.keyword("contract", "legal", 3, 20, search());
+        cache.vector(new float[]{1, 2, 3}, "legal", 3, 10, 64, false, search());
+        cache.vector(new float[]{1, 2, 3}, "legal", 3, 10, 128, false, search());
+        cache.vector(new float[]{1, 2, 3}, "legal", 3, 10, 64, true, search());
+
+        assertEquals(7, searches.get());
+    }
+
+    @Test
+    void sharesAnEntryBetweenQueriesWithTheSameTerms() {
+        cache.keyword("Contract, payment!", "legal", 3, 10, search());
+        cache.keyword("payment contract", "legal", 3, 10, search());
+
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void keysVectorsByContent() {
+        cache.vector(new float[]{1, 2, 3}, "legal", 3, 10, 64, false, search());
+        cache.vector(new float[]{1, 2, 3}, "legal", 3, 10, 64, false, search());
+        cache.vector(new float[]{1, 2, 4}, "legal", 3, 10, 64, false, search());
+
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void ignoresEfForAnExactSearch() {
+        cache.vector(new float[]{1, 2, 3}, "legal", 3, 10, 64, true, search());
+        cache.vector(new float[]{1, 2, 3}, "legal", 3, 10, 128, true, search());
+
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void searchesEveryTimeWhenDisabled() {
+        RetrievalResultCache disabled = new RetrievalResultCache(0, new SimpleMeterRegistry());
+
+        disabled.keyword("contract", "legal", 3, 10, search());
+        disabled.keyword("contract", "legal", 3, 10, search());
+
+        assertEquals(2, searches.get());
+    }
+
+    private Supplier<TopK.Result> search() {
+        return () -> {
+            int id = searches.incrementAndGet();
+            return new TopK.Result(new int[]{id}, new float[]{1});
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package prototype.coreapi.domain.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SegmentChunksTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWhatWasWritten() {
+        List<SegmentChunks.Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            chunks.add(new SegmentChunks.Chunk("chunk-" + i, 1000L + i / 10, i % 10 + 1, "본문 " + i + " text"));
+        }
+        chunks.set(0, new SegmentChunks.Chunk("", 7L, 1, ""));
+
+        SegmentChunks.write(directory, chunks.size(), chunks::get);
+        SegmentChunks read = SegmentChunks.open(directory);
+
+        assertEquals(chunks.size(), read.size());
+        for (int localId = 0; localId < chunks.size(); localId++) {
+            assertEquals(chunks.get(localId), read.get(localId));
+        }
+    }
+
+    @Test
+    void keepsTheLocalIdsOfDeletedChunks() {
+        SegmentChunks.Chunk kept = new SegmentChunks.Chunk("kept", 2L, 3, "kept text");
+
+        SegmentChunks.write(directory, 3, localId -> localId == 1 ? kept : null);
+        SegmentChunks read = SegmentChunks.open(directory);
+
+        assertEquals(3, read.size());
+        assertEquals(kept, read.get(1));
+        assertEquals(-1L, read.documentId(0));
+        assertEquals("", read.chunkId(2));
+        assertEquals("", read.text(2));
+    }
+}
@@ -0,0 +1,100 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+import org.junit.jupiter.api.Test;
+import prototype.coreapi.domain.retrieval.support.TopK;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Bm25IndexTest {
+
+    private final Bm25Scorer scorer = new Bm25Scorer(1.2f, 0.75f);
+
+    @Test
+    void indexesTermsAndLengths() {
+        Bm25Index index = new Bm25Index();
+        index.add(0, "Retrieval index, retrieval INDEX!");
+        index.add(2, "검색 색인");
+
+        assertEquals(3, index.maxDoc());
+        assertEquals(4, index.length(0));
+        assertEquals(2, index.length(2));
+        assertEquals(1, index.docFrequency("retrieval"));
+        assertEquals(1, index.docFrequency("검색"));
+        assertEquals(0, index.docFrequency("missing"));
+        assertNull(index.postings("missing"));
+        PostingsIterator postings = index.postings("index");
+        assertEquals(0, postings.nextDoc());
+        assertEquals(2, postings.freq());
+        assertEquals(PostingsIterator.NO_MORE_DOCS, postings.nextDoc());
+        assertEquals(2, index.liveDocs());
+        assertEquals(6, index.liveLength());
+    }
+
+    @Test
+    void ranksByTermFrequencyAndRarity() {
+        Bm25Index index = new Bm25Index();
+        index.add(0, "the cat sat on the mat");
+        index.add(1, "the dog sat on the log");
+        index.add(2, "the cat chased the cat");
+        index.add(3, "the bird sang");
+
+        TopK.Result result = scorer.search(List.of(index), "cat", 10).getFirst();
+
+        assertArrayEquals(new int[]{2, 0}, result.ids());
+        assertTrue(result.scores()[0] > result.scores()[1]);
+        // A term in every chunk barely counts
+        TopK.Result common = scorer.search(List.of(index), "the", 10).getFirst();
+        assertTrue(common.scores()[0] < result.scores()[1]);
+    }
+
+    @Test
+    void skipsDeletedChunks() {
+        Bm25Index index = new Bm25Index();
+        index.add(0, "alpha beta");
+        index.add(1, "alpha gamma");
+
+        index.delete(0);
+
+        assertArrayEquals(new int[]{1}, scorer.search(List.of(index), "alpha", 10).getFirst().ids());
+        assertEquals(1, index.liveDocs());
+        assertEquals(2, index.liveLength());
+        assertTrue(index.isDeleted(0));
+    }
+
+    @Test
+    void scoresAChunkTheSameWhicheverIndexHoldsIt() {
+        Bm25Index whole = new Bm25Index();
+        Bm25Index first = new Bm25Index();
+        Bm25Index second = new Bm25Index();
+        String[] texts = {"red apple", "green apple pie", "red wine", "apple juice and apple cider"};
+        for (int i = 0; i < texts.length; i++) {
+            whole.add(i, texts[i]);
+            (i < 2 ? first : second).add(i < 2 ? i : i - 2, texts[i]);
+        }
+
+        TopK.Result expected = scorer.search(List.of(whole), "red apple", 10).getFirst();
+        List<TopK.Result> split = scorer.search(List.of(first, second), "red apple", 10);
+
+        for (int i = 0; i < expected.size(); i++) {
+            int doc = expected.ids()[i];
+            TopK.Result part = split.get(doc < 2 ? 0 : 1);
+            int localDoc = doc < 2 ? doc : doc - 2;
+            int position = indexOf(part.ids(), localDoc);
+            assertEquals(expected.scores()[i], part.scores()[position]);
+        }
+    }
+
+    private static int indexOf(int[] ids, int id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        throw new AssertionError("Missing " + id);
+    }
+}
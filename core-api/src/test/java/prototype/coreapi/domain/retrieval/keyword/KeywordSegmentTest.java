@@ -0,0 +1,150 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KeywordSegmentTest {
+
+    private static final String[] WORDS = {"retrieval", "index", "segment", "posting", "검색", "색인", "문서", "block"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWhatWasWritten() {
+        // Enough chunks for several full blocks of the common terms
+        Bm25Index source = index(1000, 7);
+        int[] identity = new int[source.maxDoc()];
+        for (int doc = 0; doc < identity.length; doc++) {
+            identity[doc] = doc;
+        }
+
+        KeywordSegment.write(directory, List.of(source), new int[][]{identity}, source.maxDoc());
+        KeywordSegment segment = KeywordSegment.open(directory);
+
+        assertEquals(source.maxDoc(), segment.maxDoc());
+        assertEquals(source.termCount(), segment.termCount());
+        assertEquals(source.liveDocs(), segment.liveDocs());
+        assertEquals(source.liveLength(), segment.liveLength());
+        assertEquals(terms(source), terms(segment));
+        for (int doc = 0; doc < source.maxDoc(); doc++) {
+            assertEquals(source.length(doc), segment.length(doc));
+        }
+        for (String term : terms(source)) {
+            assertEquals(source.docFrequency(term), segment.docFrequency(term));
+            assertEquals(toString(postings(source.postings(term))), toString(postings(segment.postings(term))));
+        }
+        assertEquals(0, segment.docFrequency("missing"));
+        assertNull(segment.postings("missing"));
+    }
+
+    @Test
+    void advancesLikeTheHeapPostings() {
+        Bm25Index source = index(1000, 11);
+        int[] identity = new int[source.maxDoc()];
+        for (int doc = 0; doc < identity.length; doc++) {
+            identity[doc] = doc;
+        }
+        KeywordSegment.write(directory, List.of(source), new int[][]{identity}, source.maxDoc());
+        KeywordSegment segment = KeywordSegment.open(directory);
+
+        for (String term : terms(source)) {
+            PostingsIterator expected = source.postings(term);
+            PostingsIterator actual = segment.postings(term);
+            for (int target = 0; target < source.maxDoc(); target += 97) {
+                int doc = expected.advance(target);
+                assertEquals(doc, actual.advance(target));
+                if (doc == PostingsIterator.NO_MORE_DOCS) {
+                    break;
+                }
+                assertEquals(expected.freq(), actual.freq());
+            }
+        }
+    }
+
+    @Test
+    void mergesSourcesThroughTheirDocMaps() {
+        Bm25Index first = index(300, 1);
+        Bm25Index second = index(300, 2);
+        // Drop the odd chunks of the first source and the first 100 of the second
+        int[] firstMap = new int[first.maxDoc()];
+        int next = 0;
+        for (int doc = 0; doc < firstMap.length; doc++) {
+            firstMap[doc] = doc % 2 == 0 ? next++ : -1;
+        }
+        int[] secondMap = new int[second.maxDoc()];
+        for (int doc = 0; doc < secondMap.length; doc++) {
+            secondMap[doc] = doc < 100 ? -1 : next++;
+        }
+
+        KeywordSegment.write(directory, List.of(first, second), new int[][]{firstMap, secondMap}, next);
+        KeywordSegment segment = KeywordSegment.open(directory);
+
+        assertEquals(next, segment.maxDoc());
+        for (String term : terms(first)) {
+            List<int[]> expected = new ArrayList<>();
+            for (int[] posting : postings(first.postings(term))) {
+                if (firstMap[posting[0]] >= 0) {
+                    expected.add(new int[]{firstMap[posting[0]], posting[1]});
+                }
+            }
+            PostingsIterator secondPostings = second.postings(term);
+            if (secondPostings != null) {
+                for (int[] posting : postings(secondPostings)) {
+                    if (secondMap[posting[0]] >= 0) {
+                        expected.add(new int[]{secondMap[posting[0]], posting[1]});
+                    }
+                }
+            }
+            assertEquals(toString(expected), toString(postings(segment.postings(term))));
+            assertEquals(expected.size(), segment.docFrequency(term));
+        }
+        assertEquals(first.length(2), segment.length(firstMap[2]));
+        assertEquals(second.length(150), segment.length(secondMap[150]));
+    }
+
+    private static Bm25Index index(int chunks, long seed) {
+        Random random = new Random(seed);
+        Bm25Index index = new Bm25Index();
+        for (int doc = 0; doc < chunks; doc++) {
+            StringBuilder text = new StringBuilder();
+            int length = 1 + random.nextInt(30);
+            for (int i = 0; i < length; i++) {
+                // Skewed, so some terms are in most chunks and some in few
+                text.append(WORDS[Math.min(WORDS.length - 1, (int) Math.abs(random.nextGaussian() * 3))]).append(' ');
+            }
+            text.append("term").append(doc % 50);
+            index.add(doc, text.toString());
+        }
+        return index;
+    }
+
+    private static TreeSet<String> terms(KeywordIndex index) {
+        TreeSet<String> terms = new TreeSet<>();
+        index.forEachTerm(terms::add);
+        return terms;
+    }
+
+    private static List<int[]> postings(PostingsIterator iterator) {
+        List<int[]> postings = new ArrayList<>();
+        for (int doc = iterator.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+            postings.add(new int[]{doc, iterator.freq()});
+        }
+        return postings;
+    }
+
+    private static String toString(List<int[]> postings) {
+        StringBuilder text = new StringBuilder();
+        postings.forEach(posting -> text.append(posting[0]).append(':').append(posting[1]).append(' '));
+        return text.toString();
+    }
+}
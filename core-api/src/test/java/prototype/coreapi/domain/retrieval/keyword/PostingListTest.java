@@ -0,0 +1,94 @@
+package prototype.coreapi.domain.retrieval.keyword;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PostingListTest {
+
+    @Test
+    void iteratesSealedBlocksAndTheTail() {
+        List<int[]> postings = postings(3 * PostingList.BLOCK_SIZE + 17);
+        PostingList list = listOf(postings);
+
+        PostingList.Iterator iterator = list.iterator();
+        for (int[] posting : postings) {
+            assertEquals(posting[0], iterator.nextDoc());
+            assertEquals(posting[1], iterator.freq());
+        }
+        assertEquals(PostingsIterator.NO_MORE_DOCS, iterator.nextDoc());
+        assertEquals(postings.size(), list.size());
+    }
+
+    @Test
+    void advancesAcrossBlocks() {
+        List<int[]> postings = postings(3 * PostingList.BLOCK_SIZE + 17);
+        PostingList list = listOf(postings);
+
+        for (int i = 0; i < postings.size(); i += 37) {
+            PostingList.Iterator iterator = list.iterator();
+            int[] posting = postings.get(i);
+            // Just past the previous doc
+            int target = i == 0 ? 0 : postings.get(i - 1)[0] + 1;
+            assertEquals(posting[0], iterator.advance(target));
+            assertEquals(posting[1], iterator.freq());
+        }
+        PostingList.Iterator iterator = list.iterator();
+        assertEquals(postings.get(200)[0], iterator.advance(postings.get(200)[0]));
+        // Targets behind the current doc do not move the iterator
+        assertEquals(postings.get(200)[0], iterator.advance(postings.get(5)[0]));
+        assertEquals(postings.get(201)[0], iterator.nextDoc());
+        assertEquals(PostingsIterator.NO_MORE_DOCS, iterator.advance(postings.getLast()[0] + 1));
+    }
+
+    @Test
+    void iteratesTheDocsPresentWhenCreated() {
+        PostingList list = listOf(postings(PostingList.BLOCK_SIZE - 1));
+        PostingList.Iterator iterator = list.iterator();
+
+        list.add(Integer.MAX_VALUE - 1, 1);
+
+        int count = 0;
+        while (iterator.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+            count++;
+        }
+        assertEquals(PostingList.BLOCK_SIZE - 1, count);
+    }
+
+    @Test
+    void rejectsDocsOutOfOrder() {
+        PostingList list = new PostingList();
+        list.add(5, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> list.add(5, 1));
+        assertThrows(IllegalArgumentException.class, () -> list.add(4, 1));
+    }
+
+    /**
+     * Doc ids with gaps from one to a few million, so deltas take one to four bytes, and frequencies up to 300.
+     */
+    private static List<int[]> postings(int count) {
+        List<int[]> postings = new ArrayList<>(count);
+        int doc = 0;
+        for (int i = 0; i < count; i++) {
+            doc += switch (i % 4) {
+                case 0 -> 1;
+                case 1 -> 200;
+                case 2 -> 20_000;
+                default -> 2_000_000;
+            };
+            postings.add(new int[]{doc, i % 300 + 1});
+        }
+        return postings;
+    }
+
+    private static PostingList listOf(List<int[]> postings) {
+        PostingList list = new PostingList();
+        postings.forEach(posting -> list.add(posting[0], posting[1]));
+        return list;
+    }
+}
@@ -0,0 +1,88 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class DistanceKernelsTest {
+
+    // Lengths below, at and around multiples of every vector width, so the tail loops are covered
+    private static final int[] LENGTHS = {0, 1, 3, 4, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 100, 384, 1536};
+
+    private final DistanceKernels simd = new PanamaDistanceKernels();
+    private final DistanceKernels scalar = DistanceKernels.scalar();
+    private final Random random = new Random(13);
+
+    @Test
+    void usesTheSimdKernelsWhenTheVectorModuleIsEnabled() {
+        assertInstanceOf(PanamaDistanceKernels.class, DistanceKernels.get());
+    }
+
+    @Test
+    void floatKernelsMatchTheScalarOnes() {
+        for (int length : LENGTHS) {
+            float[] a = floats(length);
+            float[] b = floats(length);
+
+            assertClose(scalar.dot(a, b), simd.dot(a, b), length, "dot");
+            assertClose(scalar.cosine(a, b), simd.cosine(a, b), length, "cosine");
+            assertClose(scalar.squaredDistance(a, b), simd.squaredDistance(a, b), length, "squaredDistance");
+        }
+    }
+
+    @Test
+    void int8KernelsMatchTheScalarOnes() {
+        for (int length : LENGTHS) {
+            float[] weights = floats(length);
+            byte[] a = bytes(length);
+            byte[] b = bytes(length);
+
+            assertClose(scalar.dot(weights, a), simd.dot(weights, a), length, "dot(weights, codes)");
+            assertClose(scalar.dot(weights, a, b), simd.dot(weights, a, b), length, "dot(weights, a, b)");
+        }
+    }
+
+    @Test
+    void handlesTheExtremeCodes() {
+        float[] weights = new float[64];
+        byte[] min = new byte[64];
+        byte[] max = new byte[64];
+        for (int i = 0; i < 64; i++) {
+            weights[i] = 1;
+            min[i] = Byte.MIN_VALUE;
+            max[i] = Byte.MAX_VALUE;
+        }
+
+        assertEquals(64 * Byte.MIN_VALUE, simd.dot(weights, min));
+        assertEquals(64 * Byte.MIN_VALUE * Byte.MAX_VALUE, simd.dot(weights, min, max));
+    }
+
+    @Test
+    void cosineOfAZeroVectorIsZero() {
+        assertEquals(0, simd.cosine(new float[32], floats(32)));
+    }
+
+    /**
+     * Both kernels sum in a different order, so they agree up to rounding, which grows with the length.
+     */
+    private static void assertClose(float expected, float actual, int length, String kernel) {
+        assertEquals(expected, actual, 1e-5f * (length + 1) * Math.max(1, Math.abs(expected)), kernel + " of length " + length);
+    }
+
+    private float[] floats(int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+
+    private byte[] bytes(int length) {
+        byte[] values = new byte[length];
+        random.nextBytes(values);
+        return values;
+    }
+}
@@ -0,0 +1,140 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import prototype.coreapi.domain.retrieval.support.TopK;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int NODES = 3000;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+    private static final long PAGE_BYTES = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    private HnswIndex index;
+
+    @AfterEach
+    void close() {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    @Test
+    void findsMostOfTheExactNeighbours() {
+        index = build(0);
+
+        assertTrue(recall(index, all(), 64) >= 0.95, "recall at ef=64");
+        assertTrue(recall(index, all(), 16) <= recall(index, all(), 256), "recall grows with ef");
+    }
+
+    @Test
+    void findsMostOfTheExactNeighboursWhenQuantized() {
+        index = build(1000);
+
+        assertTrue(index.isQuantized());
+        assertTrue(recall(index, all(), 64) >= 0.9, "recall at ef=64");
+    }
+
+    @Test
+    void returnsOnlyNodesInTheFilter() {
+        index = build(0);
+        BitSet even = new BitSet();
+        for (int node = 0; node < NODES; node += 2) {
+            even.set(node);
+        }
+
+        Random random = new Random(7);
+        for (int q = 0; q < 10; q++) {
+            TopK.Result result = index.search(randomVector(random), even, K, 64);
+            assertEquals(K, result.size());
+            assertTrue(Arrays.stream(result.ids()).allMatch(even::get));
+        }
+        assertTrue(recall(index, even, 64) >= 0.9, "recall at ef=64");
+    }
+
+    @Test
+    void reopensASealedIndex() {
+        HnswIndex built = build(1000);
+        Random random = new Random(11);
+        float[][] queries = new float[10][];
+        TopK.Result[] expected = new TopK.Result[queries.length];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = randomVector(random);
+            expected[q] = built.search(queries[q], all(), K, 64);
+        }
+        float[] vector = built.vector(123);
+        built.seal();
+        assertThrows(IllegalStateException.class, () -> built.insert(NODES, randomVector(random)));
+        built.close();
+
+        index = HnswIndex.open(directory, 0, PAGE_BYTES);
+
+        assertTrue(index.isSealed());
+        assertTrue(index.isQuantized());
+        assertEquals(NODES, index.size());
+        assertEquals(DIMENSION, index.dimension());
+        assertArrayEquals(vector, index.vector(123));
+        assertNull(index.vector(NODES));
+        for (int q = 0; q < queries.length; q++) {
+            TopK.Result result = index.search(queries[q], all(), K, 64);
+            assertArrayEquals(expected[q].ids(), result.ids());
+            assertArrayEquals(expected[q].scores(), result.scores());
+        }
+    }
+
+    private HnswIndex build(int quantizationSampleSize) {
+        // A threshold of 0 always searches the graph
+        HnswIndex built = new HnswIndex(directory, DIMENSION, 16, 100, 0, quantizationSampleSize, PAGE_BYTES);
+        Random random = new Random(42);
+        for (int node = 0; node < NODES; node++) {
+            built.insert(node, randomVector(random));
+        }
+        return built;
+    }
+
+    /**
+     * @return The share of the exact k nearest neighbours that graph search finds, over random queries.
+     */
+    private static double recall(HnswIndex index, BitSet filter, int ef) {
+        Random random = new Random(3);
+        int found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = randomVector(random);
+            BitSet exact = new BitSet();
+            Arrays.stream(index.exactSearch(query, filter, K).ids()).forEach(exact::set);
+            found += (int) Arrays.stream(index.search(query, filter, K, ef).ids()).filter(exact::get).count();
+        }
+        return (double) found / (QUERIES * K);
+    }
+
+    private static BitSet all() {
+        BitSet all = new BitSet();
+        all.set(0, NODES);
+        return all;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,89 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedRecordsTest {
+
+    // Two floats, an int and four bytes
+    private static final int RECORD_BYTES = 2 * Float.BYTES + Integer.BYTES + 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopensWhatWasWritten() {
+        Path file = directory.resolve("records.bin");
+        int count = 1000;
+        // Pages of 10 records, so records span many mappings
+        try (MappedRecords records = new MappedRecords(file, RECORD_BYTES, 10L * RECORD_BYTES + 3)) {
+            for (int i = 0; i < count; i++) {
+                records.reserve(i);
+                records.writeFloats(i, 0, floats(i));
+                records.setIntRelease(i, 2, i * 31);
+                records.writeBytes(i, 3 * Integer.BYTES, bytes(i));
+            }
+            assertEquals(count, records.capacity());
+            records.force();
+        }
+
+        // Mapped with another page size than it was written with
+        try (MappedRecords records = MappedRecords.open(file, RECORD_BYTES, 64L * RECORD_BYTES)) {
+            assertEquals(count, records.capacity());
+            float[] floats = new float[2];
+            byte[] bytes = new byte[4];
+            for (int i = 0; i < count; i++) {
+                records.readFloats(i, 0, floats);
+                records.readBytes(i, 3 * Integer.BYTES, bytes);
+                assertArrayEquals(floats(i), floats);
+                assertEquals(i * 31, records.getIntAcquire(i, 2));
+                assertArrayEquals(bytes(i), bytes);
+            }
+        }
+    }
+
+    @Test
+    void readsUnwrittenRecordsAsZeros() {
+        try (MappedRecords records = new MappedRecords(directory.resolve("records.bin"), RECORD_BYTES, 4096)) {
+            records.reserve(5);
+
+            float[] floats = new float[2];
+            records.readFloats(5, 0, floats);
+            assertArrayEquals(new float[2], floats);
+            assertEquals(0, records.getIntAcquire(5, 2));
+        }
+    }
+
+    @Test
+    void doesNotGrowAReopenedFile() {
+        Path file = directory.resolve("records.bin");
+        try (MappedRecords records = new MappedRecords(file, RECORD_BYTES, RECORD_BYTES)) {
+            records.reserve(0);
+            records.force();
+        }
+
+        try (MappedRecords records = MappedRecords.open(file, RECORD_BYTES, RECORD_BYTES)) {
+            assertThrows(IllegalStateException.class, () -> records.reserve(1));
+        }
+    }
+
+    @Test
+    void rejectsRecordSizesThatAreNotWholeInts() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new MappedRecords(directory.resolve("records.bin"), 6, 4096));
+    }
+
+    private static float[] floats(int i) {
+        return new float[]{i * 0.5f, -i};
+    }
+
+    private static byte[] bytes(int i) {
+        return new byte[]{(byte) i, (byte) (i >> 8), (byte) -i, 127};
+    }
+}
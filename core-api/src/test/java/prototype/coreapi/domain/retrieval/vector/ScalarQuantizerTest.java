@@ -0,0 +1,157 @@
+package prototype.coreapi.domain.retrieval.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScalarQuantizerTest {
+
+    private static final int DIMENSION = 37;
+    private static final DistanceKernels KERNELS = DistanceKernels.scalar();
+
+    private final Random random = new Random(5);
+    private final List<float[]> sample = sample(500);
+    private final ScalarQuantizer quantizer = ScalarQuantizer.train(sample, DIMENSION, KERNELS);
+
+    @Test
+    void scoresAQueryWithinHalfAStepPerDimension() {
+        for (int n = 0; n < 50; n++) {
+            float[] query = randomVector();
+            float[] vector = sample.get(n);
+            byte[] codes = new byte[DIMENSION];
+            quantizer.quantize(vector, codes);
+
+            float exact = KERNELS.dot(query, vector);
+            assertEquals(exact, quantizer.query(query).dot(codes), queryTolerance(query));
+        }
+    }
+
+    @Test
+    void scoresTwoStoredVectorsWithTheCorrectionTerms() {
+        for (int n = 0; n < 50; n++) {
+            float[] a = sample.get(n);
+            float[] b = sample.get(n + 50);
+            byte[] codesA = new byte[DIMENSION];
+            byte[] codesB = new byte[DIMENSION];
+            float correctionA = quantizer.quantize(a, codesA);
+            float correctionB = quantizer.quantize(b, codesB);
+
+            // Same as decoding both vectors and taking their dot product
+            float decoded = KERNELS.dot(decode(codesA), decode(codesB));
+            assertEquals(decoded, quantizer.dot(codesA, correctionA, codesB, correctionB), 1e-3f * Math.abs(decoded) + 1e-3f);
+            assertEquals(KERNELS.dot(a, b), decoded, 0.5f);
+        }
+    }
+
+    @Test
+    void clipsValuesOutsideTheSampledRange() {
+        float[] vector = new float[DIMENSION];
+        vector[0] = 1_000;
+        vector[1] = -1_000;
+        byte[] codes = new byte[DIMENSION];
+
+        quantizer.quantize(vector, codes);
+
+        assertEquals(Byte.MAX_VALUE, codes[0]);
+        assertEquals(Byte.MIN_VALUE, codes[1]);
+    }
+
+    @Test
+    void keepsAConstantDimensionExact() {
+        List<float[]> constant = new ArrayList<>();
+        for (float[] vector : sample) {
+            float[] copy = vector.clone();
+            copy[3] = 0.25f;
+            constant.add(copy);
+        }
+        ScalarQuantizer trained = ScalarQuantizer.train(constant, DIMENSION, KERNELS);
+        float[] query = new float[DIMENSION];
+        query[3] = 2;
+        byte[] codes = new byte[DIMENSION];
+
+        trained.quantize(constant.getFirst(), codes);
+
+        assertEquals(0.5f, trained.query(query).dot(codes), 1e-6f);
+    }
+
+    @Test
+    void readsBackWhatItWrites() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        quantizer.writeTo(new DataOutputStream(bytes));
+
+        ScalarQuantizer read = ScalarQuantizer.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), DIMENSION, KERNELS);
+
+        float[] query = randomVector();
+        byte[] codes = new byte[DIMENSION];
+        byte[] readCodes = new byte[DIMENSION];
+        assertEquals(quantizer.quantize(sample.getFirst(), codes), read.quantize(sample.getFirst(), readCodes));
+        assertEquals(quantizer.query(query).dot(codes), read.query(query).dot(readCodes));
+    }
+
+    @Test
+    void padsRecordsToAMultipleOfFourBytes() {
+        assertEquals(Float.BYTES + 40, ScalarQuantizer.recordBytes(DIMENSION));
+        assertEquals(Float.BYTES + 32, ScalarQuantizer.recordBytes(32));
+    }
+
+    /**
+     * @return The vector the codes stand for, read through a query on each unit vector.
+     */
+    private float[] decode(byte[] codes) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            float[] unit = new float[DIMENSION];
+            unit[i] = 1;
+            vector[i] = quantizer.query(unit).dot(codes);
+        }
+        return vector;
+    }
+
+    /**
+     * @return The largest error of a query score: half a step of every dimension, weighted by the query.
+     */
+    private float queryTolerance(float[] query) {
+        float[] min = new float[DIMENSION];
+        float[] max = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            min[i] = Float.POSITIVE_INFINITY;
+            max[i] = Float.NEGATIVE_INFINITY;
+        }
+        for (float[] vector : sample) {
+            for (int i = 0; i < DIMENSION; i++) {
+                min[i] = Math.min(min[i], vector[i]);
+                max[i] = Math.max(max[i], vector[i]);
+            }
+        }
+        float tolerance = 1e-4f;
+        for (int i = 0; i < DIMENSION; i++) {
+            tolerance += Math.abs(query[i]) * (max[i] - min[i]) / 255 / 2;
+        }
+        return tolerance;
+    }
+
+    private List<float[]> sample(int size) {
+        List<float[]> vectors = new ArrayList<>(size);
+        for (int n = 0; n < size; n++) {
+            vectors.add(randomVector());
+        }
+        return vectors;
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
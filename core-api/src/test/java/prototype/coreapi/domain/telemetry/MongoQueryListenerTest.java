@@ -0,0 +1,77 @@
+package prototype.coreapi.domain.telemetry;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import prototype.coreapi.domain.telemetry.enums.DataStore;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MongoQueryListenerTest {
+
+    private static final ConnectionDescription CONNECTION =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    private QueryTelemetry queryTelemetry;
+    private MongoQueryListener listener;
+
+    @BeforeEach
+    void setUp() {
+        queryTelemetry = mock(QueryTelemetry.class);
+        when(queryTelemetry.isEnabled()).thenReturn(true);
+        when(queryTelemetry.sample()).thenReturn(true);
+        listener = new MongoQueryListener(queryTelemetry);
+    }
+
+    @Test
+    void logsTheFingerprintAndNeverTheValuesOfACommand() {
+        BsonDocument command = BsonDocument.parse("""
+                {"insert": "chat_history", "documents": [{"question": "What is Kim's salary?", "answer": "4,200"}],
+                 "$db": "rag"}
+                """);
+
+        listener.commandStarted(new CommandStartedEvent(null, 1, 7, CONNECTION, "rag", "insert", command));
+        listener.commandSucceeded(new CommandSucceededEvent(null, 1, 7, CONNECTION, "rag", "insert",
+                new BsonDocument(), 3_000_000));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Supplier<String>> detail = ArgumentCaptor.forClass(Supplier.class);
+        String fingerprint = "insert chat_history documents=[{question: ?, answer: ?}]";
+        verify(queryTelemetry).record(eq(DataStore.MONGO), eq(fingerprint), eq(3_000_000L), eq(true), eq(true),
+                detail.capture());
+        assertEquals("rag " + fingerprint, detail.getValue().get());
+        assertFalse(detail.getValue().get().contains("salary"));
+    }
+
+    @Test
+    void ignoresACommandThatStartedWhileDisabled() {
+        when(queryTelemetry.isEnabled()).thenReturn(false);
+        listener.commandStarted(new CommandStartedEvent(null, 1, 8, CONNECTION, "rag", "find",
+                BsonDocument.parse("{\"find\": \"prompt\"}")));
+        when(queryTelemetry.isEnabled()).thenReturn(true);
+
+        listener.commandSucceeded(new CommandSucceededEvent(null, 1, 8, CONNECTION, "rag", "find",
+                new BsonDocument(), 1_000));
+
+        verify(queryTelemetry, never())
+                .record(any(), any(), anyLong(), anyBoolean(), anyBoolean(), any());
+    }
+}
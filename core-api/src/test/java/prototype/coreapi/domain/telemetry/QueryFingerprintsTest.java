@@ -0,0 +1,95 @@
+package prototype.coreapi.domain.telemetry;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryFingerprintsTest {
+
+    @Test
+    void replacesSqlLiteralsAndBindMarkers() {
+        assertEquals("SELECT * FROM document WHERE category = ? AND size > ? AND id = ?",
+                QueryFingerprints.sql("SELECT *\n  FROM document\tWHERE category = 'legal' AND size > 10.5 AND id = $1"));
+    }
+
+    @Test
+    void keepsQuotedIdentifiersAndSkipsEscapedQuotes() {
+        assertEquals("SELECT \"name\" FROM member WHERE name = ? AND id = ?",
+                QueryFingerprints.sql("SELECT \"name\" FROM member WHERE name = 'O''Brien' AND id = 7"));
+    }
+
+    @Test
+    void sharesAFingerprintAcrossListLengths() {
+        String one = QueryFingerprints.sql("SELECT * FROM document WHERE id IN ($1)");
+        String three = QueryFingerprints.sql("SELECT * FROM document WHERE id IN ($1,$2, $3)");
+        String rows = QueryFingerprints.sql("INSERT INTO tag (name) VALUES ('a'), ('b'),('c')");
+
+        assertEquals("SELECT * FROM document WHERE id IN (?)", one);
+        assertEquals(one, three);
+        assertEquals("INSERT INTO tag (name) VALUES (?)", rows);
+    }
+
+    @Test
+    void shapesAMongoCommandWithoutItsValues() {
+        BsonDocument command = BsonDocument.parse("""
+                {"find": "chat_history", "filter": {"memberId": 42, "question": {"$regex": "salary of Kim"}},
+                 "sort": {"createdAt": -1}, "limit": 20, "$db": "rag", "lsid": {"id": "abc"}, "batchSize": 101}
+                """);
+
+        String fingerprint = QueryFingerprints.mongo("find", command);
+
+        assertEquals("find chat_history filter={memberId: ?, question: {$regex: ?}} sort={createdAt: ?} limit=?",
+                fingerprint);
+        assertFalse(fingerprint.contains("salary"));
+    }
+
+    @Test
+    void sharesAMongoFingerprintAcrossArrayLengths() {
+        String one = QueryFingerprints.mongo("find", BsonDocument.parse("""
+                {"find": "prompt", "filter": {"name": {"$in": ["a"]}}}
+                """));
+        String many = QueryFingerprints.mongo("find", BsonDocument.parse("""
+                {"find": "prompt", "filter": {"name": {"$in": ["a", "b", "c", "d"]}}}
+                """));
+        String inserts = QueryFingerprints.mongo("insert", BsonDocument.parse("""
+                {"insert": "chat_history", "documents": [{"q": "first", "a": "x"}, {"q": "second", "a": "y"}]}
+                """));
+
+        assertEquals("find prompt filter={name: {$in: [?]}}", one);
+        assertEquals(one, many);
+        assertEquals("insert chat_history documents=[{q: ?, a: ?}]", inserts);
+    }
+
+    @Test
+    void reducesCursorCommandsToTheirCollection() {
+        assertEquals("getMore chat_history", QueryFingerprints.mongo("getMore", BsonDocument.parse("""
+                {"getMore": 8127361, "collection": "chat_history", "batchSize": 101}
+                """)));
+    }
+
+    @Test
+    void boundsTheDepthAndLengthOfAMongoFingerprint() {
+        String deep = QueryFingerprints.mongo("find", BsonDocument.parse("""
+                {"find": "c", "filter": {"a": {"b": {"c": {"d": {"e": {"f": {"g": 1}}}}}}}}
+                """));
+        StringBuilder wide = new StringBuilder("{\"find\": \"c\", \"filter\": {");
+        for (int i = 0; i < 200; i++) {
+            wide.append(i == 0 ? "" : ", ").append("\"field").append(i).append("\": ").append(i);
+        }
+        String wideFingerprint = QueryFingerprints.mongo("find", BsonDocument.parse(wide.append("}}").toString()));
+
+        assertEquals("find c filter={a: {b: {c: {d: {e: {f: {...}}}}}}}", deep);
+        assertTrue(wideFingerprint.length() <= 1_000);
+    }
+
+    @Test
+    void replacesTheIdentifiersOfRedisKeys() {
+        assertEquals("GET RT:?", QueryFingerprints.redis("GET", "RT:42"));
+        assertEquals("HGET UPLOAD_PARTS:?:?", QueryFingerprints.redis("HGET", "UPLOAD_PARTS:session:3"));
+        assertEquals("XADD document-chunk-stream", QueryFingerprints.redis("XADD", "document-chunk-stream"));
+        assertEquals("PING", QueryFingerprints.redis("PING", null));
+    }
+}
@@ -0,0 +1,44 @@
+package prototype.coreapi.global.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InternalPortMatcherTest {
+
+    private final InternalPortMatcher matcher = new InternalPortMatcher(8082);
+
+    @Test
+    void matchesRequestsReceivedOnTheInternalPort() {
+        assertTrue(matches(MockServerHttpRequest.get("http://core-api:8082/internal/retrieval/stats")
+                .localAddress(new InetSocketAddress(8082))));
+    }
+
+    @Test
+    void doesNotMatchRequestsReceivedOnThePublicPort() {
+        assertFalse(matches(MockServerHttpRequest.get("http://core-api:8080/internal/retrieval/stats")
+                .localAddress(new InetSocketAddress(8080))));
+    }
+
+    @Test
+    void ignoresThePortOfTheHostAndForwardedHeaders() {
+        assertFalse(matches(MockServerHttpRequest.get("http://core-api:8080/internal/retrieval/stats")
+                .header("Host", "core-api:8082")
+                .header("X-Forwarded-Port", "8082")
+                .localAddress(new InetSocketAddress(8080))));
+    }
+
+    @Test
+    void doesNotMatchRequestsWithoutALocalAddress() {
+        assertFalse(matches(MockServerHttpRequest.get("/internal/retrieval/stats")));
+    }
+
+    private boolean matches(MockServerHttpRequest.BaseBuilder<?> request) {
+        return matcher.matches(MockServerWebExchange.from(request)).block().isMatch();
+    }
+}
@@ -0,0 +1,77 @@
+package prototype.coreapi.global.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import prototype.coreapi.global.config.ForwardedHeaderProperties;
+import reactor.core.publisher.Mono;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrustedProxyForwardedHeaderFilterTest {
+
+    private final TrustedProxyForwardedHeaderFilter filter = new TrustedProxyForwardedHeaderFilter(
+            properties(List.of("10.0.0.0/8", "2001:db8::/32")));
+
+    @Test
+    void takesTheClientAddressFromATrustedProxy() {
+        ServerWebExchange forwarded = filter("10.1.2.3", "198.51.100.9, 203.0.113.7, 10.0.0.5");
+
+        assertEquals("203.0.113.7", forwarded.getRequest().getRemoteAddress().getAddress().getHostAddress());
+    }
+
+    @Test
+    void stripsForwardedHeadersFromAnyOtherPeer() {
+        ServerWebExchange forwarded = filter("203.0.113.7", "198.51.100.9");
+
+        assertEquals("203.0.113.7", forwarded.getRequest().getRemoteAddress().getAddress().getHostAddress());
+        assertNull(forwarded.getRequest().getHeaders().getFirst("X-Forwarded-For"));
+    }
+
+    @Test
+    void doesNotResolveHostNamesInTheHeader() {
+        ServerWebExchange forwarded = filter("10.1.2.3", "attacker.example, 10.0.0.5");
+
+        assertEquals("10.1.2.3", forwarded.getRequest().getRemoteAddress().getAddress().getHostAddress());
+    }
+
+    @Test
+    void matchesRangesOfTheirOwnFamilyOnly() throws Exception {
+        var range = TrustedProxyForwardedHeaderFilter.AddressRange.parse("192.168.4.0/22");
+
+        assertTrue(range.contains(InetAddress.getByName("192.168.7.255")));
+        assertFalse(range.contains(InetAddress.getByName("192.168.8.0")));
+        assertFalse(range.contains(InetAddress.getByName("2001:db8::c0a8:401")));
+        assertThrows(IllegalArgumentException.class, () -> TrustedProxyForwardedHeaderFilter.AddressRange.parse("10.0.0.0/33"));
+        assertThrows(IllegalArgumentException.class, () -> TrustedProxyForwardedHeaderFilter.AddressRange.parse("proxy.internal"));
+    }
+
+    private ServerWebExchange filter(String peer, String forwardedFor) {
+        MockServerHttpRequest request = MockServerHttpRequest.get("/api/auth/sign-in")
+                .remoteAddress(new InetSocketAddress(peer, 443))
+                .header("X-Forwarded-For", forwardedFor)
+                .build();
+        AtomicReference<ServerWebExchange> seen = new AtomicReference<>();
+        filter.filter(MockServerWebExchange.from(request), exchange -> {
+            seen.set(exchange);
+            return Mono.empty();
+        }).block();
+        return seen.get();
+    }
+
+    private static ForwardedHeaderProperties properties(List<String> trustedProxies) {
+        ForwardedHeaderProperties properties = new ForwardedHeaderProperties();
+        properties.setTrustedProxies(trustedProxies);
+        return properties;
+    }
+}
@@ -3,6 +3,7 @@ from http import HTTPStatus
 
 from fastapi import HTTPException
 
+from app.jobs.chunks import ChunkPublishError
 from app.modules.data.processor import DataProcessor
 
 logger = logging.getLogger(__name__)
@@ -14,32 +15,62 @@ class DocumentService:
     and deleting documents in the vector store.
     """
 
-    def __init__(self):
-        """Initializes the service, setting up the data processor."""
-        self.data_processor = DataProcessor()
+    def __init__(self, chunk_publisher=None):
+        """Initializes the service, setting up the data processor and the publisher of chunk changes, if any."""
+        self.data_processor = DataProcessor(chunk_publisher)
 
-    def add_document(self, file_path: str, doc_id: int, original_filename: str, category: str | None = None):
-        """Adds a new document to the vector store."""
+    def add_document(self, file_path: str, doc_id: int, original_filename: str, category: str | None = None,
+                     progress=None):
+        """Adds a new document to the vector store, reporting progress if a reporter is given."""
         try:
-            self.data_processor.add_document(file_path, doc_id, original_filename, category)
+            self.data_processor.add_document(file_path, doc_id, original_filename, category, progress)
             return {"original_filename": original_filename, "detail": "Document added successfully."}
         except FileNotFoundError:
             raise HTTPException(status_code=HTTPStatus.NOT_FOUND, detail=f"File not found at path: {file_path}")
+        except ChunkPublishError:
+            raise
         except Exception as e:
             logger.error(f"Error adding document {original_filename}: {e}")
             raise HTTPException(status_code=HTTPStatus.INTERNAL_SERVER_ERROR, detail=str(e))
 
-    def update_document(self, file_path: str, doc_id: int, original_filename: str, category: str | None = None):
-        """Updates an existing document in the vector store."""
+    def clone_document(self, source_doc_id: int, doc_id: int, original_filename: str, category: str | None = None) -> int:
+        """Indexes a document by copying the chunks of an identical, already indexed document."""
         try:
-            self.data_processor.update_document(file_path, doc_id, original_filename, category)
+            return self.data_processor.clone_document(source_doc_id, doc_id, original_filename, category)
+        except ChunkPublishError:
+            raise
+        except Exception as e:
+            logger.error(f"Error cloning document {original_filename} from doc_id {source_doc_id}: {e}")
+            raise HTTPException(status_code=HTTPStatus.INTERNAL_SERVER_ERROR, detail=str(e))
+
+    def update_document(self, file_path: str, doc_id: int, original_filename: str, category: str | None = None,
+                        progress=None):
+        """Updates an existing document in the vector store, reporting progress if a reporter is given."""
+        try:
+            self.data_processor.update_document(file_path, doc_id, original_filename, category, progress)
             return {"original_filename": original_filename, "detail": "Document updated successfully."}
         except FileNotFoundError:
             raise HTTPException(status_code=HTTPStatus.NOT_FOUND, detail=f"File not found at path: {file_path}")
+        except ChunkPublishError:
+            raise
         except Exception as e:
             logger.error(f"Error updating document {original_filename}: {e}")
             raise HTTPException(status_code=HTTPStatus.INTERNAL_SERVER_ERROR, detail=str(e))
 
+    def update_pages(self, file_path: str, doc_id: int, original_filename: str, category: str | None,
+                     pages: list[int], page_count: int, progress=None):
+        """Re-indexes only the given pages of a revised document, reporting progress if a reporter is given."""
+        try:
+            self.data_processor.update_pages(file_path, doc_id, original_filename, category, pages, page_count, progress)
+            return {"original_filename": original_filename, "detail": f"{len(pages)} pages updated successfully."}
+        except FileNotFoundError:
+            raise HTTPException(status_code=HTTPStatus.NOT_FOUND, detail=f"File not found at path: {file_path}")
+        except ChunkPublishError:
+            raise
+        except Exception as e:
+            logger.error(f"Error updating pages of document {original_filename}: {e}")
+            raise HTTPException(status_code=HTTPStatus.INTERNAL_SERVER_ERROR, detail=str(e))
+
     def delete_document(self, doc_id: int):
         """Deletes a document and its corresponding vectors from the store."""
         logger.info(f"Deleting document with doc_id: {doc_id}")
@@ -49,6 +80,8 @@ class DocumentService:
                 return {"doc_id": doc_id, "is_deleted": True, "detail": "Document deleted successfully."}
             else:
                 return {"doc_id": doc_id, "is_deleted": False, "detail": "Document not found or already deleted."}
+        except ChunkPublishError:
+            raise
         except Exception as e:
             logger.error(f"Error deleting document with doc_id {doc_id}: {e}")
             raise HTTPException(status_code=HTTPStatus.INTERNAL_SERVER_ERROR, detail=str(e))
\ No newline at end of file
@@ -0,0 +1,93 @@
+import asyncio
+import base64
+import logging
+import os
+import struct
+import time
+
+import redis.asyncio as redis
+
+logger = logging.getLogger(__name__)
+
+# Replication log of the indexed chunks, followed by every core-api node; must match retrieval.chunk-stream
+CHUNK_STREAM_KEY = os.getenv("CHUNK_STREAM", "document-chunk-stream")
+# Attempts to add a batch of events to the stream, doubling the wait from PUBLISH_BACKOFF_SECONDS between them
+PUBLISH_ATTEMPTS = int(os.getenv("CHUNK_PUBLISH_ATTEMPTS", "4"))
+PUBLISH_BACKOFF_SECONDS = float(os.getenv("CHUNK_PUBLISH_BACKOFF_SECONDS", "0.5"))
+
+
+class ChunkPublishError(Exception):
+    """
+    Raised when chunk events could not be added to the stream. The job that made the change must not be acknowledged,
+    so that it is redelivered and the retrieval index does not silently diverge from Elasticsearch.
+    """
+
+
+def encode_vector(vector: list[float] | None) -> str:
+    """Encodes an embedding as base64 of little-endian float32 values, or an empty string if there is none."""
+    if not vector:
+        return ""
+    return base64.b64encode(struct.pack(f"<{len(vector)}f", *vector)).decode("ascii")
+
+
+class ChunkPublisher:
+    """
+    Publishes every change to the indexed chunks to the chunk stream, from which core-api builds its retrieval index.
+    Methods are called from worker threads and wait until the change is in the stream, so changes keep their order;
+    they retry a failed write a few times and then raise ChunkPublishError.
+    The core-api nodes trim the stream up to the oldest of their index snapshots, after which nothing is replayed.
+    """
+
+    def __init__(self, redis_client: redis.Redis, loop: asyncio.AbstractEventLoop):
+        self.redis_client = redis_client
+        self.loop = loop
+
+    def upserted(self, chunk_ids: list[str], texts: list[str], metadatas: list[dict],
+                 vectors: list[list[float]] | None = None):
+        events = [
+            {
+                "op": "UPSERT",
+                "chunkId": chunk_id,
+                "documentId": str(metadata["doc_id"]),
+                "page": str(metadata.get("page_number", 0)),
+                "category": metadata.get("category") or "",
+                "displayName": metadata.get("display_name") or "",
+                "text": text,
+                "vector": encode_vector(vector),
+            }
+            for chunk_id, text, metadata, vector in zip(chunk_ids, texts, metadatas, vectors or [None] * len(chunk_ids))
+        ]
+        self._publish(events)
+
+    def document_deleted(self, doc_id: int):
+        self._publish([{"op": "DELETE_DOCUMENT", "documentId": str(doc_id)}])
+
+    def pages_deleted(self, doc_id: int, pages: list[int], page_count: int):
+        self._publish([{
+            "op": "DELETE_PAGES",
+            "documentId": str(doc_id),
+            "pages": ",".join(str(page) for page in pages),
+            "pageCount": str(page_count),
+        }])
+
+    def document_renamed(self, doc_id: int, display_name: str):
+        self._publish([{"op": "RENAME_DOCUMENT", "documentId": str(doc_id), "displayName": display_name}])
+
+    def _publish(self, events: list[dict]):
+        if not events:
+            return
+        for attempt in range(1, PUBLISH_ATTEMPTS + 1):
+            try:
+                asyncio.run_coroutine_threadsafe(self._xadd_all(events), self.loop).result()
+                return
+            except Exception as e:
+                if attempt == PUBLISH_ATTEMPTS:
+                    raise ChunkPublishError(f"Failed to publish {len(events)} chunk events: {e}") from e
+                logger.warning(f"Failed to publish {len(events)} chunk events (attempt {attempt}): {e}")
+                time.sleep(PUBLISH_BACKOFF_SECONDS * 2 ** (attempt - 1))
+
+    async def _xadd_all(self, events: list[dict]):
+        async with self.redis_client.pipeline(transaction=False) as pipe:
+            for event in events:
+                pipe.xadd(CHUNK_STREAM_KEY, event)
+            await pipe.execute()
@@ -2,86 +2,191 @@ import asyncio
 import json
 import logging
 import os
+import socket
 
-import httpx
 import redis.asyncio as redis
 
 from app.documents.service import DocumentService
+from app.jobs.chunks import ChunkPublishError
+from app.jobs.progress import ProgressReporter
 
 logger = logging.getLogger(__name__)
 
-# Define queue names for clarity
-INDEXING_QUEUE_KEY = "document-indexing-queue"
-DEINDEXING_QUEUE_KEY = "document-deindexing-queue"
+# Job lanes (Redis Streams) in priority order; must match JobLane in core-api
+DEINDEXING_STREAM_KEY = "document-deindexing-stream"
+INDEXING_STREAM_KEY = "document-indexing-stream"
+REINDEXING_STREAM_KEY = "document-reindexing-stream"
+STREAM_KEYS = [DEINDEXING_STREAM_KEY, INDEXING_STREAM_KEY, REINDEXING_STREAM_KEY]
 
+CONSUMER_GROUP = os.getenv("INDEXING_CONSUMER_GROUP", "indexing-workers")
+CONSUMER_NAME = os.getenv("INDEXING_CONSUMER_NAME", f"{socket.gethostname()}-{os.getpid()}")
+# Must match document.queue.visibility-timeout / max-deliveries in core-api
+VISIBILITY_TIMEOUT_MS = int(os.getenv("INDEXING_VISIBILITY_TIMEOUT_MS", "600000"))
+MAX_DELIVERIES = int(os.getenv("INDEXING_MAX_DELIVERIES", "3"))
+# Pending entries inspected per lane when looking for an abandoned job
+RECLAIM_SCAN_COUNT = 100
+BLOCK_MS = 5000
+PAYLOAD_FIELD = "payload"
 
-async def update_status(base_url: str, document_id: int, status: str):
-    """Updates the indexing status of a document via a call to the core-api."""
-    async with httpx.AsyncClient() as client:
+
+async def ensure_consumer_groups(redis_client: redis.Redis):
+    """Creates the consumer group on every lane if it does not exist yet."""
+    for stream in STREAM_KEYS:
         try:
-            response = await client.patch(
-                f"{base_url}/internal/documents/{document_id}/status",
-                json={"status": status}
-            )
-            response.raise_for_status()
-            logger.info(f"Successfully updated status to {status} for documentId: {document_id}")
-        except httpx.HTTPStatusError as e:
-            logger.error(f"Failed to update status for documentId: {document_id}. Status: {e.response.status_code}, Body: {e.response.text}")
-        except httpx.RequestError as e:
-            logger.error(f"Request error while updating status for documentId: {document_id}. Error: {e}")
+            await redis_client.xgroup_create(stream, CONSUMER_GROUP, id="0", mkstream=True)
+        except redis.ResponseError as e:
+            if "BUSYGROUP" not in str(e):
+                raise
+
+
+async def claim_abandoned(redis_client: redis.Redis, stream: str):
+    """
+    Takes over one job left pending by a worker that stopped before acknowledging it.
+    Pending entries are inspected before claiming: jobs that already reached the delivery limit are never claimed
+    again, so they stay idle until core-api moves them to the dead-letter stream.
+    """
+    pending = await redis_client.xpending_range(
+        stream, CONSUMER_GROUP, min="-", max="+", count=RECLAIM_SCAN_COUNT, idle=VISIBILITY_TIMEOUT_MS
+    )
+    for entry in pending:
+        if entry["times_delivered"] >= MAX_DELIVERIES:
+            continue
+        # Claims only if still idle, so two workers never take over the same job.
+        claimed = await redis_client.xclaim(
+            stream, CONSUMER_GROUP, CONSUMER_NAME, min_idle_time=VISIBILITY_TIMEOUT_MS, message_ids=[entry["message_id"]]
+        )
+        for record_id, fields in claimed:
+            if fields:
+                return stream, record_id, fields
+    return None
+
+
+async def next_job(redis_client: redis.Redis):
+    """
+    Returns the next job as (stream, record_id, fields), honouring lane priority.
+    Each lane is checked in order for abandoned and new jobs without blocking;
+    only when every lane is empty does the worker block on all of them at once.
+    """
+    for stream in STREAM_KEYS:
+        job = await claim_abandoned(redis_client, stream)
+        if job is not None:
+            return job
+        response = await redis_client.xreadgroup(CONSUMER_GROUP, CONSUMER_NAME, {stream: ">"}, count=1)
+        if response:
+            _, records = response[0]
+            record_id, fields = records[0]
+            return stream, record_id, fields
+
+    response = await redis_client.xreadgroup(
+        CONSUMER_GROUP, CONSUMER_NAME, {stream: ">" for stream in STREAM_KEYS}, count=1, block=BLOCK_MS
+    )
+    if not response:
+        return None
+    stream, records = response[0]
+    record_id, fields = records[0]
+    return stream, record_id, fields
 
 
 async def run_job_consumer(redis_client: redis.Redis, document_service: DocumentService):
-    """Continuously consumes and processes document jobs (indexing and de-indexing) from Redis queues."""
-    logger.info(f"Starting job consumer, listening on queues: {[INDEXING_QUEUE_KEY, DEINDEXING_QUEUE_KEY]}")
-    core_api_base_url = os.getenv("CORE_API_BASE_URL", "http://core-api:8080")
+    """Continuously consumes and processes document jobs (indexing and de-indexing) from Redis Streams."""
+    logger.info(f"Starting job consumer {CONSUMER_NAME} in group {CONSUMER_GROUP}, listening on streams: {STREAM_KEYS}")
+    loop = asyncio.get_running_loop()
 
     while True:
-        queue = None
+        try:
+            await ensure_consumer_groups(redis_client)
+            break
+        except redis.ConnectionError as e:
+            logger.error(f"Redis connection error: {e}. Retrying in 5 seconds...")
+            await asyncio.sleep(5)
+
+    while True:
+        stream = None
+        record_id = None
         job_json = None
         try:
-            # Listen to both queues and get the job and the queue it came from
-            queue, job_json = await redis_client.brpop([INDEXING_QUEUE_KEY, DEINDEXING_QUEUE_KEY])
-            if job_json is None:
+            job = await next_job(redis_client)
+            if job is None:
                 continue
+            stream, record_id, fields = job
 
+            job_json = fields[PAYLOAD_FIELD]
             job_data = json.loads(job_json)
             doc_id = job_data['documentId']
 
-            # --- Process Indexing Job ---
-            if queue == INDEXING_QUEUE_KEY:
+            # --- Process Indexing / Re-indexing Job ---
+            if stream in (INDEXING_STREAM_KEY, REINDEXING_STREAM_KEY):
                 stored_name = job_data['storedName']
                 original_filename = job_data['originalFilename']
                 category = job_data.get('category')
 
-                logger.info(f"Received INDEXING job for doc_id: {doc_id} (filename: {original_filename})")
+                logger.info(f"Received {'RE-INDEXING' if stream == REINDEXING_STREAM_KEY else 'INDEXING'} job for doc_id: {doc_id} (filename: {original_filename})")
                 file_path = f"/app/documents/{stored_name}"
 
+                source_doc_id = job_data.get('sourceDocumentId')
+                progress = ProgressReporter(redis_client, loop, doc_id)
+
                 try:
-                    await asyncio.to_thread(
-                        document_service.add_document,
-                        file_path, doc_id, original_filename, category
-                    )
+                    pages = job_data.get('pages')
+                    if stream == REINDEXING_STREAM_KEY and pages is not None:
+                        # A document revision: only the changed pages are indexed again.
+                        await asyncio.to_thread(
+                            document_service.update_pages,
+                            file_path, doc_id, original_filename, category, pages, job_data['pageCount'], progress
+                        )
+                    elif stream == REINDEXING_STREAM_KEY:
+                        await asyncio.to_thread(
+                            document_service.update_document,
+                            file_path, doc_id, original_filename, category, progress
+                        )
+                    else:
+                        cloned = 0
+                        if source_doc_id is not None:
+                            # Identical content is already indexed; reuse its chunks and embeddings.
+                            cloned = await asyncio.to_thread(
+                                document_service.clone_document,
+                                source_doc_id, doc_id, original_filename, category
+                            )
+                        if cloned == 0:
+                            await asyncio.to_thread(
+                                document_service.add_document,
+                                file_path, doc_id, original_filename, category, progress
+                            )
                     logger.info(f"Successfully indexed doc_id: {doc_id}")
-                    await update_status(core_api_base_url, doc_id, "SUCCESS")
+                    status = "SUCCESS"
+                except ChunkPublishError:
+                    raise
                 except Exception as e:
                     logger.error(f"Failed to index doc_id: {doc_id}. Error: {e}", exc_info=True)
-                    await update_status(core_api_base_url, doc_id, "FAILURE")
+                    status = "FAILURE"
+                # Raises ProgressReportError if the status cannot be written, which leaves the job unacknowledged.
+                await progress.finish(status)
 
             # --- Process De-indexing Job ---
-            elif queue == DEINDEXING_QUEUE_KEY:
+            elif stream == DEINDEXING_STREAM_KEY:
                 logger.info(f"Received DE-INDEXING job for doc_id: {doc_id}")
                 try:
                     await asyncio.to_thread(document_service.delete_document, doc_id)
                     logger.info(f"Successfully de-indexed doc_id: {doc_id}")
+                except ChunkPublishError:
+                    raise
                 except Exception as e:
                     logger.error(f"Failed to de-index doc_id: {doc_id}. Error: {e}", exc_info=True)
 
+            # The job has been handled (its outcome is reported on the progress stream), so acknowledge it.
+            await redis_client.xack(stream, CONSUMER_GROUP, record_id)
+
         except redis.ConnectionError as e:
             logger.error(f"Redis connection error: {e}. Retrying in 5 seconds...")
             await asyncio.sleep(5)
-        except json.JSONDecodeError as e:
-            logger.error(f"Failed to decode job JSON: {job_json}. Error: {e}")
+        except (json.JSONDecodeError, KeyError) as e:
+            logger.error(f"Failed to decode job {record_id} on {stream}: {job_json}. Error: {e}")
+            if record_id is not None:
+                # A malformed job will never succeed; acknowledge it so it is not redelivered.
+                await redis_client.xack(stream, CONSUMER_GROUP, record_id)
         except Exception as e:
+            # Not acknowledged: the job stays pending and is retried after the visibility timeout.
+            # This includes a ChunkPublishError, since replaying the job publishes its chunk changes again,
+            # and a ProgressReportError, since replaying it reports its final status again.
             logger.error(f"An unexpected error occurred in the consumer: {e}", exc_info=True)
-            await asyncio.sleep(5)
\ No newline at end of file
+            await asyncio.sleep(5)
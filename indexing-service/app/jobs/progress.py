@@ -0,0 +1,100 @@
+import asyncio
+import logging
+import os
+import time
+
+import redis.asyncio as redis
+
+logger = logging.getLogger(__name__)
+
+# The stream is not capped here: core-api trims it of the events its consumer group is done with
+PROGRESS_STREAM_KEY = os.getenv("INDEXING_PROGRESS_STREAM", "document-progress-stream")
+# Minimum time between two intermediate reports of the same document
+REPORT_INTERVAL_SECONDS = 0.5
+# Attempts to add the final report to the stream, doubling the wait from FINISH_BACKOFF_SECONDS between them
+FINISH_ATTEMPTS = int(os.getenv("INDEXING_PROGRESS_FINISH_ATTEMPTS", "4"))
+FINISH_BACKOFF_SECONDS = float(os.getenv("INDEXING_PROGRESS_FINISH_BACKOFF_SECONDS", "0.5"))
+
+
+class ProgressReportError(Exception):
+    """
+    Raised when the final status of a job could not be added to the progress stream. The job must not be acknowledged,
+    so that it is redelivered instead of leaving its document pending forever.
+    """
+
+
+class ProgressReporter:
+    """
+    Reports the indexing progress of one document to the progress stream consumed by core-api.
+    Counters are cumulative, so intermediate reports can be throttled without losing information.
+    The callbacks are called from worker threads; reports are handed to the event loop without waiting.
+    Intermediate reports are best effort, but the final status is retried and raises if it cannot be written.
+    """
+
+    def __init__(self, redis_client: redis.Redis, loop: asyncio.AbstractEventLoop, doc_id: int):
+        self.redis_client = redis_client
+        self.loop = loop
+        self.doc_id = doc_id
+        self.stage = None
+        self.counters = {
+            "pagesParsed": 0,
+            "totalPages": 0,
+            "chunksEmbedded": 0,
+            "chunksWritten": 0,
+            "totalChunks": 0,
+        }
+        self.last_report = 0.0
+        # Intermediate reports handed to the event loop, awaited before the final one so it is always the last
+        self.sent = []
+
+    def pages_parsed(self, done: int, total: int):
+        self.counters.update(pagesParsed=done, totalPages=total)
+        self._report("PARSING", final=done >= total)
+
+    def chunks_embedded(self, done: int, total: int):
+        self.counters.update(chunksEmbedded=done, totalChunks=total)
+        self._report("EMBEDDING")
+
+    def chunks_written(self, done: int, total: int):
+        self.counters.update(chunksWritten=done, totalChunks=total)
+        self._report("WRITING")
+
+    async def finish(self, status: str):
+        """
+        Reports the end of the job. Always sent, regardless of throttling, after every intermediate report.
+        Raises ProgressReportError if the report could not be written.
+        """
+        await asyncio.gather(*(asyncio.wrap_future(report) for report in self.sent))
+        self.sent.clear()
+        fields = self._fields("DONE" if status == "SUCCESS" else None, status)
+        for attempt in range(1, FINISH_ATTEMPTS + 1):
+            try:
+                await self.redis_client.xadd(PROGRESS_STREAM_KEY, fields)
+                return
+            except Exception as e:
+                if attempt == FINISH_ATTEMPTS:
+                    raise ProgressReportError(f"Failed to report {status} for doc_id: {self.doc_id}: {e}") from e
+                logger.warning(f"Failed to report {status} for doc_id: {self.doc_id} (attempt {attempt}): {e}")
+                await asyncio.sleep(FINISH_BACKOFF_SECONDS * 2 ** (attempt - 1))
+
+    def _report(self, stage: str, final: bool = False):
+        now = time.monotonic()
+        if stage == self.stage and not final and now - self.last_report < REPORT_INTERVAL_SECONDS:
+            return
+        self.stage = stage
+        self.last_report = now
+        self.sent.append(asyncio.run_coroutine_threadsafe(self._publish(self._fields(stage)), self.loop))
+
+    def _fields(self, stage: str | None, status: str | None = None) -> dict:
+        fields = {"documentId": str(self.doc_id), **{key: str(value) for key, value in self.counters.items()}}
+        if stage:
+            fields["stage"] = stage
+        if status:
+            fields["status"] = status
+        return fields
+
+    async def _publish(self, fields: dict):
+        try:
+            await self.redis_client.xadd(PROGRESS_STREAM_KEY, fields)
+        except Exception as e:
+            logger.warning(f"Failed to report progress for doc_id: {self.doc_id}. Error: {e}")
@@ -11,6 +11,7 @@ import uvicorn
 
 from .documents.service import DocumentService
 from .extensions.logging_config import LOGGING_CONFIG
+from .jobs.chunks import ChunkPublisher
 from .jobs.consumer import run_job_consumer
 
 dictConfig(LOGGING_CONFIG)
@@ -23,7 +24,7 @@ async def lifespan(app: FastAPI):
     # Initialize services and clients
     redis_host = os.getenv("REDIS_HOST", "redis")
     redis_client = redis.Redis(host=redis_host, port=6379, decode_responses=True)
-    document_service = DocumentService()
+    document_service = DocumentService(ChunkPublisher(redis_client, asyncio.get_running_loop()))
 
     # Start the background consumer task from the dedicated module
     consumer_task = asyncio.create_task(run_job_consumer(redis_client, document_service))
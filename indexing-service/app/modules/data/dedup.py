@@ -0,0 +1,110 @@
+import hashlib
+import logging
+import os
+import re
+import zlib
+
+import numpy as np
+
+logger = logging.getLogger(__name__)
+
+# Estimated Jaccard similarity of word shingles above which a chunk is a near-duplicate of an indexed one
+DEDUP_THRESHOLD = float(os.getenv("DEDUP_THRESHOLD", "0.8"))
+# Signature length and LSH bands; with 128 permutations in 16 bands of 8 rows, chunks at the threshold
+# share a band with a probability of about 0.95
+MINHASH_PERMUTATIONS = int(os.getenv("MINHASH_PERMUTATIONS", "128"))
+LSH_BANDS = int(os.getenv("LSH_BANDS", "16"))
+SHINGLE_WORDS = 3
+
+_MERSENNE_PRIME = np.uint64((1 << 61) - 1)
+_MAX_HASH = np.uint64((1 << 32) - 1)
+# Fixed seed: signatures are stored with the chunks and must stay comparable across workers and restarts
+_random = np.random.RandomState(1)
+_A = _random.randint(1, (1 << 61) - 1, size=MINHASH_PERMUTATIONS, dtype=np.uint64)
+_B = _random.randint(0, (1 << 61) - 1, size=MINHASH_PERMUTATIONS, dtype=np.uint64)
+_WORD = re.compile(r"\w+")
+
+
+def shingles(text: str) -> set[str]:
+    """Returns the overlapping runs of SHINGLE_WORDS lower-cased words of the text, ignoring punctuation and spacing."""
+    words = _WORD.findall(text.lower())
+    if len(words) <= SHINGLE_WORDS:
+        return {" ".join(words)}
+    return {" ".join(words[i:i + SHINGLE_WORDS]) for i in range(len(words) - SHINGLE_WORDS + 1)}
+
+
+def signature(text: str) -> np.ndarray:
+    """Computes the MinHash signature of the text's shingles: the minimum of each permuted hash over the shingles."""
+    hashes = np.fromiter((zlib.crc32(shingle.encode("utf-8")) for shingle in shingles(text)), dtype=np.uint64)
+    # Overflow wraps around, which keeps the permutations uniform enough for MinHash
+    with np.errstate(over="ignore"):
+        permuted = ((np.outer(hashes, _A) + _B) % _MERSENNE_PRIME) & _MAX_HASH
+    return permuted.min(axis=0)
+
+
+def bands(sig: np.ndarray) -> list[str]:
+    """Returns the LSH bucket keys of a signature, one per band; chunks sharing a key are candidate duplicates."""
+    rows = len(sig) // LSH_BANDS
+    return [
+        f"{band}:{hashlib.blake2b(sig[band * rows:(band + 1) * rows].tobytes(), digest_size=8).hexdigest()}"
+        for band in range(LSH_BANDS)
+    ]
+
+
+def similarity(sig: np.ndarray, other: np.ndarray) -> float:
+    """Estimates the Jaccard similarity of the shingles of two texts from their signatures."""
+    return float(np.mean(sig == other))
+
+
+class NearDuplicateFinder:
+    """
+    Finds, for new chunks, an indexed chunk of the same category they nearly duplicate.
+    Canonical chunks are stored with their signature and band keys, so the candidates of a chunk are the canonical
+    chunks sharing one of its band keys, found with one terms query, and kept if their signatures agree enough.
+    Duplicates are only looked up within a category, so that filtering by category still finds every chunk.
+    """
+
+    def __init__(self, client, index_name: str):
+        self.client = client
+        self.index_name = index_name
+
+    def find(self, signatures: list[np.ndarray], band_keys: list[list[str]], category: str | None,
+             local: list[tuple[str, np.ndarray, list[str]]]) -> list[str | None]:
+        """
+        Returns, for each signature, the id of the canonical chunk it nearly duplicates, or None.
+        Chunks of the running job are not searchable yet, so they are given as (id, signature, band keys) in local.
+        All lookups of the batch are sent in one multi-search.
+        """
+        category_filter = (
+            {"term": {"metadata.category": category}} if category
+            else {"bool": {"must_not": {"exists": {"field": "metadata.category"}}}}
+        )
+        searches = []
+        for keys in band_keys:
+            searches.append({"index": self.index_name})
+            searches.append({
+                "size": 10,
+                "_source": ["minhash"],
+                "query": {"bool": {"filter": [{"terms": {"minhash_bands": keys}}, category_filter]}},
+            })
+        responses = self.client.msearch(searches=searches)["responses"] if searches else []
+
+        canonical_ids = []
+        for sig, keys, response in zip(signatures, band_keys, responses):
+            candidates = [
+                (hit["_id"], np.asarray(hit["_source"]["minhash"], dtype=np.uint64))
+                for hit in response.get("hits", {}).get("hits", [])
+            ]
+            key_set = set(keys)
+            candidates += [
+                (chunk_id, other) for chunk_id, other, other_keys in local if key_set.intersection(other_keys)
+            ]
+            best_id, best = None, DEDUP_THRESHOLD
+            for chunk_id, other in candidates:
+                if len(other) != len(sig):
+                    continue
+                score = similarity(sig, other)
+                if score >= best:
+                    best_id, best = chunk_id, score
+            canonical_ids.append(best_id)
+        return canonical_ids
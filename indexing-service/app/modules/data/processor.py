@@ -1,24 +1,81 @@
+import gzip
+import json
 import logging
 import os
+import uuid
 from pathlib import Path
 from typing import Union
 
+from elasticsearch import helpers
 from langchain_elasticsearch import ElasticsearchStore, DenseVectorStrategy
 from langchain_community.document_loaders import PyPDFLoader
 from langchain.text_splitter import RecursiveCharacterTextSplitter
 from langchain_core.documents import Document
+from pypdf import PdfReader
 
+from . import dedup
+from ...jobs.chunks import ChunkPublishError
 from ..embedding import hugging_face
 
 logger = logging.getLogger(__name__)
 
 INDEX_NAME = os.getenv("ELASTICSEARCH_INDEX_NAME", "rag_documents")
+# Chunks embedded and written per batch, which is also how often progress is reported
+EMBEDDING_BATCH_SIZE = int(os.getenv("EMBEDDING_BATCH_SIZE", "32"))
+# Page text extracted by core-api at upload time; must match document.extraction.directory
+PAGE_TEXT_DIRECTORY = os.getenv("PAGE_TEXT_DIRECTORY", ".pages")
+PAGE_TEXT_SUFFIX = ".jsonl.gz"
+# Deleted canonical chunks whose references are looked up per query when promoting a successor
+PROMOTION_BATCH_SIZE = 1000
+# Fields of the MinHash near-duplicate lookup, outside the chunk metadata so that search results do not carry them
+DEDUP_MAPPING = {
+    "minhash": {"type": "long", "index": False, "doc_values": False},
+    "minhash_bands": {"type": "keyword"},
+    "duplicate_of": {"type": "keyword"},
+}
 
 
-def load_pdf(pdf_path: Union[str, Path]) -> list[Document]:
-    """Loads a PDF from the given path and returns its content as a list of Document objects."""
+def load_page_text(pdf_path: Path, progress=None) -> list[Document] | None:
+    """
+    Loads the page-text artifact core-api wrote for the PDF, or returns None if there is none.
+    Pages get the same metadata PyPDFLoader would give them (0-based "page").
+    """
+    artifact = pdf_path.parent / PAGE_TEXT_DIRECTORY / f"{pdf_path.name}{PAGE_TEXT_SUFFIX}"
+    if not artifact.exists():
+        return None
+
+    with gzip.open(artifact, "rt", encoding="utf-8") as lines:
+        records = [json.loads(line) for line in lines if line.strip()]
+    pages = [
+        Document(page_content=record["text"], metadata={"source": str(pdf_path), "page": record["page"] - 1})
+        for record in records
+    ]
+    if progress:
+        progress.pages_parsed(len(pages), len(pages))
+    logger.info(f"Loaded {len(pages)} pre-extracted pages of {pdf_path.name}")
+    return pages
+
+
+def load_pdf(pdf_path: Union[str, Path], progress=None) -> list[Document]:
+    """
+    Loads a PDF from the given path and returns its content as a list of Document objects.
+    Uses the page text extracted by core-api when available and parses the PDF otherwise.
+    If a progress reporter is given, it is told about every parsed page.
+    """
+    pages = load_page_text(Path(pdf_path), progress)
+    if pages is not None:
+        return pages
+
     loader = PyPDFLoader(str(pdf_path))
-    return loader.load()
+    if progress is None:
+        return loader.load()
+
+    total_pages = len(PdfReader(str(pdf_path)).pages)
+    pages = []
+    for page in loader.lazy_load():
+        pages.append(page)
+        progress.pages_parsed(len(pages), total_pages)
+    return pages
 
 
 def split_text(doc: list[Document]) -> list[Document]:
@@ -37,11 +94,13 @@ class DataProcessor:
     and managing the Elasticsearch vector store for retrieval.
     """
 
-    def __init__(self):
+    def __init__(self, chunk_publisher=None):
         """
         Initializes the DataProcessor, loading the embedding model and setting up the Elasticsearch vector store.
         It also ensures that the index exists with the correct mapping.
+        If a chunk publisher is given, every change to the indexed chunks is also published to it.
         """
+        self.chunk_publisher = chunk_publisher
         es_host = os.environ.get("ELASTICSEARCH_HOST", "elasticsearch")
         es_password = os.environ.get("ELASTICSEARCH_PASSWORD")
 
@@ -58,6 +117,7 @@ class DataProcessor:
                 es_password=es_password
             )
             self._create_index_if_not_exists()
+            self.duplicate_finder = dedup.NearDuplicateFinder(self.vector_store.client, INDEX_NAME)
             logger.info("ElasticsearchStore initialized successfully.")
         except Exception as e:
             logger.error(f"Failed to initialize ElasticsearchStore or create index: {e}")
@@ -84,7 +144,8 @@ class DataProcessor:
                         "dims": 1024,  # Specify the dimension of the embedding vector
                         "index": True,
                         "similarity": "cosine"
-                    }
+                    },
+                    **DEDUP_MAPPING
                 }
             }
             try:
@@ -95,14 +156,24 @@ class DataProcessor:
                 raise
         else:
             logger.debug(f"Index '{INDEX_NAME}' already exists.")
+            # Adding fields leaves the existing ones untouched
+            client.indices.put_mapping(index=INDEX_NAME, properties=DEDUP_MAPPING)
 
-    def add_document(self, pdf_path: Union[str, Path], doc_id: int, original_filename: str, category: str | None = None) -> None:
+    def add_document(self, pdf_path: Union[str, Path], doc_id: int, original_filename: str, category: str | None = None,
+                     progress=None, pages: set[int] | None = None) -> None:
         """
         Processes and adds a single PDF document to the Elasticsearch index with rich metadata.
+        If page numbers are given, only those pages are added.
+        Chunks are embedded and written in batches; if a progress reporter is given, it is told after each step.
+        A chunk nearly duplicating an indexed chunk of the same category, or an earlier chunk of this document, is not
+        embedded: it is stored as a reference to that canonical chunk, without text or vector, so searches find the
+        canonical chunk once, and it is not published to the chunk stream.
         """
         pdf_path = Path(pdf_path)
         logger.info(f"Processing and adding document: {original_filename} (doc_id: {doc_id})")
-        doc = load_pdf(pdf_path)
+        doc = load_pdf(pdf_path, progress)
+        if pages is not None:
+            doc = [page for page in doc if page.metadata.get("page", 0) + 1 in pages]
         chunks = split_text(doc)
 
         # Tag each chunk with the new, richer metadata
@@ -113,32 +184,196 @@ class DataProcessor:
             if category:
                 chunk.metadata["category"] = category
 
-        self.vector_store.add_documents(chunks)
-        logger.info(f"Successfully added {original_filename} to the Elasticsearch index.")
+        total = len(chunks)
+        # Canonical chunks written by this call, which searches do not see before the index is refreshed
+        written = []
+        duplicates = 0
+        for start in range(0, total, EMBEDDING_BATCH_SIZE):
+            batch = chunks[start:start + EMBEDDING_BATCH_SIZE]
+            signatures = [dedup.signature(chunk.page_content) for chunk in batch]
+            band_keys = [dedup.bands(sig) for sig in signatures]
+            canonical_ids = self.duplicate_finder.find(signatures, band_keys, category, written)
+            chunk_ids = [uuid.uuid4().hex for _ in batch]
+
+            unique = [i for i, canonical_id in enumerate(canonical_ids) if canonical_id is None]
+            texts = [batch[i].page_content for i in unique]
+            vectors = self.vector_store.embeddings.embed_documents(texts) if texts else []
+            if progress:
+                progress.chunks_embedded(start + len(batch), total)
+
+            actions = []
+            for i, vector in zip(unique, vectors):
+                actions.append({"_index": INDEX_NAME, "_id": chunk_ids[i], "_source": {
+                    "text": batch[i].page_content,
+                    "vector": vector,
+                    "metadata": batch[i].metadata,
+                    "minhash": signatures[i].tolist(),
+                    "minhash_bands": band_keys[i],
+                }})
+                written.append((chunk_ids[i], signatures[i], band_keys[i]))
+            for i, canonical_id in enumerate(canonical_ids):
+                if canonical_id is not None:
+                    actions.append({"_index": INDEX_NAME, "_id": chunk_ids[i], "_source": {
+                        "metadata": batch[i].metadata,
+                        "duplicate_of": canonical_id,
+                    }})
+            helpers.bulk(self.vector_store.client, actions, refresh=start + len(batch) >= total)
+            duplicates += len(batch) - len(unique)
+
+            if self.chunk_publisher:
+                self.chunk_publisher.upserted([chunk_ids[i] for i in unique], texts,
+                                              [batch[i].metadata for i in unique], vectors)
+            if progress:
+                progress.chunks_written(start + len(batch), total)
+
+        logger.info(f"Successfully added {original_filename} to the Elasticsearch index "
+                    f"({duplicates} of {total} chunks stored as near-duplicates).")
+
+    def clone_document(self, source_doc_id: int, doc_id: int, original_filename: str, category: str | None = None) -> int:
+        """
+        Copies the chunks of an already indexed document with identical content under a new doc_id,
+        reusing the stored embeddings instead of parsing and embedding the file again.
+        Within the same category the copies are references to the canonical chunks; in another category they are
+        canonical chunks of their own, copied from the canonical chunks, so that filtering by category finds them.
+        Returns the number of chunks copied.
+        """
+        logger.info(f"Cloning chunks of doc_id: {source_doc_id} into doc_id: {doc_id} ({original_filename})")
+        client = self.vector_store.client
+        hits = helpers.scan(
+            client,
+            index=INDEX_NAME,
+            query={"query": {"term": {"metadata.doc_id": source_doc_id}}}
+        )
+
+        actions = []
+        # Copies into another category of chunks that are references, by the id of their canonical chunk
+        unresolved = {}
+        for hit in hits:
+            source = hit["_source"]
+            metadata = dict(source.get("metadata", {}))
+            same_category = metadata.get("category") == (category or None)
+            metadata["doc_id"] = doc_id
+            metadata["display_name"] = original_filename
+            if category:
+                metadata["category"] = category
+            else:
+                metadata.pop("category", None)
+            action = {"_index": INDEX_NAME, "_id": uuid.uuid4().hex, "_source": {**source, "metadata": metadata}}
+            if same_category:
+                action["_source"] = {"metadata": metadata, "duplicate_of": source.get("duplicate_of") or hit["_id"]}
+            elif "duplicate_of" in source:
+                unresolved.setdefault(source["duplicate_of"], []).append(action)
+            actions.append(action)
+
+        if unresolved:
+            for canonical in client.mget(index=INDEX_NAME, ids=list(unresolved))["docs"]:
+                for action in unresolved[canonical["_id"]]:
+                    if canonical.get("found"):
+                        action["_source"] = {**canonical["_source"], "metadata": action["_source"]["metadata"]}
+                    else:
+                        # The canonical chunk was deleted since the scan
+                        actions.remove(action)
+
+        if actions:
+            helpers.bulk(client, actions, refresh=True)
+            canonical = [action for action in actions if "duplicate_of" not in action["_source"]]
+            if self.chunk_publisher and canonical:
+                self.chunk_publisher.upserted(
+                    [action["_id"] for action in canonical],
+                    [action["_source"]["text"] for action in canonical],
+                    [action["_source"]["metadata"] for action in canonical],
+                    [action["_source"].get("vector") for action in canonical]
+                )
+        logger.info(f"Cloned {len(actions)} chunks into doc_id: {doc_id}")
+        return len(actions)
+
+    def _promote_references(self, deleted: dict) -> None:
+        """
+        Before the chunks matching the query are deleted, gives each canonical chunk among them that other chunks
+        refer to a successor: one of those references, not deleted itself, takes over its text, vector and signature,
+        and the other references are pointed to it. The successors are published to the chunk stream as new chunks.
+        """
+        client = self.vector_store.client
+        deleted_ids = [hit["_id"] for hit in helpers.scan(
+            client,
+            index=INDEX_NAME,
+            query={"query": {"bool": {"filter": [deleted], "must_not": [{"exists": {"field": "duplicate_of"}}]}}},
+            _source=False
+        )]
+        promoted = 0
+        for start in range(0, len(deleted_ids), PROMOTION_BATCH_SIZE):
+            references = helpers.scan(
+                client,
+                index=INDEX_NAME,
+                query={"query": {"bool": {
+                    "filter": [{"terms": {"duplicate_of": deleted_ids[start:start + PROMOTION_BATCH_SIZE]}}],
+                    "must_not": [deleted]
+                }}},
+                _source=["metadata", "duplicate_of"]
+            )
+            successors = {}
+            for reference in references:
+                source = reference["_source"]
+                successors.setdefault(source["duplicate_of"], (reference["_id"], source["metadata"]))
+            if not successors:
+                continue
+
+            actions = []
+            for canonical in client.mget(index=INDEX_NAME, ids=list(successors))["docs"]:
+                successor_id, metadata = successors[canonical["_id"]]
+                actions.append({"_index": INDEX_NAME, "_id": successor_id, "_source": {
+                    **canonical["_source"], "metadata": metadata
+                }})
+            helpers.bulk(client, actions, refresh=True)
+            client.update_by_query(
+                index=INDEX_NAME,
+                query={"terms": {"duplicate_of": list(successors)}},
+                script={
+                    "source": "ctx._source.duplicate_of = params.successors[ctx._source.duplicate_of]",
+                    "params": {"successors": {canonical_id: successor_id
+                                              for canonical_id, (successor_id, _) in successors.items()}}
+                },
+                conflicts="proceed",
+                refresh=True
+            )
+            if self.chunk_publisher:
+                self.chunk_publisher.upserted(
+                    [action["_id"] for action in actions],
+                    [action["_source"]["text"] for action in actions],
+                    [action["_source"]["metadata"] for action in actions],
+                    [action["_source"].get("vector") for action in actions]
+                )
+            promoted += len(actions)
+        if promoted:
+            logger.info(f"Promoted {promoted} near-duplicate chunks in place of deleted canonical chunks")
 
     def delete_document(self, doc_id: int) -> bool:
         """
         Deletes all vectors associated with a specific doc_id from Elasticsearch.
+        Near-duplicates in other documents that refer to its chunks are promoted first.
         """
         logger.info(f"Deleting document with doc_id: {doc_id} from Elasticsearch.")
         try:
+            deleted = {"term": {"metadata.doc_id": doc_id}}
+            self._promote_references(deleted)
             self.vector_store.client.delete_by_query(
                 index=INDEX_NAME,
                 body={
-                    "query": {
-                        "term": {
-                            "metadata.doc_id": doc_id
-                        }
-                    }
+                    "query": deleted
                 }
             )
+            if self.chunk_publisher:
+                self.chunk_publisher.document_deleted(doc_id)
             logger.info(f"Successfully submitted deletion request for doc_id: {doc_id}")
             return True
+        except ChunkPublishError:
+            raise
         except Exception as e:
             logger.error(f"Error deleting document with doc_id {doc_id} from Elasticsearch: {e}")
             return False
 
-    def update_document(self, pdf_path: Union[str, Path], doc_id: int, original_filename: str, category: str | None = None) -> None:
+    def update_document(self, pdf_path: Union[str, Path], doc_id: int, original_filename: str, category: str | None = None,
+                        progress=None) -> None:
         """
         Updates a document in Elasticsearch by performing a delete-then-add operation.
         """
@@ -146,5 +381,44 @@ class DataProcessor:
         # First, delete all existing vectors associated with the document id.
         self.delete_document(doc_id)
         # Then, add the new version of the document.
-        self.add_document(pdf_path, doc_id=doc_id, original_filename=original_filename, category=category)
-        logger.info(f"Successfully updated document: {original_filename}")
\ No newline at end of file
+        self.add_document(pdf_path, doc_id=doc_id, original_filename=original_filename, category=category, progress=progress)
+        logger.info(f"Successfully updated document: {original_filename}")
+
+    def update_pages(self, pdf_path: Union[str, Path], doc_id: int, original_filename: str, category: str | None,
+                     pages: list[int], page_count: int, progress=None) -> None:
+        """
+        Applies a document revision page by page: chunks of the changed pages and of pages beyond the new page count
+        are deleted, the changed pages are indexed again, and the remaining chunks are relabelled with the new name.
+        Chunks never span pages, so unchanged pages keep their embeddings.
+        """
+        logger.info(f"Updating {len(pages)} of {page_count} pages of document: {original_filename} (doc_id: {doc_id})")
+        client = self.vector_store.client
+        deleted = {
+            "bool": {
+                "filter": [{"term": {"metadata.doc_id": doc_id}}],
+                "should": [
+                    {"terms": {"metadata.page_number": pages}},
+                    {"range": {"metadata.page_number": {"gt": page_count}}}
+                ],
+                "minimum_should_match": 1
+            }
+        }
+        self._promote_references(deleted)
+        client.delete_by_query(index=INDEX_NAME, query=deleted, refresh=True)
+        if self.chunk_publisher:
+            self.chunk_publisher.pages_deleted(doc_id, pages, page_count)
+        client.update_by_query(
+            index=INDEX_NAME,
+            query={"term": {"metadata.doc_id": doc_id}},
+            script={
+                "source": "ctx._source.metadata.display_name = params.name",
+                "params": {"name": original_filename}
+            },
+            refresh=True
+        )
+        if self.chunk_publisher:
+            self.chunk_publisher.document_renamed(doc_id, original_filename)
+        if pages:
+            self.add_document(pdf_path, doc_id=doc_id, original_filename=original_filename, category=category,
+                              progress=progress, pages=set(pages))
+        logger.info(f"Successfully updated pages of document: {original_filename}")
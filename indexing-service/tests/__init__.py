@@ -0,0 +1,8 @@
+import sys
+import types
+from unittest import mock
+
+# Importing the embedding module loads the embedding model. No test embeds text, so a stand-in is registered instead.
+_embedding = types.ModuleType("app.modules.embedding")
+_embedding.hugging_face = mock.MagicMock()
+sys.modules.setdefault("app.modules.embedding", _embedding)
@@ -0,0 +1,92 @@
+import unittest
+from unittest import mock
+
+from app.jobs import consumer
+
+STREAM = consumer.INDEXING_STREAM_KEY
+
+
+def pending_entry(message_id, times_delivered):
+    return {
+        "message_id": message_id,
+        "consumer": "worker-1",
+        "time_since_delivered": consumer.VISIBILITY_TIMEOUT_MS + 1,
+        "times_delivered": times_delivered,
+    }
+
+
+class ClaimAbandonedTest(unittest.IsolatedAsyncioTestCase):
+
+    def setUp(self):
+        self.redis = mock.AsyncMock()
+
+    async def test_claims_an_idle_job_under_the_delivery_limit(self):
+        self.redis.xpending_range.return_value = [pending_entry("1-0", consumer.MAX_DELIVERIES - 1)]
+        self.redis.xclaim.return_value = [("1-0", {"payload": "{}"})]
+
+        job = await consumer.claim_abandoned(self.redis, STREAM)
+
+        self.assertEqual((STREAM, "1-0", {"payload": "{}"}), job)
+        self.redis.xpending_range.assert_awaited_once_with(
+            STREAM, consumer.CONSUMER_GROUP, min="-", max="+",
+            count=consumer.RECLAIM_SCAN_COUNT, idle=consumer.VISIBILITY_TIMEOUT_MS
+        )
+        self.redis.xclaim.assert_awaited_once_with(
+            STREAM, consumer.CONSUMER_GROUP, consumer.CONSUMER_NAME,
+            min_idle_time=consumer.VISIBILITY_TIMEOUT_MS, message_ids=["1-0"]
+        )
+
+    async def test_never_claims_a_job_that_reached_the_delivery_limit(self):
+        self.redis.xpending_range.return_value = [
+            pending_entry("1-0", consumer.MAX_DELIVERIES),
+            pending_entry("2-0", consumer.MAX_DELIVERIES + 1),
+        ]
+
+        job = await consumer.claim_abandoned(self.redis, STREAM)
+
+        self.assertIsNone(job)
+        self.redis.xclaim.assert_not_awaited()
+
+    async def test_skips_exhausted_jobs_to_reach_a_claimable_one(self):
+        self.redis.xpending_range.return_value = [
+            pending_entry("1-0", consumer.MAX_DELIVERIES),
+            pending_entry("2-0", 1),
+        ]
+        self.redis.xclaim.return_value = [("2-0", {"payload": "{}"})]
+
+        job = await consumer.claim_abandoned(self.redis, STREAM)
+
+        self.assertEqual("2-0", job[1])
+        self.redis.xclaim.assert_awaited_once()
+        self.assertEqual(["2-0"], self.redis.xclaim.await_args.kwargs["message_ids"])
+
+    async def test_moves_on_when_another_worker_claimed_the_job_first(self):
+        self.redis.xpending_range.return_value = [pending_entry("1-0", 1), pending_entry("2-0", 1)]
+        self.redis.xclaim.side_effect = [[], [("2-0", {"payload": "{}"})]]
+
+        job = await consumer.claim_abandoned(self.redis, STREAM)
+
+        self.assertEqual("2-0", job[1])
+
+
+class NextJobTest(unittest.IsolatedAsyncioTestCase):
+
+    async def test_takes_abandoned_jobs_of_a_lane_before_its_new_ones(self):
+        redis_client = mock.AsyncMock()
+        redis_client.xpending_range.side_effect = lambda stream, *args, **kwargs: (
+            [pending_entry("1-0", 1)] if stream == STREAM else []
+        )
+        redis_client.xclaim.return_value = [("1-0", {"payload": "{}"})]
+        redis_client.xreadgroup.return_value = []
+
+        job = await consumer.next_job(redis_client)
+
+        self.assertEqual((STREAM, "1-0", {"payload": "{}"}), job)
+        # The de-indexing lane comes first and had nothing to claim or read.
+        redis_client.xreadgroup.assert_awaited_once_with(
+            consumer.CONSUMER_GROUP, consumer.CONSUMER_NAME, {consumer.DEINDEXING_STREAM_KEY: ">"}, count=1
+        )
+
+
+if __name__ == "__main__":
+    unittest.main()
@@ -0,0 +1,131 @@
+import random
+import unittest
+from unittest import mock
+
+from app.modules.data import dedup
+from app.modules.data.dedup import NearDuplicateFinder
+
+VOCABULARY = [f"term{n}" for n in range(2000)]
+
+
+def text(seed: int, words: int = 200) -> str:
+    rng = random.Random(seed)
+    return " ".join(rng.choice(VOCABULARY) for _ in range(words))
+
+
+def jaccard(a: str, b: str) -> float:
+    first, second = dedup.shingles(a), dedup.shingles(b)
+    return len(first & second) / len(first | second)
+
+
+class MinHashTest(unittest.TestCase):
+
+    def test_shingles_ignore_case_punctuation_and_spacing(self):
+        self.assertEqual({"the quick brown", "quick brown fox"}, dedup.shingles("The quick, brown  fox!"))
+        self.assertEqual(dedup.shingles("the quick brown fox"), dedup.shingles("THE quick\nbrown... fox"))
+
+    def test_a_short_text_is_a_single_shingle(self):
+        self.assertEqual({"hello world"}, dedup.shingles("Hello, world"))
+
+    def test_signatures_are_stable(self):
+        sig = dedup.signature(text(1))
+
+        self.assertEqual(dedup.MINHASH_PERMUTATIONS, len(sig))
+        # Stored with the chunks, so the same text must get the same signature in every worker
+        self.assertEqual(sig.tolist(), dedup.signature(text(1)).tolist())
+        self.assertEqual(1.0, dedup.similarity(sig, dedup.signature(text(1))))
+
+    def test_estimates_the_jaccard_similarity_of_a_near_duplicate(self):
+        original = text(1)
+        words = original.split()
+        words[100] = "changed"
+        edited = " ".join(words)
+
+        estimate = dedup.similarity(dedup.signature(original), dedup.signature(edited))
+
+        self.assertAlmostEqual(jaccard(original, edited), estimate, delta=0.1)
+        self.assertGreaterEqual(estimate, dedup.DEDUP_THRESHOLD)
+        self.assertTrue(set(dedup.bands(dedup.signature(original))) & set(dedup.bands(dedup.signature(edited))))
+
+    def test_unrelated_texts_share_no_band(self):
+        first, second = dedup.signature(text(1)), dedup.signature(text(2))
+
+        self.assertLess(dedup.similarity(first, second), 0.2)
+        self.assertFalse(set(dedup.bands(first)) & set(dedup.bands(second)))
+
+    def test_bands_are_keyed_by_position(self):
+        keys = dedup.bands(dedup.signature(text(1)))
+
+        self.assertEqual(dedup.LSH_BANDS, len(keys))
+        self.assertEqual([str(band) for band in range(dedup.LSH_BANDS)], [key.split(":")[0] for key in keys])
+
+
+class NearDuplicateFinderTest(unittest.TestCase):
+
+    def setUp(self):
+        self.client = mock.Mock()
+        self.finder = NearDuplicateFinder(self.client, "rag_documents")
+        self.original = text(1)
+        words = self.original.split()
+        words[100] = "changed"
+        self.edited = " ".join(words)
+
+    def lookup(self, texts: list[str], category: str | None, local=()):
+        signatures = [dedup.signature(t) for t in texts]
+        return self.finder.find(signatures, [dedup.bands(sig) for sig in signatures], category, list(local))
+
+    def respond(self, *hits):
+        self.client.msearch.return_value = {"responses": [{"hits": {"hits": list(hits_of)}} for hits_of in hits]}
+
+    @staticmethod
+    def hit(chunk_id: str, source_text: str) -> dict:
+        return {"_id": chunk_id, "_source": {"minhash": dedup.signature(source_text).tolist()}}
+
+    def test_finds_the_indexed_chunk_a_new_one_nearly_duplicates(self):
+        self.respond([self.hit("unrelated", text(3)), self.hit("canonical", self.original)], [])
+
+        ids = self.lookup([self.edited, text(2)], "legal")
+
+        self.assertEqual(["canonical", None], ids)
+
+    def test_looks_up_candidates_by_band_within_the_category(self):
+        self.respond([])
+
+        self.lookup([self.edited], "legal")
+        self.lookup([self.edited], None)
+
+        searches = [call.kwargs["searches"] for call in self.client.msearch.call_args_list]
+        self.assertEqual({"index": "rag_documents"}, searches[0][0])
+        legal, uncategorized = searches[0][1]["query"]["bool"]["filter"], searches[1][1]["query"]["bool"]["filter"]
+        self.assertEqual({"terms": {"minhash_bands": dedup.bands(dedup.signature(self.edited))}}, legal[0])
+        self.assertEqual({"term": {"metadata.category": "legal"}}, legal[1])
+        self.assertEqual({"bool": {"must_not": {"exists": {"field": "metadata.category"}}}}, uncategorized[1])
+
+    def test_finds_a_chunk_of_the_same_job(self):
+        self.respond([])
+        sig = dedup.signature(self.original)
+
+        ids = self.lookup([self.edited], "legal", local=[("same-job", sig, dedup.bands(sig))])
+
+        self.assertEqual(["same-job"], ids)
+
+    def test_ignores_a_chunk_of_the_same_job_sharing_no_band(self):
+        self.respond([])
+        sig = dedup.signature(self.original)
+
+        ids = self.lookup([self.edited], "legal", local=[("same-job", sig, ["not-a-band"])])
+
+        self.assertEqual([None], ids)
+
+    def test_skips_signatures_of_another_length(self):
+        self.respond([{"_id": "truncated", "_source": {"minhash": dedup.signature(self.original).tolist()[:64]}}])
+
+        self.assertEqual([None], self.lookup([self.edited], "legal"))
+
+    def test_does_not_search_without_chunks(self):
+        self.assertEqual([], self.finder.find([], [], "legal", []))
+        self.client.msearch.assert_not_called()
+
+
+if __name__ == "__main__":
+    unittest.main()
@@ -0,0 +1,89 @@
+import asyncio
+import threading
+import unittest
+from unittest import mock
+
+from app.jobs import progress
+from app.jobs.progress import ProgressReporter, ProgressReportError
+
+
+class ProgressReporterTest(unittest.IsolatedAsyncioTestCase):
+
+    def setUp(self):
+        self.redis = mock.AsyncMock()
+        self.written = []
+        self.redis.xadd.side_effect = self.record
+
+    async def record(self, stream, fields, **kwargs):
+        self.assertEqual(progress.PROGRESS_STREAM_KEY, stream)
+        # The stream is trimmed by core-api once events are consumed, never capped by the worker
+        self.assertEqual({}, kwargs)
+        self.written.append(fields)
+
+    async def reporter(self):
+        return ProgressReporter(self.redis, asyncio.get_running_loop(), 7)
+
+    async def test_writes_the_final_status_after_every_intermediate_report(self):
+        reporter = await self.reporter()
+        release = threading.Event()
+
+        async def slow_record(stream, fields, **kwargs):
+            # Intermediate reports are still queued on the loop when the job finishes
+            await asyncio.to_thread(release.wait)
+            await self.record(stream, fields, **kwargs)
+
+        self.redis.xadd.side_effect = slow_record
+        await asyncio.to_thread(reporter.chunks_written, 40, 40)
+        self.redis.xadd.side_effect = self.record
+        finishing = asyncio.create_task(reporter.finish("SUCCESS"))
+        await asyncio.sleep(0.05)
+        self.assertEqual([], self.written)
+
+        release.set()
+        await finishing
+
+        self.assertEqual(["WRITING", "DONE"], [fields.get("stage") for fields in self.written])
+        self.assertEqual({"documentId": "7", "status": "SUCCESS", "chunksWritten": "40"},
+                         {key: self.written[-1][key] for key in ("documentId", "status", "chunksWritten")})
+
+    async def test_retries_the_final_status(self):
+        reporter = await self.reporter()
+        self.redis.xadd.side_effect = [ConnectionError("reset"), ConnectionError("reset"), None]
+
+        with mock.patch.object(progress, "FINISH_BACKOFF_SECONDS", 0):
+            await reporter.finish("FAILURE")
+
+        self.assertEqual(3, self.redis.xadd.await_count)
+        fields = self.redis.xadd.await_args.args[1]
+        self.assertEqual("FAILURE", fields["status"])
+        self.assertNotIn("stage", fields)
+
+    async def test_raises_when_the_final_status_cannot_be_written(self):
+        reporter = await self.reporter()
+        self.redis.xadd.side_effect = ConnectionError("reset")
+
+        with mock.patch.object(progress, "FINISH_BACKOFF_SECONDS", 0):
+            with self.assertRaises(ProgressReportError):
+                await reporter.finish("SUCCESS")
+
+        self.assertEqual(progress.FINISH_ATTEMPTS, self.redis.xadd.await_count)
+
+    async def test_intermediate_reports_are_best_effort_and_throttled(self):
+        reporter = await self.reporter()
+        self.redis.xadd.side_effect = ConnectionError("reset")
+
+        def embed():
+            for done in range(1, 11):
+                reporter.chunks_embedded(done, 10)
+
+        await asyncio.to_thread(embed)
+        self.redis.xadd.side_effect = self.record
+        await reporter.finish("SUCCESS")
+
+        # Only the first report of the stage went out within the interval, and its failure did not fail the job
+        self.assertEqual(2, self.redis.xadd.await_count)
+        self.assertEqual("DONE", self.written[-1]["stage"])
+
+
+if __name__ == "__main__":
+    unittest.main()
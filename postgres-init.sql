@@ -62,12 +62,23 @@ CREATE TABLE documents (
     path                VARCHAR(512) NOT NULL,
     type                VARCHAR(50)  NOT NULL,
     size                BIGINT       NOT NULL,
+    content_hash        VARCHAR(64)  NULL,
     category            VARCHAR(100) NULL,
     status              VARCHAR(20)  NOT NULL,
+    stage               VARCHAR(20)  NULL,
+    progress            INTEGER      NOT NULL DEFAULT 0,
+    revision            INTEGER      NOT NULL DEFAULT 1,
     created_at          TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at          TIMESTAMP    NULL
 );
 
+CREATE INDEX idx_documents_content_hash ON documents (content_hash);
+CREATE INDEX idx_documents_stored_name ON documents (stored_name);
+-- Keyset pagination of the document list by each filter
+CREATE INDEX idx_documents_category_id ON documents (category, id DESC);
+CREATE INDEX idx_documents_status_id ON documents (status, id DESC);
+CREATE INDEX idx_documents_type_id ON documents (type, id DESC);
+
 CREATE TRIGGER ON_UPDATE_TRIGGER
     BEFORE UPDATE ON documents
     FOR EACH ROW
@@ -75,15 +86,31 @@ CREATE TRIGGER ON_UPDATE_TRIGGER
 
 COMMENT ON COLUMN documents.id IS 'PK';
 COMMENT ON COLUMN documents.name IS 'Original file name';
-COMMENT ON COLUMN documents.stored_name IS 'UUID-based name for internal storage';
+COMMENT ON COLUMN documents.stored_name IS 'Content-addressed name for internal storage';
 COMMENT ON COLUMN documents.path IS 'Full path of the saved file';
 COMMENT ON COLUMN documents.type IS 'File extension';
 COMMENT ON COLUMN documents.size IS 'File size (bytes)';
+COMMENT ON COLUMN documents.content_hash IS 'SHA-256 hash of the file content';
 COMMENT ON COLUMN documents.category IS 'Document category for filtering';
 COMMENT ON COLUMN documents.status IS 'Indexing process status';
+COMMENT ON COLUMN documents.stage IS 'Indexing step last reported by the worker';
+COMMENT ON COLUMN documents.progress IS 'Overall indexing progress (percent)';
+COMMENT ON COLUMN documents.revision IS 'Revision number, incremented by every uploaded revision';
 COMMENT ON COLUMN documents.created_at IS 'Creation time';
 COMMENT ON COLUMN documents.updated_at IS 'Modification date and time';
 
+CREATE TABLE unreferenced_files (
+    stored_name         VARCHAR(255) PRIMARY KEY,
+    path                VARCHAR(512) NOT NULL,
+    marked_at           TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_unreferenced_files_marked_at ON unreferenced_files (marked_at);
+
+COMMENT ON COLUMN unreferenced_files.stored_name IS 'Stored name of a file no document referred to when it was marked';
+COMMENT ON COLUMN unreferenced_files.path IS 'Full path of the file';
+COMMENT ON COLUMN unreferenced_files.marked_at IS 'Time the file was marked for deletion';
+
 CREATE TABLE prompt_templates (
     id                  SERIAL PRIMARY KEY,
     name                VARCHAR(255) NOT NULL UNIQUE,
@@ -15,7 +15,7 @@ class PromptLoader:
     Manages loading and caching of prompt templates from the core-api.
     """
     def __init__(self):
-        self.core_api_url = os.environ.get("CORE_API_URL", "http://core-api:8080")
+        self.core_api_url = os.environ.get("CORE_API_URL", "http://core-api:8082")
         # Cache up to 10 prompts for 1 hour.
         self.cache = TTLCache(maxsize=10, ttl=3600)
         self.redis_client = client
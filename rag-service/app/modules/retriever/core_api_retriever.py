@@ -0,0 +1,54 @@
+import logging
+import os
+
+import httpx
+from langchain_core.documents import Document
+
+logger = logging.getLogger(__name__)
+
+CORE_API_URL = os.environ.get("CORE_API_URL", "http://core-api:8082")
+# Retrieval calls are on the request path; a slow core-api must not hold up the answer
+RETRIEVAL_TIMEOUT_SECONDS = float(os.getenv("CORE_API_RETRIEVAL_TIMEOUT_SECONDS", "1.0"))
+
+_client = httpx.AsyncClient(base_url=CORE_API_URL, timeout=RETRIEVAL_TIMEOUT_SECONDS)
+
+
+def to_document(chunk: dict) -> Document:
+    """Converts a chunk returned by core-api to a Document with the same metadata as an Elasticsearch hit."""
+    metadata = {
+        "id": chunk["chunkId"],
+        "doc_id": chunk["documentId"],
+        "display_name": chunk.get("displayName"),
+        "page_number": chunk["page"],
+        "score": chunk["score"],
+    }
+    if chunk.get("category"):
+        metadata["category"] = chunk["category"]
+    return Document(page_content=chunk["text"], metadata=metadata)
+
+
+async def keyword_search(query: str, category: str | None, k: int) -> list[Document]:
+    """Runs a BM25 keyword search against the in-memory retrieval index of core-api."""
+    response = await _client.post("/internal/retrieval/keyword", json={"query": query, "category": category, "k": k})
+    response.raise_for_status()
+    return [to_document(chunk) for chunk in response.json()["chunks"]]
+
+
+async def vector_search(vector: list[float], category: str | None, k: int) -> list[Document]:
+    """Runs an approximate nearest neighbour search against the in-memory vector index of core-api."""
+    response = await _client.post("/internal/retrieval/vector", json={"vector": vector, "category": category, "k": k})
+    response.raise_for_status()
+    return [to_document(chunk) for chunk in response.json()["chunks"]]
+
+
+async def hybrid_search(query: str, vector: list[float], category: str | None, k: int) -> list[Document]:
+    """Runs the keyword and vector legs in core-api, which fuses them by reciprocal rank fusion."""
+    response = await _client.post(
+        "/internal/retrieval/hybrid",
+        json={"query": query, "vector": vector, "category": category, "k": k}
+    )
+    response.raise_for_status()
+    body = response.json()
+    if body["partial"]:
+        logger.warning(f"Hybrid retrieval on core-api returned partial results: {body['legs']}")
+    return [to_document(chunk) for chunk in body["chunks"]]
@@ -1,11 +1,21 @@
 import logging
 import asyncio
+import os
 from typing import List
 from langchain_core.documents import Document
 from langchain_elasticsearch import ElasticsearchStore
 
+from app.modules.retriever import core_api_retriever
+
 logger = logging.getLogger(__name__)
 
+# Where the keyword (BM25) and vector (kNN) legs run:
+#   elasticsearch - Elasticsearch only
+#   shadow        - Elasticsearch answers; core-api runs alongside and the overlap is logged for comparison
+#   core-api      - the in-memory index of core-api only
+KEYWORD_RETRIEVAL_MODE = os.getenv("KEYWORD_RETRIEVAL_MODE", "elasticsearch")
+VECTOR_RETRIEVAL_MODE = os.getenv("VECTOR_RETRIEVAL_MODE", "elasticsearch")
+
 
 def reciprocal_rank_fusion(search_results: List[List[Document]], k: int = 60) -> List[Document]:
     """
@@ -16,7 +26,7 @@ def reciprocal_rank_fusion(search_results: List[List[Document]], k: int = 60) ->
     for docs in search_results:
         for rank, doc in enumerate(docs):
             # Use a unique identifier for each document, falling back to page_content
-            doc_id = doc.metadata.get("id", doc.page_content)
+            doc_id = doc.metadata.get("id") or doc.id or doc.page_content
             if doc_id not in fused_scores:
                 fused_scores[doc_id] = {"doc": doc, "score": 0.0}
             # Add RRF score
@@ -28,6 +38,103 @@ def reciprocal_rank_fusion(search_results: List[List[Document]], k: int = 60) ->
     return [item["doc"] for item in reranked_results]
 
 
+async def elasticsearch_keyword_search(
+    query: str,
+    vector_store: ElasticsearchStore,
+    category: str | None,
+    k: int,
+) -> List[Document]:
+    """Runs a BM25 keyword search in Elasticsearch."""
+    bm25_query = {
+        "query": {
+            "bool": {
+                "must": [{"match": {"text": {"query": query}}}],
+                "filter": [{"term": {"metadata.category": category}}] if category else [],
+            }
+        },
+        "size": k,
+    }
+
+    # Run the synchronous search call in a separate thread to make it awaitable
+    response = await asyncio.to_thread(
+        vector_store.client.search,
+        index=vector_store._store.index,
+        body=bm25_query,
+    )
+
+    return [
+        Document(
+            page_content=hit["_source"]["text"],
+            metadata={**hit["_source"]["metadata"], "id": hit["_id"]}
+        )
+        for hit in response["hits"]["hits"]
+    ]
+
+
+async def run_leg(leg: str, mode: str, elasticsearch_search, core_api_search) -> List[Document]:
+    """
+    Runs one retrieval leg on the backend selected by its mode.
+    Both searches are given as functions returning a coroutine, so only the ones the mode needs are started.
+    """
+    if mode == "core-api":
+        return await core_api_search()
+
+    if mode == "shadow":
+        es_results, core_api_results = await asyncio.gather(
+            elasticsearch_search(),
+            core_api_search(),
+            return_exceptions=True,
+        )
+        if isinstance(es_results, BaseException):
+            raise es_results
+        if isinstance(core_api_results, BaseException):
+            logger.warning(f"Shadow {leg} search on core-api failed: {core_api_results}")
+        else:
+            es_ids = [doc.metadata.get("id") or doc.id for doc in es_results]
+            core_api_ids = [doc.metadata["id"] for doc in core_api_results]
+            overlap = len(set(es_ids) & set(core_api_ids))
+            logger.info(f"Shadow {leg} search overlap {overlap}/{len(es_ids)} (same order: {es_ids == core_api_ids})")
+        return es_results
+
+    return await elasticsearch_search()
+
+
+async def keyword_search(
+    query: str,
+    vector_store: ElasticsearchStore,
+    category: str | None,
+    k: int,
+) -> List[Document]:
+    """Runs the keyword leg on the backend selected by KEYWORD_RETRIEVAL_MODE."""
+    return await run_leg(
+        "keyword",
+        KEYWORD_RETRIEVAL_MODE,
+        lambda: elasticsearch_keyword_search(query, vector_store, category, k),
+        lambda: core_api_retriever.keyword_search(query, category, k),
+    )
+
+
+async def vector_search(
+    query: str,
+    vector_store: ElasticsearchStore,
+    category: str | None,
+    k: int,
+) -> List[Document]:
+    """Runs the vector leg on the backend selected by VECTOR_RETRIEVAL_MODE."""
+    async def elasticsearch_vector_search():
+        vector_search_kwargs = {'k': k}
+        if category:
+            vector_search_kwargs["filter"] = [{"term": {"metadata.category": category}}]
+        return await vector_store.asimilarity_search(query, **vector_search_kwargs)
+
+    async def core_api_vector_search():
+        # core-api only holds the chunk embeddings, so the query is embedded here with the same model
+        vector = await asyncio.to_thread(vector_store.embeddings.embed_query, query)
+        return await core_api_retriever.vector_search(vector, category, k)
+
+    return await run_leg("vector", VECTOR_RETRIEVAL_MODE, elasticsearch_vector_search, core_api_vector_search)
+
+
 async def hybrid_search(
     query: str,
     vector_store: ElasticsearchStore,
@@ -43,42 +150,17 @@ async def hybrid_search(
     try:
         logger.debug(f"Performing manual hybrid search for query: '{query}' with category: '{category}'")
 
-        # 1. Vector Search (KNN) - This is an async operation
-        vector_search_kwargs = {'k': k}
-        if category:
-            vector_search_kwargs["filter"] = [{"term": {"metadata.category": category}}]
-        
-        vector_results = await vector_store.asimilarity_search(
-            query,
-            **vector_search_kwargs
-        )
-        logger.debug(f"Vector search found {len(vector_results)} results.")
+        if KEYWORD_RETRIEVAL_MODE == "core-api" and VECTOR_RETRIEVAL_MODE == "core-api":
+            # core-api runs both legs in parallel with per-leg deadlines and fuses them itself
+            vector = await asyncio.to_thread(vector_store.embeddings.embed_query, query)
+            return await core_api_retriever.hybrid_search(query, vector, category, k)
 
-        # 2. Keyword Search (BM25) - This is a sync operation
-        bm25_query = {
-            "query": {
-                "bool": {
-                    "must": [{"match": {"text": {"query": query}}}],
-                    "filter": [{"term": {"metadata.category": category}}] if category else [],
-                }
-            },
-            "size": k,
-        }
-        
-        # Run the synchronous search call in a separate thread to make it awaitable
-        keyword_results_response = await asyncio.to_thread(
-            vector_store.client.search,
-            index=vector_store._store.index,
-            body=bm25_query,
+        # 1. Vector Search (KNN) and 2. Keyword Search (BM25), run concurrently
+        vector_results, keyword_results = await asyncio.gather(
+            vector_search(query, vector_store, category, k),
+            keyword_search(query, vector_store, category, k),
         )
-        
-        keyword_results = [
-            Document(
-                page_content=hit["_source"]["text"],
-                metadata=hit["_source"]["metadata"]
-            )
-            for hit in keyword_results_response["hits"]["hits"]
-        ]
+        logger.debug(f"Vector search found {len(vector_results)} results.")
         logger.debug(f"Keyword search (BM25) found {len(keyword_results)} results.")
 
         # 3. Re-rank using Reciprocal Rank Fusion